@@ -0,0 +1,370 @@
+package unxutils.cli;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Builds the command table at compile time.  Every class annotated with
+ * cli.annotations.Command becomes an entry of unxutils.cli.CommandTable, with
+ * the options of its Parameter fields, the operands of its OptionalArgs field
+ * and a direct call to its Run method, those of its superclasses included;
+ * fields are set through their (Lombok) setters.  Launching a command then needs no reflection and loads no class
+ * but the table, the parser and the command itself.<br>
+ * The table covers every command of the module, also when only some sources
+ * are recompiled: the names of the commands are kept in a resource and those
+ * not in the compilation are read from their classes.<br>
+ * Given the unxutils.scripts option, it also writes a launcher per command
+ * into that directory, a shell script and a Windows one, both calling
+ * unxutils.cli.Main with native access and the jars of the libs directory
+ * next to it.<br>
+ * The processor is compiled before the rest of the sources (see pom.xml), so
+ * it depends on nothing but the JDK.
+ */
+@SupportedAnnotationTypes(CommandTableProcessor.COMMAND)
+@SupportedOptions(CommandTableProcessor.SCRIPTS)
+public class CommandTableProcessor extends AbstractProcessor {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Annotations of the commands
+	static final String COMMAND = "cli.annotations.Command";
+	private static final String PARAMETER = "cli.annotations.Parameter";
+	private static final String OPTIONAL_ARGS = "cli.annotations.OptionalArgs";
+	private static final String RUN = "cli.annotations.Run";
+	// Generated table
+	private static final String PACKAGE = "unxutils.cli";
+	private static final String TABLE = "CommandTable";
+	// Commands of previous compilations
+	private static final String INDEX = "META-INF/unxutils/commands";
+	// Option: directory of the launcher scripts
+	static final String SCRIPTS = "unxutils.scripts";
+	// Launcher class of the scripts
+	private static final String MAIN = PACKAGE + ".Main";
+	// Lets unxutils.fs.Libc bind the C library without warnings
+	private static final String NATIVE_ACCESS = "--enable-native-access=ALL-UNNAMED";
+
+	//-----------------------------------------------------------------
+	// Processor properties
+
+	// Is the table written?
+	private boolean written = false;
+
+	//-----------------------------------------------------------------
+	// Processor methods
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		if (written || annotations.isEmpty()) return false;
+		written = true;
+		// By command name, so that the table is sorted
+		var commands = new TreeMap<String, TypeElement>();
+		for (var annotation: annotations) {
+			for (var element: round.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.CLASS) add(commands, (TypeElement) element);
+			}
+		}
+		for (var name: previousCommands()) {
+			var type = processingEnv.getElementUtils().getTypeElement(name);
+			if (type != null && !commands.containsValue(type)) add(commands, type);
+		}
+		try {
+			writeTable(commands);
+			writeIndex(commands);
+		} catch (IOException e) {
+			error(null, "Cannot write the command table: " + e.getMessage());
+		}
+		var scripts = processingEnv.getOptions().get(SCRIPTS);
+		if (scripts != null) {
+			try {
+				writeScripts(Path.of(scripts), commands.keySet());
+			} catch (IOException e) {
+				error(null, "Cannot write the launcher scripts: " + e.getMessage());
+			}
+		}
+		return false;
+	}
+
+	// Adds a command, if it is still annotated
+	private void add(TreeMap<String, TypeElement> commands, TypeElement type) {
+		var command = annotation(type, COMMAND);
+		if (command == null) return;
+		var name = value(command, "command");
+		var previous = commands.put(name, type);
+		if (previous != null && !previous.equals(type)) {
+			error(type, "Command " + name + " is also " + previous.getQualifiedName());
+		}
+	}
+
+	// Names of the command classes in the index of a previous compilation
+	private List<String> previousCommands() {
+		var ret = new ArrayList<String>();
+		try {
+			var index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+			try (var reader = new BufferedReader(new InputStreamReader(index.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.isBlank()) ret.add(line.trim());
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// First compilation
+		}
+		return ret;
+	}
+
+	// Writes the names of the command classes, for the next compilation
+	private void writeIndex(TreeMap<String, TypeElement> commands) throws IOException {
+		var index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX,
+			commands.values().toArray(new Element[0]));
+		try (var out = new PrintWriter(index.openWriter())) {
+			for (var type: commands.values()) out.println(type.getQualifiedName());
+		}
+	}
+
+	// Writes the table
+	private void writeTable(TreeMap<String, TypeElement> commands) throws IOException {
+		var file = processingEnv.getFiler().createSourceFile(PACKAGE + "." + TABLE,
+			commands.values().toArray(new Element[0]));
+		try (var out = new PrintWriter(file.openWriter())) {
+			out.println("package " + PACKAGE + ";");
+			out.println();
+			out.println("import java.nio.file.Path;");
+			out.println("import java.util.List;");
+			out.println();
+			out.println("/**");
+			out.println(" * Commands of the module, generated by " + CommandTableProcessor.class.getSimpleName() + ".");
+			out.println(" */");
+			out.println("@javax.annotation.processing.Generated(\"" + CommandTableProcessor.class.getName() + "\")");
+			out.println("public final class " + TABLE + " {");
+			out.println();
+			out.println("\t/** Names of the commands, sorted */");
+			out.println("\tpublic static final List<String> COMMANDS = List.of("
+				+ String.join(", ", commands.keySet().stream().map(CommandTableProcessor::literal).toList()) + ");");
+			out.println();
+			out.println("\tprivate " + TABLE + "() {}");
+			out.println();
+			out.println("\t/**");
+			out.println("\t * Runs a command.");
+			out.println("\t * @param command Command name");
+			out.println("\t * @param args Command line, without the command name");
+			out.println("\t * @param cwd Working directory");
+			out.println("\t * @return Exit status");
+			out.println("\t * @throws OptionParser.UsageException If the command line is wrong");
+			out.println("\t * @throws IllegalArgumentException If there is no such command");
+			out.println("\t * @throws Exception If the command fails");
+			out.println("\t */");
+			out.println("\tpublic static int run(String command, String[] args, Path cwd) throws Exception {");
+			out.println("\t\treturn switch (command) {");
+			for (var command: commands.keySet()) {
+				out.println("\t\t\tcase " + literal(command) + " -> " + method(command) + "(args, cwd);");
+			}
+			out.println("\t\t\tdefault -> throw new IllegalArgumentException(command);");
+			out.println("\t\t};");
+			out.println("\t}");
+			for (var command: commands.entrySet()) {
+				writeCommand(out, command.getKey(), command.getValue());
+			}
+			out.println("}");
+		}
+	}
+
+	// Writes the launcher scripts of the commands: the jars are in the libs
+	//	directory next to the scripts, and JAVA_HOME and JAVA_OPTS are honored
+	private static void writeScripts(Path directory, Set<String> commands) throws IOException {
+		Files.createDirectories(directory);
+		for (var command: commands) {
+			var shell = directory.resolve(command);
+			Files.writeString(shell, String.join("\n",
+				"#!/bin/sh",
+				"# " + command + ": generated by " + CommandTableProcessor.class.getSimpleName(),
+				"if [ -n \"$JAVA_HOME\" ]; then JAVA=\"$JAVA_HOME/bin/java\"; else JAVA=java; fi",
+				"exec \"$JAVA\" " + NATIVE_ACCESS + " $JAVA_OPTS -cp \"$(dirname \"$0\")/../libs/*\" " + MAIN + " " + command + " \"$@\"",
+				""));
+			try {
+				Files.setPosixFilePermissions(shell, PosixFilePermissions.fromString("rwxr-xr-x"));
+			} catch (UnsupportedOperationException e) {
+				// Not a POSIX file system: run through sh
+			}
+			Files.writeString(directory.resolve(command + ".cmd"), String.join("\r\n",
+				"@echo off",
+				"rem " + command + ": generated by " + CommandTableProcessor.class.getSimpleName(),
+				"setlocal",
+				"set JAVA=java",
+				"if defined JAVA_HOME set JAVA=%JAVA_HOME%\\bin\\java",
+				"\"%JAVA%\" " + NATIVE_ACCESS + " %JAVA_OPTS% -cp \"%~dp0..\\libs\\*\" " + MAIN + " " + command + " %*",
+				""));
+		}
+	}
+
+	// Writes the option table and the launcher of a command
+	private void writeCommand(PrintWriter out, String name, TypeElement type) {
+		var options = new ArrayList<String>();
+		var setters = new ArrayList<String>();
+		String operands = null;
+		String operandSetter = null;
+		ExecutableElement run = null;
+		for (var member: members(type)) {
+			var parameter = annotation(member, PARAMETER);
+			var optionalArgs = annotation(member, OPTIONAL_ARGS);
+			if (member.getKind() == ElementKind.FIELD && parameter != null) {
+				var field = (VariableElement) member;
+				var fieldType = field.asType().toString();
+				boolean flag = fieldType.equals("java.lang.Boolean") || fieldType.equals("boolean");
+				if (!flag && !fieldType.equals("java.lang.String")) {
+					error(field, "Options must be Boolean or String");
+					continue;
+				}
+				options.add("new OptionParser.Option(" + literal(value(parameter, "name")) + ", "
+					+ literal(value(parameter, "longName")) + ", " + !flag + ", "
+					+ literal(value(parameter, "description")) + ")");
+				setters.add(setter(field) + (flag ? "(Boolean.TRUE)" : "(parser.value())"));
+			} else if (member.getKind() == ElementKind.FIELD && optionalArgs != null) {
+				var operandName = value(optionalArgs, "name");
+				operands = operandName.isEmpty() ? "ARG" : operandName;
+				operandSetter = setter((VariableElement) member);
+			} else if (member.getKind() == ElementKind.METHOD && annotation(member, RUN) != null) {
+				run = (ExecutableElement) member;
+			}
+		}
+		if (run == null) {
+			error(type, "Command " + name + " has no @Run method");
+			return;
+		}
+		var method = method(name);
+		var spec = method.toUpperCase();
+		out.println();
+		out.println("\t// " + name + ": " + type.getQualifiedName());
+		out.println("\tprivate static final OptionParser.Spec " + spec + " = new OptionParser.Spec(" + literal(name) + ",");
+		out.print("\t\t" + literal(value(annotation(type, COMMAND), "description")) + ", "
+			+ (operands == null ? "null" : literal(operands)));
+		for (var option: options) {
+			out.println(",");
+			out.print("\t\t" + option);
+		}
+		out.println(");");
+		out.println();
+		out.println("\tprivate static int " + method + "(String[] args, Path cwd) throws Exception {");
+		out.println("\t\tvar command = new " + type.getQualifiedName() + "();");
+		out.println("\t\tvar parser = new OptionParser(" + spec + ", args);");
+		if (!setters.isEmpty()) {
+			out.println("\t\tfor (int option = parser.next(); option != OptionParser.END; option = parser.next()) {");
+			out.println("\t\t\tswitch (option) {");
+			for (int i = 0; i < setters.size(); i++) {
+				out.println("\t\t\t\tcase " + i + " -> command." + setters.get(i) + ";");
+			}
+			out.println("\t\t\t}");
+			out.println("\t\t}");
+		} else {
+			out.println("\t\tparser.next();");
+		}
+		out.println("\t\tif (parser.help()) {");
+		out.println("\t\t\tparser.printHelp(System.out);");
+		out.println("\t\t\treturn 0;");
+		out.println("\t\t}");
+		if (operandSetter != null) {
+			// Left unset without operands, as the commands expect
+			out.println("\t\tif (!parser.operands().isEmpty()) command." + operandSetter + "(parser.operands());");
+		}
+		var call = "command." + run.getSimpleName() + "(" + (run.getParameters().isEmpty() ? "" : "cwd") + ")";
+		if (run.getReturnType().getKind() == TypeKind.VOID) {
+			out.println("\t\t" + call + ";");
+			out.println("\t\treturn 0;");
+		} else {
+			out.println("\t\treturn " + call + ";");
+		}
+		out.println("\t}");
+	}
+
+	// Members of a command and of its superclasses, those of the superclasses
+	//	first: commands may share their options through a base class
+	private static List<Element> members(TypeElement type) {
+		var ret = new ArrayList<Element>();
+		for (var current = type; current != null; ) {
+			ret.addAll(0, current.getEnclosedElements());
+			current = current.getSuperclass().getKind() == TypeKind.DECLARED
+				? (TypeElement) ((DeclaredType) current.getSuperclass()).asElement() : null;
+		}
+		return ret;
+	}
+
+	// Lombok setter of a field
+	private static String setter(VariableElement field) {
+		var name = field.getSimpleName().toString();
+		return "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	// Method name of a command (ls, df)
+	private static String method(String command) {
+		var ret = new StringBuilder();
+		for (var c: command.toCharArray()) ret.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		return ret.toString();
+	}
+
+	// Annotation of an element by name, null if it is not there
+	private static AnnotationMirror annotation(Element element, String name) {
+		for (var ret: element.getAnnotationMirrors()) {
+			if (((TypeElement) ret.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) return ret;
+		}
+		return null;
+	}
+
+	// String value of an annotation, its default if not given
+	private String value(AnnotationMirror annotation, String name) {
+		for (var entry: processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) return String.valueOf(entry.getValue().getValue());
+		}
+		return "";
+	}
+
+	// Java literal of a string
+	private static String literal(String value) {
+		var ret = new StringBuilder("\"");
+		for (var c: value.toCharArray()) {
+			switch (c) {
+				case '"' -> ret.append("\\\"");
+				case '\\' -> ret.append("\\\\");
+				case '\n' -> ret.append("\\n");
+				case '\t' -> ret.append("\\t");
+				case '\r' -> ret.append("\\r");
+				default -> ret.append(c);
+			}
+		}
+		return ret.append('"').toString();
+	}
+
+	// Reports an error
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
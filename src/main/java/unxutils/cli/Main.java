@@ -0,0 +1,56 @@
+package unxutils.cli;
+
+import unxutils.fs.StandardStreams;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Launches the commands through the table generated at build time:
+ * java -cp ... unxutils.cli.Main ls -la.  Options are bound by the generated
+ * code, so starting a command does not scan annotations or look up setters.
+ */
+public final class Main {
+
+	// Exit status of wrong command lines
+	private static final int USAGE = 2;
+
+	private Main() {}
+
+	/**
+	 * @param args Command name, then its command line
+	 */
+	public static void main(String[] args) {
+		// Nothing replaced the standard streams yet: the commands may use their
+		//	file descriptors
+		StandardStreams.capture();
+		System.exit(run(args));
+	}
+
+	/**
+	 * Runs a command.
+	 * @param args Command name, then its command line
+	 * @return Exit status
+	 */
+	static int run(String[] args) {
+		if (args.length == 0 || !CommandTable.COMMANDS.contains(args[0])) {
+			System.err.println("Usage: unxutils COMMAND [ARG]...");
+			System.err.println("Commands: " + String.join(" ", CommandTable.COMMANDS));
+			return USAGE;
+		}
+		var command = args[0];
+		try {
+			return CommandTable.run(command, Arrays.copyOfRange(args, 1, args.length),
+				Path.of("").toAbsolutePath());
+		} catch (OptionParser.UsageException e) {
+			System.err.println(command + ": " + e.getMessage());
+			System.err.println("Try '" + command + " --help' for more information.");
+			return USAGE;
+		} catch (Exception e) {
+			System.err.println(command + ": " + e.getMessage());
+			return 1;
+		} finally {
+			System.out.flush();
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package unxutils.cli;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line parsing over an option table computed at build time (see
+ * CommandTableProcessor), GNU style: bundled short options (-la), values
+ * attached or apart (-Ipat, -I pat, --ignore=pat, --ignore pat), long options
+ * abbreviated to any unambiguous prefix, and "--" ending the options.  Options
+ * and operands can be mixed.  Nothing is looked up by reflection: next()
+ * returns the index of every option in the table, and the generated code calls
+ * the setter of that index.
+ */
+public final class OptionParser {
+
+	/**
+	 * An option of a command.
+	 * @param name Short name, e.g. "a"; empty if none
+	 * @param longName Long name, e.g. "all"; empty if none
+	 * @param value Does it take a value?
+	 * @param description Help text
+	 */
+	public record Option(String name, String longName, boolean value, String description) {}
+
+	/**
+	 * Options of a command.
+	 * @param command Command name
+	 * @param description Help text
+	 * @param operands Name of the operands, null if the command takes none
+	 * @param options Its options; next() returns their indexes
+	 */
+	public record Spec(String command, String description, String operands, Option... options) {}
+
+	/**
+	 * Wrong command line.
+	 */
+	public static class UsageException extends Exception {
+		UsageException(String message) {
+			super(message);
+		}
+	}
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** Returned by next() after the last option */
+	public static final int END = -1;
+
+	// Asks for help instead of running
+	private static final String HELP = "help";
+
+	//-----------------------------------------------------------------
+	// Parser properties
+
+	// Table of options
+	private final Spec spec;
+	// Command line
+	private final String[] args;
+	// Next argument
+	private int index = 0;
+	// Rest of a bundle of short options (-la), empty if none
+	private String bundle = "";
+	// Value of the last option
+	private String value = null;
+	// Arguments that are not options
+	private final List<String> operands = new ArrayList<>();
+	// Was help asked for?
+	private boolean help = false;
+
+	//-----------------------------------------------------------------
+	// Parser methods
+
+	/**
+	 * Builds a parser.
+	 * @param spec Options of the command
+	 * @param args Command line, without the command name
+	 */
+	public OptionParser(Spec spec, String[] args) {
+		this.spec = spec;
+		this.args = args;
+	}
+
+	/**
+	 * Parses the next option.
+	 * @return Its index in the table, END after the last one
+	 * @throws UsageException If an option is unknown, lacks its value or the
+	 * 	command takes no operands
+	 */
+	public int next() throws UsageException {
+		value = null;
+		if (!bundle.isEmpty()) return nextShort();
+		while (index < args.length) {
+			var arg = args[index++];
+			if (arg.equals("--")) {
+				while (index < args.length) operand(args[index++]);
+			} else if (arg.startsWith("--")) {
+				int ret = nextLong(arg.substring(2));
+				if (ret != END) return ret;
+			} else if (arg.length() > 1 && arg.charAt(0) == '-') {
+				bundle = arg.substring(1);
+				return nextShort();
+			} else {
+				operand(arg);
+			}
+		}
+		return END;
+	}
+
+	// Option of a long name, END for --help
+	private int nextLong(String arg) throws UsageException {
+		int equals = arg.indexOf('=');
+		var name = equals < 0 ? arg : arg.substring(0, equals);
+		if (name.equals(HELP)) {
+			help = true;
+			return END;
+		}
+		int ret = -1;
+		boolean ambiguous = false;
+		var options = spec.options();
+		for (int i = 0; i < options.length; i++) {
+			var longName = options[i].longName();
+			if (longName.equals(name)) {
+				ret = i;
+				ambiguous = false;
+				break;
+			}
+			if (!longName.isEmpty() && longName.startsWith(name)) {
+				ambiguous = ret >= 0;
+				ret = i;
+			}
+		}
+		if (ret < 0) throw new UsageException("unrecognized option '--" + name + "'");
+		if (ambiguous) throw new UsageException("option '--" + name + "' is ambiguous");
+		var option = options[ret];
+		if (option.value()) {
+			if (equals >= 0) {
+				value = arg.substring(equals + 1);
+			} else if (index < args.length) {
+				value = args[index++];
+			} else {
+				throw new UsageException("option '--" + option.longName() + "' requires an argument");
+			}
+		} else if (equals >= 0) {
+			throw new UsageException("option '--" + option.longName() + "' doesn't allow an argument");
+		}
+		return ret;
+	}
+
+	// First option of the bundle
+	private int nextShort() throws UsageException {
+		var name = bundle.substring(0, 1);
+		bundle = bundle.substring(1);
+		var options = spec.options();
+		for (int i = 0; i < options.length; i++) {
+			var option = options[i];
+			if (!option.name().equals(name)) continue;
+			if (option.value()) {
+				if (!bundle.isEmpty()) {
+					value = bundle;
+					bundle = "";
+				} else if (index < args.length) {
+					value = args[index++];
+				} else {
+					throw new UsageException("option requires an argument -- '" + name + "'");
+				}
+			}
+			return i;
+		}
+		throw new UsageException("invalid option -- '" + name + "'");
+	}
+
+	// Keeps an argument that is not an option
+	private void operand(String arg) throws UsageException {
+		if (spec.operands() == null) throw new UsageException("extra operand '" + arg + "'");
+		operands.add(arg);
+	}
+
+	/**
+	 * @return Value of the last option, null if it takes none
+	 */
+	public String value() {
+		return value;
+	}
+
+	/**
+	 * @return Arguments that are not options, in order
+	 */
+	public List<String> operands() {
+		return operands;
+	}
+
+	/**
+	 * @return Was --help given?  The command should print help and not run
+	 */
+	public boolean help() {
+		return help;
+	}
+
+	/**
+	 * Prints the help of the command, from the table.
+	 * @param out Output
+	 */
+	public void printHelp(PrintStream out) {
+		var usage = new StringBuilder("Usage: ").append(spec.command()).append(" [OPTION]...");
+		if (spec.operands() != null) {
+			usage.append(" [").append(spec.operands()).append("]...");
+		}
+		out.println(usage);
+		if (!spec.description().isEmpty()) out.println(spec.description());
+		out.println();
+		for (var option: spec.options()) {
+			var line = new StringBuilder("  ");
+			line.append(option.name().isEmpty() ? "    " : "-" + option.name() + (option.longName().isEmpty() ? "" : ", "));
+			if (!option.longName().isEmpty()) {
+				line.append("--").append(option.longName());
+				if (option.value()) line.append("=VALUE");
+			} else if (option.value()) {
+				line.append(" VALUE");
+			}
+			while (line.length() < 32) line.append(' ');
+			out.println(line.append(option.description()));
+		}
+		out.println("      --help                    display this help and exit");
+	}
+}
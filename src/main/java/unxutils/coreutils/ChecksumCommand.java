@@ -0,0 +1,121 @@
+package unxutils.coreutils;
+
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.lang.Boolean.FALSE;
+
+/**
+ * Options and entry points of sha256sum and md5sum, which tell apart only by
+ * their algorithm: the command table binds the options of the subclasses
+ * here.
+ */
+abstract class ChecksumCommand {
+
+	//-----------------------------------------------------------------
+	// Command properties
+
+	// Name of the command, for messages
+	private final String command;
+	// Name of the algorithm for MessageDigest
+	private final String algorithm;
+	// Name of the algorithm in BSD-style lines (--tag)
+	private final String tagName;
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="b", longName="binary", description="read in binary mode")
+	private Boolean binary = FALSE;
+
+	@Setter
+	@Parameter(name="c", longName="check", description="read checksums from the FILEs and check them")
+	private Boolean check = FALSE;
+
+	@Setter
+	@Parameter(longName="ignore-missing", description="don't fail or report status for missing files")
+	private Boolean ignoreMissing = FALSE;
+
+	@Setter
+	@Parameter(longName="parallel", description="hash, or check, up to N files at the same time")
+	private String parallel = null;
+
+	@Setter
+	@Parameter(longName="quiet", description="don't print OK for each successfully verified file")
+	private Boolean quiet = FALSE;
+
+	@Setter
+	@Parameter(longName="status", description="don't output anything, status code shows success")
+	private Boolean status = FALSE;
+
+	@Setter
+	@Parameter(longName="strict", description="exit non-zero for improperly formatted checksum lines")
+	private Boolean strict = FALSE;
+
+	@Setter
+	@Parameter(longName="tag", description="create a BSD-style checksum")
+	private Boolean tag = FALSE;
+
+	@Setter
+	@Parameter(name="t", longName="text", description="read in text mode (default)")
+	private Boolean text = FALSE;
+
+	@Setter
+	@Parameter(name="w", longName="warn", description="warn about improperly formatted checksum lines")
+	private Boolean warn = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a checksum command.
+	 * @param command Name of the command, for messages
+	 * @param algorithm Name of the algorithm for MessageDigest
+	 * @param tagName Name of the algorithm in BSD-style lines
+	 */
+	ChecksumCommand(String command, String algorithm, String tagName) {
+		this.command = command;
+		this.algorithm = algorithm;
+		this.tagName = tagName;
+	}
+
+	@Run
+	// Entry point for sha256sum and md5sum
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Prints, or checks, the checksums of the files into the given streams.
+	 * The options are read once, when the call starts.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read or did
+	 * not match its checksum
+	 * @throws Exception If hashing fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		Checksums.Options options;
+		try {
+			options = Checksums.options(binary, check, ignoreMissing, quiet, status, strict, tag, text, warn,
+				parallel);
+		} catch (IllegalArgumentException e) {
+			err.println(command + ": " + e.getMessage());
+			return 1;
+		}
+		return new Checksums(command, algorithm, tagName)
+			.execute(cwd, files == null ? List.of("-") : List.copyOf(files), options, out, err);
+	}
+}
@@ -0,0 +1,477 @@
+package unxutils.coreutils;
+
+import unxutils.fs.StandardStreams;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * What sha256sum and md5sum share: hashing files, printing their checksums,
+ * and checking them against a list.<br>
+ * Files are hashed at the same time by a fixed pool of threads, and printed
+ * in order as soon as the ones before are; only a bounded window of files is
+ * pending at a time, so that a list of any length is read as it is checked.
+ * Regular files from a megabyte on are mapped into memory a window at a time
+ * and the digest reads the pages straight from the page cache; smaller files,
+ * pipes and terminals are read into a direct buffer of each thread.
+ */
+final class Checksums {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Smallest regular file mapped into memory: below it, mapping costs more
+	//	than a read
+	private static final long MAP_THRESHOLD = 1024 * 1024;
+	// Size of the mapped windows, unmapped as soon as they are hashed
+	private static final long MAP_SIZE = 256L * 1024 * 1024;
+	// Size of the read buffers
+	private static final int BUFFER_SIZE = 128 * 1024;
+	// Files pending per thread: enough for the threads never to wait for the
+	//	printing of a slow file
+	private static final int PENDING_PER_THREAD = 4;
+
+	//-----------------------------------------------------------------
+	// Checksums properties
+
+	// Name of the command, for messages
+	private final String command;
+	// Name of the algorithm in BSD-style lines (--tag)
+	private final String tag;
+	// Length of a checksum in hexadecimal digits
+	private final int hexLength;
+	// Digest and read buffer of every thread
+	private final ThreadLocal<MessageDigest> digests;
+	private final ThreadLocal<ByteBuffer> buffers =
+		ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+	//-----------------------------------------------------------------
+	// Checksums methods
+
+	/**
+	 * Builds the checksums of an algorithm.
+	 * @param command Name of the command, for messages
+	 * @param algorithm Name of the algorithm for MessageDigest
+	 * @param tag Name of the algorithm in BSD-style lines
+	 */
+	Checksums(String command, String algorithm, String tag) {
+		this.command = command;
+		this.tag = tag;
+		this.hexLength = newDigest(algorithm).getDigestLength() * 2;
+		this.digests = ThreadLocal.withInitial(() -> newDigest(algorithm));
+	}
+
+	// A digest of the algorithm, which every Java platform has
+	private static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks the options of a command.
+	 * @param binary Binary mode (-b)
+	 * @param check Check the files listed (-c)
+	 * @param ignoreMissing Do not report missing files (--ignore-missing)
+	 * @param quiet Do not print OK (--quiet)
+	 * @param status Print nothing (--status)
+	 * @param strict Fail on improperly formatted lines (--strict)
+	 * @param bsdTag BSD-style lines (--tag)
+	 * @param text Text mode (-t)
+	 * @param warn Warn about improperly formatted lines (-w)
+	 * @param parallel Files hashed at the same time (--parallel), null for
+	 * one per processor
+	 * @return The options
+	 * @throws IllegalArgumentException If they make no sense together
+	 */
+	static Options options(boolean binary, boolean check, boolean ignoreMissing, boolean quiet, boolean status,
+			boolean strict, boolean bsdTag, boolean text, boolean warn, String parallel) {
+		if (bsdTag && check) {
+			throw new IllegalArgumentException("the --tag option is meaningless when verifying checksums");
+		}
+		if (bsdTag && text) {
+			throw new IllegalArgumentException("--tag does not support --text mode");
+		}
+		if (binary && check || text && check) {
+			throw new IllegalArgumentException("the --binary and --text options are meaningless when verifying "
+				+ "checksums");
+		}
+		if (!check) {
+			var meaningful = ignoreMissing ? "--ignore-missing" : quiet ? "--quiet" : status ? "--status"
+				: strict ? "--strict" : warn ? "--warn" : null;
+			if (meaningful != null) {
+				throw new IllegalArgumentException("the " + meaningful + " option is meaningful only when "
+					+ "verifying checksums");
+			}
+		}
+		int threads;
+		try {
+			threads = parallel == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallel);
+		} catch (NumberFormatException e) {
+			threads = 0;
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("invalid number of parallel threads '" + parallel + "'");
+		}
+		return new Options(binary, check, ignoreMissing, quiet, status, strict, bsdTag, warn, threads);
+	}
+
+	/**
+	 * Prints the checksums of the files, or checks the files of the lists.
+	 * @param cwd Working directory
+	 * @param names Files, or lists with -c; "-" is standard input
+	 * @param options Options
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read or did
+	 * not match its checksum
+	 * @throws Exception If hashing fails unexpectedly
+	 */
+	int execute(Path cwd, List<String> names, Options options, PrintStream out, PrintStream err) throws Exception {
+		int status = 0;
+		try (var executor = Executors.newFixedThreadPool(options.threads())) {
+			if (options.check()) {
+				for (var name: names) {
+					status |= check(cwd, name, options, executor, out, err);
+				}
+			} else {
+				var pending = new ArrayDeque<Pending>();
+				for (var name: names) {
+					pending.add(new Pending(name, null, submit(executor, cwd, name)));
+					if (pending.size() >= options.threads() * PENDING_PER_THREAD) {
+						status |= print(pending.remove(), options, out, err);
+					}
+				}
+				while (!pending.isEmpty()) {
+					status |= print(pending.remove(), options, out, err);
+				}
+			}
+		}
+		out.flush();
+		return status;
+	}
+
+	// Hashes a file in the pool; standard input is hashed at once, as several
+	//	threads cannot share it
+	private Future<Result> submit(ExecutorService executor, Path cwd, String name) {
+		if (name.equals("-")) return CompletableFuture.completedFuture(hash(cwd, name));
+		return executor.submit(() -> hash(cwd, name));
+	}
+
+	// Waits for the checksum of a file, and prints it; 1 if it failed
+	private int print(Pending pending, Options options, PrintStream out, PrintStream err) throws Exception {
+		var result = result(pending);
+		if (result.error() != null) {
+			err.println(command + ": " + pending.name() + ": " + result.error());
+			return 1;
+		}
+		var name = pending.name();
+		boolean escaped = name.indexOf('\\') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0;
+		var line = new StringBuilder(hexLength + name.length() + 16);
+		if (escaped) {
+			line.append('\\');
+			name = escape(name);
+		}
+		if (options.bsdTag()) {
+			line.append(tag).append(" (").append(name).append(") = ").append(result.hex());
+		} else {
+			line.append(result.hex()).append(options.binary() ? " *" : "  ").append(name);
+		}
+		out.println(line);
+		return 0;
+	}
+
+	// Waits for the result of a file
+	private static Result result(Pending pending) throws Exception {
+		try {
+			return pending.result().get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception cause ? cause : e;
+		}
+	}
+
+	// Checks the files of a list against their checksums, as the list is read;
+	//	1 if a file failed, or the list is not valid
+	private int check(Path cwd, String list, Options options, ExecutorService executor, PrintStream out,
+			PrintStream err) throws Exception {
+		var listName = list.equals("-") ? "standard input" : list;
+		var tally = new Tally();
+		var pending = new ArrayDeque<Pending>();
+		ReadableByteChannel source = null;
+		try {
+			source = list.equals("-") ? StandardStreams.input(System.in) : Files.newByteChannel(cwd.resolve(list));
+			// Bytes that are not UTF-8 are replaced, and the line then fails as its
+			//	file is missing
+			var reader = new BufferedReader(Channels.newReader(source, UTF_8));
+			long number = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.isEmpty() || line.startsWith("#")) continue;
+				var entry = parse(line);
+				if (entry == null) {
+					tally.improper++;
+					if (options.warn()) {
+						var warning = listName + ": " + number + ": improperly formatted " + tag + " checksum line";
+						pending.add(new Pending(warning, null, null));
+					}
+				} else {
+					tally.proper++;
+					pending.add(new Pending(entry.name(), entry, submit(executor, cwd, entry.name())));
+				}
+				if (pending.size() >= options.threads() * PENDING_PER_THREAD) {
+					report(pending.remove(), options, tally, out, err);
+				}
+			}
+		} catch (IOException e) {
+			// Files pending are still reported, before the list
+			while (!pending.isEmpty()) report(pending.remove(), options, tally, out, err);
+			err.println(command + ": " + list + ": " + (Files.isDirectory(cwd.resolve(list)) ? "Is a directory"
+				: reason(e)));
+			return 1;
+		} finally {
+			// Standard input outlives the command: only lists in files are closed
+			if (source != null && !list.equals("-")) source.close();
+		}
+		while (!pending.isEmpty()) {
+			report(pending.remove(), options, tally, out, err);
+		}
+		if (tally.proper == 0) {
+			err.println(command + ": " + listName + ": no properly formatted checksum lines found");
+			return 1;
+		}
+		if (!options.status()) {
+			warn(err, tally.improper, "line is", "lines are", "improperly formatted");
+			warn(err, tally.unreadable, "listed file", "listed files", "could not be read");
+			warn(err, tally.mismatched, "computed checksum", "computed checksums", "did NOT match");
+		}
+		if (options.ignoreMissing() && tally.verified == 0) {
+			err.println(command + ": " + listName + ": no file was verified");
+			return 1;
+		}
+		boolean failed = tally.mismatched > 0 || tally.unreadable > 0 || options.strict() && tally.improper > 0;
+		return failed ? 1 : 0;
+	}
+
+	// Prints the end of a warning of check, if there is anything to warn about
+	private void warn(PrintStream err, long count, String one, String many, String what) {
+		if (count > 0) {
+			err.println(command + ": WARNING: " + count + " " + (count == 1 ? one : many) + " " + what);
+		}
+	}
+
+	// Reports a file of a list, or a warning about a line of it
+	private void report(Pending pending, Options options, Tally tally, PrintStream out, PrintStream err)
+			throws Exception {
+		if (pending.entry() == null) {
+			err.println(command + ": " + pending.name());
+			return;
+		}
+		var result = result(pending);
+		var name = pending.name();
+		String verdict;
+		if (result.error() != null) {
+			if (result.missing() && options.ignoreMissing()) return;
+			err.println(command + ": " + name + ": " + result.error());
+			tally.unreadable++;
+			verdict = "FAILED open or read";
+		} else {
+			tally.verified++;
+			boolean matched = result.hex().equalsIgnoreCase(pending.entry().hex());
+			if (!matched) tally.mismatched++;
+			if (matched && options.quiet()) return;
+			verdict = matched ? "OK" : "FAILED";
+		}
+		if (options.status()) return;
+		// Line breaks in a name would break the line: the name is escaped
+		if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) name = "\\" + escape(name);
+		out.println(name + ": " + verdict);
+	}
+
+	/**
+	 * Parses a line of a checksum list: a checksum, two characters (two spaces,
+	 * or a space and * for binary mode) and a name, or a BSD-style line
+	 * ("SHA256 (name) = checksum").  A line starting with a backslash has its
+	 * name escaped.
+	 * @param line Line
+	 * @return The checksum and the file, null if the line is improperly
+	 * formatted
+	 */
+	Entry parse(String line) {
+		int i = 0;
+		while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) i++;
+		boolean escaped = i < line.length() && line.charAt(i) == '\\';
+		if (escaped) i++;
+		String hex;
+		String name;
+		if (line.startsWith(tag, i)) {
+			int open = i + tag.length();
+			if (open < line.length() && line.charAt(open) == ' ') open++;
+			int close = line.lastIndexOf(") = ");
+			if (open >= line.length() || line.charAt(open) != '(' || close <= open) return null;
+			name = line.substring(open + 1, close);
+			hex = line.substring(close + 4);
+		} else {
+			int end = i + hexLength;
+			// The checksum, a blank, and a space or * before the name
+			if (end + 2 >= line.length() || line.charAt(end) != ' ' && line.charAt(end) != '\t'
+					|| line.charAt(end + 1) != ' ' && line.charAt(end + 1) != '*') {
+				return null;
+			}
+			hex = line.substring(i, end);
+			name = line.substring(end + 2);
+		}
+		if (hex.length() != hexLength || !hex.chars().allMatch(HexFormat::isHexDigit) || name.isEmpty()) return null;
+		if (escaped) {
+			name = unescape(name);
+			if (name == null) return null;
+		}
+		return new Entry(hex, name);
+	}
+
+	// A name escaped as in checksum lines: backslashes, newlines and carriage
+	//	returns as \\, \n and \r
+	private static String escape(String name) {
+		return name.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	// An escaped name as it is; null if it has an unknown escape
+	private static String unescape(String name) {
+		var ret = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '\\') {
+				if (++i == name.length()) return null;
+				c = switch (name.charAt(i)) {
+					case '\\' -> '\\';
+					case 'n' -> '\n';
+					case 'r' -> '\r';
+					default -> 0;
+				};
+				if (c == 0) return null;
+			}
+			ret.append(c);
+		}
+		return ret.toString();
+	}
+
+	// Hashes a file, or standard input
+	private Result hash(Path cwd, String name) {
+		var digest = digests.get();
+		digest.reset();
+		try {
+			if (name.equals("-")) {
+				var input = StandardStreams.input(System.in);
+				// Never closed: standard input outlives the command
+				read(input, digest);
+			} else {
+				var path = cwd.resolve(name);
+				if (Files.isDirectory(path)) return new Result(null, "Is a directory", false);
+				try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+					if (Files.isRegularFile(path)) map(channel, digest);
+					read(channel, digest);
+				}
+			}
+			return new Result(HexFormat.of().formatHex(digest.digest()), null, false);
+		} catch (NoSuchFileException e) {
+			return new Result(null, "No such file or directory", true);
+		} catch (IOException e) {
+			return new Result(null, reason(e), false);
+		}
+	}
+
+	// Hashes a large regular file up to its size by mapped windows, each
+	//	unmapped as soon as it is hashed
+	private static void map(FileChannel channel, MessageDigest digest) throws IOException {
+		long size = channel.size();
+		if (size < MAP_THRESHOLD) return;
+		for (long position = 0; position < size; position += MAP_SIZE) {
+			long length = Math.min(MAP_SIZE, size - position);
+			try (var arena = Arena.ofConfined()) {
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length, arena).asByteBuffer());
+			}
+		}
+		channel.position(size);
+	}
+
+	// Hashes what is left of a channel, a buffer at a time: small files,
+	//	pipes and terminals, and whatever grew past the size of a file since
+	//	it was mapped
+	private void read(ReadableByteChannel channel, MessageDigest digest) throws IOException {
+		var buffer = buffers.get();
+		while (channel.read(buffer.clear()) >= 0) {
+			digest.update(buffer.flip());
+		}
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		if (e instanceof NoSuchFileException) return "No such file or directory";
+		if (e instanceof AccessDeniedException) return "Permission denied";
+		return e.getMessage();
+	}
+
+	/**
+	 * Options of sha256sum and md5sum, checked.
+	 * @param binary Binary mode
+	 * @param check Check the files listed
+	 * @param ignoreMissing Do not report missing files
+	 * @param quiet Do not print OK
+	 * @param status Print nothing
+	 * @param strict Fail on improperly formatted lines
+	 * @param bsdTag BSD-style lines
+	 * @param warn Warn about improperly formatted lines
+	 * @param threads Files hashed at the same time
+	 */
+	record Options(boolean binary, boolean check, boolean ignoreMissing, boolean quiet, boolean status,
+			boolean strict, boolean bsdTag, boolean warn, int threads) {}
+
+	/**
+	 * A line of a checksum list.
+	 * @param hex Checksum, in hexadecimal
+	 * @param name File
+	 */
+	record Entry(String hex, String name) {}
+
+	// What hashing a file found: its checksum, or its error and whether the
+	//	file is missing
+	private record Result(String hex, String error, boolean missing) {}
+
+	// A file waiting to be printed, and its line of the list if checked; a
+	//	warning about a line if it has no line
+	private record Pending(String name, Entry entry, Future<Result> result) {}
+
+	// Counts of a list checked
+	private static final class Tally {
+		private long proper = 0;
+		private long improper = 0;
+		private long unreadable = 0;
+		private long mismatched = 0;
+		private long verified = 0;
+	}
+}
@@ -0,0 +1,433 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+import unxutils.format.LineBuffer;
+import unxutils.fs.StandardStreams;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static java.lang.Boolean.FALSE;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+cat copies each file ('-' means standard input), or standard input if none are
+given, to standard output.
+
+Regular files are copied by the kernel (sendfile) when no option needs to look
+at their contents.
+
+-A
+--show-all
+Equivalent to -vET.
+
+-b
+--number-nonblank
+Number all nonempty output lines, starting with 1.
+
+-e
+Equivalent to -vE.
+
+-E
+--show-ends
+Display a '$' after the end of each line. The \r\n combination is shown as '^M$'.
+
+-n
+--number
+Number all output lines, starting with 1. This option is ignored if -b is in
+effect.
+
+-s
+--squeeze-blank
+Suppress repeated adjacent blank lines; output just one empty line instead of
+several.
+
+-t
+Equivalent to -vT.
+
+-T
+--show-tabs
+Display TAB characters as '^I'.
+
+-u
+Ignored; for POSIX compatibility.
+
+-v
+--show-nonprinting
+Display control characters except for LFD and TAB using '^' notation and precede
+characters that have the high bit set with 'M-'.
+
+On systems like MS-DOS that distinguish between text and binary files, cat
+normally reads and writes in binary mode.
+
+An exit status of zero indicates success, and a nonzero value indicates failure.
+}
+</pre>
+*/
+@Command(command="cat", description="Concatenate files to standard output.")
+public class ConcatenateCommand {
+
+	//-----------------------------------------------------------------
+	// Command constants
+
+	// Size of the read and write buffers, as GNU cat
+	private static final int BUFFER_SIZE = 128 * 1024;
+	// Longest rendering of a single input byte (M-^X)
+	private static final int MAX_BYTE_LENGTH = 4;
+	// Width of the line numbers
+	private static final int NUMBER_WIDTH = 6;
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="A", longName="show-all", description="equivalent to -vET")
+	private Boolean showAll = FALSE;
+
+	@Setter
+	@Parameter(name="b", longName="number-nonblank", description="number nonempty output lines, overrides -n")
+	private Boolean numberNonblank = FALSE;
+
+	@Setter
+	@Parameter(name="e", description="equivalent to -vE")
+	private Boolean showEndsNonprinting = FALSE;
+
+	@Setter
+	@Parameter(name="E", longName="show-ends", description="display $ at end of each line")
+	private Boolean showEnds = FALSE;
+
+	@Setter
+	@Parameter(name="n", longName="number", description="number all output lines")
+	private Boolean number = FALSE;
+
+	@Setter
+	@Parameter(name="s", longName="squeeze-blank", description="suppress repeated empty output lines")
+	private Boolean squeezeBlank = FALSE;
+
+	@Setter
+	@Parameter(name="t", description="equivalent to -vT")
+	private Boolean showTabsNonprinting = FALSE;
+
+	@Setter
+	@Parameter(name="T", longName="show-tabs", description="display TAB characters as ^I")
+	private Boolean showTabs = FALSE;
+
+	@Setter
+	@Parameter(name="u", description="(ignored)")
+	private Boolean unbuffered = FALSE;
+
+	@Setter
+	@Parameter(name="v", longName="show-nonprinting", description="use ^ and M- notation, except for LFD and TAB")
+	private Boolean showNonprinting = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a cat command.
+	 */
+	public ConcatenateCommand() {
+	}
+
+	@Run
+	// Entry point for cat
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Concatenates the files into the given streams.  The options are read
+	 * once, when the call starts, and nothing of a call is kept in the command.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read or the
+	 * output failed
+	 * @throws Exception If the concatenation fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		boolean nonprinting = showNonprinting || showAll || showEndsNonprinting || showTabsNonprinting;
+		var options = new Options(numberNonblank || number, numberNonblank, squeezeBlank,
+			showEnds || showAll || showEndsNonprinting, showTabs || showAll || showTabsNonprinting, nonprinting);
+		var names = files == null ? List.of("-") : List.copyOf(files);
+		// Whatever was printed before goes first
+		var target = StandardStreams.output(out);
+		var execution = new Execution(options, target);
+		int status = 0;
+		try {
+			for (var name: names) {
+				if (!execution.copy(cwd, name, err)) status = 1;
+			}
+			execution.flush();
+		} catch (WriteException e) {
+			err.println("cat: write error: " + reason(e.getCause()));
+			return 1;
+		}
+		out.flush();
+		return out.checkError() ? 1 : status;
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		if (e instanceof NoSuchFileException) return "No such file or directory";
+		if (e instanceof AccessDeniedException) return "Permission denied";
+		return e.getMessage();
+	}
+
+	// Options of a concatenation: do lines need numbers (-n, -b), only the
+	//	nonempty ones (-b), are empty lines squeezed (-s), line ends shown (-E),
+	//	tabs shown (-T), nonprinting characters shown (-v)?
+	private record Options(boolean number, boolean numberNonblank, boolean squeezeBlank, boolean showEnds,
+			boolean showTabs, boolean showNonprinting) {
+
+		// Is the content copied as it is?
+		boolean isPlain() {
+			return !number && !squeezeBlank && !showEnds && !showTabs && !showNonprinting;
+		}
+
+		// Is every byte of a line copied as it is?
+		boolean copiesLines() {
+			return !showTabs && !showNonprinting;
+		}
+	}
+
+	// An error writing the output, told apart from errors reading the files
+	private static class WriteException extends IOException {
+		WriteException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+	// State of a single execution.  Lines are numbered, and empty lines
+	//	squeezed, across files, as GNU cat does
+	private static final class Execution {
+
+		//---------------------------------------------------------
+		// Execution properties
+
+		// Options
+		private final Options options;
+		// Output
+		private final WritableByteChannel target;
+		// Input being read, reused from one file to the next; direct, so that
+		//	reads fill it without a copy
+		private ByteBuffer input;
+		// Output being rendered
+		private ByteBuffer output;
+		// Renders line numbers
+		private final LineBuffer numberLine = new LineBuffer(16);
+		// Last line number
+		private long lineNumber = 0;
+		// Is the next byte the first of a line?
+		private boolean lineStart = true;
+		// Empty lines written in a row, with -s
+		private int emptyLines = 0;
+
+		//---------------------------------------------------------
+		// Execution methods
+
+		Execution(Options options, WritableByteChannel target) {
+			this.options = options;
+			this.target = target;
+		}
+
+		// Copies a file, or standard input ("-"); reports its errors and returns
+		//	false if it could not be read
+		boolean copy(Path cwd, String name, PrintStream err) throws WriteException {
+			try {
+				if (name.equals("-")) {
+					var source = StandardStreams.input(System.in);
+					// Never closed: standard input outlives the command.  Pipes and
+					//	terminals cannot be sent by offset, so it is always read
+					copy(source, false);
+					return true;
+				}
+				var path = cwd.resolve(name);
+				if (Files.isDirectory(path)) {
+					err.println("cat: " + name + ": Is a directory");
+					return false;
+				}
+				try (var source = FileChannel.open(path, StandardOpenOption.READ)) {
+					copy(source, Files.isRegularFile(path));
+				}
+				return true;
+			} catch (WriteException e) {
+				throw e;
+			} catch (IOException e) {
+				err.println("cat: " + name + ": " + reason(e));
+				return false;
+			}
+		}
+
+		// Copies a channel: a regular file by the kernel, if nothing has to be
+		//	looked at
+		private void copy(ReadableByteChannel source, boolean regularFile) throws IOException {
+			if (options.isPlain() && regularFile && source instanceof FileChannel file) {
+				long size = file.size();
+				long position = file.position();
+				flush();
+				while (position < size) {
+					long sent;
+					try {
+						sent = file.transferTo(position, size - position, target);
+					} catch (IOException e) {
+						throw new WriteException(e);
+					}
+					if (sent == 0) break;
+					position += sent;
+				}
+				file.position(position);
+				// Whatever is past the size: growing files, and those of /proc,
+				//	which tell no size at all
+			}
+			if (input == null) {
+				input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+				output = ByteBuffer.allocate(BUFFER_SIZE);
+			}
+			while (true) {
+				input.clear();
+				if (source.read(input) < 0) return;
+				input.flip();
+				if (options.isPlain()) {
+					flush();
+					write(input);
+				} else {
+					render(input.limit());
+				}
+			}
+		}
+
+		// Renders the bytes read, line by line
+		private void render(int limit) throws WriteException {
+			int i = 0;
+			while (i < limit) {
+				if (lineStart) {
+					if (input.get(i) == '\n') {
+						// An empty line
+						i++;
+						if (options.squeezeBlank() && emptyLines > 0) continue;
+						emptyLines++;
+						if (options.number() && !options.numberNonblank()) appendNumber();
+						endLine();
+						continue;
+					}
+					emptyLines = 0;
+					if (options.number()) appendNumber();
+					lineStart = false;
+				}
+				int end = i;
+				while (end < limit && input.get(end) != '\n') end++;
+				if (options.copiesLines()) {
+					appendBytes(i, end - i);
+				} else {
+					for (int j = i; j < end; j++) appendByte(input.get(j));
+				}
+				if (end < limit) {
+					endLine();
+					lineStart = true;
+					end++;
+				}
+				i = end;
+			}
+		}
+
+		// Appends a line number
+		private void appendNumber() throws WriteException {
+			numberLine.clear().appendLong(++lineNumber, NUMBER_WIDTH).append((byte) '\t');
+			ensure(numberLine.length());
+			output.put(numberLine.array(), 0, numberLine.length());
+		}
+
+		// Appends the end of a line, with -E its mark
+		private void endLine() throws WriteException {
+			ensure(2);
+			if (options.showEnds()) output.put((byte) '$');
+			output.put((byte) '\n');
+		}
+
+		// Appends input bytes as they are
+		private void appendBytes(int offset, int length) throws WriteException {
+			while (length > 0) {
+				if (!output.hasRemaining()) flush();
+				int count = Math.min(length, output.remaining());
+				output.put(output.position(), input, offset, count);
+				output.position(output.position() + count);
+				offset += count;
+				length -= count;
+			}
+		}
+
+		// Appends a byte of a line, shown as -T and -v ask
+		private void appendByte(byte b) throws WriteException {
+			ensure(MAX_BYTE_LENGTH);
+			int c = b & 0xff;
+			if (c == '\t') {
+				if (options.showTabs()) output.put((byte) '^').put((byte) 'I');
+				else output.put(b);
+				return;
+			}
+			if (!options.showNonprinting()) {
+				output.put(b);
+				return;
+			}
+			if (c >= 128) {
+				output.put((byte) 'M').put((byte) '-');
+				c -= 128;
+			}
+			if (c < 32) {
+				output.put((byte) '^').put((byte) (c + 64));
+			} else if (c == 127) {
+				output.put((byte) '^').put((byte) '?');
+			} else {
+				output.put((byte) c);
+			}
+		}
+
+		// Makes room in the output
+		private void ensure(int length) throws WriteException {
+			if (output.remaining() < length) flush();
+		}
+
+		// Writes the output rendered so far
+		void flush() throws WriteException {
+			if (output == null || output.position() == 0) return;
+			output.flip();
+			write(output);
+			output.clear();
+		}
+
+		// Writes a buffer
+		private void write(ByteBuffer buffer) throws WriteException {
+			try {
+				while (buffer.hasRemaining()) target.write(buffer);
+			} catch (IOException e) {
+				throw new WriteException(e);
+			}
+		}
+	}
+}
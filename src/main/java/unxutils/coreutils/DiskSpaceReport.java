@@ -0,0 +1,244 @@
+package unxutils.coreutils;
+
+import unxutils.format.LineBuffer;
+import unxutils.fs.FileSystemStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Machine readable output of df (--format, --prometheus-textfile).  Figures
+ * are raw counts of bytes and inodes, never scaled or rounded, so that they
+ * can be added up and compared by whatever reads them.  Rows are rendered
+ * into a line buffer as UTF-8, in one of the formats:<br>
+ * <ul>
+ * <li>json: a single array of objects</li>
+ * <li>ndjson: one object per line</li>
+ * <li>csv: a header and one record per line, quoted as RFC 4180 asks</li>
+ * <li>prometheus: gauges in the text exposition format, named and labelled
+ * as the filesystem collector of the node exporter does (device, fstype,
+ * mountpoint), to be picked up by its textfile collector</li>
+ * </ul>
+ * Unknown inode counts (file systems queried without statvfs) are null in
+ * json, empty in csv and left out of the prometheus gauges.
+ */
+final class DiskSpaceReport {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Initial line buffer capacity
+	private static final int LINE_CAPACITY = 256;
+	// Fields, in the order of the objects and the csv columns
+	private static final String[] FIELDS = {"filesystem", "type", "size", "used", "available", "free",
+		"inodes", "inodes_used", "inodes_free", "readonly", "mounted_on"};
+	// Gauges of the node exporter
+	private static final Gauge[] GAUGES = {
+		new Gauge("node_filesystem_size_bytes", "Filesystem size in bytes.", FileSystemStats::size),
+		new Gauge("node_filesystem_free_bytes", "Filesystem free space in bytes.", FileSystemStats::free),
+		new Gauge("node_filesystem_avail_bytes", "Filesystem space available to non-root users in bytes.",
+			FileSystemStats::available),
+		new Gauge("node_filesystem_files", "Filesystem total file nodes.", FileSystemStats::files),
+		new Gauge("node_filesystem_files_free", "Filesystem total free file nodes.", FileSystemStats::filesFree),
+		new Gauge("node_filesystem_readonly", "Filesystem read-only status.", stats -> stats.readOnly() ? 1 : 0)
+	};
+
+	/**
+	 * Output formats.
+	 */
+	enum Format {
+		JSON, NDJSON, CSV, PROMETHEUS;
+
+		/**
+		 * @param name Name of a format, as given to --format
+		 * @return The format
+		 * @throws IllegalArgumentException If there is no such format
+		 */
+		static Format parse(String name) {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		}
+	}
+
+	/**
+	 * A reported file system.
+	 * @param source Mount source, usually a device
+	 * @param type File system type
+	 * @param target Mount point
+	 * @param stats Its figures
+	 */
+	record Row(String source, String type, String target, FileSystemStats stats) {}
+
+	// A gauge, with the figure it reports
+	private record Gauge(String name, String help, ToLongFunction<FileSystemStats> value) {}
+
+	//-----------------------------------------------------------------
+	// Report properties
+
+	// Output format
+	private final Format format;
+	// Line being rendered
+	private final LineBuffer line = new LineBuffer(LINE_CAPACITY);
+
+	//-----------------------------------------------------------------
+	// Report methods
+
+	/**
+	 * Builds a report.
+	 * @param format Output format
+	 */
+	DiskSpaceReport(Format format) {
+		this.format = format;
+	}
+
+	/**
+	 * Adds up the figures of some rows, as the grand total of --total.  Inodes
+	 * are only added up if they are known for every row.
+	 * @param rows Rows
+	 * @param source Source label of the total
+	 * @param target Target label of the total
+	 * @return Total row
+	 */
+	static Row total(List<Row> rows, String source, String target) {
+		long size = 0, free = 0, available = 0, files = 0, filesFree = 0;
+		for (var row: rows) {
+			var stats = row.stats();
+			size += stats.size();
+			free += stats.free();
+			available += stats.available();
+			if (files >= 0 && stats.files() >= 0) {
+				files += stats.files();
+				filesFree += stats.filesFree();
+			} else {
+				files = filesFree = -1;
+			}
+		}
+		return new Row(source, "-", target, new FileSystemStats(size, free, available, files, filesFree, false));
+	}
+
+	/**
+	 * Writes the rows.
+	 * @param rows Rows
+	 * @param out Output
+	 * @throws IOException If the output fails
+	 */
+	void write(List<Row> rows, OutputStream out) throws IOException {
+		switch (format) {
+			case JSON -> {
+				line.clear().append((byte) '[');
+				for (int i = 0; i < rows.size(); i++) {
+					if (i > 0) line.append((byte) ',');
+					appendObject(rows.get(i));
+				}
+				line.append((byte) ']').append((byte) '\n').writeTo(out);
+			}
+			case NDJSON -> {
+				for (var row: rows) {
+					line.clear();
+					appendObject(row);
+					line.append((byte) '\n').writeTo(out);
+				}
+			}
+			case CSV -> {
+				line.clear().appendAscii(String.join(",", FIELDS)).append((byte) '\n').writeTo(out);
+				for (var row: rows) {
+					line.clear();
+					appendRecord(row);
+					line.append((byte) '\n').writeTo(out);
+				}
+			}
+			case PROMETHEUS -> {
+				for (var gauge: GAUGES) {
+					line.clear().appendAscii("# HELP " + gauge.name() + " " + gauge.help()).append((byte) '\n');
+					line.appendAscii("# TYPE " + gauge.name() + " gauge").append((byte) '\n').writeTo(out);
+					for (var row: rows) {
+						long value = gauge.value().applyAsLong(row.stats());
+						// Unknown inode counts
+						if (value < 0) continue;
+						line.clear().appendAscii(gauge.name());
+						appendLabel("{device=\"", row.source());
+						appendLabel("\",fstype=\"", row.type());
+						appendLabel("\",mountpoint=\"", row.target());
+						line.appendAscii("\"} ").appendLong(value, 0).append((byte) '\n').writeTo(out);
+					}
+				}
+			}
+		}
+	}
+
+	// Appends a row as a JSON object
+	private void appendObject(Row row) {
+		var stats = row.stats();
+		line.appendAscii("{\"" + FIELDS[0] + "\":");
+		appendQuoted(row.source(), false);
+		line.appendAscii(",\"" + FIELDS[1] + "\":");
+		appendQuoted(row.type(), false);
+		appendField(FIELDS[2], stats.size());
+		appendField(FIELDS[3], stats.used());
+		appendField(FIELDS[4], stats.available());
+		appendField(FIELDS[5], stats.free());
+		appendField(FIELDS[6], stats.files());
+		appendField(FIELDS[7], stats.filesUsed());
+		appendField(FIELDS[8], stats.filesFree());
+		line.appendAscii(",\"" + FIELDS[9] + "\":" + stats.readOnly());
+		line.appendAscii(",\"" + FIELDS[10] + "\":");
+		appendQuoted(row.target(), false);
+		line.append((byte) '}');
+	}
+
+	// Appends a number field of a JSON object, null if unknown
+	private void appendField(String name, long value) {
+		line.appendAscii(",\"" + name + "\":");
+		if (value < 0) line.appendAscii("null");
+		else line.appendLong(value, 0);
+	}
+
+	// Appends a row as a CSV record
+	private void appendRecord(Row row) {
+		var stats = row.stats();
+		appendQuoted(row.source(), true);
+		line.append((byte) ',');
+		appendQuoted(row.type(), true);
+		long[] figures = {stats.size(), stats.used(), stats.available(), stats.free(),
+			stats.files(), stats.filesUsed(), stats.filesFree()};
+		for (long figure: figures) {
+			line.append((byte) ',');
+			if (figure >= 0) line.appendLong(figure, 0);
+		}
+		line.append((byte) ',').appendAscii(String.valueOf(stats.readOnly())).append((byte) ',');
+		appendQuoted(row.target(), true);
+	}
+
+	// Appends a quoted string: JSON escapes, or doubled quotes for CSV
+	private void appendQuoted(String s, boolean csv) {
+		line.append((byte) '"');
+		for (byte b: s.getBytes(UTF_8)) {
+			if (b == '"') {
+				line.append(csv ? (byte) '"' : (byte) '\\').append(b);
+			} else if (!csv && b == '\\') {
+				line.append((byte) '\\').append(b);
+			} else if (!csv && b >= 0 && b < ' ') {
+				line.appendAscii(String.format("\\u%04x", b));
+			} else {
+				line.append(b);
+			}
+		}
+		line.append((byte) '"');
+	}
+
+	// Appends a label value after its name, escaped as the exposition format asks
+	private void appendLabel(String prefix, String value) {
+		line.appendAscii(prefix);
+		for (byte b: value.getBytes(UTF_8)) {
+			switch (b) {
+				case '\\', '"' -> line.append((byte) '\\').append(b);
+				case '\n' -> line.append((byte) '\\').append((byte) 'n');
+				default -> line.append(b);
+			}
+		}
+	}
+}
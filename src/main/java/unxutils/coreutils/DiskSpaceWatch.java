@@ -0,0 +1,218 @@
+package unxutils.coreutils;
+
+import unxutils.format.LineBuffer;
+import unxutils.fs.FileSystemStats;
+import unxutils.fs.MountEntry;
+import unxutils.fs.MountFilter;
+import unxutils.fs.MountTable;
+import unxutils.fs.MountTableWatcher;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static unxutils.format.Format.format;
+
+/**
+ * Sampling mode of df (--watch).  The mount set is resolved once and only the
+ * space figures are queried again on every sample, with a single statvfs call
+ * per mount.  Figures are kept in primitive arrays and every row is rendered
+ * into the same line buffer, so that steady state sampling does not allocate.  The mount table
+ * is checked for changes before every sample, and the mount set is resolved
+ * again only when it changed.
+ */
+class DiskSpaceWatch {
+
+	private static final Logger logger = Logger.getLogger(DiskSpaceWatch.class.getName());
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Column widths
+	private static final int WIDTH_SIZE = 16;
+	private static final int WIDTH_HUMAN_SIZE = 10;
+	private static final int WIDTH_ETA = 12;
+	// Initial line buffer capacity
+	private static final int LINE_CAPACITY = 256;
+	// Nanoseconds in a second
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	//-----------------------------------------------------------------
+	// Watch properties
+
+	// Mounts to report
+	private final MountFilter filter;
+	// Time between samples
+	private final long intervalNanos;
+	// Human readable figures
+	private final boolean humanReadable;
+	// Print the estimated time to full
+	private final boolean eta;
+	// Output
+	private final PrintStream out;
+	// Line being rendered
+	private final LineBuffer line = new LineBuffer(LINE_CAPACITY);
+
+	// Resolved mount set, and which mounts can still be read
+	private FileSystemStats.Sampler sampler;
+	private boolean[] readable;
+	private byte[][] targets;
+	// Last sample, in bytes
+	private long[] used;
+	private long[] available;
+	// Time of the last sample
+	private long lastSample;
+
+	//-----------------------------------------------------------------
+	// Watch methods
+
+	/**
+	 * Builds a df sampler.
+	 * @param filter Mounts to report
+	 * @param intervalMillis Time between samples
+	 * @param humanReadable Print human readable sizes
+	 * @param eta Print the estimated time until the file system is full
+	 * @param out Output
+	 */
+	DiskSpaceWatch(MountFilter filter, long intervalMillis, boolean humanReadable, boolean eta, PrintStream out) {
+		this.filter = filter;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.humanReadable = humanReadable;
+		this.eta = eta;
+		this.out = out;
+	}
+
+	/**
+	 * Parses an interval: a number of seconds, possibly decimal, or a number
+	 * followed by one of the units ms, s, m or h.
+	 * @param interval Interval, such as 1, 0.5, 500ms or 2m
+	 * @return Interval in milliseconds
+	 * @throws IllegalArgumentException If the interval is not valid
+	 */
+	static long parseInterval(String interval) {
+		var s = interval.trim().toLowerCase();
+		double factor = 1000;
+		if (s.endsWith("ms")) {
+			factor = 1;
+			s = s.substring(0, s.length() - 2);
+		} else if (s.endsWith("s")) {
+			s = s.substring(0, s.length() - 1);
+		} else if (s.endsWith("m")) {
+			factor = 60_000;
+			s = s.substring(0, s.length() - 1);
+		} else if (s.endsWith("h")) {
+			factor = 3_600_000;
+			s = s.substring(0, s.length() - 1);
+		}
+		var millis = (long) (Double.parseDouble(s) * factor);
+		if (millis <= 0) throw new IllegalArgumentException("invalid interval: " + interval);
+		return millis;
+	}
+
+	/**
+	 * Samples until the output is closed.
+	 * @throws IOException If the mount table cannot be read
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	void run() throws IOException, InterruptedException {
+		try (var watcher = MountTable.isAvailable() ? new MountTableWatcher(MountTable.MOUNT_INFO) : null) {
+			resolve();
+			var next = System.nanoTime();
+			while (!out.checkError()) {
+				if (watcher != null && watcher.changed()) resolve();
+				sample();
+				next += intervalNanos;
+				var wait = next - System.nanoTime();
+				if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+				else next = System.nanoTime();
+			}
+		}
+	}
+
+	// Resolves the mount set and takes the reference sample
+	private void resolve() throws IOException {
+		List<MountEntry> mounts = FileSystemStats.prepare(MountTable.read(filter));
+		sampler = new FileSystemStats.Sampler(mounts);
+		readable = new boolean[mounts.size()];
+		targets = new byte[mounts.size()][];
+		used = new long[mounts.size()];
+		available = new long[mounts.size()];
+		for (int i = 0; i < mounts.size(); i++) {
+			var mount = mounts.get(i);
+			targets[i] = mount.mountPoint().getBytes(UTF_8);
+			try {
+				sampler.read(i);
+				used[i] = sampler.used();
+				available[i] = sampler.available();
+				readable[i] = true;
+			} catch (IOException ioe) {
+				logger.log(Level.WARNING, "Could not read filesystem " + mount.source() + " of type " + mount.fsType());
+			}
+		}
+		lastSample = System.nanoTime();
+		printHeaders();
+	}
+
+	// Print column headers
+	private void printHeaders() {
+		var width = humanReadable ? WIDTH_HUMAN_SIZE : WIDTH_SIZE;
+		out.print(format("Used", width));
+		out.print(format("Available", width));
+		out.print(format("Delta", width));
+		out.print(format("Rate/s", width));
+		if (eta) {
+			out.print(format("ETA full", WIDTH_ETA));
+		}
+		out.print(" Mounted on");
+		out.println();
+	}
+
+	// Queries every resolved mount and renders used, available, delta and fill rate
+	private void sample() {
+		var now = System.nanoTime();
+		var seconds = (now - lastSample) / NANOS_PER_SECOND;
+		lastSample = now;
+		for (int i = 0; i < readable.length; i++) {
+			if (!readable[i]) continue;
+			try {
+				sampler.read(i);
+				var current = sampler.used();
+				var delta = current - used[i];
+				var rate = seconds > 0 ? (long) (delta / seconds) : 0;
+				used[i] = current;
+				available[i] = sampler.available();
+				renderRow(i, delta, rate);
+			} catch (IOException ioe) {
+				// The file system went away; it will be dropped once the mount table changes
+				readable[i] = false;
+			}
+		}
+		out.println();
+		out.flush();
+	}
+
+	// Renders a sample row
+	private void renderRow(int i, long delta, long rate) {
+		line.clear();
+		appendNumber(used[i]);
+		appendNumber(available[i]);
+		appendNumber(delta);
+		appendNumber(rate);
+		if (eta) {
+			if (rate > 0) line.appendDuration(available[i] / rate, WIDTH_ETA);
+			else line.repeat((byte) ' ', WIDTH_ETA - 1).append((byte) '-');
+		}
+		line.append((byte) ' ').append(targets[i]).append((byte) '\n');
+		out.write(line.array(), 0, line.length());
+	}
+
+	// Appends a number according to options
+	private void appendNumber(long n) {
+		if (humanReadable) line.appendHuman(n, WIDTH_HUMAN_SIZE);
+		else line.appendLong(n, WIDTH_SIZE);
+	}
+}
@@ -0,0 +1,268 @@
+package unxutils.coreutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Follows files as they grow, for tail -f and -F.  The directories of the
+ * files are watched with a WatchService, so that appended data is copied as
+ * soon as it is written; every file is checked again at least once per
+ * interval anyway, since some file systems (NFS, FUSE...) send no events,
+ * and without a WatchService the files are polled at that interval.<br>
+ * Following a descriptor (-f), a file is read until the end, even renamed or
+ * deleted.  Following a name (-F), the file is told apart by its inode: when
+ * another file takes the name (log rotation), the rest of the old one is
+ * copied and the new one is followed from its start; a missing file is
+ * waited for.  A file that shrinks is taken as truncated, and copied again
+ * from its start.
+ */
+final class FileFollower implements Closeable {
+
+	// A followed file: its name, the file open, its inode, and how far it was copied
+	private static final class Followed {
+		private final String name;
+		private final Path path;
+		private FileChannel channel;
+		private Object key;
+		private long position;
+
+		Followed(String name, Path path) {
+			this.name = name;
+			this.path = path;
+		}
+	}
+
+	//-----------------------------------------------------------------
+	// Follower properties
+
+	// Follow names, and not descriptors?
+	private final boolean byName;
+	// Longest wait between checks, in milliseconds
+	private final long interval;
+	// Output
+	private final WritableByteChannel target;
+	// Error output
+	private final PrintStream err;
+	// Print the name of a file before its data, when it changes?
+	private final boolean headers;
+	// Files followed
+	private final List<Followed> files = new ArrayList<>();
+	// Events of the directories; null if polling
+	private WatchService service;
+	// File whose data was copied last
+	private Followed last;
+
+	//-----------------------------------------------------------------
+	// Follower methods
+
+	/**
+	 * Builds a follower.
+	 * @param byName Follow names (-F), not descriptors (-f)?
+	 * @param interval Longest wait between checks, in milliseconds
+	 * @param target Output
+	 * @param err Error output
+	 * @param headers Print the name of a file before its data, when it changes?
+	 */
+	FileFollower(boolean byName, long interval, WritableByteChannel target, PrintStream err, boolean headers) {
+		this.byName = byName;
+		this.interval = interval;
+		this.target = target;
+		this.err = err;
+		this.headers = headers;
+	}
+
+	/**
+	 * Adds a file to follow.
+	 * @param name Its name, as given
+	 * @param path Its path
+	 * @param channel The file open, null if it could not be; the follower
+	 * closes it
+	 * @param position How far it was copied
+	 * @param current Was it the last file whose data was copied?
+	 * @throws IOException If its inode cannot be read
+	 */
+	void add(String name, Path path, FileChannel channel, long position, boolean current) throws IOException {
+		var file = new Followed(name, path);
+		if (channel != null) {
+			file.channel = channel;
+			file.position = position;
+			file.key = byName ? Files.readAttributes(path, BasicFileAttributes.class).fileKey() : null;
+		}
+		files.add(file);
+		if (current) last = file;
+	}
+
+	/**
+	 * Copies the data written to the files until the thread is interrupted or
+	 * the output fails.
+	 * @throws IOException If the output fails
+	 */
+	void run() throws IOException {
+		if (files.isEmpty() || !byName && files.stream().allMatch(file -> file.channel == null)) return;
+		watch();
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				for (var file: files) {
+					check(file);
+				}
+				if (!await()) return;
+			}
+		} catch (ClosedByInterruptException e) {
+			// Interrupted while copying: the file read is closed, the output is not
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Watches the directories of the files, if it can
+	private void watch() {
+		try {
+			service = FileSystems.getDefault().newWatchService();
+			var directories = new HashSet<Path>();
+			for (var file: files) {
+				var directory = file.path.toAbsolutePath().getParent();
+				if (directory != null && directories.add(directory)) {
+					directory.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+				}
+			}
+		} catch (IOException | UnsupportedOperationException e) {
+			// Polled instead
+			closeService();
+		}
+	}
+
+	// Waits for an event, or the end of the interval; false if interrupted
+	private boolean await() {
+		try {
+			if (service == null) {
+				Thread.sleep(interval);
+				return true;
+			}
+			var key = service.poll(interval, TimeUnit.MILLISECONDS);
+			// Whatever changed, every file is checked
+			while (key != null) {
+				key.pollEvents();
+				key.reset();
+				key = service.poll();
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	// Copies what was written to a file since the last check, and follows the
+	//	name to another file if it was replaced
+	private void check(Followed file) throws IOException {
+		if (byName) {
+			Object key;
+			try {
+				key = Files.readAttributes(file.path, BasicFileAttributes.class).fileKey();
+			} catch (IOException e) {
+				if (file.channel != null) {
+					copy(file);
+					err.println("tail: '" + file.name + "' has become inaccessible: " + reason(e));
+					closeFile(file);
+				}
+				return;
+			}
+			if (file.channel == null || !Objects.equals(key, file.key)) {
+				boolean appeared = file.channel == null;
+				if (!appeared) {
+					// The rest of the old file, before the new one
+					copy(file);
+					closeFile(file);
+				}
+				try {
+					file.channel = FileChannel.open(file.path, StandardOpenOption.READ);
+				} catch (IOException e) {
+					return;
+				}
+				file.key = key;
+				file.position = 0;
+				err.println("tail: '" + file.name + "' has " + (appeared ? "appeared" : "been replaced")
+					+ ";  following new file");
+			}
+		}
+		if (file.channel != null) copy(file);
+	}
+
+	// Copies the data of a file past its position
+	private void copy(Followed file) throws IOException {
+		long size;
+		try {
+			size = file.channel.size();
+		} catch (IOException e) {
+			return;
+		}
+		if (size < file.position) {
+			// Whatever is in it now was written since
+			err.println("tail: " + file.name + ": file truncated");
+			file.position = 0;
+		}
+		if (size == file.position) return;
+		if (headers && last != file) {
+			var header = (last == null ? "" : "\n") + "==> " + file.name + " <==\n";
+			var buffer = ByteBuffer.wrap(header.getBytes(UTF_8));
+			while (buffer.hasRemaining()) target.write(buffer);
+		}
+		last = file;
+		file.position = TailScanner.transfer(file.channel, file.position, size, target);
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		return e instanceof NoSuchFileException ? "No such file or directory" : e.getMessage();
+	}
+
+	// Closes a file
+	private static void closeFile(Followed file) {
+		try {
+			file.channel.close();
+		} catch (IOException e) {
+			// Read only: nothing is lost
+		}
+		file.channel = null;
+	}
+
+	@Override
+	public void close() {
+		for (var file: files) {
+			if (file.channel != null) closeFile(file);
+		}
+		closeService();
+	}
+
+	// Stops watching the directories
+	private void closeService() {
+		if (service == null) return;
+		try {
+			service.close();
+		} catch (IOException e) {
+			// Nothing left to watch
+		}
+		service = null;
+	}
+}
@@ -1,296 +1,458 @@
-package unxutils.coreutils;
-
-import cli.CmdException;
-import cli.annotations.Command;
-import cli.annotations.Parameter;
-import cli.annotations.Run;
-import lombok.Setter;
-import unxutils.format.HumanReadableFormat;
-
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.nio.file.FileStore;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-import static java.lang.System.out;
-import static java.math.RoundingMode.FLOOR;
-import static unxutils.format.Format.format;
-
-/**
- * <b>Program documentation</b><br>
-<pre>
-{@code
--a
---all
-Include in the listing dummy, duplicate, or inaccessible file systems, which are omitted by default. Dummy file systems are typically special purpose pseudo file systems such as /proc, with no associated storage. Duplicate file systems are local or remote file systems that are mounted at separate locations in the local file hierarchy, or bind mounted locations. Inaccessible file systems are those which are mounted but subsequently over-mounted by another file system at that point, or otherwise inaccessible due to permissions of the mount point etc.
-
--B size
---block-size=size
-Scale sizes by size before printing them (see Block size). For example, -BG prints 
-sizes in units of 1,073,741,824 bytes.
-
--h
---human-readable
-Append a size letter to each size, such as M for mebibytes. Powers of 1024 are 
-used, not 1000; M stands for 1,048,576 bytes. This option is equivalent to --block-size=human-readable. Use the --si option if you prefer powers of 1000.
-
--H
-Equivalent to --si.
-
--i
---inodes
-List inode usage information instead of block usage. An inode (short for index node) 
-contains information about a file such as its owner, permissions, timestamps, and location on the disk.
-
--k
-Print sizes in 1024-byte blocks, overriding the default block size (see Block size). 
-This option is equivalent to --block-size=1K.
-
--l
---local
-Limit the listing to local file systems. By default, remote file systems are also listed.
-
---no-sync
-Do not invoke the sync system call before getting any usage data. This may make 
-df run significantly faster on systems with many disks, but on some systems 
-(notably SunOS) the results may be slightly out of date. This is the default.
-
---output
---output[=field_list]
-Use the output format defined by field_list, or print all fields if field_list 
-is omitted. In the latter case, the order of the columns conforms to the order 
-of the field descriptions below.
-
-The use of the --output together with each of the options -i, -P, and -T is 
-mutually exclusive.
-
-FIELD_LIST is a comma-separated list of columns to be included in dfs output 
-and therefore effectively controls the order of output columns. Each field can 
-thus be used at the place of choice, but yet must only be used once.
-
-Valid field names in the field_list are:
-
-source
-The source of the mount point, usually a device.
-
-fstype
-File system type.
-
-itotal
-Total number of inodes.
-
-iused
-Number of used inodes.
-
-iavail
-Number of available inodes.
-
-ipcent
-Percentage of iused divided by itotal.
-
-size
-Total number of blocks.
-
-used
-Number of used blocks.
-
-avail
-Number of available blocks.
-
-pcent
-Percentage of used divided by size.
-
-file
-The file name if specified on the command line.
-
-target
-The mount point.
-
-The fields for block and inodes statistics are affected by the scaling options 
-like -h as usual.
-
-The definition of the field_list can even be split among several --output uses.
-
-#!/bin/sh
-# Print the TARGET (i.e., the mount point) along with their percentage
-# statistic regarding the blocks and the inodes.
-df --out=target --output=pcent,ipcent
-
-# Print all available fields.
-df --o
--P
---portability
-Use the POSIX output format. This is like the default format except for the 
-following:
-
-The information about each file system is always printed on exactly one line; 
-a mount device is never put on a line by itself. This means that if the mount 
-device name is more than 20 characters long (e.g., for some network mounts), 
-the columns are misaligned.
-The labels in the header output line are changed to conform to POSIX.
-The default block size and output format are unaffected by the DF_BLOCK_SIZE, 
-BLOCK_SIZE and BLOCKSIZE environment variables. However, the default block 
-size is still affected by POSIXLY_CORRECT: it is 512 if POSIXLY_CORRECT is set, 
-1024 otherwise. See Block size.
---si
-Append an SI-style abbreviation to each size, such as M for megabytes. 
-Powers of 1000 are used, not 1024; M stands for 1,000,000 bytes. This option 
-is equivalent to --block-size=si. Use the -h or --human-readable option if you 
-prefer powers of 1024.
-
---sync
-Invoke the sync system call before getting any usage data. On some systems 
-(notably SunOS), doing this yields more up to date results, but in general 
-this option makes df much slower, especially when there are many or very busy file systems.
-
---total
-Print a grand total of all arguments after all arguments have been processed. 
-This can be used to find out the total disk size, usage and available space of 
-all listed devices. If no arguments are specified df will try harder to elide 
-file systems insignificant to the total available space, by suppressing duplicate 
-remote file systems.
-
-For the grand total line, df prints "total" into the source column, and "-" 
-into the target column. If there is no source column (see --output), then df prints 
-"total" into the target column, if present.
-
--t fstype
---type=fstype
-Limit the listing to file systems of type fstype. Multiple file system types 
-can be specified by giving multiple -t options. By default, nothing is omitted.
-
--T
---print-type
-Print each file systems type. The types printed here are the same ones you can 
-include or exclude with -t and -x. The particular types printed are whatever is 
-supported by the system. Here are some of the common names (this list is certainly 
-not exhaustive):
-
-nfs
-An NFS file system, i.e., one mounted over a network from another machine. This 
-is the one type name which seems to be used uniformly by all systems.
-
-ext2, ext3, ext4, xfs, btrfs
-A file system on a locally-mounted hard disk. (The system might even support more 
-than one type here; Linux does.)
-
-iso9660, cdfs
-A file system on a CD or DVD drive. HP-UX uses cdfs, most other systems use 
-iso9660.
-
-ntfs,fat
-File systems used by MS-Windows / MS-DOS.
-
--x fstype
---exclude-type=fstype
-Limit the listing to file systems not of type fstype. Multiple file system types 
-can be eliminated by giving multiple -x options. By default, no file system types 
-are omitted.
-
--v
-Ignored; for compatibility with System V versions of df.
-}
-</pre>
- */
-@Setter
-@Command(command="df", description="df reports the amount of disk space used and available on file systems")
-public class FreeDiskSpaceCommand {
-
-	private static final Logger logger = Logger.getLogger(FreeDiskSpaceCommand.class.getName());
-
-	//-----------------------------------------------------------------
-	// Command constants
-	
-	// Column widths
-	private static final int WIDTH_FILESYSTEM = 16;
-	private static final int WIDTH_TYPE = 8;
-	private static final int WIDTH_SIZE = 16;
-	private static final int WIDTH_HUMAN_SIZE = 10;
-	private static final int WIDTH_PERCENTAGE = 6;
-	
-	//-----------------------------------------------------------------
-	// Command parameters
-
-	@Parameter(name="T", longName="print-type", description="Print each file systems type.")
-	private Boolean printType = Boolean.FALSE;
-	@Parameter(name="h",
-			longName="human-readable", 
-			description="print human readable sizes (e.g., 1K 234M 2G)")
-	private Boolean humanReadable = Boolean.FALSE;
-	
-	//-----------------------------------------------------------------
-	// Command methods	
-	
-	/**
-	 * Builds a df command.
-	 */
-	public FreeDiskSpaceCommand() {	}
-
-	@Run
-	// Entry point for df
-	public int execute(Path cwd) throws Exception {
-		var fileSystem = FileSystems.getDefault();
-		printHeaders();
-		for (var fs: fileSystem.getFileStores()) {
-			renderFS(fs);
-		}
-		return 0;
-	}
-	
-	// Print column headers
-	private void printHeaders() {
-		out.print(format("File system", WIDTH_FILESYSTEM));
-		if (printType) {
-			out.print(format("Type", WIDTH_TYPE));
-		}
-		out.print(format("Size", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
-		out.print(format("Used", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
-		out.print(format("Available", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
-		out.print(format("Use %", WIDTH_PERCENTAGE));
-		out.println();
-	}
-
-	// Renders the information of a file system
-	private void renderFS(FileStore fs) throws CmdException {
-		try {
-			// Filesystem, total size, used, available, usage%
-			var totalSize = new BigDecimal(fs.getTotalSpace());
-			var usedSize = new BigDecimal(fs.getTotalSpace()).subtract(new BigDecimal(fs.getUnallocatedSpace()));
-			var availableSize = new BigDecimal(fs.getUnallocatedSpace());
-			var usage = BigDecimal.ZERO;
-			if (!totalSize.equals(BigDecimal.ZERO)) {
-				usage = usedSize.divide(totalSize, 2, FLOOR).multiply(new BigDecimal(100));
-			}
-
-			out.print(format(fs.toString(), WIDTH_FILESYSTEM));
-			if (printType) {
-				out.print(format(fs.type(), WIDTH_TYPE));
-			}
-			out.print(printNumber(totalSize));
-			out.print(printNumber(usedSize));
-			out.print(printNumber(availableSize));
-			out.print(format(usage.toString(), WIDTH_PERCENTAGE));
-
-			out.println();
-		} catch (IOException ioe) {
-			//throw new CmdException(ioe, "Could not read filesystem " + fs.name(), -1500);
-			logger.log(Level.WARNING, "Could not read filesystem " + fs.name() + " of type " + fs.type());
-		}
-	}
-	
-	// Prints a number according to options
-	private String printNumber(BigDecimal n) {
-		var ret = "";
-		if (humanReadable) {
-			ret = format(HumanReadableFormat.format(n), WIDTH_HUMAN_SIZE);
-		}
-		else {
-			ret = format(n.toString(), WIDTH_SIZE);
-		}
-		return ret;
-	}
-	
-}
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+import unxutils.format.HumanReadableFormat;
+import unxutils.fs.FileSystemStats;
+import unxutils.fs.MountFilter;
+import unxutils.fs.MountTable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.math.RoundingMode.FLOOR;
+import static unxutils.format.Format.format;
+
+/**
+ * <b>Program documentation</b><br>
+<pre>
+{@code
+-a
+--all
+Include in the listing dummy, duplicate, or inaccessible file systems, which are omitted by default. Dummy file systems are typically special purpose pseudo file systems such as /proc, with no associated storage. Duplicate file systems are local or remote file systems that are mounted at separate locations in the local file hierarchy, or bind mounted locations. Inaccessible file systems are those which are mounted but subsequently over-mounted by another file system at that point, or otherwise inaccessible due to permissions of the mount point etc.
+
+-B size
+--block-size=size
+Scale sizes by size before printing them (see Block size). For example, -BG prints 
+sizes in units of 1,073,741,824 bytes.
+
+-h
+--human-readable
+Append a size letter to each size, such as M for mebibytes. Powers of 1024 are 
+used, not 1000; M stands for 1,048,576 bytes. This option is equivalent to --block-size=human-readable. Use the --si option if you prefer powers of 1000.
+
+-H
+Equivalent to --si.
+
+-i
+--inodes
+List inode usage information instead of block usage. An inode (short for index node) 
+contains information about a file such as its owner, permissions, timestamps, and location on the disk.
+
+-k
+Print sizes in 1024-byte blocks, overriding the default block size (see Block size). 
+This option is equivalent to --block-size=1K.
+
+-l
+--local
+Limit the listing to local file systems. By default, remote file systems are also listed.
+
+--no-sync
+Do not invoke the sync system call before getting any usage data. This may make 
+df run significantly faster on systems with many disks, but on some systems 
+(notably SunOS) the results may be slightly out of date. This is the default.
+
+--output
+--output[=field_list]
+Use the output format defined by field_list, or print all fields if field_list 
+is omitted. In the latter case, the order of the columns conforms to the order 
+of the field descriptions below.
+
+The use of the --output together with each of the options -i, -P, and -T is 
+mutually exclusive.
+
+FIELD_LIST is a comma-separated list of columns to be included in dfs output 
+and therefore effectively controls the order of output columns. Each field can 
+thus be used at the place of choice, but yet must only be used once.
+
+Valid field names in the field_list are:
+
+source
+The source of the mount point, usually a device.
+
+fstype
+File system type.
+
+itotal
+Total number of inodes.
+
+iused
+Number of used inodes.
+
+iavail
+Number of available inodes.
+
+ipcent
+Percentage of iused divided by itotal.
+
+size
+Total number of blocks.
+
+used
+Number of used blocks.
+
+avail
+Number of available blocks.
+
+pcent
+Percentage of used divided by size.
+
+file
+The file name if specified on the command line.
+
+target
+The mount point.
+
+The fields for block and inodes statistics are affected by the scaling options 
+like -h as usual.
+
+The definition of the field_list can even be split among several --output uses.
+
+#!/bin/sh
+# Print the TARGET (i.e., the mount point) along with their percentage
+# statistic regarding the blocks and the inodes.
+df --out=target --output=pcent,ipcent
+
+# Print all available fields.
+df --o
+-P
+--portability
+Use the POSIX output format. This is like the default format except for the 
+following:
+
+The information about each file system is always printed on exactly one line; 
+a mount device is never put on a line by itself. This means that if the mount 
+device name is more than 20 characters long (e.g., for some network mounts), 
+the columns are misaligned.
+The labels in the header output line are changed to conform to POSIX.
+The default block size and output format are unaffected by the DF_BLOCK_SIZE, 
+BLOCK_SIZE and BLOCKSIZE environment variables. However, the default block 
+size is still affected by POSIXLY_CORRECT: it is 512 if POSIXLY_CORRECT is set, 
+1024 otherwise. See Block size.
+--si
+Append an SI-style abbreviation to each size, such as M for megabytes. 
+Powers of 1000 are used, not 1024; M stands for 1,000,000 bytes. This option 
+is equivalent to --block-size=si. Use the -h or --human-readable option if you 
+prefer powers of 1024.
+
+--sync
+Invoke the sync system call before getting any usage data. On some systems 
+(notably SunOS), doing this yields more up to date results, but in general 
+this option makes df much slower, especially when there are many or very busy file systems.
+
+--total
+Print a grand total of all arguments after all arguments have been processed. 
+This can be used to find out the total disk size, usage and available space of 
+all listed devices. If no arguments are specified df will try harder to elide 
+file systems insignificant to the total available space, by suppressing duplicate 
+remote file systems.
+
+For the grand total line, df prints "total" into the source column, and "-" 
+into the target column. If there is no source column (see --output), then df prints 
+"total" into the target column, if present.
+
+-t fstype
+--type=fstype
+Limit the listing to file systems of type fstype. Multiple file system types 
+can be specified by giving multiple -t options. By default, nothing is omitted.
+
+-T
+--print-type
+Print each file systems type. The types printed here are the same ones you can 
+include or exclude with -t and -x. The particular types printed are whatever is 
+supported by the system. Here are some of the common names (this list is certainly 
+not exhaustive):
+
+nfs
+An NFS file system, i.e., one mounted over a network from another machine. This 
+is the one type name which seems to be used uniformly by all systems.
+
+ext2, ext3, ext4, xfs, btrfs
+A file system on a locally-mounted hard disk. (The system might even support more 
+than one type here; Linux does.)
+
+iso9660, cdfs
+A file system on a CD or DVD drive. HP-UX uses cdfs, most other systems use 
+iso9660.
+
+ntfs,fat
+File systems used by MS-Windows / MS-DOS.
+
+-x fstype
+--exclude-type=fstype
+Limit the listing to file systems not of type fstype. Multiple file system types 
+can be eliminated by giving multiple -x options. By default, no file system types 
+are omitted.
+
+-v
+Ignored; for compatibility with System V versions of df.
+}
+</pre>
+ */
+@Setter
+@Command(command="df", description="df reports the amount of disk space used and available on file systems")
+public class FreeDiskSpaceCommand {
+
+	private static final Logger logger = Logger.getLogger(FreeDiskSpaceCommand.class.getName());
+
+	//-----------------------------------------------------------------
+	// Command constants
+	
+	// Column widths
+	private static final int WIDTH_FILESYSTEM = 16;
+	private static final int WIDTH_TYPE = 8;
+	private static final int WIDTH_SIZE = 16;
+	private static final int WIDTH_HUMAN_SIZE = 10;
+	private static final int WIDTH_PERCENTAGE = 6;
+	// Grand total row labels
+	private static final String TOTAL_SOURCE = "total";
+	private static final String TOTAL_TARGET = "-";
+	// Permissions of the Prometheus text file: readable by the exporter
+	private static final Set<PosixFilePermission> TEXTFILE_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+	
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Parameter(name="a", longName="all", description="include pseudo, duplicate, inaccessible file systems")
+	private Boolean all = Boolean.FALSE;
+	@Parameter(name="l", longName="local", description="limit listing to local file systems")
+	private Boolean local = Boolean.FALSE;
+	@Parameter(name="t",
+			longName="type",
+			description="limit listing to file systems of type TYPE (comma separated list)")
+	private String type = null;
+	@Parameter(name="x",
+			longName="exclude-type",
+			description="limit listing to file systems not of type TYPE (comma separated list)")
+	private String excludeType = null;
+	@Parameter(longName="total", description="elide all entries insignificant to available space, and produce a grand total")
+	private Boolean total = Boolean.FALSE;
+
+	@Parameter(name="T", longName="print-type", description="Print each file systems type.")
+	private Boolean printType = Boolean.FALSE;
+	@Parameter(name="h",
+			longName="human-readable", 
+			description="print human readable sizes (e.g., 1K 234M 2G)")
+	private Boolean humanReadable = Boolean.FALSE;
+	@Parameter(longName="watch",
+			description="resolve the file systems once and sample them every INTERVAL (e.g. 1, 0.5, 500ms, 2m), "
+				+ "printing used and available space along with their change and fill rate")
+	private String watch = null;
+	@Parameter(longName="eta", description="with --watch, print the estimated time until each file system is full")
+	private Boolean eta = Boolean.FALSE;
+	@Parameter(longName="format",
+			description="print the figures in bytes and inodes as FORMAT: json, ndjson or csv")
+	private String outputFormat = null;
+	@Parameter(longName="prometheus-textfile",
+			description="write the figures to FILE as node_filesystem_* gauges, for the textfile collector "
+				+ "of the node exporter; with --watch, write it again every INTERVAL")
+	private String prometheusTextfile = null;
+
+	//-----------------------------------------------------------------
+	// Command methods	
+	
+	/**
+	 * Builds a df command.
+	 */
+	public FreeDiskSpaceCommand() {	}
+
+	@Run
+	// Entry point for df
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Reports the file systems into the given streams.  Nothing of a call is
+	 * kept in the command, so that a command can be configured once and then
+	 * run by several threads at the same time.
+	 * @param cwd Working directory
+	 * @param out Report output
+	 * @param err Error output
+	 * @return Exit status
+	 * @throws Exception If the report fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		// Mount entries are filtered before any file system is queried
+		var filter = new MountFilter(all, local, type, excludeType);
+		if (outputFormat != null || prometheusTextfile != null) {
+			return report(filter, cwd, out, err);
+		}
+		if (watch != null) {
+			return watch(filter, out, err);
+		}
+		printHeaders(out);
+		// The grand total is the last row, with --total
+		for (var row: readRows(filter)) {
+			var stats = row.stats();
+			renderRow(out, row.source(), row.type(), stats.size(), stats.used(), stats.available(), row.target());
+		}
+		return 0;
+	}
+	
+	// Sampling mode, runs until the output is closed
+	private int watch(MountFilter filter, PrintStream out, PrintStream err) throws IOException, InterruptedException {
+		long interval;
+		try {
+			interval = DiskSpaceWatch.parseInterval(watch);
+		} catch (IllegalArgumentException e) {
+			err.println("df: invalid interval '" + watch + "'");
+			return 1;
+		}
+		new DiskSpaceWatch(filter, interval, humanReadable, eta, out).run();
+		return 0;
+	}
+
+	// Machine readable output, once or every --watch interval until the output
+	//	is closed.  The mount table is read again every time, as exporters run
+	//	for as long as the machine does
+	private int report(MountFilter filter, Path cwd, PrintStream out, PrintStream err)
+			throws IOException, InterruptedException {
+		DiskSpaceReport report;
+		try {
+			report = new DiskSpaceReport(prometheusTextfile != null
+				? DiskSpaceReport.Format.PROMETHEUS
+				: DiskSpaceReport.Format.parse(outputFormat));
+		} catch (IllegalArgumentException e) {
+			err.println("df: invalid format '" + outputFormat + "'");
+			return 1;
+		}
+		long interval = 0;
+		if (watch != null) {
+			try {
+				interval = DiskSpaceWatch.parseInterval(watch);
+			} catch (IllegalArgumentException e) {
+				err.println("df: invalid interval '" + watch + "'");
+				return 1;
+			}
+		}
+		var next = System.nanoTime();
+		while (true) {
+			var rows = readRows(filter);
+			if (prometheusTextfile != null) {
+				var file = cwd.resolve(prometheusTextfile);
+				try {
+					writeTextfile(file, rows, report);
+				} catch (IOException ioe) {
+					err.println("df: cannot write '" + file + "': " + ioe.getMessage());
+					// A watching exporter tries again on the next round
+					if (watch == null) return 1;
+				}
+			} else {
+				report.write(rows, out);
+				out.flush();
+			}
+			if (watch == null || out.checkError()) return 0;
+			next += TimeUnit.MILLISECONDS.toNanos(interval);
+			var wait = next - System.nanoTime();
+			if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+			else next = System.nanoTime();
+		}
+	}
+
+	// Figures of the mounts, and their grand total if asked for
+	private List<DiskSpaceReport.Row> readRows(MountFilter filter) throws IOException {
+		var ret = new ArrayList<DiskSpaceReport.Row>();
+		for (var mount: FileSystemStats.prepare(MountTable.read(filter))) {
+			try {
+				var stats = FileSystemStats.read(mount);
+				ret.add(new DiskSpaceReport.Row(mount.source(), mount.fsType(), mount.mountPoint(), stats));
+			} catch (IOException ioe) {
+				logger.log(Level.WARNING, "Could not read filesystem " + mount.source() + " of type " + mount.fsType());
+			}
+		}
+		// Gauges are summed by the queries, not by the exporter
+		if (total && prometheusTextfile == null) {
+			ret.add(DiskSpaceReport.total(ret, TOTAL_SOURCE, TOTAL_TARGET));
+		}
+		return ret;
+	}
+
+	// Writes the gauges next to the text file and renames them over it, so that
+	//	the collector never reads half a file
+	private static void writeTextfile(Path file, List<DiskSpaceReport.Row> rows, DiskSpaceReport report)
+			throws IOException {
+		var directory = file.toAbsolutePath().getParent();
+		var temporary = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+		try {
+			try (var stream = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+				report.write(rows, stream);
+			}
+			try {
+				// Temporary files are only readable by their owner
+				Files.setPosixFilePermissions(temporary, TEXTFILE_PERMISSIONS);
+			} catch (UnsupportedOperationException e) {
+				// Not a POSIX file system
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	// Print column headers
+	private void printHeaders(PrintStream out) {
+		out.print(format("File system", WIDTH_FILESYSTEM));
+		if (printType) {
+			out.print(format("Type", WIDTH_TYPE));
+		}
+		out.print(format("Size", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
+		out.print(format("Used", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
+		out.print(format("Available", humanReadable?WIDTH_HUMAN_SIZE:WIDTH_SIZE));
+		out.print(format("Use %", WIDTH_PERCENTAGE));
+		out.print(" Mounted on");
+		out.println();
+	}
+
+	// Filesystem, type, total size, used, available, usage%, mount point
+	private void renderRow(PrintStream out, String source, String fsType, long size, long used, long available,
+			String target) {
+		var totalSize = new BigDecimal(size);
+		var usedSize = new BigDecimal(used);
+		var usage = BigDecimal.ZERO;
+		if (!totalSize.equals(BigDecimal.ZERO)) {
+			usage = usedSize.divide(totalSize, 2, FLOOR).multiply(new BigDecimal(100));
+		}
+
+		out.print(format(source, WIDTH_FILESYSTEM));
+		if (printType) {
+			out.print(format(fsType, WIDTH_TYPE));
+		}
+		out.print(printNumber(totalSize));
+		out.print(printNumber(usedSize));
+		out.print(printNumber(new BigDecimal(available)));
+		out.print(format(usage.toString(), WIDTH_PERCENTAGE));
+		out.print(" ");
+		out.print(target);
+
+		out.println();
+	}
+	
+	// Prints a number according to options
+	private String printNumber(BigDecimal n) {
+		var ret = "";
+		if (humanReadable) {
+			ret = format(HumanReadableFormat.format(n), WIDTH_HUMAN_SIZE);
+		}
+		else {
+			ret = format(n.toString(), WIDTH_SIZE);
+		}
+		return ret;
+	}
+	
+}
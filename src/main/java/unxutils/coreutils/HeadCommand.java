@@ -0,0 +1,269 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+import unxutils.fs.StandardStreams;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static java.lang.Boolean.FALSE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+Print the first 10 lines of each FILE to standard output.  With more than one
+FILE, precede each with a header giving the file name.
+
+With no FILE, or when FILE is -, read standard input.
+
+-c
+--bytes=[-]NUM
+print the first NUM bytes of each file; with the leading '-', print all but
+the last NUM bytes of each file
+
+-n
+--lines=[-]NUM
+print the first NUM lines instead of the first 10; with the leading '-', print
+all but the last NUM lines of each file
+
+-q
+--quiet
+never print headers giving file names
+
+-v
+--verbose
+always print headers giving file names
+
+NUM may have a multiplier suffix: b 512, kB 1000, K 1024, MB 1000*1000,
+M 1024*1024, GB 1000*1000*1000, G 1024*1024*1024, and so on for T, P, E.
+
+Reading stops as soon as the lines, or bytes, printed are known: head of a
+large file, or of an endless pipe, reads no more than it prints.
+}
+</pre>
+*/
+@Command(command="head", description="Output the first part of files.")
+public class HeadCommand {
+
+	//-----------------------------------------------------------------
+	// Command constants
+
+	// Lines by default
+	private static final long DEFAULT_LINES = 10;
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="c", longName="bytes", description="print the first NUM bytes of each file; with the "
+		+ "leading '-', print all but the last NUM bytes of each file")
+	private String bytes = null;
+
+	@Setter
+	@Parameter(name="n", longName="lines", description="print the first NUM lines instead of the first 10; "
+		+ "with the leading '-', print all but the last NUM lines of each file")
+	private String lines = null;
+
+	@Setter
+	@Parameter(name="q", longName="quiet", description="never print headers giving file names")
+	private Boolean quiet = FALSE;
+
+	@Setter
+	@Parameter(name="v", longName="verbose", description="always print headers giving file names")
+	private Boolean verbose = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a head command.
+	 */
+	public HeadCommand() {
+	}
+
+	@Run
+	// Entry point for head
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Prints the first part of the files into the given streams.  The options
+	 * are read once, when the call starts.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read or the
+	 * output failed
+	 * @throws Exception If the files cannot be printed
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		Options options;
+		try {
+			options = options();
+		} catch (IllegalArgumentException e) {
+			err.println("head: " + e.getMessage());
+			return 1;
+		}
+		var names = files == null ? List.of("-") : List.copyOf(files);
+		boolean headers = options.verbose() || names.size() > 1 && !options.quiet();
+		var target = StandardStreams.output(out);
+		var block = ByteBuffer.allocateDirect(TailScanner.BLOCK_SIZE);
+		int status = 0;
+		// Was a header printed already?
+		var headed = new boolean[1];
+		try {
+			for (int i = 0; i < names.size(); i++) {
+				var name = names.get(i);
+				var header = headers ? "==> " + (name.equals("-") ? "standard input" : name) + " <==\n" : null;
+				if (!head(cwd, name, header, headed, options, block, target, err)) status = 1;
+			}
+		} catch (IOException e) {
+			err.println("head: write error: " + reason(e));
+			return 1;
+		}
+		out.flush();
+		return out.checkError() ? 1 : status;
+	}
+
+	// The options as head sees them
+	private Options options() {
+		var count = bytes != null ? bytes : lines;
+		boolean allBut = count != null && count.startsWith("-");
+		long number = DEFAULT_LINES;
+		if (count != null) {
+			var digits = count.startsWith("+") || count.startsWith("-") ? count.substring(1) : count;
+			try {
+				number = TailScanner.parseCount(digits);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid number of " + (bytes != null ? "bytes" : "lines")
+					+ ": '" + count + "'");
+			}
+		}
+		return new Options(bytes == null, number, allBut, quiet, verbose);
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		if (e instanceof NoSuchFileException) return "No such file or directory";
+		if (e instanceof AccessDeniedException) return "Permission denied";
+		return e.getMessage();
+	}
+
+	// Writes the header of a file, if any: after a blank line if not the first
+	private static void header(WritableByteChannel target, String header, boolean[] headed) throws IOException {
+		if (header == null) return;
+		var buffer = ByteBuffer.wrap(((headed[0] ? "\n" : "") + header).getBytes(UTF_8));
+		while (buffer.hasRemaining()) target.write(buffer);
+		headed[0] = true;
+	}
+
+	// Prints the first part of a file, or of standard input ("-"); reports its
+	//	errors and returns false if it could not be read.  Output errors are
+	//	thrown
+	private static boolean head(Path cwd, String name, String header, boolean[] headed, Options options,
+			ByteBuffer block, WritableByteChannel target, PrintStream err) throws IOException {
+		if (name.equals("-")) {
+			var source = StandardStreams.input(System.in);
+			header(target, header, headed);
+			// Never closed: standard input outlives the command
+			headStream(source, options, block, target);
+			return true;
+		}
+		var path = cwd.resolve(name);
+		if (Files.isDirectory(path)) {
+			header(target, header, headed);
+			err.println("head: error reading '" + name + "': Is a directory");
+			return false;
+		}
+		FileChannel opened;
+		try {
+			opened = FileChannel.open(path, StandardOpenOption.READ);
+		} catch (IOException e) {
+			err.println("head: cannot open '" + name + "' for reading: " + reason(e));
+			return false;
+		}
+		header(target, header, headed);
+		try (var channel = opened) {
+			if (!Files.isRegularFile(path)) {
+				headStream(channel, options, block, target);
+			} else if (options.allBut()) {
+				// All but the last part: where it starts is found from the end
+				long end = channel.size();
+				long stop = options.lines() ? TailScanner.lastLinesStart(channel, end, options.count(), block)
+					: Math.max(0, end - options.count());
+				TailScanner.transfer(channel, 0, stop, target);
+			} else if (!options.lines()) {
+				TailScanner.transfer(channel, 0, Math.min(options.count(), channel.size()), target);
+			} else {
+				headStream(channel, options, block, target);
+			}
+			return true;
+		}
+	}
+
+	// Prints the first part of a stream, reading it forward
+	private static void headStream(ReadableByteChannel source, Options options, ByteBuffer block,
+			WritableByteChannel target) throws IOException {
+		if (options.allBut()) {
+			// The blocks before the last lines are printed as soon as the window
+			//	lets them go
+			var sink = Channels.newOutputStream(target);
+			var window = new TailScanner.Window(options.lines(), options.count());
+			var input = Channels.newInputStream(source);
+			while (true) {
+				// The window keeps the blocks it holds: every block gets an array
+				var data = new byte[TailScanner.BLOCK_SIZE];
+				int count = input.readNBytes(data, 0, data.length);
+				if (count == 0) break;
+				window.add(data, count, sink);
+			}
+			var contents = window.contents();
+			sink.write(contents, 0, window.start(contents));
+			return;
+		}
+		// Stops reading once the count is reached
+		long left = options.count();
+		while (left > 0) {
+			block.clear();
+			if (!options.lines() && left < block.capacity()) block.limit((int) left);
+			if (source.read(block) < 0) break;
+			block.flip();
+			if (options.lines()) {
+				for (int i = 0; i < block.limit(); i++) {
+					if (block.get(i) == '\n' && --left == 0) {
+						block.limit(i + 1);
+						break;
+					}
+				}
+			} else {
+				left -= block.remaining();
+			}
+			while (block.hasRemaining()) target.write(block);
+		}
+	}
+
+	// Options of head: lines or bytes, how many, and whether all but them
+	private record Options(boolean lines, long count, boolean allBut, boolean quiet, boolean verbose) {}
+}
@@ -0,0 +1,331 @@
+package unxutils.coreutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lines of sort held in memory: their bytes one after the other in large
+ * chunks, and for every line its position, length and key prefix in arrays
+ * of primitives, so that millions of lines cost a handful of objects.  Lines
+ * never span chunks; a line longer than a chunk gets a chunk of its own.
+ * Chunks are kept when the arena is cleared, for the next run.<br>
+ * Sorting orders the line numbers with a parallel merge sort: the ranges are
+ * sorted, and then merged, by the threads of a fork join pool; the merges
+ * are split too, so that the last ones do not fall on a single thread.  The
+ * sort is stable, so that lines equal for -u come in input order.
+ */
+final class LineArena {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Ranges sorted, and merged, by a single task
+	private static final int TASK_SIZE = 8192;
+	// Ranges sorted by insertion
+	private static final int INSERTION_SIZE = 16;
+	// Bytes of the arrays per line they have room for: position, length, prefix
+	private static final int ARRAY_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES;
+	// Bytes per line of the two arrays of line numbers of the sort
+	private static final int SORT_BYTES = 2 * Integer.BYTES;
+	// Lines the arrays have room for at first
+	private static final int INITIAL_LINES = 1024;
+
+	//-----------------------------------------------------------------
+	// Arena properties
+
+	// Size of the chunks
+	private final int chunkSize;
+	// Chunks, and the one being filled
+	private final List<byte[]> chunks = new ArrayList<>();
+	private int chunk = -1;
+	// Bytes used in the chunk being filled
+	private int used;
+	// Start of the line being appended in its chunk
+	private int lineStart;
+	// Bytes of the lines
+	private long lineBytes = 0;
+	// Per line: chunk and offset (chunk << 32 | offset), length, key prefix
+	private long[] positions = new long[INITIAL_LINES];
+	private int[] lengths = new int[INITIAL_LINES];
+	private long[] prefixes = new long[INITIAL_LINES];
+	// Number of lines
+	private int count = 0;
+
+	//-----------------------------------------------------------------
+	// Arena methods
+
+	/**
+	 * Builds an empty arena.
+	 * @param chunkSize Size of the chunks of bytes
+	 */
+	LineArena(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Appends bytes to the line being read.
+	 * @param src Bytes
+	 * @param offset Start of the bytes in src
+	 * @param length Number of bytes
+	 */
+	void append(byte[] src, int offset, int length) {
+		if (chunk < 0 || used + length > chunks.get(chunk).length) {
+			nextChunk(used - lineStart + length);
+		}
+		System.arraycopy(src, offset, chunks.get(chunk), used, length);
+		used += length;
+	}
+
+	/**
+	 * Ends the line being read: the bytes appended since the last one.
+	 */
+	void endLine() {
+		if (chunk < 0) nextChunk(0);
+		if (count == positions.length) {
+			int capacity = count * 2;
+			positions = Arrays.copyOf(positions, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			prefixes = Arrays.copyOf(prefixes, capacity);
+		}
+		positions[count] = (long) chunk << 32 | lineStart;
+		lengths[count] = used - lineStart;
+		lineBytes += lengths[count];
+		count++;
+		lineStart = used;
+	}
+
+	// Goes on in the next chunk with room for a line of the given length,
+	//	taking along the part of the line already appended
+	private void nextChunk(int length) {
+		int next = chunk + 1;
+		while (next < chunks.size() && chunks.get(next).length < length) next++;
+		if (next == chunks.size()) {
+			chunks.add(new byte[Math.max(chunkSize, length)]);
+		} else if (next != chunk + 1) {
+			// Chunks too small for this line are left for the next runs
+			chunks.add(chunk + 1, chunks.remove(next));
+			next = chunk + 1;
+		}
+		int partial = used - lineStart;
+		if (partial > 0) {
+			System.arraycopy(chunks.get(chunk), lineStart, chunks.get(next), 0, partial);
+		}
+		chunk = next;
+		lineStart = 0;
+		used = partial;
+	}
+
+	/**
+	 * @return Number of lines
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @return Bytes taken by the lines and their arrays, as allocated, and
+	 * needed by their sort.  Chunks kept from earlier runs are not counted:
+	 * they only grew as far as the lines of one run needed
+	 */
+	long memory() {
+		return lineBytes + (long) positions.length * ARRAY_BYTES + (long) count * SORT_BYTES;
+	}
+
+	/**
+	 * @param line Line number
+	 * @return Chunk holding the line
+	 */
+	byte[] bytes(int line) {
+		return chunks.get((int) (positions[line] >>> 32));
+	}
+
+	/**
+	 * @param line Line number
+	 * @return Start of the line in its chunk
+	 */
+	int offset(int line) {
+		return (int) positions[line];
+	}
+
+	/**
+	 * @param line Line number
+	 * @return Length of the line
+	 */
+	int length(int line) {
+		return lengths[line];
+	}
+
+	/**
+	 * Forgets the lines, keeping the chunks.  The arrays go back to their first
+	 * size: they count in the memory taken, and the next run starts with no
+	 * lines.  A line being appended is lost.
+	 */
+	void clear() {
+		if (positions.length > INITIAL_LINES) {
+			positions = new long[INITIAL_LINES];
+			lengths = new int[INITIAL_LINES];
+			prefixes = new long[INITIAL_LINES];
+		}
+		count = 0;
+		lineBytes = 0;
+		chunk = chunks.isEmpty() ? -1 : 0;
+		used = lineStart = 0;
+	}
+
+	/**
+	 * Sorts the lines.
+	 * @param key Comparison of the lines
+	 * @param pool Threads of the sort
+	 * @return Line numbers, in order
+	 */
+	int[] sort(SortKey key, ForkJoinPool pool) {
+		var order = new int[count];
+		Arrays.setAll(order, i -> i);
+		pool.invoke(new SortTask(key, order, new int[count], 0, count));
+		return order;
+	}
+
+	// Compares two lines, by their prefixes first
+	private int compare(SortKey key, int a, int b) {
+		int ret = Long.compareUnsigned(prefixes[a], prefixes[b]);
+		if (ret != 0) return ret;
+		long x = positions[a];
+		long y = positions[b];
+		return key.compare(chunks.get((int) (x >>> 32)), (int) x, (int) x + lengths[a],
+			chunks.get((int) (y >>> 32)), (int) y, (int) y + lengths[b]);
+	}
+
+	// Sorts a range of the line numbers, leaving it in order; the same range
+	//	of the scratch array is used for merging
+	private final class SortTask extends RecursiveAction {
+		private final SortKey key;
+		private final int[] order;
+		private final int[] scratch;
+		private final int from;
+		private final int to;
+
+		SortTask(SortKey key, int[] order, int[] scratch, int from, int to) {
+			this.key = key;
+			this.order = order;
+			this.scratch = scratch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= TASK_SIZE) {
+				// Lines are still in input order: the prefixes of this range are
+				//	worked out by the thread that sorts it
+				for (int i = from; i < to; i++) {
+					long position = positions[i];
+					prefixes[i] = key.prefix(chunks.get((int) (position >>> 32)), (int) position,
+						(int) position + lengths[i]);
+				}
+				sortRange(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SortTask(key, order, scratch, from, mid), new SortTask(key, order, scratch, mid, to));
+			new MergeTask(key, order, from, mid, mid, to, scratch, from).compute();
+			System.arraycopy(scratch, from, order, from, to - from);
+		}
+
+		// Sorts a range in this thread
+		private void sortRange(int start, int end) {
+			if (end - start <= INSERTION_SIZE) {
+				for (int i = start + 1; i < end; i++) {
+					int line = order[i];
+					int j = i - 1;
+					while (j >= start && compare(key, order[j], line) > 0) {
+						order[j + 1] = order[j];
+						j--;
+					}
+					order[j + 1] = line;
+				}
+				return;
+			}
+			int mid = (start + end) >>> 1;
+			sortRange(start, mid);
+			sortRange(mid, end);
+			// Already in order: the common case of sorted input
+			if (compare(key, order[mid - 1], order[mid]) <= 0) return;
+			merge(key, order, start, mid, mid, end, scratch, start);
+			System.arraycopy(scratch, start, order, start, end - start);
+		}
+	}
+
+	// Merges two sorted ranges into another array, splitting the work among
+	//	threads: the larger range is cut in half, and the other one where the
+	//	line at the cut would go, so that equal lines keep their order
+	private final class MergeTask extends RecursiveAction {
+		private final SortKey key;
+		private final int[] source;
+		private final int left;
+		private final int leftEnd;
+		private final int right;
+		private final int rightEnd;
+		private final int[] target;
+		private final int at;
+
+		MergeTask(SortKey key, int[] source, int left, int leftEnd, int right, int rightEnd, int[] target, int at) {
+			this.key = key;
+			this.source = source;
+			this.left = left;
+			this.leftEnd = leftEnd;
+			this.right = right;
+			this.rightEnd = rightEnd;
+			this.target = target;
+			this.at = at;
+		}
+
+		@Override
+		protected void compute() {
+			int leftSize = leftEnd - left;
+			int rightSize = rightEnd - right;
+			if (leftSize + rightSize <= TASK_SIZE || leftSize == 0 || rightSize == 0) {
+				merge(key, source, left, leftEnd, right, rightEnd, target, at);
+				return;
+			}
+			int leftCut;
+			int rightCut;
+			if (leftSize >= rightSize) {
+				leftCut = (left + leftEnd) >>> 1;
+				// Lines of the right range before the cut line: those lower
+				rightCut = bound(source[leftCut], right, rightEnd, false);
+			} else {
+				rightCut = (right + rightEnd) >>> 1;
+				// Lines of the left range before the cut line: those lower or equal
+				leftCut = bound(source[rightCut], left, leftEnd, true);
+			}
+			int middle = at + (leftCut - left) + (rightCut - right);
+			invokeAll(new MergeTask(key, source, left, leftCut, right, rightCut, target, at),
+				new MergeTask(key, source, leftCut, leftEnd, rightCut, rightEnd, target, middle));
+		}
+
+		// First position of a range whose line is greater than a line, or greater
+		//	or equal if equal lines do not go before it
+		private int bound(int line, int from, int to, boolean equalBefore) {
+			while (from < to) {
+				int mid = (from + to) >>> 1;
+				int c = compare(key, source[mid], line);
+				if (c < 0 || c == 0 && equalBefore) from = mid + 1;
+				else to = mid;
+			}
+			return from;
+		}
+	}
+
+	// Merges two sorted ranges into another array; left first on equal lines
+	private void merge(SortKey key, int[] source, int left, int leftEnd, int right, int rightEnd, int[] target,
+			int at) {
+		while (left < leftEnd && right < rightEnd) {
+			target[at++] = compare(key, source[right], source[left]) < 0 ? source[right++] : source[left++];
+		}
+		System.arraycopy(source, left, target, at, leftEnd - left);
+		System.arraycopy(source, right, target, at + leftEnd - left, rightEnd - right);
+	}
+}
@@ -1,51 +1,64 @@
 package unxutils.coreutils;
 
-import cli.ANSIEscapeCode;
 import cli.annotations.Command;
 import cli.annotations.OptionalArgs;
 import cli.annotations.Parameter;
 import cli.annotations.Run;
-import lombok.Getter;
 import lombok.Setter;
-import unxutils.format.HumanReadableFormat;
-
-import java.io.File;
-import java.io.FileFilter;
+import unxutils.format.LineBuffer;
+import unxutils.fs.ArchivePaths;
+import unxutils.fs.AttributeLoader;
+import unxutils.fs.AttributePlan;
+import unxutils.fs.AttributePrefetcher;
+import unxutils.fs.DirectoryBatch;
+import unxutils.fs.DirectoryTracker;
+import unxutils.fs.DirectoryWalker;
+import unxutils.fs.DirectoryWatch;
+import unxutils.fs.EntryBuffer;
+import unxutils.fs.EntryType;
+import unxutils.fs.FileAttribute;
+import unxutils.fs.FileAttributes;
+import unxutils.fs.Libc;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.AccessDeniedException;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.ProviderMismatchException;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileOwnerAttributeView;
-import java.nio.file.attribute.FileTime;
-import java.nio.file.attribute.PosixFileAttributeView;
-import java.nio.file.attribute.PosixFileAttributes;
-import java.nio.file.attribute.PosixFilePermission;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.lang.Boolean.FALSE;
-import static java.lang.System.out;
-import static java.nio.file.attribute.PosixFilePermission.GROUP_EXECUTE;
-import static java.nio.file.attribute.PosixFilePermission.GROUP_READ;
-import static java.nio.file.attribute.PosixFilePermission.GROUP_WRITE;
-import static java.nio.file.attribute.PosixFilePermission.OTHERS_EXECUTE;
-import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
-import static java.nio.file.attribute.PosixFilePermission.OTHERS_WRITE;
-import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
-import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
-import static java.nio.file.attribute.PosixFilePermission.OWNER_WRITE;
-import static java.util.Locale.ENGLISH;
-import static unxutils.format.Format.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static unxutils.fs.FileAttribute.DEVICE;
+import static unxutils.fs.FileAttribute.GROUP;
+import static unxutils.fs.FileAttribute.LINKS;
+import static unxutils.fs.FileAttribute.MODE;
+import static unxutils.fs.FileAttribute.MODIFICATION_TIME;
+import static unxutils.fs.FileAttribute.OWNER;
+import static unxutils.fs.FileAttribute.PERMISSIONS;
+import static unxutils.fs.FileAttribute.SIZE;
+import static unxutils.fs.FileAttribute.TYPE;
 
 /**
 <b>Program documentation</b><br>
@@ -60,6 +73,10 @@ beginning with .. For other non-option arguments, by default ls lists just the
 file name. If no non-option argument is specified, ls operates on the current 
 directory, acting as if it had been invoked with a single argument of ..
 
+Arguments can point inside zip and jar archives, with a ! after the archive: 
+ls -lR app.jar!/BOOT-INF lists the entries under BOOT-INF without extracting 
+anything. Archives can be nested (app.jar!/BOOT-INF/lib/x.jar!/META-INF).
+
 By default, the output is sorted alphabetically, according to the locale settings 
 in effect.3 If standard output is a terminal, the output is in columns (sorted 
 vertically) and control characters are output as question marks; otherwise, the 
@@ -181,10 +198,59 @@ the third ignores names that start with #.
      character is a space, there is no alternate access method.  When it
      is a printing character (e.g., `+'), then there is such a method.
 
+-L
+--dereference
+When showing file information for a symbolic link, show information for the 
+file the link references rather than for the link itself. When recursing, 
+follow symbolic links to directories.
+
+-P
+--no-dereference
+Show information for symbolic links themselves, and never follow them when 
+recursing. This is the default.
+
 -R
 --recursive
 List the contents of all directories recursively.
 
+-x
+--one-file-system
+When recursing, do not enter directories on other file systems than the one of 
+the argument, such as /proc or network mounts under /; they are listed as 
+files.
+
+ --exclude-fs-type=TYPE[,TYPE]...
+When recursing, do not enter directories on other file systems of these types 
+(as df -T prints them, e.g. nfs,cifs,fuse.sshfs); they are listed as files.
+
+-q
+--hide-control-chars
+Print question marks instead of control characters and of the bytes of names 
+that are not valid characters. This is the default when the output is a 
+terminal.
+
+ --show-control-chars
+Print names as they are, byte by byte. This is the default when the output is 
+not a terminal.
+
+ --unique-directories
+With -L, list every directory only once, even if several links lead to it.
+
+ --prefetch=N
+Read the attributes of up to N entries at the same time, while the directory is 
+still being read. Meant for network file systems (NFS, FUSE), where every read 
+waits for the server. Only used when attributes are shown (-l, --color).
+
+ --max-entries=N
+Stop after listing N entries. Listings also stop, with exit status 2, as soon 
+as the standard output is closed (e.g. ls -R | head).
+
+ --watch
+After the listing, keep watching the directories (the whole trees with -R) and 
+print a line for every change: + for new entries, ~ for changed ones and - for 
+removed ones, listed as with the other options. Only the changed entries are 
+read again. Runs until interrupted or until the standard output is closed.
+
  --color       colors the output
 }
 </pre>
@@ -195,23 +261,22 @@ public class ListDirectoryCommand {
 	//-----------------------------------------------------------------
 	// Command constants
 
-	// File size length, for long output format
-	private static final int SIZE_LENGTH = 8;
-	// Owner name length, for long output format
-	private static final int OWNER_LENGTH = 12;
-	// Maximum hard links number to be shown
-	private static final Long MAX_HARD_LINKS = 999L;
-	// English months date format
-	private static final DateFormat MODIFICATION_MONTH_FORMAT = new SimpleDateFormat("MMM", ENGLISH);
-	// Hours and minutes format
-	private static final DateFormat MODIFICATION_TIME_FORMAT = new SimpleDateFormat("HH:mm", ENGLISH);
-	// Windows executable files pattern
-	private static final Pattern EXECUTABLE_FILES_PATTERN =
-		Pattern.compile("([\\.\\w]+)\\.exe|([\\.\\w]+)\\.bat|([\\.\\w]+)\\.cmd|([\\.\\w]+)\\.scr");
-	// Executable file (Windows)
-	private static final String WINDOWS_EXECUTABLE_PERMISSIONS = "rwxrwxrwx";
-	// Non executable file (Windows)
-	private static final String WINDOWS_NONEXECUTABLE_PERMISSIONS = "rw-rw-rw-";
+	// Lines written between checks of the output
+	private static final int OUTPUT_CHECK_INTERVAL = 64;
+	// Time between checks of the output, with --watch
+	private static final long WATCH_POLL_MILLIS = 500;
+	// Marks of the changes, with --watch, by DirectoryWatch.Change
+	private static final byte[] CHANGE_MARKS = {'+', '~', '-'};
+	// Windows executable files suffixes
+	private static final byte[][] WINDOWS_EXECUTABLE_SUFFIXES =
+		{".exe".getBytes(US_ASCII), ".bat".getBytes(US_ASCII), ".cmd".getBytes(US_ASCII), ".scr".getBytes(US_ASCII)};
+	// Permissions of executable and other files (Windows)
+	private static final int WINDOWS_EXECUTABLE_PERMISSIONS = 0777;
+	private static final int WINDOWS_NONEXECUTABLE_PERMISSIONS = 0666;
+	// Owner, group and others execute bits
+	private static final int EXECUTE_BITS = 0111;
+	// Are names in UTF-8?
+	private static final boolean UTF8_NAMES = Libc.FILE_NAME_CHARSET.equals(UTF_8);
 
 	//-----------------------------------------------------------------
 	// Command parameters
@@ -264,6 +329,15 @@ public class ListDirectoryCommand {
 	@Parameter(longName="color", description="colors the output.")
 	private Boolean color = FALSE;
 
+	@Setter
+	@Parameter(name="q", longName="hide-control-chars",
+		description="print ? instead of control characters and invalid bytes in names")
+	private Boolean hideControlChars = FALSE;
+
+	@Setter
+	@Parameter(longName="show-control-chars", description="print names as they are, byte by byte")
+	private Boolean showControlChars = FALSE;
+
 	@Setter
 	@Parameter(name="I", longName="ignore", description="do not list implied entries matching shell PATTERN")
 	private String ignore = null;
@@ -276,19 +350,65 @@ public class ListDirectoryCommand {
 	@Parameter(name="R", longName="recursive", description="list subdirectories recursively")
 	private Boolean recursive = FALSE;
 
+	@Setter
+	@Parameter(name="x", longName="one-file-system", description="when recursing, do not enter other file systems")
+	private Boolean oneFileSystem = FALSE;
+
+	@Setter
+	@Parameter(longName="exclude-fs-type",
+		description="when recursing, do not enter file systems of these types (comma separated list)"
+	)
+	private String excludeFsType = null;
+
 	@Setter
 	@Parameter(name="l", description="use a long listing format")
 	private Boolean longOutputFormat = FALSE;
 
+	@Setter
+	@Parameter(name="L",
+		longName="dereference",
+		description="when showing file information for a symbolic link, show information "
+			+ "for the file the link references rather than for the link itself; "
+			+ "follow links to directories when recursing"
+	)
+	private Boolean dereference = FALSE;
+
+	@Setter
+	@Parameter(name="P",
+		longName="no-dereference",
+		description="never follow symbolic links (default); overrides -L"
+	)
+	private Boolean noDereference = FALSE;
+
+	@Setter
+	@Parameter(longName="unique-directories",
+		description="with -L, list every directory only once, even if several links lead to it"
+	)
+	private Boolean uniqueDirectories = FALSE;
+
+	@Setter
+	@Parameter(longName="prefetch",
+		description="read the attributes of up to N entries at the same time, ahead of their "
+			+ "listing; for network file systems, where every read waits for the server"
+	)
+	private String prefetch = null;
+
+	@Setter
+	@Parameter(longName="max-entries", description="stop after listing N entries")
+	private String maxEntries = null;
+
+	@Setter
+	@Parameter(longName="watch",
+		description="after the listing, keep watching and print the entries added (+), changed (~) and removed (-)"
+	)
+	private Boolean watch = FALSE;
+
 	@Setter
 	@OptionalArgs(name="FILE")
 	private List<String> files;
 
-	//-----------------------------------------------------------------
-	// Command variables
-
-	// Reported directory headers
-	private final List<Path> reportedDirectoryPaths = new LinkedList<>();
+	// Color scheme instead of the one of LS_COLORS, for the tests
+	private LsColors colorScheme;
 
 	//-----------------------------------------------------------------
 	// Command methods
@@ -302,347 +422,715 @@ public class ListDirectoryCommand {
 	@Run
 	// Entry point for ls
 	public int execute(Path cwd) throws Exception {
-		var paths = new LinkedList<Path>();
-		if (files == null) {
-			paths.add(cwd);
-		} else {
-			for (String file: files) {
-				var path = Path.of(file);
-				if (path.isAbsolute()) paths.add(path);
-				else paths.add(new File(cwd.toFile(), file).toPath());
-			}
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Lists files into the given streams.  The options are read once, when the
+	 * call starts, and every call keeps its state to itself, so that a command
+	 * can be configured once and then run by several threads at the same time.
+	 * @param cwd Working directory
+	 * @param out Listing output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 2 on errors or if the output was closed
+	 * @throws Exception If the listing fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		return execute(cwd, out, err, loader -> {});
+	}
+
+	// Lists files, handing the attribute reader of the listing to started
+	//	first, so that the tests count its reads
+	int execute(Path cwd, PrintStream out, PrintStream err, Consumer<AttributeLoader> started) throws Exception {
+		Options options;
+		try {
+			options = options();
+		} catch (IllegalArgumentException e) {
+			err.println("ls: " + e.getMessage());
+			return 2;
 		}
-		for (var path: paths) {
-			try {
-				// Render the result presentation, combining the appropriated output options
-				for (var f: listFiles(path)) printFileResult(paths.size() > 1, path, cwd, f);
-			} catch(AccessDeniedException e) {
-				// Cannot enter here...
-				System.err.println(e.getMessage());
-			}
+		var execution = new Execution(options, out, err);
+		started.accept(execution.loader);
+		return execution.execute(cwd);
+	}
+
+	// The options as a listing sees them, from start to end
+	private Options options() {
+		int prefetchCount;
+		try {
+			prefetchCount = prefetch == null ? 1 : Integer.parseInt(prefetch);
+		} catch (NumberFormatException e) {
+			prefetchCount = 0;
+		}
+		if (prefetchCount < 1) {
+			throw new IllegalArgumentException("invalid prefetch count '" + prefetch + "'");
+		}
+		long entries;
+		try {
+			entries = maxEntries == null ? Long.MAX_VALUE : Long.parseLong(maxEntries);
+		} catch (NumberFormatException e) {
+			entries = 0;
 		}
-		return 0;
+		if (entries < 1) {
+			throw new IllegalArgumentException("invalid maximum number of entries '" + maxEntries + "'");
+		}
+		return new Options(all, almostAll, ignoreBackups, groupDirectoriesFirst, hide, color,
+			color ? (colorScheme != null ? colorScheme : LsColors.fromEnvironment()) : null, hideControlChars,
+			showControlChars, ignore, humanReadable, recursive, oneFileSystem,
+			excludeFsType == null ? Set.of() : Set.copyOf(Arrays.asList(excludeFsType.split(","))),
+			longOutputFormat, dereference && !noDereference, uniqueDirectories, prefetchCount, entries, watch,
+			files == null ? null : List.copyOf(files));
 	}
 
-	// List the files under the current path
-	private List<FileResult> listFiles(Path path) throws IOException {
-		var ret = new LinkedList<FileResult>();
-		if (path.toFile().exists()) {
-			if (path.toFile().isDirectory()) {
-				if (all) {
-					ret.add(new FileResult(path.toFile()));
-				}
-				if (all && path.getParent() != null) {
-					ret.add(new FileResult(path.getParent().toFile()));
-				}
-				for (File f : path.toFile().listFiles(new ListDirectoryFilter())) {
-					ret.add(new FileResult(f, recursive));
-				}
-			}
-			else ret.add(new FileResult(path.toFile()));
+	// Colors with a scheme of their own instead of LS_COLORS
+	void setColorScheme(LsColors colorScheme) {
+		this.colorScheme = colorScheme;
+	}
+
+	// Attributes every entry needs with the current options
+	AttributePlan planAttributes() {
+		return options().plan();
+	}
+
+	// Is the output a terminal?
+	private static boolean isTerminal() {
+		var console = System.console();
+		return console != null && console.isTerminal();
+	}
+
+	// Type of the file system of a path, empty if unknown
+	private static String fileSystemType(Path path) {
+		try {
+			return Files.getFileStore(path).type();
+		} catch (IOException | UnsupportedOperationException e) {
+			return "";
 		}
-		return ret;
 	}
 
 	// Calculates newPath relative to originalPath, if possible
 	// getRelativePath(/etc, /etc/openssh) -> openssh
 	// getRelativePath(/etc, /opt/ibm) -> /opt/ibm
-	private String getRelativePath(Path originalPath, Path newPath) {
+	private static String getRelativePath(Path originalPath, Path newPath) {
 		var ret = newPath.toString();
 		if (newPath.toString().contains(originalPath.toString())) {
 			ret = newPath.toString().replace(originalPath.toString(), "");
 			// Remove non character at the begin
-			if (ret.startsWith(FileSystems.getDefault().getSeparator())) {
+			if (ret.startsWith(newPath.getFileSystem().getSeparator())) {
 				ret = ret.substring(1);
 			}
 		}
 		return ret;
 	}
 
-	// Presentation of a file result relative to some path (maybe nested)
-	private void printFileResult(boolean manyFiles, Path path, Path currentPath, FileResult f)
-		throws IOException {
-		// We write only once every directory header
-		if (manyFiles
-			&& currentPath.toFile().isDirectory()
-			&& !reportedDirectoryPaths.contains(path)) {
-			out.println(getRelativePath(currentPath, path) + ":");
-			reportedDirectoryPaths.add(path);
+	// Options of a listing, checked: --prefetch and --max-entries as numbers
+	//	(no limit is Long.MAX_VALUE), --exclude-fs-type as a set, -L and -P
+	//	as whether links are followed, and --color with its scheme
+	private record Options(boolean all, boolean almostAll, boolean ignoreBackups, boolean groupDirectoriesFirst,
+			String hide, boolean color, LsColors colors, boolean hideControlChars, boolean showControlChars,
+			String ignore, boolean humanReadable, boolean recursive, boolean oneFileSystem, Set<String> excludedTypes,
+			boolean longOutputFormat, boolean followLinks, boolean uniqueDirectories, int prefetch,
+			long maxEntries, boolean watch, List<String> files) {
+
+		// Is the number of listed entries limited (--max-entries)?
+		boolean isLimited() {
+			return maxEntries != Long.MAX_VALUE;
 		}
-		if (f.getChildren() == null) {
-			printFile(f, path);
-		} else {
-			for (FileResult child: f.getChildren()) {
-				printFileResult(true, path, currentPath, child);
+
+		// Maps the options to the attributes every entry needs, so that nothing
+		//	else is read.  Name filters (-a, -A, -B, --hide, -I) need nothing.
+		AttributePlan plan() {
+			var attributes = EnumSet.noneOf(FileAttribute.class);
+			// Recursion and grouping need to tell directories apart
+			if (recursive || groupDirectoriesFirst) {
+				attributes.add(TYPE);
 			}
+			// Crossing into another file system is told by the device of the directory
+			if (recursive && (oneFileSystem || !excludedTypes.isEmpty())) {
+				attributes.add(DEVICE);
+			}
+			// Colors depend on the type, the executable bits and the special bits
+			//	(setuid, setgid, sticky), which only the whole mode has
+			if (color) {
+				attributes.addAll(EnumSet.of(TYPE, MODE));
+			}
+			if (longOutputFormat) {
+				attributes.addAll(EnumSet.of(TYPE, PERMISSIONS, LINKS, OWNER, GROUP, SIZE, MODIFICATION_TIME));
+			}
+			return AttributePlan.of(attributes);
 		}
 	}
 
-	// Prints the information of a file
-	private void printFile(FileResult f, Path currentPath) throws IOException {
-		var posixAttrs = f.getPosixAttrs();
-		var fileName = getFileName(f, currentPath, posixAttrs);
-		// Is it long?
-		if (longOutputFormat) {
-			// Long output format:
-            /*
-			 	1		file type (d/l/-)
-			 	9		permission mask
-				-1-
-				3		number of hard links
-				-1-
-				OWNER_LENGTH		owner name
-				-1-
-				OWNER_LENGTH		owner's group name
-				-1-
-				SIZE_LENGTH		file size
-				-1-
-				3		month of last modification date
-				-1-
-				2		day of last modification date
-				-1-
-				5		year of last modification date if not the same; hour if the same
-				-1-
-				X		name of the file
-			 */
-			var basicAttrs = f.getBasicAttrs();
-			var fileOwnerAttrs = f.getFileOwnerAttributeView();
-
-			var sb = new StringBuilder();
-			// File type
-			sb.append(f.getFile().isDirectory()?"d":(basicAttrs.isSymbolicLink()?"l":"-"));
-			// Permissions
-			if (posixAttrs != null) {
-				Set<PosixFilePermission> p = posixAttrs.permissions();
-				sb.append(p.contains(OWNER_READ)?"r":"-");
-				sb.append(p.contains(OWNER_WRITE)?"w":"-");
-				sb.append(p.contains(OWNER_EXECUTE)?"x":"-");
-				sb.append(p.contains(GROUP_READ)?"r":"-");
-				sb.append(p.contains(GROUP_WRITE)?"w":"-");
-				sb.append(p.contains(GROUP_EXECUTE)?"x":"-");
-				sb.append(p.contains(OTHERS_READ)?"r":"-");
-				sb.append(p.contains(OTHERS_WRITE)?"w":"-");
-				sb.append(p.contains(OTHERS_EXECUTE)?"x":"-");
-			} else {
-				// Assume Windows:
-				// rwxrwxrwx for executables
-				// rw-rw-rw- for the rest
-				var matcher = EXECUTABLE_FILES_PATTERN.matcher(f.getFile().getName());
-				if (matcher.matches()) {
-					sb.append(WINDOWS_EXECUTABLE_PERMISSIONS);
-				} else {
-					sb.append(WINDOWS_NONEXECUTABLE_PERMISSIONS);
-				}
-
-			}
-			// Space
-			sb.append(" ");
-			// Number of hard links
-			var hardLinks = f.getHardLinks();
-			if (hardLinks.compareTo(MAX_HARD_LINKS) > 0) {
-				hardLinks = MAX_HARD_LINKS;
-			}
-			// Space
-			sb.append(" ");
-			// Owner name
-			if (posixAttrs != null) {
-				sb.append(format(posixAttrs.owner().getName(), OWNER_LENGTH));
-			} else {
-				sb.append(format(fileOwnerAttrs.getOwner().getName(), OWNER_LENGTH));
-			}
-			// Space
-			sb.append(" ");
-			// Owner's group name
-			if (posixAttrs != null) {
-				sb.append(format(posixAttrs.group().getName(), OWNER_LENGTH));
-			} else {
-				sb.append(format(fileOwnerAttrs.getOwner().getName(), OWNER_LENGTH));
-			}
-			// Space
-			sb.append(" ");
-			// Size
-			sb.append(format(getSize(basicAttrs.size()), SIZE_LENGTH));
-			// Space
-			sb.append(" ");
-			// Last modification date
-			sb.append(formatModificationDate(basicAttrs.lastModifiedTime()));
-			// Space
-			sb.append(" ");
-			// File name
-			sb.append(fileName);
-			out.println(sb.toString());
-		} else {
-			out.println(fileName);
-		}
-	}
+	// State of a single execution, from the options to the output: nothing is
+	//	shared with other executions of the same command
+	private static final class Execution {
 
-	// Renders the name of the file
-	private String getFileName(FileResult f, Path currentPath, PosixFileAttributes posixAttrs)
-		throws IOException {
-		var fileName = f.getFile().getName();
-		if (f.getFile().isDirectory() && currentPath.toFile().getCanonicalPath().equals(f.getFile().getCanonicalPath())) {
-			fileName = ".";
-		} else if (currentPath.toFile().getParentFile() != null &&
-			currentPath.toFile().getParentFile().getCanonicalPath().equals(
-				f.getFile().getCanonicalPath())) {
-			fileName = "..";
+		//---------------------------------------------------------
+		// Execution properties
+
+		// Options of the listing
+		private final Options options;
+		// Listing output
+		private final PrintStream out;
+		// Error output
+		private final PrintStream err;
+		// Attributes needed by the options
+		private final AttributePlan plan;
+		// Is every entry stat-ed to be listed?  The device alone (-x) is only read
+		//	for the directories recursion may enter
+		private final boolean statEntries;
+		// Reads the planned attributes, from any thread
+		private final AttributeLoader loader;
+		// Colors, with --color
+		private final LsColors colors;
+		// Are names escaped for the terminal (-q)?
+		private final boolean escapeNames;
+		// Entries still to be listed, with --max-entries
+		private long remainingEntries;
+		// Set when the output is closed: every section stops
+		private volatile boolean outputClosed = false;
+		// Set when the listing has to stop: every section stops
+		private volatile boolean stopped = false;
+		// Keys of every directory listed so far (--unique-directories)
+		private final Set<Object> visited = new HashSet<>();
+		// Can recursion enter a device, after the type of its file system?  Every
+		//	device is looked up once, as FileStore.type() reads the mount table
+		private final Map<Long, Boolean> enterableDevices = new ConcurrentHashMap<>();
+
+		//---------------------------------------------------------
+		// Execution methods
+
+		// Prepares a listing
+		Execution(Options options, PrintStream out, PrintStream err) {
+			this.options = options;
+			this.out = out;
+			this.err = err;
+			plan = options.plan();
+			var listed = new HashSet<>(plan.attributes());
+			listed.remove(DEVICE);
+			statEntries = AttributePlan.of(listed).needsStat();
+			loader = new AttributeLoader(plan, options.followLinks());
+			colors = options.colors();
+			// Only the terminal of the process, not an embedding stream
+			escapeNames = options.hideControlChars()
+				|| !options.showControlChars() && out == System.out && isTerminal();
+			remainingEntries = options.maxEntries();
 		}
-		// Should we color it?
-		if (color) {
-			if (f.getFile().isDirectory()) {
-				fileName = ANSIEscapeCode.paint(fileName, ANSIEscapeCode.BRIGHT_BLUE) + "/";
-			} else {
-				boolean executable = false;
-				if (posixAttrs != null) {
-					var permissions = posixAttrs.permissions();
-					executable =
-						permissions.contains(OWNER_EXECUTE) |
-							permissions.contains(GROUP_EXECUTE) |
-							permissions.contains(OTHERS_EXECUTE);
+
+		// Lists the arguments
+		int execute(Path cwd) throws Exception {
+			var filter = new ListDirectoryFilter(options);
+			var files = options.files();
+			var manyFiles = files != null && files.size() > 1;
+			int status = 0;
+			// Archives in the arguments (app.jar!/BOOT-INF) stay open until the end
+			try (var archives = new ArchivePaths()) {
+				var paths = new ArrayList<Path>();
+				if (files == null) {
+					paths.add(cwd);
 				} else {
-					var matcher = EXECUTABLE_FILES_PATTERN.matcher(f.getFile().getName());
-					executable = matcher.matches();
+					for (String file: files) {
+						try {
+							paths.add(archives.resolve(cwd, file));
+						} catch (IOException e) {
+							err.println("ls: cannot access '" + file + "': " + e.getMessage());
+							status = 2;
+						}
+					}
 				}
-				if (executable) {
-					fileName = ANSIEscapeCode.paint(fileName, ANSIEscapeCode.BRIGHT_GREEN);
+				// Watched before the listing, so that no change falls in between
+				DirectoryWatch watcher;
+				try {
+					watcher = options.watch() && !paths.isEmpty() ? startWatch(paths, filter) : null;
+				} catch (IOException | UnsupportedOperationException | ProviderMismatchException e) {
+					err.println("ls: cannot watch: " + e.getMessage());
+					return 2;
+				}
+				try (watcher) {
+					// Directories listed by one argument are skipped by the next ones,
+					//	so --unique-directories needs them in order, as --max-entries does
+					if (paths.size() < 2 || options.uniqueDirectories() || options.isLimited()) {
+						for (var path: paths) {
+							if (stopped) break;
+							status = Math.max(status, new Section(path, manyFiles, cwd, filter, out, err).call());
+						}
+					} else {
+						status = Math.max(status, listConcurrently(paths, cwd, filter));
+					}
+					if (watcher != null && !stopped) {
+						watch(watcher, paths, cwd, filter);
+					}
 				}
 			}
-		}
-		return fileName;
-	}
-
-	// Properly formats the modification date for presentation
-	private String formatModificationDate(FileTime lastModifiedTime) {
-        /*
-			3		month of last modification date
-			-1-
-			2		day of last modification date
-			-1-
-			5		year of last modification date if not the same; hour if the same 
-		 */
-		var sb = new StringBuilder();
-		var modificationTime = Calendar.getInstance();
-		modificationTime.setTimeInMillis(lastModifiedTime.toInstant().toEpochMilli());
-		var rightNow = Calendar.getInstance();
-		rightNow.setTime(new Date());
-		// Month in english
-		sb.append(MODIFICATION_MONTH_FORMAT.format(modificationTime.getTime()));
-		sb.append(" ");
-		sb.append(format(Integer.toString(modificationTime.get(Calendar.DAY_OF_MONTH)), 2));
-		sb.append(" ");
-		// Year if not the same that right now
-		if (modificationTime.get(Calendar.YEAR) != rightNow.get(Calendar.YEAR)) {
-			sb.append(format(Integer.toString(modificationTime.get(Calendar.YEAR)), 5));
-		} else {
-			// Hour of modification
-			sb.append(format(MODIFICATION_TIME_FORMAT.format(modificationTime.getTime()), 5));
+			return outputClosed ? 2 : status;
 		}
 
-		return sb.toString();
-	}
-
-	// Gets the file size
-	private String getSize(long size) {
-		var ret = Long.toString(size);
-		if (humanReadable) {
-			ret = HumanReadableFormat.format(size);
+		// Starts watching the directories among the arguments (--watch)
+		private DirectoryWatch startWatch(List<Path> paths, ListDirectoryFilter filter) throws IOException {
+			var ret = new DirectoryWatch(paths.getFirst(), loader, options.recursive(), filter::accept);
+			try {
+				for (var path: paths) {
+					if (Files.isDirectory(path)) ret.register(path);
+				}
+			} catch (IOException | RuntimeException e) {
+				ret.close();
+				throw e;
+			}
+			return ret;
 		}
-		return ret;
-	}
 
-	// Inner class to store the results
-	private class FileResult {
-		// File or directory
-		private File f = null;
-		@Getter
-        private List<FileResult> children = null;
-		// POSIX attributes
-		private PosixFileAttributes posixAttrs = null;
-		// Basic attributes
-		private BasicFileAttributes basicAttrs = null;
-		// Hard links
-		private Long hardLinks = null;
-		// File owner attributes
-		private FileOwnerAttributeView fileOwnerAttrs = null;
-
-		// Builds a file result on a File
-		public FileResult(File f) throws IOException {
-			this(f, false);
+		// Prints the changes of the watched directories until the output is closed
+		//	or the thread interrupted; entries are named after the argument, or
+		//	after the current directory if there are several
+		private void watch(DirectoryWatch watcher, List<Path> paths, Path cwd, ListDirectoryFilter filter)
+				throws IOException {
+			var root = paths.size() == 1 ? paths.getFirst() : cwd;
+			var section = new Section(root, false, cwd, filter, out, err);
+			try {
+				while (!out.checkError()) {
+					if (watcher.poll(WATCH_POLL_MILLIS, TimeUnit.MILLISECONDS, section::printChange)) {
+						out.flush();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 		}
 
-		// Builds a file result on a File
-		public FileResult(File f, boolean recursive) throws IOException {
-			this.f = f;
-			if (recursive && this.f.isDirectory()) {
-				this.children = new LinkedList<>();
-				for (File child: this.f.listFiles(new ListDirectoryFilter())) {
-					this.children.add(new FileResult(child, recursive));
+		// Lists every argument at the same time, each on its own virtual thread.
+		//	The first one writes straight to the output; the others are buffered,
+		//	and emitted in argument order as soon as the ones before are done
+		private int listConcurrently(List<Path> paths, Path cwd, ListDirectoryFilter filter) throws Exception {
+			var sections = new ArrayList<Section>();
+			var buffers = new ArrayList<ByteArrayOutputStream[]>();
+			for (var path: paths) {
+				if (sections.isEmpty()) {
+					sections.add(new Section(path, true, cwd, filter, out, err));
+					buffers.add(null);
+				} else {
+					var outBytes = new ByteArrayOutputStream();
+					var errBytes = new ByteArrayOutputStream();
+					sections.add(new Section(path, true, cwd, filter,
+						new PrintStream(outBytes, false, out.charset()),
+						new PrintStream(errBytes, false, err.charset())));
+					buffers.add(new ByteArrayOutputStream[] {outBytes, errBytes});
+				}
+			}
+			int status = 0;
+			try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				var results = new ArrayList<Future<Integer>>();
+				for (var section: sections) {
+					results.add(executor.submit(section));
+				}
+				for (int i = 0; i < sections.size() && !stopped; i++) {
+					try {
+						status = Math.max(status, results.get(i).get());
+					} catch (ExecutionException e) {
+						throw e.getCause() instanceof Exception cause ? cause : e;
+					}
+					if (buffers.get(i) != null) {
+						buffers.get(i)[0].writeTo(out);
+						buffers.get(i)[1].writeTo(err);
+						if (out.checkError()) {
+							outputClosed = true;
+							stopped = true;
+						}
+					}
+				}
+				if (stopped) {
+					// Nobody is going to read the rest
+					executor.shutdownNow();
 				}
 			}
+			return status;
 		}
+		// Listing of a single file argument, with its own output and state, so
+		//	that several of them can run at the same time
+		private class Section implements Callable<Integer> {
+
+			//---------------------------------------------------------
+			// Section properties
+
+			// File argument
+			private final Path path;
+			// Are there several arguments?
+			private final boolean manyFiles;
+			// Working directory
+			private final Path currentPath;
+			// Name filter
+			private final ListDirectoryFilter filter;
+			// Listing output
+			private final PrintStream out;
+			// Error output
+			private final PrintStream err;
+			// Is the header of the argument printed?  Once, before its first entry
+			private boolean headerPrinted = false;
+			// Reads the directories and decides which ones are entered; rebuilt
+			//	once the prefetcher is started
+			private DirectoryWalker walker;
+			// Entries of the directories being listed, by depth; reused from one
+			//	directory to the next, so memory depends on the largest directory and
+			//	not on the size of the tree
+			private final List<EntryBuffer> buffers = new ArrayList<>();
+			// Directories being listed, from the argument down to the current one
+			private final DirectoryTracker directories;
+			// Device of the argument, -1 if unknown or not needed
+			private long device = -1;
+			// Reads attributes ahead, with --prefetch
+			private AttributePrefetcher prefetcher = null;
+			// Line being printed
+			private final LineBuffer line = new LineBuffer(256);
+			// Renders the columns of the long format (-l)
+			private final LongFormat longFormat;
+			// Widths of the long format columns, by depth, as the entry buffers
+			private final List<int[]> widths = new ArrayList<>();
+			// Lines written since the output was last checked
+			private int unchecked = 0;
+			// Exit status
+			private int status = 0;
+
+			//---------------------------------------------------------
+			// Section methods
+
+			// Builds the section of an argument
+			public Section(Path path, boolean manyFiles, Path currentPath, ListDirectoryFilter filter,
+				PrintStream out, PrintStream err) {
+				this.path = path;
+				this.manyFiles = manyFiles;
+				this.currentPath = currentPath;
+				this.filter = filter;
+				this.out = out;
+				this.err = err;
+				this.longFormat = options.longOutputFormat()
+					? new LongFormat(options.humanReadable(), out.charset()) : null;
+				this.directories = new DirectoryTracker(true, options.uniqueDirectories() ? visited : null);
+				this.walker = walker();
+			}
+
+			// Walker over the directories of the argument, reading names through
+			//	the filter until the listing stops
+			private DirectoryWalker walker() {
+				DirectoryWalker.NameFilter names = (name, offset, length) -> {
+					checkStopped();
+					return filter.accept(name, offset, length);
+				};
+				return new DirectoryWalker(names, loader, options.followLinks(), directories,
+					(directory, attributes) -> isEnterable(directory, attributes.device()), prefetcher);
+			}
 
-		// Gathers the posix attributes for the long output format
-		public PosixFileAttributes getPosixAttrs() {
-			if (posixAttrs == null) {
+			// Lists the argument, reporting its errors
+			@Override
+			public Integer call() {
+				// Prefetching only pays off if every entry is read anyway
+				if (options.prefetch() > 1 && statEntries) {
+					prefetcher = new AttributePrefetcher(loader, options.prefetch());
+					walker = walker();
+				}
 				try {
-					posixAttrs = Files.getFileAttributeView(f.toPath(), PosixFileAttributeView.class)
-						.readAttributes();
-				} catch(Exception ioe) {
-					// Just assume that the current file store does not support
-					//	POSIX attributes
-					posixAttrs = null;
+					// Render the result presentation, combining the appropriated output options
+					listPath();
+				} catch(ListingStoppedException e) {
+					// Output closed, or enough entries
+				} catch(AccessDeniedException e) {
+					// Cannot enter here...
+					err.println(e.getMessage());
+				} catch(IOException e) {
+					err.println("ls: " + path + ": " + e.getMessage());
+					status = 2;
+				} finally {
+					if (prefetcher != null) prefetcher.close();
+				}
+				if (out.checkError()) {
+					outputClosed = true;
+					stopped = true;
 				}
+				return status;
 			}
-			return posixAttrs;
-		}
 
-		// Gathers the file owner permissions
-		public FileOwnerAttributeView getFileOwnerAttributeView() {
-			if (fileOwnerAttrs == null) {
-				fileOwnerAttrs = Files.getFileAttributeView(f.toPath(), FileOwnerAttributeView.class);
+			// Stops reading if the listing has to stop
+			private void checkStopped() throws ListingStoppedException {
+				if (stopped) {
+					throw new ListingStoppedException();
+				}
 			}
-			return fileOwnerAttrs;
-		}
 
-		// Gathers the basic attributes for the long output format
-		public BasicFileAttributes getBasicAttrs() {
-			if (basicAttrs == null) {
+			// Counts a listed entry, and stops the listing once there are enough,
+			//	or the output is closed (checked now and then, as it flushes)
+			private void entryListed() throws ListingStoppedException {
+				if (options.isLimited() && --remainingEntries == 0) {
+					stopped = true;
+				}
+				if (++unchecked == OUTPUT_CHECK_INTERVAL) {
+					unchecked = 0;
+					if (out.checkError()) {
+						outputClosed = true;
+						stopped = true;
+					}
+				}
+				checkStopped();
+			}
+
+			// Entry buffer for a depth of the listing, emptied
+			private EntryBuffer buffer(int depth) {
+				if (depth == buffers.size()) {
+					buffers.add(new EntryBuffer());
+					widths.add(new int[LongFormat.COLUMNS]);
+				}
+				var entries = buffers.get(depth);
+				entries.clear();
+				return entries;
+			}
+
+			// Lists the argument: the contents of a directory, or the file itself
+			private void listPath() throws IOException {
+				BasicFileAttributes attrs;
 				try {
-					basicAttrs = Files.getFileAttributeView(f.toPath(), BasicFileAttributeView.class)
-						.readAttributes();
-				} catch(IOException ioe) {
-					ioe.printStackTrace();
+					attrs = Files.readAttributes(path, BasicFileAttributes.class);
+				} catch (NoSuchFileException e) {
+					return;
+				}
+				var entries = buffer(0);
+				if (!attrs.isDirectory()) {
+					entries.add(path.getFileName().toString(), EntryType.of(attrs));
+					var batch = new DirectoryBatch(path.getParent(), 0, entries);
+					measureColumns(batch);
+					printEntry(manyFiles, batch, 0);
+					return;
+				}
+				// "." and ".." are listed, but never entered
+				if (options.all()) {
+					entries.add(".", EntryType.DIRECTORY);
+				}
+				if (options.all() && path.getParent() != null) {
+					entries.add("..", EntryType.DIRECTORY);
+				}
+				int dots = entries.size();
+				if (plan.attributes().contains(DEVICE)) {
+					device = deviceOf(path);
+				}
+				if (!options.recursive()) {
+					listEntries(walker.read(path, 0, entries), dots);
+				} else if (entered(path, walker.enter(path, attrs.fileKey()))) {
+					listEntries(walker.read(path, 0, entries), dots);
+					walker.leave();
+				} else {
+					listEntries(new DirectoryBatch(path, 0, entries), dots);
 				}
 			}
-			return basicAttrs;
-		}
 
-		// Gathers the number of hard links for the long output format
-		public Long getHardLinks() {
-			if (hardLinks == null) {
+			// Prints the entries of a directory, read into the buffer of its depth.  If
+			//	recursive, subdirectories are replaced by their contents, read once the
+			//	reader is done with this one.  The first skip entries are never entered
+			private void listEntries(DirectoryBatch batch, int skip) throws IOException {
+				var entries = batch.entries();
+				int depth = batch.depth();
+				var order = sortEntries(batch);
+				measureColumns(batch);
+				for (int i: order) {
+					if (prefetcher != null) {
+						prefetcher.await(entries, i);
+					}
+					if (options.recursive() && i >= skip) {
+						var outcome = walker.enter(batch, i, null);
+						if (outcome != null && entered(batch.path(i), outcome)) {
+							listEntries(walker.read(batch.path(i), depth + 1, buffer(depth + 1)), 0);
+							walker.leave();
+							continue;
+						}
+					}
+					printEntry(manyFiles || depth > 0, batch, i);
+				}
+			}
+
+			// Measures the long format columns over the entries of a directory,
+			//	which are read (or prefetched) before the first one is printed
+			private void measureColumns(DirectoryBatch batch) {
+				if (longFormat == null) return;
+				var entries = batch.entries();
+				var columns = widths.get(batch.depth());
+				LongFormat.reset(columns);
+				for (int i = 0; i < entries.size(); i++) {
+					try {
+						walker.ensureLoaded(batch, i);
+					} catch (IOException e) {
+						// Reported when printed
+						continue;
+					}
+					longFormat.measure(entries, i, columns);
+				}
+			}
+
+			// Order of the entries: as read, with directories first if asked
+			private int[] sortEntries(DirectoryBatch batch) {
+				if (!options.groupDirectoriesFirst()) {
+					return batch.entries().indices();
+				}
+				// Stable, so the directory order is kept within each group
+				return batch.entries().sort((a, b) ->
+					Boolean.compare(!walker.isDirectory(batch, a), !walker.isDirectory(batch, b)));
+			}
+
+			// Device of a path, -1 if its file system does not tell
+			private long deviceOf(Path path) throws IOException {
 				try {
-					hardLinks = Long.valueOf(
-						java.nio.file.Files.getAttribute(f.toPath(),
-							"unix:nlink").toString());
-				} catch(Exception e) {
-					hardLinks = 1l;
+					return (Long) Files.getAttribute(path, "unix:dev");
+				} catch (UnsupportedOperationException | IllegalArgumentException e) {
+					return -1;
+				}
+			}
+
+			// Can recursion enter a directory on a device?  Not on another file
+			//	system with -x, nor on another one of an excluded type; unknown
+			//	devices are entered
+			private boolean isEnterable(Path directory, long directoryDevice) {
+				if (directoryDevice < 0 || device < 0 || directoryDevice == device) {
+					return true;
+				}
+				if (options.oneFileSystem()) {
+					return false;
+				}
+				return options.excludedTypes().isEmpty() || enterableDevices.computeIfAbsent(directoryDevice,
+					d -> !options.excludedTypes().contains(fileSystemType(directory)));
+			}
+
+			// Was a directory entered, to list its contents?  Not if it is one of its
+			//	own ancestors (a loop) or, with --unique-directories, it was already
+			//	listed.  Only the ancestors are kept otherwise, so memory grows with
+			//	the depth of the tree and not with its size
+			private boolean entered(Path directory, DirectoryTracker.Outcome outcome) {
+				if (outcome == DirectoryTracker.Outcome.LOOP) {
+					err.println("ls: not listing already-listed directory: " + directory);
+					status = 2;
+				}
+				return outcome == DirectoryTracker.Outcome.ENTERED;
+			}
+
+			// Presentation of an entry relative to the argument (maybe nested)
+			private void printEntry(boolean nested, DirectoryBatch batch, int index) throws IOException {
+				// We write only once every directory header
+				if (nested
+					&& !headerPrinted
+					&& Files.isDirectory(currentPath)) {
+					out.println(getRelativePath(currentPath, path) + ":");
+					headerPrinted = true;
+				}
+				printFile(batch, index);
+				entryListed();
+			}
+
+			// Prints the information of a file
+			private void printFile(DirectoryBatch batch, int index) throws IOException {
+				line.clear();
+				appendFile(batch, index);
+				line.append((byte) '\n');
+				line.writeTo(out);
+			}
+
+			// Prints a change seen by --watch: its mark, then the entry as it is listed
+			private void printChange(DirectoryWatch.Change change, Path directory, String name,
+					FileAttributes attributes) throws IOException {
+				var child = directory.resolve(name);
+				var entries = buffer(0);
+				int index = entries.add(child.startsWith(path) ? path.relativize(child).toString() : child.toString(),
+					attributes == null ? EntryType.UNKNOWN : EntryType.of(attributes));
+				line.clear().append(CHANGE_MARKS[change.ordinal()]).append((byte) ' ');
+				if (attributes == null) {
+					// Gone: only its name is left
+					appendName(entries.nameBytes(), entries.nameOffset(index), entries.nameLength(index));
+				} else {
+					// Named relative to the argument, as listed
+					var batch = new DirectoryBatch(path, 0, entries);
+					entries.load(index, attributes);
+					measureColumns(batch);
+					appendFile(batch, index);
+				}
+				line.append((byte) '\n');
+				line.writeTo(out);
+			}
+
+			// Renders the information of a file; the long format columns are those
+			//	measured for its depth
+			private void appendFile(DirectoryBatch batch, int index) throws IOException {
+				var entries = batch.entries();
+				// Planned attributes only, with a single read at most
+				if (statEntries) {
+					walker.ensureLoaded(batch, index);
+				}
+				if (options.longOutputFormat()) {
+					int mode = entries.mode(index);
+					if (!entries.hasPermissions(index)) {
+						// Assume Windows: rwxrwxrwx for executables, rw-rw-rw- for the rest
+						mode |= isWindowsExecutable(entries, index)
+							? WINDOWS_EXECUTABLE_PERMISSIONS : WINDOWS_NONEXECUTABLE_PERMISSIONS;
+					}
+					longFormat.append(line, entries, index, mode, widths.get(batch.depth()));
+				}
+				// File name
+				appendFileName(batch, index);
+			}
+
+			// Renders the name of the file, straight from the entry buffer
+			private void appendFileName(DirectoryBatch batch, int index) {
+				// "." and ".." are already named after their role
+				var entries = batch.entries();
+				var names = entries.nameBytes();
+				int offset = entries.nameOffset(index);
+				int length = entries.nameLength(index);
+				// Should we color it?
+				if (!options.color()) {
+					appendName(names, offset, length);
+					return;
+				}
+				var directoryEntry = walker.isDirectory(batch, index);
+				var type = directoryEntry ? EntryType.DIRECTORY : entries.type(index);
+				int mode = 0;
+				if (entries.isLoaded(index)) {
+					// Links followed, if they are
+					var loadedType = EntryType.ofDType((entries.mode(index) & EntryBuffer.S_IFMT) >> 12);
+					if (loadedType != EntryType.UNKNOWN) type = loadedType;
+					if (entries.hasPermissions(index)) mode = entries.mode(index);
+					else if (isWindowsExecutable(entries, index)) mode = EXECUTE_BITS;
+				}
+				int style = colors.styleOf(type, mode, names, offset, length);
+				colors.start(line, style);
+				appendName(names, offset, length);
+				colors.end(line, style);
+				if (directoryEntry) {
+					line.append((byte) '/');
+				}
+			}
+
+			// Renders a name, escaped for the terminal if asked
+			private void appendName(byte[] names, int offset, int length) {
+				if (escapeNames) {
+					line.appendPrintable(names, offset, length, UTF8_NAMES);
+				} else {
+					line.append(names, offset, length);
 				}
 			}
-			return hardLinks;
 		}
+	}
 
-		/**
-		 * @return the f
-		 */
-		public File getFile() {
-			return f;
+	// Is the file executable, after its name?  Only for file systems without
+	//	permissions, that is, Windows
+	private static boolean isWindowsExecutable(EntryBuffer entries, int index) {
+		var names = entries.nameBytes();
+		int end = entries.nameOffset(index) + entries.nameLength(index);
+		for (var suffix: WINDOWS_EXECUTABLE_SUFFIXES) {
+			if (entries.nameLength(index) > suffix.length
+				&& Arrays.equals(names, end - suffix.length, end, suffix, 0, suffix.length)) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-    }
+	// Thrown to unwind a listing that has to stop; not an error
+	private static class ListingStoppedException extends IOException {
+	}
 
 	// Kind of filter closure implementation
 	private interface Filter {
-		boolean accept(File f) throws IOException ;
+		boolean accept(String name) throws IOException ;
 	}
 
 	// Simple filter chain implementation
@@ -657,24 +1145,30 @@ public class ListDirectoryCommand {
 			filters.add(f);
 		}
 
-		public boolean accept(File f) throws IOException  {
+		public boolean isEmpty() {
+			return filters.isEmpty();
+		}
+
+		public boolean accept(String name) throws IOException  {
 			boolean ret = true;
 			var it = filters.iterator();
 			while (ret && it.hasNext()) {
-				ret &= it.next().accept(f);
+				ret &= it.next().accept(name);
 			}
 			return ret;
 		}
 	}
 
-	// Implements a directory filter based on the options collected on
-	//	ListDirectoryCommand.this
-	private class ListDirectoryFilter implements FileFilter {
+	// Implements a directory filter based on the options of a listing
+	private static class ListDirectoryFilter {
 
 		//---------------------------------------------------------
 		// Filter properties
 
-		// Filter chain
+		// Hide names starting with a dot, or ending with ~; checked on the bytes
+		private final boolean hideDotFiles;
+		private final boolean hideBackups;
+		// Filter chain of the patterns, which need the characters
 		private final FilterChain chain;
 
 		//---------------------------------------------------------
@@ -682,43 +1176,56 @@ public class ListDirectoryCommand {
 
 		/**
 		 * Builds a filter based on the command line options.
+		 * @param options Options of the listing
 		 */
-		public ListDirectoryFilter() throws IOException {
+		public ListDirectoryFilter(Options options) throws IOException {
+			var all = options.all();
+			var almostAll = options.almostAll();
+			var hide = options.hide();
+			var ignore = options.ignore();
+			hideDotFiles = !all && !almostAll;
+			hideBackups = options.ignoreBackups();
 			// Build a filter chain
 			chain = new FilterChain();
 			// Fill in the filter chain
-			if (!all && !almostAll) {
-				chain.append(f -> !f.getName().startsWith("."));
-			}
-			if (ignoreBackups) {
-				chain.append(f -> !f.getName().endsWith("~"));
-			}
-
 			if (!all && !almostAll && hide != null && !hide.trim().isEmpty()) {
 				final var pattern = Pattern.compile(hide);
 				// Improvement: try to solve this without repeating any code
 				// Requirements for final pattern variable in order to use
 				//	it into an anonymous implementation of Filter makes it
 				//	hard
-				chain.append(f -> {
-                    Matcher m = pattern.matcher(f.getName());
+				chain.append(name -> {
+                    Matcher m = pattern.matcher(name);
                     return !m.find();
                 });
 			}
 			if (ignore != null && !ignore.trim().isEmpty()) {
 				final Pattern pattern = Pattern.compile(ignore);
-				chain.append(f -> {
-                    var m = pattern.matcher(f.getName());
+				chain.append(name -> {
+                    var m = pattern.matcher(name);
                     return !m.find();
                 });
 			}
 		}
 
-		@Override
-		public boolean accept(File file) {
+		public boolean accept(String name) {
+			if (hideDotFiles && name.startsWith(".")) return false;
+			if (hideBackups && name.endsWith("~")) return false;
+			return acceptPatterns(name);
+		}
+
+		// Same, on the bytes of the name; only decoded if there are patterns
+		public boolean accept(byte[] name, int offset, int length) {
+			if (hideDotFiles && length > 0 && name[offset] == '.') return false;
+			if (hideBackups && length > 0 && name[offset + length - 1] == '~') return false;
+			return chain.isEmpty() || acceptPatterns(new String(name, offset, length, Libc.FILE_NAME_CHARSET));
+		}
+
+		// Applies the patterns
+		private boolean acceptPatterns(String name) {
 			boolean ret = true;
 			try {
-				ret = chain.accept(file);
+				ret = chain.accept(name);
 			} catch(IOException ioe) {
 				ret = false;
 			}
@@ -0,0 +1,245 @@
+package unxutils.coreutils;
+
+import unxutils.format.LineBuffer;
+import unxutils.fs.EntryBuffer;
+
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Rows of ls -l, rendered straight into a LineBuffer: type and permissions,
+ * links, owner, group, size and modification time.  Permission strings come
+ * from a table of the 4096 combinations of the permission and special bits,
+ * numbers are written from digit tables, dates are computed from the epoch
+ * with the zone offset kept between transitions, and owner and group names
+ * are encoded once per id, so that rendering a row allocates nothing.<br>
+ * Column widths are measured over the entries of a directory before any is
+ * printed, as GNU ls does: numbers are right aligned, names left aligned.
+ */
+final class LongFormat {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** Link count column, in the widths */
+	static final int LINKS = 0;
+	/** Owner column */
+	static final int OWNER = 1;
+	/** Group column */
+	static final int GROUP = 2;
+	/** Size column */
+	static final int SIZE = 3;
+	/** Number of measured columns */
+	static final int COLUMNS = 4;
+
+	// Mode bits
+	private static final int S_ISUID = 04000;
+	private static final int S_ISVTX = 01000;
+	private static final int PERMISSION_BITS = 07777;
+	// Length of a permission string (rwxr-xr-x)
+	private static final int PERMISSION_LENGTH = 9;
+	// Permission strings, by permission and special bits
+	private static final byte[] PERMISSIONS = permissionTable();
+	// Type letters, by type bits (mode >> 12): fifo, character device,
+	//	directory, block device, regular file, link and socket
+	private static final byte[] TYPES = "-pc-d-b---l-s---".getBytes(US_ASCII);
+	// Month abbreviations, three bytes each
+	private static final byte[] MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec".getBytes(US_ASCII);
+	// Shown for unknown owners and groups
+	private static final byte[] UNKNOWN = {'?'};
+	// Days from 0000-03-01 to 1970-01-01, and per 400 years
+	private static final long EPOCH_DAYS = 719468;
+	private static final long ERA_DAYS = 146097;
+	private static final int DAY_SECONDS = 86400;
+
+	//-----------------------------------------------------------------
+	// Format properties
+
+	// Print sizes as 1,0K, 234,5M...?
+	private final boolean humanReadable;
+	// Charset of the owner and group names
+	private final Charset charset;
+	// Local time zone
+	private final ZoneRules zone = ZoneId.systemDefault().getRules();
+	// Its offset in seconds, valid from offsetStart to offsetEnd (epoch seconds)
+	private int offset;
+	private long offsetStart = Long.MAX_VALUE;
+	private long offsetEnd = Long.MIN_VALUE;
+	// Current year: other years are printed instead of the time
+	private final long currentYear;
+	// Encoded owner and group names, by id
+	private final NameCache owners = new NameCache();
+	private final NameCache groups = new NameCache();
+	// Measures human readable sizes
+	private final LineBuffer scratch = new LineBuffer(32);
+	// Fields of the last date: year, month (0 to 11) and day
+	private long year;
+	private int month;
+	private int day;
+
+	//-----------------------------------------------------------------
+	// Format methods
+
+	/**
+	 * Builds a long format.
+	 * @param humanReadable Print sizes as 1,0K, 234,5M...
+	 * @param charset Charset of the output
+	 */
+	LongFormat(boolean humanReadable, Charset charset) {
+		this.humanReadable = humanReadable;
+		this.charset = charset;
+		long now = System.currentTimeMillis() / 1000;
+		civilDate(Math.floorDiv(now + offsetSeconds(now), DAY_SECONDS));
+		currentYear = year;
+	}
+
+	// Permission strings of every combination of the 12 bits: rwx, with s/S for
+	//	setuid and setgid and t/T for sticky, upper case without execute bit
+	private static byte[] permissionTable() {
+		var ret = new byte[(PERMISSION_BITS + 1) * PERMISSION_LENGTH];
+		int at = 0;
+		for (int mode = 0; mode <= PERMISSION_BITS; mode++) {
+			for (int who = 0; who < 3; who++) {
+				int bits = mode >> (6 - who * 3);
+				boolean special = (mode & S_ISUID >> who) != 0;
+				boolean execute = (bits & 1) != 0;
+				byte letter = (byte) (who == 2 ? 't' : 's');
+				ret[at++] = (byte) ((bits & 4) != 0 ? 'r' : '-');
+				ret[at++] = (byte) ((bits & 2) != 0 ? 'w' : '-');
+				ret[at++] = special ? (execute ? letter : (byte) (letter - 'a' + 'A')) : (byte) (execute ? 'x' : '-');
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Widens the columns to fit an entry.
+	 * @param entries Entries, the entry loaded
+	 * @param index Entry index
+	 * @param widths Widths of the columns, by LINKS, OWNER, GROUP and SIZE
+	 */
+	void measure(EntryBuffer entries, int index, int[] widths) {
+		widths[LINKS] = Math.max(widths[LINKS], LineBuffer.decimalLength(entries.links(index)));
+		widths[OWNER] = Math.max(widths[OWNER], owners.get(entries.uid(index), entries, index, true).length);
+		widths[GROUP] = Math.max(widths[GROUP], groups.get(entries.gid(index), entries, index, false).length);
+		long size = entries.fileSize(index);
+		int sizeLength = humanReadable ? scratch.clear().appendHuman(size, 0).length() : LineBuffer.decimalLength(size);
+		widths[SIZE] = Math.max(widths[SIZE], sizeLength);
+	}
+
+	/**
+	 * Empties the widths, before measuring the entries of a directory.
+	 * @param widths Widths of the columns
+	 */
+	static void reset(int[] widths) {
+		Arrays.fill(widths, 0);
+	}
+
+	/**
+	 * Appends the columns of an entry before its name, the separator included.
+	 * @param line Output
+	 * @param entries Entries, the entry loaded
+	 * @param index Entry index
+	 * @param mode Its mode: type, permission and special bits
+	 * @param widths Widths of the columns, as measured
+	 */
+	void append(LineBuffer line, EntryBuffer entries, int index, int mode, int[] widths) {
+		line.append(TYPES[(mode & EntryBuffer.S_IFMT) >> 12]);
+		line.append(PERMISSIONS, (mode & PERMISSION_BITS) * PERMISSION_LENGTH, PERMISSION_LENGTH);
+		line.append((byte) ' ').appendLong(entries.links(index), widths[LINKS]);
+		var owner = owners.get(entries.uid(index), entries, index, true);
+		line.append((byte) ' ').append(owner).repeat((byte) ' ', widths[OWNER] - owner.length);
+		var group = groups.get(entries.gid(index), entries, index, false);
+		line.append((byte) ' ').append(group).repeat((byte) ' ', widths[GROUP] - group.length);
+		line.append((byte) ' ');
+		if (humanReadable) {
+			line.appendHuman(entries.fileSize(index), widths[SIZE]);
+		} else {
+			line.appendLong(entries.fileSize(index), widths[SIZE]);
+		}
+		line.append((byte) ' ');
+		appendDate(line, entries.lastModified(index));
+		line.append((byte) ' ');
+	}
+
+	/**
+	 * Appends a modification time: month, day, and the time of day if it is
+	 * this year, or else the year (Jan  5 12:30, Jan  5  2019).
+	 * @param line Output
+	 * @param millis Time, in milliseconds since the epoch
+	 */
+	void appendDate(LineBuffer line, long millis) {
+		long seconds = Math.floorDiv(millis, 1000);
+		long local = seconds + offsetSeconds(seconds);
+		civilDate(Math.floorDiv(local, DAY_SECONDS));
+		line.append(MONTHS, month * 3, 3).append((byte) ' ').appendLong(day, 2).append((byte) ' ');
+		if (year != currentYear) {
+			line.appendLong(year, 5);
+		} else {
+			int secondOfDay = (int) Math.floorMod(local, DAY_SECONDS);
+			line.appendTwoDigits(secondOfDay / 3600).append((byte) ':').appendTwoDigits(secondOfDay / 60 % 60);
+		}
+	}
+
+	// Offset of the local zone at a time; looked up again only past a transition
+	private int offsetSeconds(long epochSecond) {
+		if (epochSecond < offsetStart || epochSecond >= offsetEnd) {
+			var instant = Instant.ofEpochSecond(epochSecond);
+			offset = zone.getOffset(instant).getTotalSeconds();
+			var previous = zone.previousTransition(instant.plusSeconds(1));
+			var next = zone.nextTransition(instant);
+			offsetStart = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+			offsetEnd = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+		}
+		return offset;
+	}
+
+	// Year, month and day of a number of days since the epoch, in the proleptic
+	//	Gregorian calendar (days from civil, by Howard Hinnant)
+	private void civilDate(long epochDay) {
+		long days = epochDay + EPOCH_DAYS;
+		long era = Math.floorDiv(days, ERA_DAYS);
+		long dayOfEra = days - era * ERA_DAYS;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		// Months from March
+		int shiftedMonth = (int) ((5 * dayOfYear + 2) / 153);
+		day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+		month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+		year = yearOfEra + era * 400 + (month < 2 ? 1 : 0);
+	}
+
+	// Owner or group names, encoded once per id.  Made up ids (negative) are
+	//	only valid within their buffer, so they are encoded every time
+	private final class NameCache {
+		// Ids and names, in lookup order
+		private int[] ids = new int[8];
+		private byte[][] names = new byte[8][];
+		private int size = 0;
+
+		// Encoded name of an id
+		byte[] get(int id, EntryBuffer entries, int index, boolean owner) {
+			if (id >= 0) {
+				for (int i = 0; i < size; i++) {
+					if (ids[i] == id) return names[i];
+				}
+			}
+			var name = owner ? entries.owner(index) : entries.group(index);
+			var ret = name == null ? UNKNOWN : name.getBytes(charset);
+			if (id >= 0) {
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, size * 2);
+					names = Arrays.copyOf(names, size * 2);
+				}
+				ids[size] = id;
+				names[size++] = ret;
+			}
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package unxutils.coreutils;
+
+import cli.ANSIEscapeCode;
+import unxutils.format.LineBuffer;
+import unxutils.fs.EntryType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Colors of ls, parsed once per run from LS_COLORS: a style per file type and
+ * per name suffix ("*.tar=01;31"), with their escape sequences already encoded.
+ * Suffixes are kept in a trie of reversed names, so that looking a name up
+ * walks its last bytes without allocating; the longest suffix wins.<br>
+ * Without LS_COLORS, directories and executables are painted as they always
+ * were.  Special permission styles (su, sg, tw, ow, st) need the full mode,
+ * only read for long listings.
+ */
+final class LsColors {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Styles by type, in the order of their codes
+	static final int NORMAL = 0;
+	static final int FILE = 1;
+	static final int DIRECTORY = 2;
+	static final int LINK = 3;
+	static final int FIFO = 4;
+	static final int SOCKET = 5;
+	static final int BLOCK_DEVICE = 6;
+	static final int CHARACTER_DEVICE = 7;
+	static final int EXECUTABLE = 8;
+	static final int SETUID = 9;
+	static final int SETGID = 10;
+	static final int STICKY_OTHER_WRITABLE = 11;
+	static final int OTHER_WRITABLE = 12;
+	static final int STICKY = 13;
+	/** No style: the name is written as it is */
+	static final int NONE = -1;
+
+	// LS_COLORS codes of the type styles
+	private static final String[] CODES =
+		{"no", "fi", "di", "ln", "pi", "so", "bd", "cd", "ex", "su", "sg", "tw", "ow", "st"};
+	// Mode bits
+	private static final int S_ISUID = 04000;
+	private static final int S_ISGID = 02000;
+	private static final int S_ISVTX = 01000;
+	private static final int S_IWOTH = 02;
+	private static final int EXECUTE_BITS = 0111;
+	// Trie root
+	private static final int ROOT = 0;
+
+	//-----------------------------------------------------------------
+	// Scheme properties
+
+	// Sequences before and after the name, by style; null if not colored
+	private byte[][] prefixes = new byte[CODES.length][];
+	private byte[][] suffixes = new byte[CODES.length][];
+	// Number of styles, the type ones first
+	private int styles = CODES.length;
+	// Suffix trie: label of every node, its first child, its next sibling and
+	//	the style of the suffix ending there (NONE if none)
+	private byte[] labels = new byte[16];
+	private int[] children = new int[16];
+	private int[] siblings = new int[16];
+	private int[] suffixStyles = new int[16];
+	private int nodes = 1;
+
+	//-----------------------------------------------------------------
+	// Scheme methods
+
+	// Empty scheme
+	private LsColors() {
+		children[ROOT] = -1;
+		siblings[ROOT] = -1;
+		suffixStyles[ROOT] = NONE;
+	}
+
+	/**
+	 * @return The scheme in LS_COLORS, or the default one
+	 */
+	static LsColors fromEnvironment() {
+		var spec = System.getenv("LS_COLORS");
+		return spec == null || spec.isEmpty() ? defaults() : parse(spec);
+	}
+
+	/**
+	 * @return The scheme used without LS_COLORS: directories and executables
+	 */
+	static LsColors defaults() {
+		var ret = new LsColors();
+		ret.paint(DIRECTORY, ANSIEscapeCode.BRIGHT_BLUE, "01;34");
+		ret.paint(EXECUTABLE, ANSIEscapeCode.BRIGHT_GREEN, "01;32");
+		return ret;
+	}
+
+	/**
+	 * Parses a color specification, in the LS_COLORS format.  Unknown codes
+	 * are ignored.
+	 * @param spec Specification, e.g. "di=01;34:ln=01;36:*.tar=01;31"
+	 * @return The scheme
+	 */
+	static LsColors parse(String spec) {
+		var ret = new LsColors();
+		// Escape sequences around the codes
+		byte[] left = {0x1b, '['};
+		byte[] right = {'m'};
+		byte[] reset = {'0'};
+		byte[] end = null;
+		var codes = new byte[CODES.length][];
+		var patterns = new ArrayList<byte[][]>();
+		for (var item: spec.split(":")) {
+			int equals = item.indexOf('=');
+			if (equals < 1) continue;
+			var key = item.substring(0, equals);
+			var value = unescape(item.substring(equals + 1));
+			if (key.startsWith("*")) {
+				patterns.add(new byte[][] {key.substring(1).getBytes(StandardCharsets.UTF_8), value});
+				continue;
+			}
+			switch (key) {
+				case "lc" -> left = value;
+				case "rc" -> right = value;
+				case "rs" -> reset = value;
+				case "ec" -> end = value;
+				default -> {
+					int style = Arrays.asList(CODES).indexOf(key);
+					if (style >= 0) codes[style] = value;
+				}
+			}
+		}
+		var after = end != null ? end : concat(left, reset, right);
+		for (int style = 0; style < CODES.length; style++) {
+			if (codes[style] != null && codes[style].length > 0) {
+				ret.prefixes[style] = concat(left, codes[style], right);
+				ret.suffixes[style] = after;
+			}
+		}
+		for (var suffix: patterns) {
+			if (suffix[1].length == 0) continue;
+			ret.addSuffix(suffix[0], concat(left, suffix[1], right), after);
+		}
+		return ret;
+	}
+
+	// Sets a type style from an ANSIEscapeCode, or from a code if its sequences
+	//	cannot be told apart
+	private void paint(int style, ANSIEscapeCode code, String fallback) {
+		var painted = ANSIEscapeCode.paint("\0", code);
+		int at = painted.indexOf('\0');
+		if (at >= 0 && painted.length() > 1 && painted.indexOf('\0', at + 1) < 0) {
+			prefixes[style] = painted.substring(0, at).getBytes(StandardCharsets.UTF_8);
+			suffixes[style] = painted.substring(at + 1).getBytes(StandardCharsets.UTF_8);
+		} else {
+			prefixes[style] = concat(new byte[] {0x1b, '['}, fallback.getBytes(StandardCharsets.US_ASCII), new byte[] {'m'});
+			suffixes[style] = new byte[] {0x1b, '[', '0', 'm'};
+		}
+	}
+
+	// Adds a suffix style to the trie, last bytes first
+	private void addSuffix(byte[] suffix, byte[] prefix, byte[] after) {
+		int node = ROOT;
+		for (int i = suffix.length - 1; i >= 0; i--) {
+			int child = child(node, suffix[i]);
+			if (child < 0) {
+				child = newNode(suffix[i]);
+				siblings[child] = children[node];
+				children[node] = child;
+			}
+			node = child;
+		}
+		if (styles == prefixes.length) {
+			prefixes = Arrays.copyOf(prefixes, styles * 2);
+			suffixes = Arrays.copyOf(suffixes, styles * 2);
+		}
+		prefixes[styles] = prefix;
+		suffixes[styles] = after;
+		suffixStyles[node] = styles++;
+	}
+
+	// Child of a node with a label, -1 if none
+	private int child(int node, byte label) {
+		for (int child = children[node]; child >= 0; child = siblings[child]) {
+			if (labels[child] == label) return child;
+		}
+		return -1;
+	}
+
+	// New trie node
+	private int newNode(byte label) {
+		if (nodes == labels.length) {
+			int capacity = nodes * 2;
+			labels = Arrays.copyOf(labels, capacity);
+			children = Arrays.copyOf(children, capacity);
+			siblings = Arrays.copyOf(siblings, capacity);
+			suffixStyles = Arrays.copyOf(suffixStyles, capacity);
+		}
+		labels[nodes] = label;
+		children[nodes] = -1;
+		siblings[nodes] = -1;
+		suffixStyles[nodes] = NONE;
+		return nodes++;
+	}
+
+	// Unescapes a value: \e, \a, \n, \t, \\, octal \NNN and ^X
+	private static byte[] unescape(String value) {
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		var ret = new ByteArrayOutputStream(bytes.length);
+		for (int i = 0; i < bytes.length; i++) {
+			byte b = bytes[i];
+			if (b == '\\' && i + 1 < bytes.length) {
+				byte next = bytes[++i];
+				switch (next) {
+					case 'e', 'E' -> ret.write(0x1b);
+					case 'a' -> ret.write(0x07);
+					case 'n' -> ret.write('\n');
+					case 't' -> ret.write('\t');
+					case '_' -> ret.write(' ');
+					default -> {
+						if (next >= '0' && next <= '7') {
+							int n = next - '0';
+							for (int k = 0; k < 2 && i + 1 < bytes.length && bytes[i + 1] >= '0' && bytes[i + 1] <= '7'; k++) {
+								n = n * 8 + (bytes[++i] - '0');
+							}
+							ret.write(n);
+						} else {
+							ret.write(next);
+						}
+					}
+				}
+			} else if (b == '^' && i + 1 < bytes.length) {
+				byte next = bytes[++i];
+				ret.write(next == '?' ? 0x7f : next & 0x1f);
+			} else {
+				ret.write(b);
+			}
+		}
+		return ret.toByteArray();
+	}
+
+	// Concatenates byte arrays
+	private static byte[] concat(byte[]... parts) {
+		var ret = new ByteArrayOutputStream();
+		for (var part: parts) ret.writeBytes(part);
+		return ret.toByteArray();
+	}
+
+	/**
+	 * Picks the style of a name.
+	 * @param type Type of the file, links followed if they are
+	 * @param mode Its permission and special bits, 0 if unknown
+	 * @param name Array holding the name
+	 * @param offset Start of the name
+	 * @param length Length of the name
+	 * @return Its style, NONE if not colored
+	 */
+	int styleOf(EntryType type, int mode, byte[] name, int offset, int length) {
+		int style = switch (type) {
+			case DIRECTORY -> directoryStyle(mode);
+			case SYMBOLIC_LINK -> LINK;
+			case FIFO -> FIFO;
+			case SOCKET -> SOCKET;
+			case BLOCK_DEVICE -> BLOCK_DEVICE;
+			case CHARACTER_DEVICE -> CHARACTER_DEVICE;
+			default -> fileStyle(mode, name, offset, length);
+		};
+		return style != NONE && prefixes[style] != null ? style : NONE;
+	}
+
+	// Style of a directory, after its special bits
+	private int directoryStyle(int mode) {
+		boolean sticky = (mode & S_ISVTX) != 0;
+		boolean otherWritable = (mode & S_IWOTH) != 0;
+		if (sticky && otherWritable && prefixes[STICKY_OTHER_WRITABLE] != null) return STICKY_OTHER_WRITABLE;
+		if (otherWritable && prefixes[OTHER_WRITABLE] != null) return OTHER_WRITABLE;
+		if (sticky && prefixes[STICKY] != null) return STICKY;
+		return DIRECTORY;
+	}
+
+	// Style of a regular file: special bits, then the suffix
+	private int fileStyle(int mode, byte[] name, int offset, int length) {
+		if ((mode & S_ISUID) != 0 && prefixes[SETUID] != null) return SETUID;
+		if ((mode & S_ISGID) != 0 && prefixes[SETGID] != null) return SETGID;
+		if ((mode & EXECUTE_BITS) != 0 && prefixes[EXECUTABLE] != null) return EXECUTABLE;
+		int style = suffixStyle(name, offset, length);
+		return style != NONE ? style : FILE;
+	}
+
+	// Style of the longest known suffix of a name, NONE if none
+	private int suffixStyle(byte[] name, int offset, int length) {
+		int ret = NONE;
+		int node = ROOT;
+		for (int i = offset + length - 1; i >= offset; i--) {
+			node = child(node, name[i]);
+			if (node < 0) break;
+			if (suffixStyles[node] != NONE) ret = suffixStyles[node];
+		}
+		return ret;
+	}
+
+	/**
+	 * Appends a name with its style: two copies around the name.
+	 * @param line Output
+	 * @param style Style, or NONE
+	 * @param name Array holding the name
+	 * @param offset Start of the name
+	 * @param length Length of the name
+	 */
+	void append(LineBuffer line, int style, byte[] name, int offset, int length) {
+		start(line, style);
+		line.append(name, offset, length);
+		end(line, style);
+	}
+
+	/**
+	 * Appends the sequence that starts a style, for names written apart.
+	 * @param line Output
+	 * @param style Style, or NONE
+	 */
+	void start(LineBuffer line, int style) {
+		if (style != NONE) line.append(prefixes[style]);
+	}
+
+	/**
+	 * Appends the sequence that ends a style.
+	 * @param line Output
+	 * @param style Style, or NONE
+	 */
+	void end(LineBuffer line, int style) {
+		if (style != NONE) line.append(suffixes[style]);
+	}
+}
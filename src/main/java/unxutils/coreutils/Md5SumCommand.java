@@ -0,0 +1,69 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+Print or check MD5 (128-bit) checksums.
+
+With no FILE, or when FILE is -, read standard input.
+
+-b
+--binary
+read in binary mode
+
+-c
+--check
+read MD5 sums from the FILEs and check them
+
+--parallel=N
+hash, or check, up to N files at the same time; one per processor by default
+
+--tag
+create a BSD-style checksum
+
+-t
+--text
+read in text mode (default)
+
+The following five options are useful only when verifying checksums:
+
+--ignore-missing
+don't fail or report status for missing files
+
+--quiet
+don't print OK for each successfully verified file
+
+--status
+don't output anything, status code shows success
+
+--strict
+exit non-zero for improperly formatted checksum lines
+
+-w
+--warn
+warn about improperly formatted checksum lines
+
+The sums are computed as described in RFC 1321.  When checking, the input
+should be a former output of this program.  The default mode is to print a
+line with: checksum, a space, a character indicating input mode ('*' for
+binary, ' ' for text or where binary is insignificant), and name for each
+FILE.
+
+Files are hashed at the same time, and large files are mapped into memory;
+lists given to -c are checked as they are read.
+}
+</pre>
+*/
+@Command(command="md5sum", description="Print or check MD5 (128-bit) checksums.")
+public class Md5SumCommand extends ChecksumCommand {
+
+	/**
+	 * Builds an md5sum command.
+	 */
+	public Md5SumCommand() {
+		super("md5sum", "MD5", "MD5");
+	}
+}
@@ -0,0 +1,560 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.Boolean.FALSE;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+Write sorted concatenation of all FILE(s) to standard output.
+
+With no FILE, or when FILE is -, read standard input.
+
+-b
+--ignore-leading-blanks
+ignore leading blanks
+
+-k
+--key=KEYDEF
+sort via a key; KEYDEF gives location and type
+
+-n
+--numeric-sort
+compare according to string numerical value
+
+--parallel=N
+change the number of sorts run concurrently to N
+
+-r
+--reverse
+reverse the result of comparisons
+
+-S
+--buffer-size=SIZE
+use SIZE for main memory buffer
+
+-t
+--field-separator=SEP
+use SEP instead of non-blank to blank transition
+
+-T
+--temporary-directory=DIR
+use DIR for temporaries, not $TMPDIR or /tmp
+
+-u
+--unique
+output only the first of an equal run
+
+KEYDEF is F[.C][OPTS][,F[.C][OPTS]] for start and stop position, where F is a
+field number and C a character position in the field; both are origin 1, and
+the stop position defaults to the line's end.  If neither -t nor -b is in
+effect, characters in a field are counted from the beginning of the preceding
+whitespace.  OPTS is one or more single-letter ordering options [bnr], which
+override global ordering options for that key.
+
+SIZE may be followed by the following multiplicative suffixes: % of the Java
+heap, b 1, K 1024 (default), and so on for M, G, T, P, E.
+
+Lines are compared as bytes, as in the C locale.  Input is sorted in memory
+by N threads (by default, one per processor); input larger than SIZE (by
+default, half of the Java heap) is sorted in parts, written to temporary
+files and merged.
+}
+</pre>
+*/
+@Command(command="sort", description="Write sorted concatenation of all FILE(s) to standard output.")
+public class SortCommand {
+
+	//-----------------------------------------------------------------
+	// Command constants
+
+	// Size of the read and write buffers
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	// Chunk size of the arena: a fraction of the memory allowed, within bounds
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+	private static final int CHUNKS_PER_BUFFER = 8;
+	// Most runs merged at once: more are merged by groups first
+	private static final int MERGE_FANIN = 64;
+	// Read buffers of the runs being merged, within the memory allowed
+	private static final int MIN_RUN_BUFFER = 64 * 1024;
+	// Least memory allowed, whatever -S says
+	private static final long MIN_MEMORY = 128 * 1024;
+	// -S suffixes, powers of 1024 from K
+	private static final String SIZE_SUFFIXES = "KMGTPE";
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="b", longName="ignore-leading-blanks", description="ignore leading blanks")
+	private Boolean ignoreLeadingBlanks = FALSE;
+
+	// The last -k; every one is kept in keys
+	@Parameter(name="k", longName="key", description="sort via a key; KEYDEF gives location and type")
+	private String key = null;
+	private final List<String> keys = new ArrayList<>();
+
+	@Setter
+	@Parameter(name="n", longName="numeric-sort", description="compare according to string numerical value")
+	private Boolean numericSort = FALSE;
+
+	@Setter
+	@Parameter(longName="parallel", description="change the number of sorts run concurrently to N")
+	private String parallel = null;
+
+	@Setter
+	@Parameter(name="r", longName="reverse", description="reverse the result of comparisons")
+	private Boolean reverse = FALSE;
+
+	@Setter
+	@Parameter(name="S", longName="buffer-size", description="use SIZE for main memory buffer")
+	private String bufferSize = null;
+
+	@Setter
+	@Parameter(name="t", longName="field-separator",
+		description="use SEP instead of non-blank to blank transition")
+	private String fieldSeparator = null;
+
+	@Setter
+	@Parameter(name="T", longName="temporary-directory",
+		description="use DIR for temporaries, not $TMPDIR or /tmp")
+	private String temporaryDirectory = null;
+
+	@Setter
+	@Parameter(name="u", longName="unique", description="output only the first of an equal run")
+	private Boolean unique = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a sort command.
+	 */
+	public SortCommand() {
+	}
+
+	/**
+	 * Adds a key (-k): keys are compared in the order given, every one
+	 * ordering the lines whose keys before it are equal.
+	 * @param key KEYDEF
+	 */
+	public void setKey(String key) {
+		this.key = key;
+		keys.add(key);
+	}
+
+	@Run
+	// Entry point for sort
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Sorts the files into the given streams.  The options are read once,
+	 * when the call starts, and nothing of a call is kept in the command.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 2 on errors
+	 * @throws Exception If the sort fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		Options options;
+		try {
+			options = options(cwd);
+		} catch (IllegalArgumentException e) {
+			err.println("sort: " + e.getMessage());
+			return 2;
+		}
+		try (var pool = new ForkJoinPool(options.parallelism())) {
+			return new Execution(options, cwd, pool, err).execute(out);
+		}
+	}
+
+	// The options as a sort sees them, from start to end
+	private Options options(Path cwd) {
+		int separator = SortKey.BLANK_SEPARATOR;
+		if (fieldSeparator != null) {
+			var bytes = fieldSeparator.equals("\\0") ? new byte[1] : fieldSeparator.getBytes();
+			if (bytes.length != 1) {
+				throw new IllegalArgumentException(bytes.length == 0 ? "empty tab"
+					: "multi-character tab '" + fieldSeparator + "'");
+			}
+			separator = bytes[0] & 0xff;
+		}
+		var sortKey = SortKey.ofKeys(keys, separator, numericSort, reverse, ignoreLeadingBlanks, unique);
+		int threads;
+		try {
+			threads = parallel == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallel);
+		} catch (NumberFormatException e) {
+			threads = 0;
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("invalid number of parallel threads '" + parallel + "'");
+		}
+		var directory = temporaryDirectory != null ? temporaryDirectory
+			: System.getenv("TMPDIR") != null ? System.getenv("TMPDIR")
+			: System.getProperty("java.io.tmpdir");
+		return new Options(sortKey, unique, memoryLimit(), threads, cwd.resolve(directory),
+			files == null ? List.of("-") : List.copyOf(files));
+	}
+
+	// Memory allowed by -S: at most three quarters of the heap, as the rest
+	//	of the program needs some too
+	private long memoryLimit() {
+		long heap = Runtime.getRuntime().maxMemory();
+		if (bufferSize == null) return heap / 2;
+		var size = bufferSize.trim();
+		var invalid = new IllegalArgumentException("invalid -S argument '" + bufferSize + "'");
+		boolean percent = false;
+		long multiplier = 1024;
+		if (!size.isEmpty() && !Character.isDigit(size.charAt(size.length() - 1))) {
+			char suffix = size.charAt(size.length() - 1);
+			size = size.substring(0, size.length() - 1);
+			if (suffix == '%') {
+				percent = true;
+			} else if (suffix == 'b') {
+				multiplier = 1;
+			} else {
+				int power = SIZE_SUFFIXES.indexOf(Character.toUpperCase(suffix));
+				if (power < 0) throw invalid;
+				multiplier = 1L << 10 * (power + 1);
+			}
+		}
+		long value;
+		try {
+			value = Long.parseLong(size);
+		} catch (NumberFormatException e) {
+			throw invalid;
+		}
+		if (value < 0 || percent && value > 100) throw invalid;
+		long bytes = percent ? heap / 100 * value
+			: value > Long.MAX_VALUE / multiplier ? Long.MAX_VALUE : value * multiplier;
+		return Math.clamp(bytes, MIN_MEMORY, heap / 4 * 3);
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		if (e instanceof NoSuchFileException) return "No such file or directory";
+		if (e instanceof AccessDeniedException) return "Permission denied";
+		return e.getMessage();
+	}
+
+	// Options of a sort, checked: the comparison of lines, the bytes of
+	//	memory allowed and the threads of the sort
+	private record Options(SortKey key, boolean unique, long memoryLimit, int parallelism, Path temporaryDirectory,
+			List<String> files) {}
+
+	// An error that stops the sort, worded as it is printed
+	private static class SortException extends IOException {
+		SortException(String message) {
+			super(message);
+		}
+	}
+
+	// State of a single sort.  Lines are read into the arena until it takes up
+	//	the memory allowed; it is then sorted and written to a temporary file,
+	//	a run, and emptied.  If everything fits, the arena is sorted straight
+	//	to the output; otherwise the runs are merged into it
+	private static final class Execution {
+
+		//---------------------------------------------------------
+		// Execution properties
+
+		// Options
+		private final Options options;
+		// Working directory
+		private final Path cwd;
+		// Threads of the sort
+		private final ForkJoinPool pool;
+		// Error output
+		private final PrintStream err;
+		// Lines read
+		private final LineArena arena;
+		// Sorted runs written so far
+		private final List<Path> runs = new ArrayList<>();
+		// Last line written, with -u
+		private byte[] last = new byte[256];
+		private int lastLength = -1;
+
+		//---------------------------------------------------------
+		// Execution methods
+
+		Execution(Options options, Path cwd, ForkJoinPool pool, PrintStream err) {
+			this.options = options;
+			this.cwd = cwd;
+			this.pool = pool;
+			this.err = err;
+			long chunk = options.memoryLimit() / CHUNKS_PER_BUFFER;
+			arena = new LineArena(Math.clamp(chunk, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE));
+		}
+
+		// Sorts the files into the output
+		int execute(PrintStream out) {
+			var target = new BufferedOutputStream(out, BUFFER_SIZE);
+			try {
+				var buffer = new byte[BUFFER_SIZE];
+				for (var name: options.files()) {
+					read(name, buffer);
+				}
+				if (runs.isEmpty()) {
+					write(arena.sort(options.key(), pool), target);
+				} else {
+					if (arena.size() > 0) spill();
+					merge(runs, target);
+				}
+				target.flush();
+			} catch (SortException e) {
+				err.println("sort: " + e.getMessage());
+				return 2;
+			} catch (IOException e) {
+				err.println("sort: " + reason(e));
+				return 2;
+			} finally {
+				for (var run: runs) {
+					try {
+						Files.deleteIfExists(run);
+					} catch (IOException e) {
+						// Left in the temporary directory
+					}
+				}
+			}
+			return out.checkError() ? 2 : 0;
+		}
+
+		// Reads a file, or standard input ("-"), into the arena; the end of the
+		//	file ends its last line
+		private void read(String name, byte[] buffer) throws IOException {
+			InputStream in;
+			if (name.equals("-")) {
+				in = System.in;
+			} else {
+				var path = cwd.resolve(name);
+				if (Files.isDirectory(path)) throw new SortException("read failed: " + name + ": Is a directory");
+				try {
+					in = Files.newInputStream(path);
+				} catch (IOException e) {
+					throw new SortException("cannot read: " + name + ": " + reason(e));
+				}
+			}
+			try {
+				boolean partial = false;
+				int count;
+				while ((count = in.read(buffer)) >= 0) {
+					int start = 0;
+					for (int i = 0; i < count; i++) {
+						if (buffer[i] != '\n') continue;
+						arena.append(buffer, start, i - start);
+						endLine();
+						start = i + 1;
+					}
+					arena.append(buffer, start, count - start);
+					partial = start < count;
+				}
+				if (partial) endLine();
+			} finally {
+				// Standard input outlives the command
+				if (in != System.in) in.close();
+			}
+		}
+
+		// Ends a line, and spills the arena if it is full
+		private void endLine() throws IOException {
+			arena.endLine();
+			if (arena.memory() >= options.memoryLimit()) spill();
+		}
+
+		// Sorts the arena into a new run, and empties it
+		private void spill() throws IOException {
+			var run = createRun();
+			runs.add(run);
+			try (var target = new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE)) {
+				write(arena.sort(options.key(), pool), target);
+			}
+			lastLength = -1;
+			arena.clear();
+		}
+
+		// Creates an empty run in the temporary directory
+		private Path createRun() throws IOException {
+			try {
+				return Files.createTempFile(options.temporaryDirectory(), "sort", ".run");
+			} catch (IOException e) {
+				throw new SortException("cannot create temporary file in '" + options.temporaryDirectory() + "': "
+					+ reason(e));
+			}
+		}
+
+		// Writes the lines of the arena in the given order
+		private void write(int[] order, OutputStream target) throws IOException {
+			for (int line: order) {
+				writeLine(arena.bytes(line), arena.offset(line), arena.length(line), target);
+			}
+		}
+
+		// Writes a line, unless it repeats the key of the last one with -u
+		private void writeLine(byte[] bytes, int offset, int length, OutputStream target) throws IOException {
+			if (options.unique()) {
+				if (lastLength >= 0 && options.key().compareKeys(last, 0, lastLength, bytes, offset, offset + length) == 0) {
+					return;
+				}
+				if (last.length < length) last = new byte[Math.max(length, last.length * 2)];
+				System.arraycopy(bytes, offset, last, 0, length);
+				lastLength = length;
+			}
+			target.write(bytes, offset, length);
+			target.write('\n');
+		}
+
+		// Merges runs into the output; groups of MERGE_FANIN runs are merged
+		//	into a run first if there are more, so that the open files and their
+		//	buffers stay bounded
+		private void merge(List<Path> runs, OutputStream target) throws IOException {
+			int bufferSize = Math.clamp(options.memoryLimit() / (MERGE_FANIN + 1), MIN_RUN_BUFFER, BUFFER_SIZE);
+			while (runs.size() > MERGE_FANIN) {
+				var merged = createRun();
+				// Registered before it is written, as spilled runs are, so that it is
+				//	deleted if the merge fails; right after its group for now
+				runs.add(MERGE_FANIN, merged);
+				var group = runs.subList(0, MERGE_FANIN);
+				try (var out = new BufferedOutputStream(Files.newOutputStream(merged), BUFFER_SIZE)) {
+					mergeRuns(group, bufferSize, out);
+				}
+				for (var run: group) Files.delete(run);
+				// In the place of the group, so that equal lines keep their order
+				group.clear();
+			}
+			mergeRuns(runs, bufferSize, target);
+		}
+
+		// Merges runs with a heap of their indexes, ordered by their current line
+		private void mergeRuns(List<Path> paths, int bufferSize, OutputStream target) throws IOException {
+			var readers = new RunReader[paths.size()];
+			try {
+				var heap = new int[readers.length];
+				int size = 0;
+				for (int i = 0; i < readers.length; i++) {
+					readers[i] = new RunReader(Files.newInputStream(paths.get(i)), bufferSize, options.key());
+					if (readers[i].next()) heap[size++] = i;
+				}
+				for (int i = size / 2 - 1; i >= 0; i--) siftDown(heap, size, i, readers);
+				lastLength = -1;
+				while (size > 0) {
+					var reader = readers[heap[0]];
+					writeLine(reader.buffer, reader.start, reader.end - reader.start, target);
+					if (!reader.next()) heap[0] = heap[--size];
+					siftDown(heap, size, 0, readers);
+				}
+				lastLength = -1;
+			} finally {
+				for (var reader: readers) {
+					if (reader != null) reader.close();
+				}
+			}
+		}
+
+		// Moves an entry of the heap down to its place
+		private void siftDown(int[] heap, int size, int index, RunReader[] readers) {
+			int entry = heap[index];
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) break;
+				if (child + 1 < size && isBefore(heap[child + 1], heap[child], readers)) child++;
+				if (!isBefore(heap[child], entry, readers)) break;
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = entry;
+		}
+
+		// Does the current line of a run come before that of another?  Runs
+		//	hold consecutive parts of the input, so the first run goes first on
+		//	equal lines
+		private boolean isBefore(int a, int b, RunReader[] readers) {
+			var x = readers[a];
+			var y = readers[b];
+			int ret = Long.compareUnsigned(x.prefix, y.prefix);
+			if (ret == 0) ret = options.key().compare(x.buffer, x.start, x.end, y.buffer, y.start, y.end);
+			return ret < 0 || ret == 0 && a < b;
+		}
+	}
+
+	// Reads the lines of a run, one at a time: the current one is a range of
+	//	the buffer, with the prefix of its key
+	private static final class RunReader implements Closeable {
+		private final InputStream in;
+		private final SortKey key;
+		private byte[] buffer;
+		// Current line, and the end of the bytes read
+		private int start = 0;
+		private int end = -1;
+		private int filled = 0;
+		private boolean eof = false;
+		private long prefix;
+
+		RunReader(InputStream in, int bufferSize, SortKey key) {
+			this.in = in;
+			this.key = key;
+			buffer = new byte[bufferSize];
+		}
+
+		// Goes to the next line; false if there are none left
+		boolean next() throws IOException {
+			start = end + 1;
+			int i = start;
+			while (true) {
+				while (i < filled && buffer[i] != '\n') i++;
+				if (i < filled) break;
+				if (eof) {
+					// Runs are written with a newline after every line
+					return false;
+				}
+				// The line goes on past the buffer: moved to its start, or into a
+				//	larger buffer if it is full
+				int length = filled - start;
+				if (start == 0 && filled == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				else System.arraycopy(buffer, start, buffer, 0, length);
+				i -= start;
+				start = 0;
+				filled = length;
+				int count = in.read(buffer, filled, buffer.length - filled);
+				if (count < 0) eof = true;
+				else filled += count;
+			}
+			end = i;
+			prefix = key.prefix(buffer, start, end);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package unxutils.coreutils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * How sort compares lines: a key (-k) and its ordering (-n, -r, -b), the
+ * keys after it that break its ties (more -k), the field separator (-t), and
+ * the comparison of whole lines as last resort when keys are equal.  Lines are byte ranges of any array, so that lines in
+ * memory and lines read back from the runs on disk compare alike; the line
+ * end is not part of them.<br>
+ * Keys also have a normalized prefix: eight bytes, compared as an unsigned
+ * long, ordered as the keys they come from (equal keys have equal prefixes,
+ * and a key before another never has a greater prefix).  Most comparisons
+ * are settled by the prefixes, without going back to the lines; those of
+ * the first key are enough, as the next ones only order equal keys.<br>
+ * Bytes are compared as unsigned, as GNU sort does in the C locale; numbers
+ * (-n) are an optional minus sign, digits and a fraction after a '.', after
+ * optional blanks; anything else compares as zero.
+ */
+final class SortKey {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Field separator of -t, when not given: fields start at blanks
+	static final int BLANK_SEPARATOR = -1;
+	// Most integer digits told apart by the numeric prefix
+	private static final int MAX_PREFIX_DIGITS = 127;
+
+	//-----------------------------------------------------------------
+	// Key properties
+
+	// First field (0 based) and character in it (0 based) of the key
+	private final int startField;
+	private final int startChar;
+	// Last field (0 based) and character in it (1 based; 0 is the end of the
+	//	field); -1 for the end of the line
+	private final int endField;
+	private final int endChar;
+	// Field separator, or BLANK_SEPARATOR
+	private final int separator;
+	// Ordering of the key; blanks are skipped at the start of the start field,
+	//	and of the end field when counting characters in it
+	private final boolean numeric;
+	private final boolean reverse;
+	private final boolean skipStartBlanks;
+	private final boolean skipEndBlanks;
+	// Are whole lines compared when keys are equal (not with -u), and reversed?
+	private final boolean lastResort;
+	private final boolean reverseLastResort;
+	// Is the key the whole line, as it is?
+	private final boolean wholeLine;
+	// Key comparing the lines whose keys are equal up to this one; null if none
+	private final SortKey next;
+
+	//-----------------------------------------------------------------
+	// Key methods
+
+	private SortKey(int startField, int startChar, int endField, int endChar, int separator, boolean numeric,
+			boolean reverse, boolean skipStartBlanks, boolean skipEndBlanks, boolean lastResort,
+			boolean reverseLastResort, SortKey next) {
+		this.startField = startField;
+		this.startChar = startChar;
+		this.endField = endField;
+		this.endChar = endChar;
+		this.separator = separator;
+		this.numeric = numeric;
+		this.reverse = reverse;
+		this.skipStartBlanks = skipStartBlanks;
+		this.skipEndBlanks = skipEndBlanks;
+		this.lastResort = lastResort;
+		this.reverseLastResort = reverseLastResort;
+		this.next = next;
+		wholeLine = startField == 0 && startChar == 0 && endField < 0 && !skipStartBlanks;
+	}
+
+	/**
+	 * Builds the comparison of the options of sort.
+	 * @param definition -k: POS1[,POS2], POS being F[.C][OPTS], OPTS among
+	 * b, n and r; null for the whole line
+	 * @param separator -t, or BLANK_SEPARATOR
+	 * @param numeric -n
+	 * @param reverse -r
+	 * @param skipBlanks -b
+	 * @param unique -u: lines with equal keys are equal, whatever the rest
+	 * @return The comparison
+	 * @throws IllegalArgumentException If the key definition is not valid
+	 */
+	static SortKey of(String definition, int separator, boolean numeric, boolean reverse, boolean skipBlanks,
+			boolean unique) {
+		return of(definition, separator, numeric, reverse, skipBlanks, unique, null);
+	}
+
+	/**
+	 * Builds the comparison of the options of sort, with several keys: every
+	 * key compares the lines whose keys before it are equal.
+	 * @param definitions Every -k, in order; none for the whole line
+	 * @param separator -t, or BLANK_SEPARATOR
+	 * @param numeric -n
+	 * @param reverse -r
+	 * @param skipBlanks -b
+	 * @param unique -u: lines with equal keys are equal, whatever the rest
+	 * @return The comparison
+	 * @throws IllegalArgumentException If a key definition is not valid
+	 */
+	static SortKey ofKeys(List<String> definitions, int separator, boolean numeric, boolean reverse,
+			boolean skipBlanks, boolean unique) {
+		if (definitions.isEmpty()) {
+			return of(null, separator, numeric, reverse, skipBlanks, unique, null);
+		}
+		SortKey ret = null;
+		for (var definition: definitions.reversed()) {
+			ret = of(definition, separator, numeric, reverse, skipBlanks, unique, ret);
+		}
+		return ret;
+	}
+
+	// Builds a key, followed by the given ones
+	private static SortKey of(String definition, int separator, boolean numeric, boolean reverse,
+			boolean skipBlanks, boolean unique, SortKey next) {
+		if (definition == null) {
+			return new SortKey(0, 0, -1, 0, separator, numeric, reverse, skipBlanks, skipBlanks, !unique, reverse,
+				next);
+		}
+		var parser = new DefinitionParser(definition);
+		int startField = parser.number("field number") - 1;
+		if (startField < 0) throw parser.invalid("field number is zero");
+		int startChar = 0;
+		if (parser.accept('.')) {
+			startChar = parser.number("character offset") - 1;
+			if (startChar < 0) throw parser.invalid("character offset is zero");
+		}
+		parser.orderings(false);
+		int endField = -1;
+		int endChar = 0;
+		if (parser.accept(',')) {
+			endField = parser.number("field number") - 1;
+			if (endField < 0) throw parser.invalid("field number is zero");
+			if (parser.accept('.')) endChar = parser.number("character offset");
+			parser.orderings(true);
+		}
+		if (!parser.atEnd()) throw parser.invalid("stray character in field spec");
+		// Orderings of the key replace the global ones
+		boolean own = parser.numeric || parser.reverse || parser.skipStartBlanks || parser.skipEndBlanks;
+		return new SortKey(startField, startChar, endField, endChar, separator,
+			own ? parser.numeric : numeric, own ? parser.reverse : reverse,
+			own ? parser.skipStartBlanks : skipBlanks, own ? parser.skipEndBlanks : skipBlanks, !unique, reverse,
+			next);
+	}
+
+	// Reads a key definition
+	private static final class DefinitionParser {
+		private final String definition;
+		private int position = 0;
+		private boolean numeric = false;
+		private boolean reverse = false;
+		private boolean skipStartBlanks = false;
+		private boolean skipEndBlanks = false;
+
+		DefinitionParser(String definition) {
+			this.definition = definition;
+		}
+
+		// Reads a number
+		int number(String what) {
+			int start = position;
+			long ret = 0;
+			while (position < definition.length() && Character.isDigit(definition.charAt(position))) {
+				ret = Math.min(Integer.MAX_VALUE, ret * 10 + definition.charAt(position++) - '0');
+			}
+			if (position == start) throw invalid("invalid " + what);
+			return (int) ret;
+		}
+
+		// Reads a character, if it is the next one
+		boolean accept(char c) {
+			if (position < definition.length() && definition.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		// Reads ordering options, of the start or the end position
+		void orderings(boolean end) {
+			while (true) {
+				if (accept('n')) numeric = true;
+				else if (accept('r')) reverse = true;
+				else if (!accept('b')) return;
+				else if (end) skipEndBlanks = true;
+				else skipStartBlanks = true;
+			}
+		}
+
+		boolean atEnd() {
+			return position == definition.length();
+		}
+
+		IllegalArgumentException invalid(String reason) {
+			return new IllegalArgumentException(reason + ": invalid field specification '" + definition + "'");
+		}
+	}
+
+	/**
+	 * Compares two lines: their keys, then the whole lines if keys are equal
+	 * and there is a last resort.
+	 * @return Negative, zero or positive, as the first line sorts before, with
+	 * or after the second one
+	 */
+	int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		int ret = compareKeys(a, aFrom, aTo, b, bFrom, bTo);
+		if (ret != 0 || !lastResort || wholeLine && !numeric && next == null) return ret;
+		ret = compareBytes(a, aFrom, aTo, b, bFrom, bTo);
+		return reverseLastResort ? -ret : ret;
+	}
+
+	/**
+	 * Compares the keys of two lines, and nothing else: -u keeps one line of
+	 * every key.
+	 * @return Negative, zero or positive, as the first key sorts before, with
+	 * or after the second one
+	 */
+	int compareKeys(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		int ret = 0;
+		for (var key = this; key != null && ret == 0; key = key.next) {
+			ret = key.compareKey(a, aFrom, aTo, b, bFrom, bTo);
+		}
+		return ret;
+	}
+
+	// Compares this key of two lines, without the next ones
+	private int compareKey(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		int aStart = aFrom;
+		int aEnd = aTo;
+		int bStart = bFrom;
+		int bEnd = bTo;
+		if (!wholeLine) {
+			aStart = keyStart(a, aFrom, aTo);
+			aEnd = Math.max(aStart, keyEnd(a, aFrom, aTo));
+			bStart = keyStart(b, bFrom, bTo);
+			bEnd = Math.max(bStart, keyEnd(b, bFrom, bTo));
+		}
+		int ret = numeric ? compareNumbers(a, aStart, aEnd, b, bStart, bEnd)
+			: compareBytes(a, aStart, aEnd, b, bStart, bEnd);
+		return reverse ? -ret : ret;
+	}
+
+	/**
+	 * @return The normalized prefix of the key of a line, compared as unsigned
+	 */
+	long prefix(byte[] line, int from, int to) {
+		int start = from;
+		int end = to;
+		if (!wholeLine) {
+			start = keyStart(line, from, to);
+			end = Math.max(start, keyEnd(line, from, to));
+		}
+		long ret = numeric ? numericPrefix(line, start, end) : bytePrefix(line, start, end);
+		return reverse ? ~ret : ret;
+	}
+
+	// Start of the key in a line
+	private int keyStart(byte[] line, int from, int to) {
+		int i = from;
+		for (int field = 0; field < startField && i < to; field++) {
+			i = skipField(line, i, to);
+			if (separator != BLANK_SEPARATOR && i < to) i++;
+		}
+		if (skipStartBlanks) i = skipBlanks(line, i, to);
+		return (int) Math.min(to, (long) i + startChar);
+	}
+
+	// End of the key in a line
+	private int keyEnd(byte[] line, int from, int to) {
+		if (endField < 0) return to;
+		int i = from;
+		// Past the end field, or up to its start to count characters
+		int fields = endChar == 0 ? endField + 1 : endField;
+		for (int field = 0; field < fields && i < to; field++) {
+			i = skipField(line, i, to);
+			if (separator != BLANK_SEPARATOR && i < to && (field + 1 < fields || endChar != 0)) i++;
+		}
+		if (endChar != 0) {
+			if (skipEndBlanks) i = skipBlanks(line, i, to);
+			i = (int) Math.min(to, (long) i + endChar);
+		}
+		return i;
+	}
+
+	// Goes to the end of a field: the next separator, or the end of the
+	//	blanks and then of the other bytes
+	private int skipField(byte[] line, int i, int to) {
+		if (separator != BLANK_SEPARATOR) {
+			while (i < to && (line[i] & 0xff) != separator) i++;
+			return i;
+		}
+		i = skipBlanks(line, i, to);
+		while (i < to && !isBlank(line[i])) i++;
+		return i;
+	}
+
+	private static int skipBlanks(byte[] line, int i, int to) {
+		while (i < to && isBlank(line[i])) i++;
+		return i;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	// Compares bytes as unsigned
+	private static int compareBytes(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		return Arrays.compareUnsigned(a, aFrom, aTo, b, bFrom, bTo);
+	}
+
+	// First eight bytes, zero padded
+	private static long bytePrefix(byte[] line, int from, int to) {
+		long ret = 0;
+		int end = Math.min(to, from + 8);
+		for (int i = from; i < end; i++) {
+			ret = ret << 8 | (line[i] & 0xff);
+		}
+		return ret << 8 * (8 - (end - from));
+	}
+
+	//-----------------------------------------------------------------
+	// Numbers
+
+	// Where the parts of a number are: its sign, integer digits (without
+	//	leading zeros) and fraction digits (without trailing zeros).  Reused,
+	//	to compare numbers without allocating
+	private static final class Number {
+		boolean negative;
+		int integerStart;
+		int integerEnd;
+		int fractionStart;
+		int fractionEnd;
+
+		// Reads the number at the start of a range
+		Number parse(byte[] line, int from, int to) {
+			int i = skipBlanks(line, from, to);
+			negative = i < to && line[i] == '-';
+			if (negative) i++;
+			while (i < to && line[i] == '0') i++;
+			integerStart = i;
+			while (i < to && isDigit(line[i])) i++;
+			integerEnd = i;
+			fractionStart = fractionEnd = i;
+			if (i < to && line[i] == '.') {
+				fractionStart = ++i;
+				while (i < to && isDigit(line[i])) i++;
+				fractionEnd = i;
+				while (fractionEnd > fractionStart && line[fractionEnd - 1] == '0') fractionEnd--;
+			}
+			// Minus zero is zero
+			if (integerStart == integerEnd && fractionStart == fractionEnd) negative = false;
+			return this;
+		}
+
+		boolean isZero() {
+			return integerStart == integerEnd && fractionStart == fractionEnd;
+		}
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	// Numbers being compared, per thread: comparisons run in the sorting threads
+	private static final ThreadLocal<Number[]> NUMBERS = ThreadLocal.withInitial(
+		() -> new Number[] {new Number(), new Number()});
+
+	// Compares the numbers at the start of two ranges
+	private static int compareNumbers(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		var numbers = NUMBERS.get();
+		var x = numbers[0].parse(a, aFrom, aTo);
+		var y = numbers[1].parse(b, bFrom, bTo);
+		if (x.negative != y.negative) return x.negative ? -1 : 1;
+		int ret = compareMagnitudes(a, x, b, y);
+		return x.negative ? -ret : ret;
+	}
+
+	// Compares the absolute values of two numbers
+	private static int compareMagnitudes(byte[] a, Number x, byte[] b, Number y) {
+		int xDigits = x.integerEnd - x.integerStart;
+		int yDigits = y.integerEnd - y.integerStart;
+		if (xDigits != yDigits) return Integer.compare(xDigits, yDigits);
+		int ret = Arrays.compare(a, x.integerStart, x.integerEnd, b, y.integerStart, y.integerEnd);
+		if (ret != 0) return Integer.signum(ret);
+		return Integer.signum(
+			Arrays.compare(a, x.fractionStart, x.fractionEnd, b, y.fractionStart, y.fractionEnd));
+	}
+
+	// Normalized prefix of a number: the sign and number of integer digits,
+	//	then the digits.  Digits of positive numbers are 1 to 10, padded with
+	//	0; those of negative numbers are reversed, 254 to 245, padded with 255
+	private static long numericPrefix(byte[] line, int from, int to) {
+		var number = NUMBERS.get()[0].parse(line, from, to);
+		if (number.isZero()) return 0x80L << 56;
+		int digits = number.integerEnd - number.integerStart;
+		if (digits >= MAX_PREFIX_DIGITS) {
+			// Told apart by the whole comparison
+			return number.negative ? 0 : -1L;
+		}
+		long ret = number.negative ? 0x7f - digits : 0x80 + digits;
+		int count = 1;
+		for (int i = number.integerStart; i < number.fractionEnd && count < 8; i++) {
+			if (i == number.integerEnd) {
+				i = number.fractionStart;
+				if (i == number.fractionEnd) break;
+			}
+			int digit = line[i] - '0';
+			ret = ret << 8 | (number.negative ? 0xfe - digit : 1 + digit);
+			count++;
+		}
+		for (; count < 8; count++) {
+			ret = ret << 8 | (number.negative ? 0xff : 0);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,338 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+import unxutils.fs.StandardStreams;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static java.lang.Boolean.FALSE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+Print the last 10 lines of each FILE to standard output.  With more than one
+FILE, precede each with a header giving the file name.
+
+With no FILE, or when FILE is -, read standard input.
+
+-c
+--bytes=[+]NUM
+output the last NUM bytes; or use -c +NUM to output starting with byte NUM of
+each file
+
+-f
+--follow
+output appended data as the file grows
+
+-F
+same as --follow=name --retry: follow the file by its name, and keep trying to
+open it if it is inaccessible; a file replaced by another one (log rotation) is
+followed from the start of the new one
+
+-n
+--lines=[+]NUM
+output the last NUM lines, instead of the last 10; or use -n +NUM to skip NUM-1
+lines at the start
+
+-q
+--quiet
+never output headers giving file names
+
+-s
+--sleep-interval=N
+with -f, check the files at least every N seconds (default 1.0); without
+events from the file system, poll them at that interval
+
+-v
+--verbose
+always output headers giving file names
+
+NUM may have a multiplier suffix: b 512, kB 1000, K 1024, MB 1000*1000,
+M 1024*1024, GB 1000*1000*1000, G 1024*1024*1024, and so on for T, P, E.
+
+Regular files are read backwards from their end, so that the last lines of a
+file take the same time whatever its size.
+}
+</pre>
+*/
+@Command(command="tail", description="Output the last part of files.")
+public class TailCommand {
+
+	//-----------------------------------------------------------------
+	// Command constants
+
+	// Lines by default
+	private static final long DEFAULT_LINES = 10;
+	// Check interval of -f by default, in milliseconds
+	private static final long DEFAULT_INTERVAL = 1000;
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="c", longName="bytes", description="output the last NUM bytes; or use -c +NUM to output "
+		+ "starting with byte NUM of each file")
+	private String bytes = null;
+
+	@Setter
+	@Parameter(name="f", longName="follow", description="output appended data as the file grows")
+	private Boolean follow = FALSE;
+
+	@Setter
+	@Parameter(name="F", description="follow the file by its name, and retry if it is inaccessible")
+	private Boolean followName = FALSE;
+
+	@Setter
+	@Parameter(name="n", longName="lines", description="output the last NUM lines, instead of the last 10; "
+		+ "or use -n +NUM to skip NUM-1 lines at the start")
+	private String lines = null;
+
+	@Setter
+	@Parameter(name="q", longName="quiet", description="never output headers giving file names")
+	private Boolean quiet = FALSE;
+
+	@Setter
+	@Parameter(name="s", longName="sleep-interval", description="with -f, check the files at least every "
+		+ "N seconds (default 1.0)")
+	private String sleepInterval = null;
+
+	@Setter
+	@Parameter(name="v", longName="verbose", description="always output headers giving file names")
+	private Boolean verbose = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a tail command.
+	 */
+	public TailCommand() {
+	}
+
+	@Run
+	// Entry point for tail
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Prints the last part of the files into the given streams; with -f or -F,
+	 * until the thread is interrupted or the output fails.  The options are
+	 * read once, when the call starts.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read or the
+	 * output failed
+	 * @throws Exception If the files cannot be printed
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		Options options;
+		try {
+			options = options();
+		} catch (IllegalArgumentException e) {
+			err.println("tail: " + e.getMessage());
+			return 1;
+		}
+		var names = files == null ? List.of("-") : List.copyOf(files);
+		boolean headers = options.verbose() || names.size() > 1 && !options.quiet();
+		var target = StandardStreams.output(out);
+		var block = ByteBuffer.allocateDirect(TailScanner.BLOCK_SIZE);
+		int status = 0;
+		// Was a header printed already?
+		var headed = new boolean[1];
+		try (var follower = options.follow()
+				? new FileFollower(options.followName(), options.interval(), target, err, headers) : null) {
+			for (int i = 0; i < names.size(); i++) {
+				var name = names.get(i);
+				var header = headers ? "==> " + (name.equals("-") ? "standard input" : name) + " <==\n" : null;
+				if (!tail(cwd, name, header, headed, options, block, target, err, follower,
+						i == names.size() - 1)) status = 1;
+			}
+			if (follower != null) follower.run();
+		} catch (IOException e) {
+			err.println("tail: write error: " + reason(e));
+			return 1;
+		}
+		out.flush();
+		return out.checkError() ? 1 : status;
+	}
+
+	// The options as tail sees them, from start to end
+	private Options options() {
+		var count = bytes != null ? bytes : lines;
+		boolean fromStart = count != null && count.startsWith("+");
+		long number = DEFAULT_LINES;
+		if (count != null) {
+			var digits = count.startsWith("+") || count.startsWith("-") ? count.substring(1) : count;
+			try {
+				number = TailScanner.parseCount(digits);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid number of " + (bytes != null ? "bytes" : "lines")
+					+ ": '" + count + "'");
+			}
+		}
+		long interval = DEFAULT_INTERVAL;
+		if (sleepInterval != null) {
+			try {
+				interval = DiskSpaceWatch.parseInterval(sleepInterval);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("invalid number of seconds: '" + sleepInterval + "'");
+			}
+		}
+		return new Options(bytes == null, number, fromStart, follow || followName, followName, interval, quiet,
+			verbose);
+	}
+
+	// Message of an error, as the C library words the common ones
+	private static String reason(IOException e) {
+		if (e instanceof NoSuchFileException) return "No such file or directory";
+		if (e instanceof AccessDeniedException) return "Permission denied";
+		return e.getMessage();
+	}
+
+	// Writes the header of a file, if any: after a blank line if not the first
+	private static void header(WritableByteChannel target, String header, boolean[] headed) throws IOException {
+		if (header == null) return;
+		var buffer = ByteBuffer.wrap(((headed[0] ? "\n" : "") + header).getBytes(UTF_8));
+		while (buffer.hasRemaining()) target.write(buffer);
+		headed[0] = true;
+	}
+
+	// Prints the last part of a file, or of standard input ("-"), and hands
+	//	the file to the follower if any; reports its errors and returns false
+	//	if it could not be read.  Output errors are thrown
+	private static boolean tail(Path cwd, String name, String header, boolean[] headed, Options options,
+			ByteBuffer block, WritableByteChannel target, PrintStream err, FileFollower follower, boolean last)
+			throws IOException {
+		if (name.equals("-")) {
+			var source = StandardStreams.input(System.in);
+			header(target, header, headed);
+			// Never closed: standard input outlives the command; pipes are not
+			//	followed
+			tailStream(source, options, target);
+			return true;
+		}
+		var path = cwd.resolve(name);
+		if (Files.isDirectory(path)) {
+			header(target, header, headed);
+			err.println("tail: error reading '" + name + "': Is a directory");
+			return false;
+		}
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+		} catch (IOException e) {
+			err.println("tail: cannot open '" + name + "' for reading: " + reason(e));
+			if (follower != null && options.followName()) follower.add(name, path, null, 0, false);
+			return false;
+		}
+		header(target, header, headed);
+		boolean handed = false;
+		try {
+			long position;
+			if (Files.isRegularFile(path)) {
+				long end = channel.size();
+				long start = start(channel, end, options, block);
+				position = TailScanner.transfer(channel, start, end, target);
+			} else {
+				tailStream(channel, options, target);
+				position = 0;
+			}
+			if (follower != null && Files.isRegularFile(path)) {
+				follower.add(name, path, channel, position, last);
+				handed = true;
+			}
+			return true;
+		} finally {
+			if (!handed) channel.close();
+		}
+	}
+
+	// Where the part printed of a regular file starts
+	private static long start(FileChannel channel, long end, Options options, ByteBuffer block) throws IOException {
+		if (!options.fromStart()) {
+			return options.lines() ? TailScanner.lastLinesStart(channel, end, options.count(), block)
+				: Math.max(0, end - options.count());
+		}
+		// +NUM: the first byte, or line, printed is the NUMth one
+		long skipped = Math.max(0, options.count() - 1);
+		if (!options.lines()) return Math.min(end, skipped);
+		long position = 0;
+		while (skipped > 0 && position < end) {
+			block.clear();
+			int count = channel.read(block, position);
+			if (count < 0) break;
+			for (int i = 0; i < count; i++) {
+				if (block.get(i) == '\n' && --skipped == 0) return position + i + 1;
+			}
+			position += count;
+		}
+		return Math.min(position, end);
+	}
+
+	// Prints the last part of a stream that cannot be read backwards
+	private static void tailStream(ReadableByteChannel source, Options options, WritableByteChannel target)
+			throws IOException {
+		var sink = Channels.newOutputStream(target);
+		if (options.fromStart()) {
+			// +NUM: skips up to the NUMth byte, or line, then copies the rest
+			long skipped = Math.max(0, options.count() - 1);
+			var buffer = ByteBuffer.allocate(TailScanner.BLOCK_SIZE);
+			while (source.read(buffer.clear()) >= 0) {
+				int from = 0;
+				int count = buffer.position();
+				if (!options.lines()) {
+					from = (int) Math.min(count, skipped);
+					skipped -= from;
+				} else {
+					while (skipped > 0 && from < count) {
+						if (buffer.get(from++) == '\n') skipped--;
+					}
+				}
+				sink.write(buffer.array(), from, count - from);
+			}
+			return;
+		}
+		var window = new TailScanner.Window(options.lines(), options.count());
+		var input = Channels.newInputStream(source);
+		while (true) {
+			// The window keeps the blocks it holds: every block gets an array
+			var data = new byte[TailScanner.BLOCK_SIZE];
+			int count = input.readNBytes(data, 0, data.length);
+			if (count == 0) break;
+			window.add(data, count, OutputStream.nullOutputStream());
+		}
+		var contents = window.contents();
+		int start = window.start(contents);
+		sink.write(contents, start, contents.length - start);
+	}
+
+	// Options of tail: lines or bytes, how many, from the start (+NUM), and
+	//	following (-f, -F) at which interval
+	private record Options(boolean lines, long count, boolean fromStart, boolean follow, boolean followName,
+			long interval, boolean quiet, boolean verbose) {}
+}
@@ -0,0 +1,210 @@
+package unxutils.coreutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+
+/**
+ * What head and tail share: their counts, finding where the last lines of a
+ * file start, and keeping the last lines of a stream.<br>
+ * Regular files are read backwards from the end, a block at a time, counting
+ * newlines until enough are found, so that the last lines of a file cost the
+ * same whatever its size; the lines are then copied by the kernel.  Pipes
+ * cannot be read backwards: they are read to the end, keeping the blocks
+ * that hold the last lines and passing on the others.
+ */
+final class TailScanner {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** Size of the blocks read */
+	static final int BLOCK_SIZE = 64 * 1024;
+	// Multipliers of the count suffixes: b, then K to E as powers of 1024,
+	//	and KB to EB as powers of 1000
+	private static final String SUFFIXES = "KMGTPE";
+
+	private TailScanner() {
+	}
+
+	/**
+	 * Parses a count of lines or bytes: a number, optionally followed by b
+	 * (512), K, M, G, T, P, E (powers of 1024) or KB, MB... (powers of 1000).
+	 * @param count Count, without its sign
+	 * @return The count; Long.MAX_VALUE if larger
+	 * @throws NumberFormatException If the count is not valid
+	 */
+	static long parseCount(String count) {
+		int digits = 0;
+		while (digits < count.length() && Character.isDigit(count.charAt(digits))) digits++;
+		if (digits == 0) throw new NumberFormatException(count);
+		var suffix = count.substring(digits);
+		long multiplier = 1;
+		if (suffix.equals("b")) {
+			multiplier = 512;
+		} else if (!suffix.isEmpty()) {
+			int power = SUFFIXES.indexOf(Character.toUpperCase(suffix.charAt(0))) + 1;
+			boolean decimal = suffix.length() == 2 && suffix.charAt(1) == 'B';
+			if (power == 0 || suffix.length() > 2 || suffix.length() == 2 && !decimal) {
+				throw new NumberFormatException(count);
+			}
+			for (int i = 0; i < power; i++) multiplier *= decimal ? 1000 : 1024;
+		}
+		long ret;
+		try {
+			ret = Long.parseLong(count.substring(0, digits));
+		} catch (NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+		return ret > Long.MAX_VALUE / multiplier ? Long.MAX_VALUE : ret * multiplier;
+	}
+
+	/**
+	 * Finds where the last lines of a file start, reading it backwards from
+	 * the given end.  The newline at the end, if any, ends the last line.
+	 * @param channel File
+	 * @param end Where the lines end
+	 * @param lines Number of lines
+	 * @param block Buffer for the blocks read
+	 * @return Start of the lines, 0 if the file has no more
+	 * @throws IOException If the file cannot be read
+	 */
+	static long lastLinesStart(FileChannel channel, long end, long lines, ByteBuffer block) throws IOException {
+		if (lines == 0) return end;
+		long found = 0;
+		long position = end;
+		while (position > 0) {
+			int length = (int) Math.min(block.capacity(), position);
+			position -= length;
+			block.clear().limit(length);
+			while (block.hasRemaining()) {
+				if (channel.read(block, position + block.position()) < 0) break;
+			}
+			// Bytes gone since the size was read are taken as newlines
+			for (int i = block.position(); i < length; i++) block.put(i, (byte) '\n');
+			for (int i = length - 1; i >= 0; i--) {
+				if (block.get(i) == '\n' && position + i != end - 1 && ++found == lines) {
+					return position + i + 1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Finds where the last lines of some bytes start.
+	 * @param data Bytes
+	 * @param length Number of bytes
+	 * @param lines Number of lines
+	 * @return Start of the lines, 0 if there are no more
+	 */
+	static int lastLinesStart(byte[] data, int length, long lines) {
+		if (lines == 0) return length;
+		long found = 0;
+		for (int i = length - 2; i >= 0; i--) {
+			if (data[i] == '\n' && ++found == lines) return i + 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Copies a range of a file by the kernel.
+	 * @param channel File
+	 * @param from Start of the range
+	 * @param to End of the range
+	 * @param target Where it is copied
+	 * @return Where the copy stopped: the end of the range, or of the file if
+	 * it shrank since
+	 * @throws IOException If the file cannot be read or the target written
+	 */
+	static long transfer(FileChannel channel, long from, long to, WritableByteChannel target) throws IOException {
+		while (from < to) {
+			long sent = channel.transferTo(from, to - from, target);
+			if (sent == 0) break;
+			from += sent;
+		}
+		return from;
+	}
+
+	/**
+	 * The last lines, or bytes, of a stream read in blocks.  Blocks that do not
+	 * hold any of them are passed on as soon as they are known not to.
+	 */
+	static final class Window {
+
+		// A block read, and its newlines
+		private record Block(byte[] bytes, int length, long newlines) {}
+
+		// Count lines, or bytes?
+		private final boolean lines;
+		// Lines, or bytes, kept
+		private final long count;
+		// Blocks kept, and their bytes and newlines
+		private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+		private long bytes = 0;
+		private long newlines = 0;
+
+		/**
+		 * @param lines Count lines, or bytes?
+		 * @param count Lines, or bytes, kept
+		 */
+		Window(boolean lines, long count) {
+			this.lines = lines;
+			this.count = count;
+		}
+
+		/**
+		 * Adds a block; the window keeps it.
+		 * @param data Block
+		 * @param length Bytes in the block
+		 * @param passed Receives the blocks that do not hold any of the last lines
+		 * @throws IOException If the blocks passed cannot be written
+		 */
+		void add(byte[] data, int length, OutputStream passed) throws IOException {
+			long blockNewlines = 0;
+			if (lines) {
+				for (int i = 0; i < length; i++) {
+					if (data[i] == '\n') blockNewlines++;
+				}
+			}
+			blocks.add(new Block(data, length, blockNewlines));
+			bytes += length;
+			newlines += blockNewlines;
+			// The first block goes if the others have more than enough: one more
+			//	newline than lines, as the last one may end the last line
+			while (!blocks.isEmpty()) {
+				var first = blocks.getFirst();
+				boolean enough = lines ? newlines - first.newlines() > count : bytes - first.length() >= count;
+				if (!enough) break;
+				blocks.removeFirst();
+				bytes -= first.length();
+				newlines -= first.newlines();
+				passed.write(first.bytes(), 0, first.length());
+			}
+		}
+
+		/**
+		 * @return The blocks kept, one after the other
+		 */
+		byte[] contents() {
+			var ret = new byte[(int) bytes];
+			int position = 0;
+			for (var block: blocks) {
+				System.arraycopy(block.bytes(), 0, ret, position, block.length());
+				position += block.length();
+			}
+			return ret;
+		}
+
+		/**
+		 * @param data The contents of the window
+		 * @return Where the last lines, or bytes, start in its contents
+		 */
+		int start(byte[] data) {
+			return lines ? lastLinesStart(data, data.length, count) : (int) Math.max(0, data.length - count);
+		}
+	}
+}
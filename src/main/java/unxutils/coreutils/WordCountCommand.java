@@ -0,0 +1,308 @@
+package unxutils.coreutils;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import lombok.Setter;
+import unxutils.format.LineBuffer;
+import unxutils.fs.StandardStreams;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.Boolean.FALSE;
+
+/**
+<b>Program documentation</b><br>
+<pre>
+{@code
+Print newline, word, and byte counts for each FILE, and a total line if more
+than one FILE is specified.  A word is a non-zero-length sequence of characters
+delimited by white space.
+
+With no FILE, or when FILE is -, read standard input.
+
+The options below may be used to select which counts are printed, always in
+the following order: newline, word, character, byte, maximum line length.
+
+-c
+--bytes
+print the byte counts
+
+-m
+--chars
+print the character counts
+
+-l
+--lines
+print the newline counts
+
+-L
+--max-line-length
+print the maximum display width
+
+-w
+--words
+print the word counts
+
+Regular files are mapped into memory and counted eight bytes at a time; several
+files are counted at the same time, one per processor.  Characters are counted
+as UTF-8, and words are delimited by ASCII white space.
+}
+</pre>
+*/
+@Command(command="wc", description="Print newline, word, and byte counts for each file.")
+public class WordCountCommand {
+
+	//-----------------------------------------------------------------
+	// Command constants
+
+	// Size of the mapped windows of a regular file: large enough for the
+	//	mapping calls not to count, and unmapped as soon as they are counted
+	private static final long MAP_SIZE = 256L * 1024 * 1024;
+	// Size of the read buffer for pipes and terminals
+	private static final int BUFFER_SIZE = 128 * 1024;
+	// Smallest column width when some input size is not known in advance
+	private static final int UNKNOWN_SIZE_WIDTH = 7;
+
+	//-----------------------------------------------------------------
+	// Command parameters
+
+	@Setter
+	@Parameter(name="c", longName="bytes", description="print the byte counts")
+	private Boolean bytes = FALSE;
+
+	@Setter
+	@Parameter(name="m", longName="chars", description="print the character counts")
+	private Boolean chars = FALSE;
+
+	@Setter
+	@Parameter(name="l", longName="lines", description="print the newline counts")
+	private Boolean lines = FALSE;
+
+	@Setter
+	@Parameter(name="L", longName="max-line-length", description="print the maximum display width")
+	private Boolean maxLineLength = FALSE;
+
+	@Setter
+	@Parameter(name="w", longName="words", description="print the word counts")
+	private Boolean words = FALSE;
+
+	@Setter
+	@OptionalArgs(name="FILE")
+	private List<String> files;
+
+	//-----------------------------------------------------------------
+	// Command methods
+
+	/**
+	 * Builds a wc command.
+	 */
+	public WordCountCommand() {
+	}
+
+	@Run
+	// Entry point for wc
+	public int execute(Path cwd) throws Exception {
+		return execute(cwd, System.out, System.err);
+	}
+
+	/**
+	 * Counts the files into the given streams.  Files are counted at the same
+	 * time, and printed in order as soon as the ones before are.  The options
+	 * are read once, when the call starts.
+	 * @param cwd Working directory
+	 * @param out Output
+	 * @param err Error output
+	 * @return Exit status: 0 if fine, 1 if a file could not be read
+	 * @throws Exception If the count fails
+	 */
+	public int execute(Path cwd, PrintStream out, PrintStream err) throws Exception {
+		// Without options: lines, words and bytes
+		boolean none = !lines && !words && !chars && !bytes && !maxLineLength;
+		var options = new Options(lines || none, words || none, chars, bytes || none, maxLineLength);
+		var names = files == null ? List.of("-") : List.copyOf(files);
+		var sources = new ArrayList<Source>();
+		for (var name: names) {
+			sources.add(Source.of(cwd, name));
+		}
+		int width = columnWidth(sources, options);
+		var row = new LineBuffer(128);
+		int status = 0;
+		var total = WordCounter.Counts.ZERO;
+		int threads = Math.min(sources.size(), Runtime.getRuntime().availableProcessors());
+		try (var executor = Executors.newFixedThreadPool(Math.max(threads, 1))) {
+			var results = new ArrayList<Future<Result>>();
+			for (var source: sources) {
+				// Standard input is counted here, in order: given twice, all of
+				//	it goes to the first
+				results.add(source.path() == null ? CompletableFuture.completedFuture(count(source, options))
+					: executor.submit(() -> count(source, options)));
+			}
+			for (int i = 0; i < sources.size(); i++) {
+				Result result;
+				try {
+					result = results.get(i).get();
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception cause ? cause : e;
+				}
+				if (result.error() != null) {
+					err.println("wc: " + sources.get(i).name() + ": " + result.error());
+					status = 1;
+				}
+				if (result.counts() != null) {
+					total = total.plus(result.counts());
+					printRow(row, result.counts(), options, width, files == null ? null : sources.get(i).name(), out);
+				}
+			}
+		}
+		if (sources.size() > 1) {
+			printRow(row, total, options, width, "total", out);
+		}
+		out.flush();
+		return status;
+	}
+
+	// Width of the count columns, as GNU wc: enough for the total size of the
+	//	regular files, at least 7 if some size is not known, and no padding at
+	//	all for a single count of a single file
+	private static int columnWidth(List<Source> sources, Options options) {
+		if (sources.size() == 1 && options.countNumber() == 1) return 1;
+		int minimum = 1;
+		long size = 0;
+		for (var source: sources) {
+			if (source.size() < 0) minimum = UNKNOWN_SIZE_WIDTH;
+			else size += source.size();
+		}
+		return Math.max(minimum, LineBuffer.decimalLength(size));
+	}
+
+	// Prints the counts asked for, and the name if any
+	private static void printRow(LineBuffer row, WordCounter.Counts counts, Options options, int width, String name,
+			PrintStream out) throws IOException {
+		row.clear();
+		if (options.lines()) appendCount(row, counts.lines(), width);
+		if (options.words()) appendCount(row, counts.words(), width);
+		if (options.chars()) appendCount(row, counts.chars(), width);
+		if (options.bytes()) appendCount(row, counts.bytes(), width);
+		if (options.maxLineLength()) appendCount(row, counts.maxLineLength(), width);
+		if (name != null) row.append((byte) ' ').append(name.getBytes(out.charset()));
+		row.append((byte) '\n').writeTo(out);
+	}
+
+	// Appends a count, after a space if it is not the first one
+	private static void appendCount(LineBuffer row, long count, int width) {
+		if (row.length() > 0) row.append((byte) ' ');
+		row.appendLong(count, width);
+	}
+
+	// Counts a file, or standard input
+	private static Result count(Source source, Options options) {
+		var counter = new WordCounter(options.words(), options.chars(), options.maxLineLength());
+		try {
+			if (source.path() == null) {
+				var input = StandardStreams.input(System.in);
+				// Never closed: standard input outlives the command
+				read(input, counter);
+			} else if (Files.isDirectory(source.path())) {
+				return new Result(counter.counts(), "Is a directory");
+			} else {
+				try (var channel = FileChannel.open(source.path(), StandardOpenOption.READ)) {
+					if (source.size() >= 0) map(channel, source.size(), counter, options);
+					read(channel, counter);
+				}
+			}
+			return new Result(counter.counts(), null);
+		} catch (NoSuchFileException e) {
+			return new Result(null, "No such file or directory");
+		} catch (AccessDeniedException e) {
+			return new Result(null, "Permission denied");
+		} catch (IOException e) {
+			return new Result(counter.counts(), e.getMessage());
+		}
+	}
+
+	// Counts a regular file up to its size by mapped windows, each unmapped as
+	//	soon as it is counted; with only -c, the size is enough
+	private static void map(FileChannel channel, long size, WordCounter counter, Options options) throws IOException {
+		if (options.onlyBytes()) {
+			counter.skip(size);
+			channel.position(size);
+			return;
+		}
+		for (long position = 0; position < size; position += MAP_SIZE) {
+			long length = Math.min(MAP_SIZE, size - position);
+			try (var arena = Arena.ofConfined()) {
+				counter.count(channel.map(FileChannel.MapMode.READ_ONLY, position, length, arena));
+			}
+		}
+		channel.position(size);
+	}
+
+	// Counts what is left of a channel, a buffer at a time: pipes and
+	//	terminals, and whatever grew past the size of a file since it was mapped
+	private static void read(ReadableByteChannel channel, WordCounter counter) throws IOException {
+		var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		var segment = MemorySegment.ofBuffer(buffer);
+		int count;
+		while ((count = channel.read(buffer.clear())) >= 0) {
+			counter.count(segment.asSlice(0, count));
+		}
+	}
+
+	// Counts asked for
+	private record Options(boolean lines, boolean words, boolean chars, boolean bytes, boolean maxLineLength) {
+
+		// Number of counts printed
+		int countNumber() {
+			return (lines ? 1 : 0) + (words ? 1 : 0) + (chars ? 1 : 0) + (bytes ? 1 : 0) + (maxLineLength ? 1 : 0);
+		}
+
+		// Is the byte count the only one?
+		boolean onlyBytes() {
+			return bytes && countNumber() == 1;
+		}
+	}
+
+	// An input, as named in the arguments: its path (null for standard input)
+	//	and its size if it is a regular file, -1 for other files, 0 for those
+	//	that cannot be read (they take no room in the columns)
+	private record Source(String name, Path path, long size) {
+
+		static Source of(Path cwd, String name) {
+			if (name.equals("-")) return new Source(name, null, -1);
+			var path = cwd.resolve(name);
+			long size;
+			try {
+				var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+				size = attrs.isRegularFile() ? attrs.size() : -1;
+			} catch (IOException e) {
+				// Reported when the file is counted
+				size = 0;
+			}
+			return new Source(name, path, size);
+		}
+	}
+
+	// What counting a file found: its counts, null if it could not be opened,
+	//	and its error, if any
+	private record Result(WordCounter.Counts counts, String error) {}
+}
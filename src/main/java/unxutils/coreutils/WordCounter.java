@@ -0,0 +1,212 @@
+package unxutils.coreutils;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/**
+ * Counts the lines, words, characters and bytes of a stream of bytes, fed in
+ * any number of segments: a word or a line may span several of them.  Only
+ * what is asked for is counted.<br>
+ * Segments are read eight bytes at a time, and every count is worked out for
+ * the eight bytes at once with arithmetic on a long (SWAR, SIMD within a
+ * register): a mask with the high bit of every newline byte, of every
+ * whitespace byte, of every UTF-8 continuation byte, and their bit counts.
+ * The line length (-L) depends on every byte before it in its line, and is
+ * counted a byte at a time.<br>
+ * Words are sequences of bytes other than ASCII whitespace (space, \t, \n,
+ * \v, \f, \r); characters are counted as UTF-8, every byte other than a
+ * continuation byte being one.  Line lengths are in columns, tabs every 8,
+ * a character taking one column and a control character none.
+ */
+final class WordCounter {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Eight bytes, in the order they are in the segment
+	private static final ValueLayout.OfLong BYTES = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+	// A byte repeated in every byte of a long
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+	private static final long NEWLINES = '\n' * ONES;
+	private static final long SPACES = ' ' * ONES;
+	// Bounds, both excluded, of the other whitespace bytes: \t to \r
+	private static final long BELOW_TAB = (127 - 8) * ONES;
+	private static final long ABOVE_RETURN = (127 + 14) * ONES;
+	// Tab stops, for the line length
+	private static final int TAB_WIDTH = 8;
+
+	/**
+	 * What a count found.
+	 * @param lines Newlines
+	 * @param words Words
+	 * @param chars UTF-8 characters
+	 * @param bytes Bytes
+	 * @param maxLineLength Length of the longest line, in columns
+	 */
+	record Counts(long lines, long words, long chars, long bytes, long maxLineLength) {
+
+		/** Nothing counted */
+		static final Counts ZERO = new Counts(0, 0, 0, 0, 0);
+
+		// These counts and others, as the total line shows them
+		Counts plus(Counts other) {
+			return new Counts(lines + other.lines, words + other.words, chars + other.chars, bytes + other.bytes,
+				Math.max(maxLineLength, other.maxLineLength));
+		}
+	}
+
+	//-----------------------------------------------------------------
+	// Counter properties
+
+	// What is counted
+	private final boolean countWords;
+	private final boolean countChars;
+	private final boolean countLineLength;
+	// Counts so far
+	private long lines = 0;
+	private long words = 0;
+	private long chars = 0;
+	private long bytes = 0;
+	private long maxLineLength = 0;
+	// Was the last byte whitespace?  The start of the stream counts as such
+	private boolean afterSpace = true;
+	// Length of the current line
+	private long lineLength = 0;
+
+	//-----------------------------------------------------------------
+	// Counter methods
+
+	/**
+	 * Builds a counter; lines and bytes are always counted.
+	 * @param countWords Count words?
+	 * @param countChars Count characters?
+	 * @param countLineLength Find the longest line?
+	 */
+	WordCounter(boolean countWords, boolean countChars, boolean countLineLength) {
+		this.countWords = countWords;
+		this.countChars = countChars;
+		this.countLineLength = countLineLength;
+	}
+
+	/**
+	 * Counts a segment, following the ones counted before.
+	 * @param data Bytes to count
+	 */
+	void count(MemorySegment data) {
+		long size = data.byteSize();
+		if (countLineLength) {
+			countBytes(data, 0, size);
+			return;
+		}
+		long end = size & ~7L;
+		long newlines = 0;
+		if (!countWords && !countChars) {
+			for (long i = 0; i < end; i += 8) {
+				newlines += Long.bitCount(newlines(data.get(BYTES, i)));
+			}
+		} else {
+			long starts = 0;
+			long continuations = 0;
+			// High bit of the last byte counted, if it was whitespace
+			long previous = afterSpace ? HIGH_BITS : 0;
+			for (long i = 0; i < end; i += 8) {
+				long x = data.get(BYTES, i);
+				newlines += Long.bitCount(newlines(x));
+				if (countWords) {
+					long space = whitespace(x);
+					// Bytes other than whitespace after whitespace start words
+					starts += Long.bitCount(~space & (space << 8 | previous >>> 56) & HIGH_BITS);
+					previous = space;
+				}
+				if (countChars) {
+					continuations += Long.bitCount(x & ~(x << 1) & HIGH_BITS);
+				}
+			}
+			words += starts;
+			chars += end - continuations;
+			if (countWords && end > 0) {
+				afterSpace = previous < 0;
+			}
+		}
+		lines += newlines;
+		bytes += end;
+		countBytes(data, end, size);
+	}
+
+	/**
+	 * Counts a segment a byte at a time, following the ones counted before:
+	 * what count does, without the arithmetic on longs.  The line length is
+	 * always counted this way.
+	 * @param data Bytes to count
+	 */
+	void countScalar(MemorySegment data) {
+		countBytes(data, 0, data.byteSize());
+	}
+
+	/**
+	 * Counts bytes as if they had been read: regular files whose size tells
+	 * all that is asked for (wc -c).
+	 * @param count Number of bytes
+	 */
+	void skip(long count) {
+		bytes += count;
+	}
+
+	/**
+	 * @return The counts so far; the line being read counts for the longest
+	 * line even without a newline
+	 */
+	Counts counts() {
+		return new Counts(lines, words, chars, bytes, Math.max(maxLineLength, lineLength));
+	}
+
+	// Counts a range of a segment, a byte at a time
+	private void countBytes(MemorySegment data, long from, long to) {
+		for (long i = from; i < to; i++) {
+			int b = data.get(JAVA_BYTE, i) & 0xff;
+			boolean space = b == ' ' || b >= '\t' && b <= '\r';
+			if (b == '\n') lines++;
+			if (countWords && !space && afterSpace) words++;
+			if ((b & 0xc0) != 0x80) chars++;
+			afterSpace = space;
+			if (countLineLength) {
+				switch (b) {
+					case '\n' -> {
+						maxLineLength = Math.max(maxLineLength, lineLength);
+						lineLength = 0;
+					}
+					case '\r', '\f' -> lineLength = 0;
+					case '\t' -> lineLength = (lineLength / TAB_WIDTH + 1) * TAB_WIDTH;
+					default -> {
+						// Printable characters take a column, counted at their first byte
+						if (b >= ' ' && b != 127 && (b & 0xc0) != 0x80) lineLength++;
+					}
+				}
+			}
+		}
+		bytes += to - from;
+	}
+
+	// High bit of every newline byte
+	private static long newlines(long x) {
+		return zeros(x ^ NEWLINES);
+	}
+
+	// High bit of every whitespace byte: spaces, and the bytes from \t to \r
+	private static long whitespace(long x) {
+		long low = x & LOW_BITS;
+		long controls = (ABOVE_RETURN - low) & ~x & (low + BELOW_TAB) & HIGH_BITS;
+		return zeros(x ^ SPACES) | controls;
+	}
+
+	// High bit of every zero byte.  No carry crosses bytes, so that the mask
+	//	is exact, not just telling whether there is any
+	private static long zeros(long x) {
+		return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+	}
+}
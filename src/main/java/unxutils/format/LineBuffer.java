@@ -0,0 +1,331 @@
+package unxutils.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reusable byte buffer for building output lines without intermediate
+ * strings.  Numbers are written two digits at a time, from a table of the
+ * pairs 00 to 99, and padded in place, so that rendering a line allocates
+ * nothing once the buffer has grown to its working size.
+ */
+public class LineBuffer {
+
+	//--------------------------------------------------------------------
+	// Class constants
+
+	// Kilobytes
+	private static final int UNIT = 1024;
+	// Human readable suffixes
+	private static final byte[] UNITS = {'K', 'M', 'G', 'T', 'P', 'E'};
+	// Decimal point, as printed by HumanReadableFormat
+	private static final byte DECIMAL_POINT = ',';
+	// Longest decimal representation of a long, with sign
+	private static final int MAX_DIGITS = 20;
+	// Replacement of the characters a terminal cannot show
+	private static final byte UNPRINTABLE = '?';
+	// Digits of 00 to 99, two bytes each
+	private static final byte[] DIGIT_PAIRS = new byte[200];
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[i * 2] = (byte) ('0' + i / 10);
+			DIGIT_PAIRS[i * 2 + 1] = (byte) ('0' + i % 10);
+		}
+	}
+
+	//--------------------------------------------------------------------
+	// Buffer properties
+
+	// Contents
+	private byte[] bytes;
+	// Bytes in use
+	private int length = 0;
+	// Scratch area for numbers, filled from the end
+	private final byte[] digits = new byte[MAX_DIGITS + 4];
+
+	//--------------------------------------------------------------------
+	// Buffer methods
+
+	/**
+	 * Builds a line buffer.
+	 * @param capacity Initial capacity in bytes
+	 */
+	public LineBuffer(int capacity) {
+		bytes = new byte[Math.max(capacity, 16)];
+	}
+
+	/**
+	 * Empties the buffer, keeping its storage.
+	 * @return This buffer
+	 */
+	public LineBuffer clear() {
+		length = 0;
+		return this;
+	}
+
+	/**
+	 * @return Bytes in use
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return Backing array; only the first length() bytes are meaningful
+	 */
+	public byte[] array() {
+		return bytes;
+	}
+
+	// Makes room for n more bytes
+	private void ensure(int n) {
+		if (length + n > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+		}
+	}
+
+	/**
+	 * @param b Byte to append
+	 * @return This buffer
+	 */
+	public LineBuffer append(byte b) {
+		ensure(1);
+		bytes[length++] = b;
+		return this;
+	}
+
+	/**
+	 * @param src Bytes to append
+	 * @param offset Start of the bytes in src
+	 * @param count Number of bytes
+	 * @return This buffer
+	 */
+	public LineBuffer append(byte[] src, int offset, int count) {
+		ensure(count);
+		System.arraycopy(src, offset, bytes, length, count);
+		length += count;
+		return this;
+	}
+
+	/**
+	 * @param src Bytes to append
+	 * @return This buffer
+	 */
+	public LineBuffer append(byte[] src) {
+		return append(src, 0, src.length);
+	}
+
+	/**
+	 * Appends a string made only of ASCII characters (labels, separators...).
+	 * @param s ASCII string
+	 * @return This buffer
+	 */
+	public LineBuffer appendAscii(String s) {
+		ensure(s.length());
+		for (int i = 0; i < s.length(); i++) bytes[length++] = (byte) s.charAt(i);
+		return this;
+	}
+
+	/**
+	 * Appends a name as a terminal can show it, as GNU ls -q does: control
+	 * characters are replaced by '?', and so is every byte that is not part of
+	 * a valid character.
+	 * @param src Array holding the name
+	 * @param offset Start of the name
+	 * @param count Length of the name
+	 * @param utf8 Is the name UTF-8?  If not, only ASCII is kept
+	 * @return This buffer
+	 */
+	public LineBuffer appendPrintable(byte[] src, int offset, int count, boolean utf8) {
+		// Never longer than the name
+		ensure(count);
+		int end = offset + count;
+		for (int i = offset; i < end; ) {
+			int b = src[i] & 0xff;
+			if (b < 0x80) {
+				bytes[length++] = b < 0x20 || b == 0x7f ? UNPRINTABLE : (byte) b;
+				i++;
+				continue;
+			}
+			int sequence = utf8 ? utf8Length(src, i, end) : 0;
+			if (sequence == 0) {
+				bytes[length++] = UNPRINTABLE;
+				i++;
+			} else if (b == 0xc2 && (src[i + 1] & 0xff) < 0xa0) {
+				// C1 control characters, U+0080 to U+009F
+				bytes[length++] = UNPRINTABLE;
+				i += sequence;
+			} else {
+				System.arraycopy(src, i, bytes, length, sequence);
+				length += sequence;
+				i += sequence;
+			}
+		}
+		return this;
+	}
+
+	// Length of the valid UTF-8 sequence starting at a byte, 0 if not valid:
+	//	truncated, overlong, a surrogate or beyond U+10FFFF
+	private static int utf8Length(byte[] src, int at, int end) {
+		int b = src[at] & 0xff;
+		int count;
+		int codePoint;
+		int min;
+		if (b >= 0xc2 && b <= 0xdf) {
+			count = 2;
+			codePoint = b & 0x1f;
+			min = 0x80;
+		} else if (b >= 0xe0 && b <= 0xef) {
+			count = 3;
+			codePoint = b & 0x0f;
+			min = 0x800;
+		} else if (b >= 0xf0 && b <= 0xf4) {
+			count = 4;
+			codePoint = b & 0x07;
+			min = 0x10000;
+		} else {
+			return 0;
+		}
+		if (at + count > end) return 0;
+		for (int i = 1; i < count; i++) {
+			int next = src[at + i] & 0xff;
+			if ((next & 0xc0) != 0x80) return 0;
+			codePoint = codePoint << 6 | next & 0x3f;
+		}
+		if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+				|| codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+			return 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Appends n copies of a byte.
+	 * @param b Byte to repeat
+	 * @param n Number of copies
+	 * @return This buffer
+	 */
+	public LineBuffer repeat(byte b, int n) {
+		if (n <= 0) return this;
+		ensure(n);
+		Arrays.fill(bytes, length, length + n, b);
+		length += n;
+		return this;
+	}
+
+	/**
+	 * Same as Format.format: trims or pad fills with spaces at left to get to
+	 * the target length.
+	 * @param src Bytes to append
+	 * @param width Target length
+	 * @return This buffer
+	 */
+	public LineBuffer appendPadded(byte[] src, int width) {
+		if (src.length >= width) return append(src, 0, width);
+		return repeat((byte) ' ', width - src.length).append(src);
+	}
+
+	/**
+	 * Appends a number right aligned to a column (never trimmed).
+	 * @param n Number
+	 * @param width Column width
+	 * @return This buffer
+	 */
+	public LineBuffer appendLong(long n, int width) {
+		int start = fillDigits(n, digits.length);
+		int count = digits.length - start;
+		return repeat((byte) ' ', width - count).append(digits, start, count);
+	}
+
+	/**
+	 * Appends a number in the same human readable format as HumanReadableFormat
+	 * (e.g. 1023, 1,0K, 234,5M), right aligned to a column.
+	 * @param n Number of bytes
+	 * @param width Column width
+	 * @return This buffer
+	 */
+	public LineBuffer appendHuman(long n, int width) {
+		long magnitude = Math.abs(n);
+		if (magnitude < UNIT) return appendLong(n, width);
+		int exp = (int) (Math.log(magnitude) / Math.log(UNIT));
+		long tenths = Math.round(magnitude / Math.pow(UNIT, exp) * 10);
+		int end = digits.length;
+		digits[--end] = UNITS[exp - 1];
+		digits[--end] = (byte) ('0' + tenths % 10);
+		digits[--end] = DECIMAL_POINT;
+		int start = fillDigits(n < 0 ? -(tenths / 10) : tenths / 10, end);
+		int count = digits.length - start;
+		return repeat((byte) ' ', width - count).append(digits, start, count);
+	}
+
+	/**
+	 * Appends a number from 0 to 99 as two digits, zero padded.
+	 * @param n Number
+	 * @return This buffer
+	 */
+	public LineBuffer appendTwoDigits(int n) {
+		ensure(2);
+		bytes[length++] = DIGIT_PAIRS[n * 2];
+		bytes[length++] = DIGIT_PAIRS[n * 2 + 1];
+		return this;
+	}
+
+	/**
+	 * @param n A number
+	 * @return Number of characters of its decimal representation, sign included
+	 */
+	public static int decimalLength(long n) {
+		int ret = n < 0 ? 2 : 1;
+		for (long rest = Math.abs(n / 10); rest != 0; rest /= 10) ret++;
+		return ret;
+	}
+
+	/**
+	 * Appends a number of seconds as h:mm:ss, right aligned to a column.
+	 * @param seconds Duration in seconds
+	 * @param width Column width
+	 * @return This buffer
+	 */
+	public LineBuffer appendDuration(long seconds, int width) {
+		int end = digits.length;
+		end = fillTwoDigits(seconds % 60, end);
+		digits[--end] = ':';
+		end = fillTwoDigits(seconds / 60 % 60, end);
+		digits[--end] = ':';
+		int start = fillDigits(seconds / 3600, end);
+		int count = digits.length - start;
+		return repeat((byte) ' ', width - count).append(digits, start, count);
+	}
+
+	// Writes a zero padded two digit number in the scratch area, ending right before end
+	private int fillTwoDigits(long n, int end) {
+		int pair = (int) n * 2;
+		digits[--end] = DIGIT_PAIRS[pair + 1];
+		digits[--end] = DIGIT_PAIRS[pair];
+		return end;
+	}
+
+	// Writes the decimal digits of n in the scratch area, ending right before end
+	private int fillDigits(long n, int end) {
+		int pos = end;
+		boolean negative = n < 0;
+		// Two digits at a time, then the last one if left
+		while (n <= -10 || n >= 10) {
+			pos = fillTwoDigits(Math.abs(n % 100), pos);
+			n /= 100;
+		}
+		if (n != 0 || pos == end) digits[--pos] = (byte) ('0' + Math.abs(n));
+		if (negative) digits[--pos] = '-';
+		return pos;
+	}
+
+	/**
+	 * Writes the contents of the buffer.
+	 * @param out Target stream
+	 * @throws IOException If the stream fails
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(bytes, 0, length);
+	}
+}
@@ -0,0 +1,109 @@
+package unxutils.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Paths inside archives, written as the archive and the path inside it joined
+ * by "!/" (app.jar!/BOOT-INF), as in jar: URLs; archives can be nested.  Every
+ * archive is opened once, through the zip file system provider, which only
+ * reads its central directory: entries are never extracted, so listing a large
+ * archive costs as much as its directory, not its contents.  Sizes and times
+ * are those of the entries; entries without permissions of their own get
+ * those of the archive.  Closing releases every archive.
+ */
+public class ArchivePaths implements Closeable {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Separator between an archive and the path inside it
+	private static final String SEPARATOR = "!/";
+	// Archive mark, also valid at the end of a path (app.jar!)
+	private static final char MARK = '!';
+
+	//-----------------------------------------------------------------
+	// Resolver properties
+
+	// Archives opened so far, by their real path, in opening order
+	private final LinkedHashMap<Path, FileSystem> archives = new LinkedHashMap<>();
+
+	//-----------------------------------------------------------------
+	// Resolver methods
+
+	/**
+	 * Resolves a path, opening the archives on its way.  Names that only look
+	 * like archive paths (a directory called "x!") are left alone.
+	 * @param cwd Directory of relative paths
+	 * @param argument Path, e.g. "app.jar!/BOOT-INF"
+	 * @return The path, maybe in the file system of an archive
+	 * @throws IOException If an archive cannot be opened
+	 */
+	public Path resolve(Path cwd, String argument) throws IOException {
+		var ret = cwd;
+		var rest = argument;
+		int end;
+		while ((end = archiveEnd(ret, rest)) >= 0) {
+			ret = open(ret.resolve(rest.substring(0, end))).getPath("/");
+			rest = rest.substring(Math.min(end + SEPARATOR.length(), rest.length()));
+		}
+		return rest.isEmpty() ? ret : ret.resolve(rest);
+	}
+
+	// End of the first archive of a path, -1 if there is none
+	private static int archiveEnd(Path base, String path) {
+		for (int at = path.indexOf(MARK); at > 0; at = path.indexOf(MARK, at + 1)) {
+			boolean separated = at == path.length() - 1 || path.startsWith(SEPARATOR, at);
+			if (separated && Files.isRegularFile(base.resolve(path.substring(0, at)))) return at;
+		}
+		return -1;
+	}
+
+	// File system of an archive, opened once
+	private FileSystem open(Path archive) throws IOException {
+		var key = archive.toRealPath();
+		var ret = archives.get(key);
+		if (ret == null) {
+			var env = new HashMap<String, Object>();
+			env.put("enablePosixFileAttributes", "true");
+			var view = Files.getFileAttributeView(archive, PosixFileAttributeView.class);
+			if (view != null) {
+				env.put("defaultPermissions", view.readAttributes().permissions());
+			}
+			try {
+				ret = FileSystems.newFileSystem(archive, env);
+			} catch (ProviderNotFoundException e) {
+				throw new IOException(archive + ": not an archive", e);
+			}
+			archives.put(key, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Closes every archive opened so far, nested ones before their containers.
+	 * @throws IOException If any of them cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (var archive: archives.sequencedValues().reversed()) {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				if (failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+		}
+		archives.clear();
+		if (failure != null) throw failure;
+	}
+}
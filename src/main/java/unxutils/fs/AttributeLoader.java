@@ -0,0 +1,224 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads file attributes according to an AttributePlan, with a single read of
+ * the planned source per file.  Views not supported by the file system are
+ * replaced by the next cheaper one, once and for all.  Paths of other file
+ * systems (archives) start from the best view theirs supports.  Every read is
+ * counted.<br>
+ * Only the planned attributes are asked for, so that no name service lookup
+ * is done unless owners or groups are planned; their names are then resolved
+ * once per id.
+ */
+public class AttributeLoader {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Unix attributes always read: the mode tells the type, and the device and
+	//	the file key are needed to enter directories
+	private static final String UNIX_ATTRIBUTES = "unix:mode,dev,fileKey";
+	// Links are never followed
+	private static final LinkOption[] NO_FOLLOW = {LinkOption.NOFOLLOW_LINKS};
+	// Links are followed
+	private static final LinkOption[] FOLLOW = {};
+
+	//-----------------------------------------------------------------
+	// Loader properties
+
+	// Planned source
+	private final AttributeSource planned;
+	// Source for the default file system, degraded when a view is not supported
+	private volatile AttributeSource source;
+	// Does the plan show owners?
+	private final boolean owners;
+	// Are the owner and group names planned?
+	private final boolean ownerNames;
+	private final boolean groupNames;
+	// Unix attributes to read, after the plan
+	private final String unixAttributes;
+	// Owner and group names, by id
+	private final Map<Integer, String> userNamesById = new ConcurrentHashMap<>();
+	private final Map<Integer, String> groupNamesById = new ConcurrentHashMap<>();
+	// Are links followed?
+	private final LinkOption[] linkOptions;
+	// Attribute reads
+	private final LongAdder reads = new LongAdder();
+
+	//-----------------------------------------------------------------
+	// Loader methods
+
+	/**
+	 * Builds a loader.
+	 * @param plan Attributes to read and their source
+	 * @param follow Report the files links point to instead of the links
+	 */
+	public AttributeLoader(AttributePlan plan, boolean follow) {
+		this.linkOptions = follow ? FOLLOW : NO_FOLLOW;
+		// Anything loaded on demand needs at least the basic view
+		this.planned = plan.source().compareTo(AttributeSource.BASIC) < 0 ? AttributeSource.BASIC : plan.source();
+		this.source = planned;
+		this.ownerNames = plan.attributes().contains(FileAttribute.OWNER);
+		this.groupNames = plan.attributes().contains(FileAttribute.GROUP);
+		this.owners = ownerNames || groupNames;
+		this.unixAttributes = unixAttributes(plan.attributes());
+	}
+
+	// Unix attributes needed by a plan
+	private static String unixAttributes(Set<FileAttribute> attributes) {
+		var ret = new StringBuilder(UNIX_ATTRIBUTES);
+		if (attributes.contains(FileAttribute.PERMISSIONS)) ret.append(",permissions");
+		if (attributes.contains(FileAttribute.LINKS)) ret.append(",nlink");
+		if (attributes.contains(FileAttribute.OWNER)) ret.append(",uid");
+		if (attributes.contains(FileAttribute.GROUP)) ret.append(",gid");
+		if (attributes.contains(FileAttribute.SIZE)) ret.append(",size");
+		if (attributes.contains(FileAttribute.MODIFICATION_TIME)) ret.append(",lastModifiedTime");
+		return ret.toString();
+	}
+
+	/**
+	 * @return Number of attribute reads (stat calls) so far
+	 */
+	public long getReads() {
+		return reads.sum();
+	}
+
+	/**
+	 * Reads the planned attributes of a file.  When following links, dangling
+	 * ones are reported themselves.
+	 * @param path A path
+	 * @return Its attributes
+	 * @throws IOException If they cannot be read
+	 */
+	public FileAttributes load(Path path) throws IOException {
+		try {
+			return load(path, linkOptions);
+		} catch (NoSuchFileException e) {
+			if (linkOptions == NO_FOLLOW) throw e;
+			return load(path, NO_FOLLOW);
+		}
+	}
+
+	// Reads the attributes from the current source
+	private FileAttributes load(Path path, LinkOption[] options) throws IOException {
+		boolean local = path.getFileSystem() == FileSystems.getDefault();
+		var current = local ? source : supportedSource(path.getFileSystem());
+		while (true) {
+			try {
+				return switch (current) {
+					case UNIX -> loadUnix(path, options);
+					case POSIX -> loadPosix(path, options);
+					default -> loadBasic(path, options);
+				};
+			} catch (UnsupportedOperationException | IllegalArgumentException e) {
+				if (current == AttributeSource.BASIC) throw e;
+				// View not supported here: try with the next one
+				current = AttributeSource.values()[current.ordinal() - 1];
+				if (local) source = current;
+			}
+		}
+	}
+
+	// Best source up to the planned one among the views of a file system
+	private AttributeSource supportedSource(FileSystem fileSystem) {
+		var views = fileSystem.supportedFileAttributeViews();
+		var ret = planned;
+		if (ret == AttributeSource.UNIX && !views.contains("unix")) ret = AttributeSource.POSIX;
+		if (ret == AttributeSource.POSIX && !views.contains("posix")) ret = AttributeSource.BASIC;
+		return ret;
+	}
+
+	// Unix view: the planned attributes in one go
+	@SuppressWarnings("unchecked")
+	private FileAttributes loadUnix(Path path, LinkOption[] options) throws IOException {
+		var map = Files.readAttributes(path, unixAttributes, options);
+		reads.increment();
+		int mode = (Integer) map.get("mode");
+		int type = mode & EntryBuffer.S_IFMT;
+		var size = (Long) map.get("size");
+		var links = (Number) map.get("nlink");
+		int uid = ownerNames ? (Integer) map.get("uid") : -1;
+		int gid = groupNames ? (Integer) map.get("gid") : -1;
+		return new FileAttributes(
+			type == EntryBuffer.S_IFDIR,
+			type == EntryBuffer.S_IFLNK,
+			type == EntryBuffer.S_IFREG,
+			size == null ? -1 : size,
+			(FileTime) map.get("lastModifiedTime"),
+			map.get("fileKey"),
+			(Set<PosixFilePermission>) map.get("permissions"),
+			ownerNames ? name(userNamesById, uid, true, path, options) : null,
+			groupNames ? name(groupNamesById, gid, false, path, options) : null,
+			mode,
+			links == null ? 1 : links.longValue(),
+			(Long) map.get("dev"),
+			uid,
+			gid
+		);
+	}
+
+	// Name of an owner or group id, resolved once: through the C library, or
+	//	else the unix view of a file with that id, at the cost of another read
+	private String name(Map<Integer, String> names, int id, boolean user, Path path, LinkOption[] options)
+			throws IOException {
+		var ret = names.get(id);
+		if (ret != null) return ret;
+		if (Libc.isAvailable()) {
+			ret = user ? Libc.userName(id) : Libc.groupName(id);
+		}
+		if (ret == null) {
+			var principal = (UserPrincipal) Files.getAttribute(path, user ? "unix:owner" : "unix:group", options);
+			reads.increment();
+			ret = principal.getName();
+		}
+		names.putIfAbsent(id, ret);
+		return ret;
+	}
+
+	// POSIX view; the names of the owner and the group are only looked up if
+	//	planned
+	private FileAttributes loadPosix(Path path, LinkOption[] options) throws IOException {
+		var attrs = Files.readAttributes(path, PosixFileAttributes.class, options);
+		reads.increment();
+		return new FileAttributes(
+			attrs.isDirectory(), attrs.isSymbolicLink(), attrs.isRegularFile(), attrs.size(),
+			attrs.lastModifiedTime(), attrs.fileKey(), attrs.permissions(),
+			ownerNames ? attrs.owner().getName() : null, groupNames ? attrs.group().getName() : null,
+			-1, 1, -1, -1, -1
+		);
+	}
+
+	// Basic view, plus the owner if needed and there is a view for it
+	private FileAttributes loadBasic(Path path, LinkOption[] options) throws IOException {
+		var attrs = Files.readAttributes(path, BasicFileAttributes.class, options);
+		reads.increment();
+		String owner = null;
+		var ownerView = owners ? Files.getFileAttributeView(path, FileOwnerAttributeView.class, options) : null;
+		if (ownerView != null) {
+			reads.increment();
+			owner = ownerView.getOwner().getName();
+		}
+		return new FileAttributes(
+			attrs.isDirectory(), attrs.isSymbolicLink(), attrs.isRegularFile(), attrs.size(),
+			attrs.lastModifiedTime(), attrs.fileKey(), null, owner, owner, -1, 1, -1, -1, -1
+		);
+	}
+}
@@ -0,0 +1,30 @@
+package unxutils.fs;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The attributes a listing needs and the cheapest way to read them.
+ * @param attributes Attributes needed for every entry
+ * @param source Source to read them from
+ */
+public record AttributePlan(Set<FileAttribute> attributes, AttributeSource source) {
+
+	/**
+	 * Plans how to read a set of attributes.
+	 * @param attributes Attributes needed for every entry
+	 * @return Plan reading them from their cheapest source
+	 */
+	public static AttributePlan of(Set<FileAttribute> attributes) {
+		var copy = attributes.isEmpty() ? EnumSet.noneOf(FileAttribute.class) : EnumSet.copyOf(attributes);
+		return new AttributePlan(Collections.unmodifiableSet(copy), AttributeSource.cheapestFor(copy));
+	}
+
+	/**
+	 * @return true if the entries have to be stat-ed, beyond unknown d_types
+	 */
+	public boolean needsStat() {
+		return source.compareTo(AttributeSource.DIRENT) > 0;
+	}
+}
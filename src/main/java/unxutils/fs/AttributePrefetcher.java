@@ -0,0 +1,155 @@
+package unxutils.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads the attributes of directory entries ahead of their use, for file
+ * systems where every read waits on the network (NFS, FUSE).  Entries are
+ * queued while the directory is read, through a bounded queue, and a fixed
+ * number of virtual threads read their attributes at the same time.<br>
+ * Entry buffers are only touched by the thread that owns them: results are
+ * stored when it queues more entries or waits for one.  Results for a buffer
+ * that was cleared in the meantime are dropped.  Entries that could not be
+ * read are left unloaded, so that the owner reads them again and gets the
+ * error.
+ */
+public class AttributePrefetcher implements Closeable {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Queued entries per worker
+	private static final int QUEUE_PER_WORKER = 64;
+
+	// An entry to read
+	private record Request(EntryBuffer entries, int generation, int index, Path path) {}
+	// Its attributes, null if they could not be read
+	private record Result(Request request, FileAttributes attributes) {}
+	// Tells a worker to finish
+	private static final Request STOP = new Request(null, 0, -1, null);
+
+	//-----------------------------------------------------------------
+	// Prefetcher properties
+
+	// Reads the attributes
+	private final AttributeLoader loader;
+	// Number of workers
+	private final int concurrency;
+	// Entries to read
+	private final BlockingQueue<Request> requests;
+	// Attributes read, waiting for the owner
+	private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+	// Workers
+	private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+	//-----------------------------------------------------------------
+	// Prefetcher methods
+
+	/**
+	 * Builds a prefetcher and starts its workers.
+	 * @param loader Reads the attributes; must be thread safe
+	 * @param concurrency Maximum number of reads at the same time
+	 */
+	public AttributePrefetcher(AttributeLoader loader, int concurrency) {
+		if (concurrency < 1) throw new IllegalArgumentException("concurrency: " + concurrency);
+		this.loader = loader;
+		this.concurrency = concurrency;
+		this.requests = new ArrayBlockingQueue<>(concurrency * QUEUE_PER_WORKER);
+		for (int i = 0; i < concurrency; i++) {
+			workers.execute(this::work);
+		}
+	}
+
+	/**
+	 * Queues an entry, waiting if the queue is full.
+	 * @param entries Buffer of the entry
+	 * @param index Entry index
+	 * @param path Path of the entry
+	 * @throws InterruptedIOException If interrupted while waiting
+	 */
+	public void prefetch(EntryBuffer entries, int index, Path path) throws InterruptedIOException {
+		drain();
+		entries.setPending(index, true);
+		try {
+			requests.put(new Request(entries, entries.generation(), index, path));
+		} catch (InterruptedException e) {
+			entries.setPending(index, false);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Waits until a queued entry is read, and stores its attributes in its
+	 * buffer.  Entries not queued return at once.
+	 * @param entries Buffer of the entry
+	 * @param index Entry index
+	 * @throws InterruptedIOException If interrupted while waiting
+	 */
+	public void await(EntryBuffer entries, int index) throws InterruptedIOException {
+		try {
+			while (entries.isPending(index)) {
+				store(results.take());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	// Stores every result already available
+	private void drain() {
+		for (var result = results.poll(); result != null; result = results.poll()) {
+			store(result);
+		}
+	}
+
+	// Stores a result in its buffer, unless the buffer was reused
+	private void store(Result result) {
+		var request = result.request();
+		var entries = request.entries();
+		if (entries.generation() != request.generation()) return;
+		if (result.attributes() != null) {
+			entries.load(request.index(), result.attributes());
+		}
+		entries.setPending(request.index(), false);
+	}
+
+	// Worker loop: reads queued entries until stopped
+	private void work() {
+		try {
+			for (var request = requests.take(); request != STOP; request = requests.take()) {
+				FileAttributes attributes = null;
+				try {
+					attributes = loader.load(request.path());
+				} catch (IOException | RuntimeException e) {
+					// The owner reads it again, and reports the error
+				}
+				results.add(new Result(request, attributes));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Drops the queued entries and stops the workers, once they finish their
+	 * current read.
+	 */
+	@Override
+	public void close() {
+		requests.clear();
+		for (int i = 0; i < concurrency; i++) {
+			requests.add(STOP);
+		}
+		workers.close();
+	}
+}
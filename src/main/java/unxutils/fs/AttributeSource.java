@@ -0,0 +1,62 @@
+package unxutils.fs;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static unxutils.fs.FileAttribute.GROUP;
+import static unxutils.fs.FileAttribute.IDENTITY;
+import static unxutils.fs.FileAttribute.LINKS;
+import static unxutils.fs.FileAttribute.MODIFICATION_TIME;
+import static unxutils.fs.FileAttribute.OWNER;
+import static unxutils.fs.FileAttribute.PERMISSIONS;
+import static unxutils.fs.FileAttribute.SIZE;
+import static unxutils.fs.FileAttribute.TYPE;
+
+/**
+ * Where file attributes come from, from the cheapest to the most expensive.
+ * Every source but NAME and DIRENT costs one stat per entry.
+ */
+public enum AttributeSource {
+	/** Only the name, as read from the directory */
+	NAME(EnumSet.noneOf(FileAttribute.class)),
+	/** The d_type of the directory entry; only unknown types are stat-ed */
+	DIRENT(EnumSet.of(TYPE)),
+	/** The basic attribute view */
+	BASIC(EnumSet.of(TYPE, SIZE, MODIFICATION_TIME, IDENTITY)),
+	/** The POSIX attribute view */
+	POSIX(EnumSet.of(TYPE, SIZE, MODIFICATION_TIME, IDENTITY, PERMISSIONS, OWNER, GROUP)),
+	/** The unix attribute view, the only one with the number of links and the device */
+	UNIX(EnumSet.allOf(FileAttribute.class));
+
+	//-----------------------------------------------------------------
+	// Source properties
+
+	// Attributes this source provides
+	private final Set<FileAttribute> provides;
+
+	AttributeSource(Set<FileAttribute> provides) {
+		this.provides = provides;
+	}
+
+	//-----------------------------------------------------------------
+	// Source methods
+
+	/**
+	 * @param attribute An attribute
+	 * @return true if this source provides it
+	 */
+	public boolean provides(FileAttribute attribute) {
+		return provides.contains(attribute);
+	}
+
+	/**
+	 * @param attributes Required attributes
+	 * @return The cheapest source providing all of them
+	 */
+	public static AttributeSource cheapestFor(Set<FileAttribute> attributes) {
+		for (var source: values()) {
+			if (source.provides.containsAll(attributes)) return source;
+		}
+		return UNIX;
+	}
+}
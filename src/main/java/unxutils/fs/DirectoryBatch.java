@@ -0,0 +1,23 @@
+package unxutils.fs;
+
+import java.nio.file.Path;
+
+/**
+ * The entries of a directory, as a walk reads them: what Listing streams and
+ * ls renders, one directory at a time.  The buffer belongs to the walk, which
+ * reuses it for another directory once the batch is done with.
+ * @param directory Directory read; null for the working directory
+ * @param depth Depth of its entries below the listed directory
+ * @param entries Its entries, by name and type, and their attributes once read
+ */
+public record DirectoryBatch(Path directory, int depth, EntryBuffer entries) {
+
+	/**
+	 * Path of an entry, built from the bytes of its name.
+	 * @param index Entry index
+	 * @return Its path
+	 */
+	public Path path(int index) {
+		return entries.path(directory, index);
+	}
+}
@@ -0,0 +1,68 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Enumerates the names and types of the entries of a directory, without
+ * reading any other attribute.  The "." and ".." entries are never reported.
+ * Readers keep reusable buffers and are not thread safe.
+ */
+public interface DirectoryReader {
+
+	/**
+	 * Receives the entries of a directory.
+	 */
+	interface EntryConsumer {
+		/**
+		 * @param name Entry name
+		 * @param type Entry type, UNKNOWN if the file system does not report it
+		 * @throws IOException If the entry cannot be processed
+		 */
+		void accept(String name, EntryType type) throws IOException;
+
+		/**
+		 * Receives an entry by the bytes of its name, as the file system keeps
+		 * them.  The name is decoded by default.
+		 * @param name Array holding the name
+		 * @param offset Start of the name
+		 * @param length Length of the name
+		 * @param type Entry type, UNKNOWN if the file system does not report it
+		 * @throws IOException If the entry cannot be processed
+		 */
+		default void accept(byte[] name, int offset, int length, EntryType type) throws IOException {
+			accept(new String(name, offset, length, Libc.FILE_NAME_CHARSET), type);
+		}
+	}
+
+	/**
+	 * Receives the entries of a directory by the bytes of their names, which
+	 * are never decoded: names not valid in the file name charset are kept as
+	 * they are.  The array is only valid during the call.
+	 */
+	interface RawEntryConsumer extends EntryConsumer {
+		@Override
+		void accept(byte[] name, int offset, int length, EntryType type) throws IOException;
+
+		@Override
+		default void accept(String name, EntryType type) throws IOException {
+			var bytes = name.getBytes(Libc.FILE_NAME_CHARSET);
+			accept(bytes, 0, bytes.length, type);
+		}
+	}
+
+	/**
+	 * Reads a directory.  The consumer must not call back into this reader.
+	 * @param directory Directory to read
+	 * @param consumer Receives every entry
+	 * @throws IOException If the directory cannot be read
+	 */
+	void read(Path directory, EntryConsumer consumer) throws IOException;
+
+	/**
+	 * @return The cheapest reader available on this platform
+	 */
+	static DirectoryReader create() {
+		return LinuxDirectoryReader.isSupported() ? new LinuxDirectoryReader() : new StreamDirectoryReader();
+	}
+}
@@ -0,0 +1,112 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Directories entered by a recursive listing, so that every walker decides
+ * alike which entries can be directories and which directories it enters.
+ * Directories are told apart by their key: the file key (device and inode)
+ * where available, the real path otherwise.  A tracker refuses a directory
+ * that is one of its own ancestors (a loop through links) and, if it has a
+ * set of visited keys, any directory already entered.<br>
+ * Ancestors are only kept by depth first walkers, which leave every directory
+ * after its contents; they are not thread safe.  A tracker with visited keys
+ * alone is as thread safe as the set it is given.
+ */
+public final class DirectoryTracker {
+
+	/**
+	 * Outcomes of entering a directory.
+	 */
+	public enum Outcome {
+		/** Entered */
+		ENTERED,
+		/** Refused: one of its own ancestors */
+		LOOP,
+		/** Refused: entered before */
+		VISITED
+	}
+
+	//-----------------------------------------------------------------
+	// Tracker properties
+
+	// Keys of the directories being listed, from the top one down to the
+	//	current one; null if not kept
+	private final LinkedHashSet<Object> ancestors;
+	// Keys of every directory entered; null if directories may be entered again
+	private final Set<Object> visited;
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	/**
+	 * Identity of a directory.
+	 * @param directory A directory
+	 * @param fileKey Its file key, if the file system reports one
+	 * @return Its file key, or else its real path
+	 * @throws IOException If the real path cannot be read
+	 */
+	public static Object key(Path directory, Object fileKey) throws IOException {
+		return fileKey != null ? fileKey : directory.toRealPath();
+	}
+
+	/**
+	 * Could an entry be a directory, after its type alone?  Links can only
+	 * when followed, and entries of unknown type have to be stat-ed.
+	 * @param type Type of the entry
+	 * @param followLinks Are symbolic links followed?
+	 * @return false if it is certainly not a directory
+	 */
+	public static boolean mayBeDirectory(EntryType type, boolean followLinks) {
+		return switch (type) {
+			case DIRECTORY, UNKNOWN -> true;
+			case SYMBOLIC_LINK -> followLinks;
+			default -> false;
+		};
+	}
+
+	//-----------------------------------------------------------------
+	// Tracker methods
+
+	/**
+	 * Builds a tracker.
+	 * @param ancestors Keep the ancestors to find loops?  Only for depth first
+	 * walkers, that leave every directory they enter
+	 * @param visited Keys of the directories entered so far, shared by the
+	 * walkers that enter every directory once; null if they may enter it again
+	 */
+	public DirectoryTracker(boolean ancestors, Set<Object> visited) {
+		this.ancestors = ancestors ? new LinkedHashSet<>() : null;
+		this.visited = visited;
+	}
+
+	/**
+	 * Enters a directory, before listing its contents.
+	 * @param key Its key
+	 * @return ENTERED, or why it is not entered
+	 */
+	public Outcome enter(Object key) {
+		if (ancestors != null && ancestors.contains(key)) {
+			return Outcome.LOOP;
+		}
+		if (visited != null && !visited.add(key)) {
+			return Outcome.VISITED;
+		}
+		if (ancestors != null) {
+			ancestors.add(key);
+		}
+		return Outcome.ENTERED;
+	}
+
+	/**
+	 * Leaves the directory entered last, after listing its contents.
+	 */
+	public void leave() {
+		if (ancestors != null) {
+			ancestors.removeLast();
+		}
+	}
+}
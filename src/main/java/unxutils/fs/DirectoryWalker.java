@@ -0,0 +1,237 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reads the directories of a walk into batches, and decides which of their
+ * entries the walk enters.  Listing and ls walk through it alike: names are
+ * filtered as the bytes the reader hands out, before anything else is read
+ * about them; paths are built from those bytes, so that names the file name
+ * charset cannot decode still name their entries; attributes are read once
+ * per entry, into its batch; and the tracker settles which directories are
+ * entered.<br>
+ * Every walker has a directory reader of its own and is not thread safe.  The
+ * loader and the prefetcher can be shared, and so can a tracker without
+ * ancestors.
+ */
+public final class DirectoryWalker {
+
+	/**
+	 * Filters the entries of a directory by name.
+	 */
+	@FunctionalInterface
+	public interface NameFilter {
+
+		/** Every name */
+		NameFilter ALL = (name, offset, length) -> true;
+
+		/**
+		 * Is an entry part of its batch?
+		 * @param name Array holding the name, as the file system keeps it
+		 * @param offset Start of the name
+		 * @param length Length of the name
+		 * @return true to keep the entry
+		 * @throws IOException To stop reading the directory
+		 */
+		boolean accept(byte[] name, int offset, int length) throws IOException;
+	}
+
+	/**
+	 * Tells whether a walk crosses into a directory, after its attributes: into
+	 * another file system, say.
+	 */
+	@FunctionalInterface
+	public interface Boundary {
+
+		/** No boundary: every directory is entered */
+		Boundary NONE = (directory, attributes) -> true;
+
+		/**
+		 * @param directory A directory
+		 * @param attributes Its attributes, as planned by the loader of the walker
+		 * @return Is the directory entered?
+		 */
+		boolean mayEnter(Path directory, FileAttributes attributes);
+	}
+
+	//-----------------------------------------------------------------
+	// Walker properties
+
+	// Directory entries source (names and types only)
+	private final DirectoryReader reader = DirectoryReader.create();
+	// Entries read
+	private final NameFilter filter;
+	// Reads the attributes of the entries
+	private final AttributeLoader loader;
+	// Are links followed?
+	private final boolean followLinks;
+	// Directories entered; null if every directory is, as many times as found
+	private final DirectoryTracker tracker;
+	// Directories crossed into
+	private final Boundary boundary;
+	// Reads attributes ahead; null if not
+	private final AttributePrefetcher prefetcher;
+
+	//-----------------------------------------------------------------
+	// Walker methods
+
+	/**
+	 * Builds a walker.
+	 * @param filter Entries read
+	 * @param loader Reads the attributes of the entries
+	 * @param followLinks Does the loader follow links?  Links to directories are
+	 * then entered too
+	 * @param tracker Directories entered; null to enter every directory, as many
+	 * times as it is found
+	 * @param boundary Directories crossed into
+	 * @param prefetcher Reads the attributes of the entries as they are read;
+	 * null to read them when asked
+	 */
+	public DirectoryWalker(NameFilter filter, AttributeLoader loader, boolean followLinks,
+			DirectoryTracker tracker, Boundary boundary, AttributePrefetcher prefetcher) {
+		this.filter = filter;
+		this.loader = loader;
+		this.followLinks = followLinks;
+		this.tracker = tracker;
+		this.boundary = boundary;
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * Reads the entries of a directory that pass the filter.  Names go straight
+	 * from the reader to the buffer, and are only decoded to match a pattern or
+	 * to build a path.
+	 * @param directory A directory
+	 * @param depth Depth of its entries
+	 * @param entries Buffer the entries are added to
+	 * @return The batch of the directory
+	 * @throws IOException If the directory cannot be read, or the filter stops
+	 */
+	public DirectoryBatch read(Path directory, int depth, EntryBuffer entries) throws IOException {
+		DirectoryReader.RawEntryConsumer consumer = (name, offset, length, type) -> {
+			if (!filter.accept(name, offset, length)) return;
+			int index = entries.add(name, offset, length, type);
+			if (prefetcher != null) {
+				prefetcher.prefetch(entries, index, entries.path(directory, index));
+			}
+		};
+		reader.read(directory, consumer);
+		return new DirectoryBatch(directory, depth, entries);
+	}
+
+	/**
+	 * Could an entry be a directory, without asking the file system?
+	 * @param batch A batch
+	 * @param index Entry index
+	 * @return false if it is certainly not a directory
+	 */
+	public boolean mayBeDirectory(DirectoryBatch batch, int index) {
+		var entries = batch.entries();
+		if (entries.isLoaded(index)) {
+			return entries.isDirectory(index);
+		}
+		return DirectoryTracker.mayBeDirectory(entries.type(index), followLinks);
+	}
+
+	/**
+	 * Is an entry a directory?  Only entries of unknown type, and links when
+	 * following them, need to be stat-ed, and only once.
+	 * @param batch A batch
+	 * @param index Entry index
+	 * @return false if it is not, or cannot be read
+	 */
+	public boolean isDirectory(DirectoryBatch batch, int index) {
+		var entries = batch.entries();
+		if (entries.isLoaded(index)) {
+			return entries.isDirectory(index);
+		}
+		var type = entries.type(index);
+		if (!DirectoryTracker.mayBeDirectory(type, followLinks)) return false;
+		if (type == EntryType.DIRECTORY) return true;
+		// Asks the file system, keeping the planned attributes read along
+		try {
+			ensureLoaded(batch, index);
+			return entries.isDirectory(index);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Makes sure the planned attributes of an entry are in its batch, waiting
+	 * for the prefetcher if it has the entry queued.
+	 * @param batch A batch
+	 * @param index Entry index
+	 * @throws IOException If they cannot be read
+	 */
+	public void ensureLoaded(DirectoryBatch batch, int index) throws IOException {
+		if (prefetcher != null) {
+			prefetcher.await(batch.entries(), index);
+		}
+		if (!batch.entries().isLoaded(index)) {
+			load(batch, index);
+		}
+	}
+
+	/**
+	 * Reads the planned attributes of an entry into its batch.
+	 * @param batch A batch
+	 * @param index Entry index
+	 * @return Its attributes
+	 * @throws IOException If they cannot be read
+	 */
+	public FileAttributes load(DirectoryBatch batch, int index) throws IOException {
+		var attributes = loader.load(batch.path(index));
+		batch.entries().load(index, attributes);
+		return attributes;
+	}
+
+	/**
+	 * Enters an entry of a batch, if it is a directory the walk goes into.  The
+	 * key of the directory and its device need a read of their own, which
+	 * settles unknown types too; directories known by their type are entered
+	 * without one when neither is needed.
+	 * @param batch A batch
+	 * @param index Entry index
+	 * @param attributes Attributes of the entry, read by the loader of this
+	 * walker; null to read them now
+	 * @return ENTERED or why a directory is not entered; null if the entry is not
+	 * a directory, or one across the boundary
+	 * @throws IOException If the attributes cannot be read
+	 */
+	public DirectoryTracker.Outcome enter(DirectoryBatch batch, int index, FileAttributes attributes)
+			throws IOException {
+		if (!mayBeDirectory(batch, index)) return null;
+		if (attributes == null && tracker == null && boundary == Boundary.NONE) {
+			return isDirectory(batch, index) ? DirectoryTracker.Outcome.ENTERED : null;
+		}
+		if (attributes == null) {
+			attributes = load(batch, index);
+		}
+		var directory = batch.path(index);
+		if (!attributes.directory() || !boundary.mayEnter(directory, attributes)) return null;
+		return enter(directory, attributes.fileKey());
+	}
+
+	/**
+	 * Enters a directory, before walking its contents.
+	 * @param directory A directory
+	 * @param fileKey Its file key, if the file system reports one
+	 * @return ENTERED, or why it is not entered
+	 * @throws IOException If its key cannot be read
+	 */
+	public DirectoryTracker.Outcome enter(Path directory, Object fileKey) throws IOException {
+		return tracker == null ? DirectoryTracker.Outcome.ENTERED
+			: tracker.enter(DirectoryTracker.key(directory, fileKey));
+	}
+
+	/**
+	 * Leaves the directory entered last, after walking its contents.
+	 */
+	public void leave() {
+		if (tracker != null) {
+			tracker.leave();
+		}
+	}
+}
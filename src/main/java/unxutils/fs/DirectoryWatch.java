@@ -0,0 +1,287 @@
+package unxutils.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Changes of watched directories, for incremental listings.  The names in every
+ * watched directory are kept in memory and only the entries named by the
+ * events of the WatchService are read again, so the steady state cost follows
+ * the rate of changes, not the size of the directories.  Events are coalesced
+ * per entry and poll.  When the service loses events (OVERFLOW), the directory
+ * is read again and compared with the names it had: new names are added,
+ * missing ones removed, and those modified since the previous poll changed.
+ */
+public class DirectoryWatch implements Closeable {
+
+	/**
+	 * Kinds of change.
+	 */
+	public enum Change {
+		/** A new entry */
+		ADDED,
+		/** An entry modified, or replaced */
+		CHANGED,
+		/** An entry gone */
+		REMOVED
+	}
+
+	/**
+	 * Receives the changes.
+	 */
+	public interface ChangeConsumer {
+		/**
+		 * @param change Kind of change
+		 * @param directory Directory of the entry
+		 * @param name Entry name
+		 * @param attributes Its attributes, as planned by the loader; null if removed
+		 * @throws IOException If the change cannot be processed
+		 */
+		void accept(Change change, Path directory, String name, FileAttributes attributes) throws IOException;
+	}
+
+	//-----------------------------------------------------------------
+	// Watch properties
+
+	// Source of the events
+	private final WatchService service;
+	// Reads the attributes of changed entries
+	private final AttributeLoader loader;
+	// Are new subdirectories watched too?
+	private final boolean recursive;
+	// Names to watch; the rest are ignored
+	private final Predicate<String> filter;
+	// Reads the names of the directories
+	private final DirectoryReader reader = DirectoryReader.create();
+	// Watched directories and the names in them
+	private final Map<Path, WatchKey> keys = new HashMap<>();
+	private final Map<WatchKey, Set<String>> names = new HashMap<>();
+	// Watched subdirectories of every watched directory, to forget a subtree
+	//	without going through the rest
+	private final Map<Path, Set<Path>> subdirectories = new HashMap<>();
+	// Time of the previous poll, in milliseconds
+	private long lastPoll = System.currentTimeMillis();
+
+	//-----------------------------------------------------------------
+	// Watch methods
+
+	/**
+	 * Builds a watch over the file system of a path.
+	 * @param path Any path of the file system
+	 * @param loader Reads the attributes of the changed entries
+	 * @param recursive Watch the subdirectories, and the new ones
+	 * @param filter Names to watch; the rest are ignored, as are the directories
+	 * 	they name
+	 * @throws IOException If the file system cannot be watched
+	 */
+	public DirectoryWatch(Path path, AttributeLoader loader, boolean recursive, Predicate<String> filter)
+			throws IOException {
+		this.service = path.getFileSystem().newWatchService();
+		this.loader = loader;
+		this.recursive = recursive;
+		this.filter = filter;
+	}
+
+	/**
+	 * Starts watching a directory, and its subdirectories if recursive.  Only
+	 * the names of the entries are read.
+	 * @param directory A directory
+	 * @throws IOException If it cannot be read or watched
+	 */
+	public void register(Path directory) throws IOException {
+		register(directory, null);
+	}
+
+	// Watches a directory, reporting its entries as added if there is a consumer
+	private void register(Path directory, ChangeConsumer consumer) throws IOException {
+		var parent = directory.getParent();
+		if (parent != null && keys.containsKey(parent)) {
+			subdirectories.computeIfAbsent(parent, p -> new HashSet<>()).add(directory);
+		}
+		if (keys.containsKey(directory)) return;
+		var key = directory.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+		var known = new HashSet<String>();
+		keys.put(directory, key);
+		names.put(key, known);
+		var children = new ArrayList<Path>();
+		reader.read(directory, (name, type) -> {
+			if (!filter.test(name)) return;
+			known.add(name);
+			var child = directory.resolve(name);
+			if (recursive && (type == EntryType.DIRECTORY
+					|| type == EntryType.UNKNOWN && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))) {
+				children.add(child);
+			}
+		});
+		if (consumer != null) {
+			for (var name: known) {
+				var attributes = loadIfPresent(directory.resolve(name));
+				if (attributes != null) consumer.accept(Change.ADDED, directory, name, attributes);
+			}
+		}
+		for (var child: children) {
+			register(child, consumer);
+		}
+	}
+
+	/**
+	 * Waits for changes and reports them.
+	 * @param timeout How long to wait
+	 * @param unit Unit of the timeout
+	 * @param consumer Receives the changes
+	 * @return false if nothing happened in time
+	 * @throws IOException If a change cannot be read or reported
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public boolean poll(long timeout, TimeUnit unit, ChangeConsumer consumer) throws IOException, InterruptedException {
+		var key = service.poll(timeout, unit);
+		if (key == null) return false;
+		long since = lastPoll;
+		lastPoll = System.currentTimeMillis();
+		do {
+			process(key, since, consumer);
+		} while ((key = service.poll()) != null);
+		return true;
+	}
+
+	// Reports the events of a directory, the last one of every entry only
+	private void process(WatchKey key, long since, ChangeConsumer consumer) throws IOException {
+		var directory = (Path) key.watchable();
+		var known = names.get(key);
+		var events = new LinkedHashMap<String, WatchEvent.Kind<?>>();
+		boolean overflow = false;
+		for (var event: key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			var name = event.context().toString();
+			if (filter.test(name)) events.put(name, event.kind());
+		}
+		if (known == null) {
+			// Forgotten while the events were on their way
+			key.cancel();
+			return;
+		}
+		if (!key.reset()) {
+			// The directory is gone: its parent reports it
+			forget(directory);
+			return;
+		}
+		if (overflow) {
+			rescan(directory, known, since, consumer);
+			return;
+		}
+		for (var event: events.entrySet()) {
+			var name = event.getKey();
+			if (event.getValue() == ENTRY_DELETE) {
+				remove(directory, known, name, consumer);
+			} else {
+				update(directory, known, name, consumer);
+			}
+		}
+	}
+
+	// Reads a directory again, after events were lost
+	private void rescan(Path directory, Set<String> known, long since, ChangeConsumer consumer) throws IOException {
+		var current = new HashSet<String>();
+		reader.read(directory, (name, type) -> {
+			if (filter.test(name)) current.add(name);
+		});
+		for (var name: new ArrayList<>(known)) {
+			if (!current.contains(name)) remove(directory, known, name, consumer);
+		}
+		for (var name: current) {
+			if (!known.contains(name)) {
+				update(directory, known, name, consumer);
+				continue;
+			}
+			var attributes = loadIfPresent(directory.resolve(name));
+			if (attributes != null && attributes.lastModifiedTime().toMillis() >= since) {
+				consumer.accept(Change.CHANGED, directory, name, attributes);
+			}
+		}
+	}
+
+	// Reads an entry again, and reports it as added or changed
+	private void update(Path directory, Set<String> known, String name, ChangeConsumer consumer) throws IOException {
+		var child = directory.resolve(name);
+		var attributes = loadIfPresent(child);
+		if (attributes == null) {
+			// Gone before we could read it
+			remove(directory, known, name, consumer);
+			return;
+		}
+		var added = known.add(name);
+		consumer.accept(added ? Change.ADDED : Change.CHANGED, directory, name, attributes);
+		if (added && recursive && attributes.directory() && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+			register(child, consumer);
+		}
+	}
+
+	// Reports an entry as removed, if it was there
+	private void remove(Path directory, Set<String> known, String name, ChangeConsumer consumer) throws IOException {
+		if (known.remove(name)) {
+			forget(directory.resolve(name));
+			consumer.accept(Change.REMOVED, directory, name, null);
+		}
+	}
+
+	// Attributes of an entry, null if it does not exist
+	private FileAttributes loadIfPresent(Path path) throws IOException {
+		try {
+			return loader.load(path);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	// Stops watching a directory and the watched directories under it; nothing
+	//	to do for any other entry
+	private void forget(Path directory) {
+		var key = keys.remove(directory);
+		if (key == null) return;
+		key.cancel();
+		names.remove(key);
+		var parent = directory.getParent();
+		var siblings = parent == null ? null : subdirectories.get(parent);
+		if (siblings != null) siblings.remove(directory);
+		// Removed first, so that the children do not look for themselves in it
+		var children = subdirectories.remove(directory);
+		if (children != null) {
+			for (var child: children) forget(child);
+		}
+	}
+
+	/**
+	 * @return Number of watched directories
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+}
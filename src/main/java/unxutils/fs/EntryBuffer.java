@@ -0,0 +1,449 @@
+package unxutils.fs;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The entries of a directory, stored by column: names as the bytes the file
+ * system keeps, in a single arena, and every attribute in a primitive array, so that an entry
+ * costs a few dozen bytes and no objects.  Entries are referred to by their
+ * index, in the order they were added.  Attribute columns are only allocated
+ * once some entry is loaded, so listings by name only do not pay for them.<br>
+ * Owner and group names are kept once per id.  Where the file system has no
+ * numeric ids, names are given negative ones.<br>
+ * A buffer can be cleared and reused for another directory; every use is a
+ * new generation.
+ */
+public class EntryBuffer {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** Mask of the file type bits of a mode */
+	public static final int S_IFMT = 0170000;
+	/** Directory type bits */
+	public static final int S_IFDIR = 0040000;
+	/** Regular file type bits */
+	public static final int S_IFREG = 0100000;
+	/** Symbolic link type bits */
+	public static final int S_IFLNK = 0120000;
+	/** Id of unknown owners and groups */
+	public static final int NO_ID = -1;
+
+	// Initial number of entries
+	private static final int INITIAL_ENTRIES = 64;
+	// Initial size of the name arena
+	private static final int INITIAL_NAME_BYTES = 1024;
+	// Below this, sorting is done by insertion
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+	// Entry flags: attributes loaded
+	private static final byte LOADED = 1;
+	// Entry flags: the mode includes permission bits
+	private static final byte PERMISSIONS = 2;
+	// Entry flags: attributes being read by someone else
+	private static final byte PENDING = 4;
+	// Entry types by ordinal
+	private static final EntryType[] TYPES = EntryType.values();
+
+	/**
+	 * Compares two entries by their indices.
+	 */
+	@FunctionalInterface
+	public interface IndexComparator {
+		/**
+		 * @param a An entry index
+		 * @param b Another entry index
+		 * @return Negative, zero or positive, as a Comparator
+		 */
+		int compare(int a, int b);
+	}
+
+	//-----------------------------------------------------------------
+	// Buffer properties
+
+	// Number of entries
+	private int size = 0;
+	// Number of times the buffer was cleared
+	private int generation = 0;
+	// Names arena
+	private byte[] names = new byte[INITIAL_NAME_BYTES];
+	// Used bytes of the arena
+	private int namesLength = 0;
+	// Start of every name; the name of i ends where i + 1 starts
+	private int[] offsets = new int[INITIAL_ENTRIES + 1];
+	// Entry types, as reported by the directory
+	private byte[] types = new byte[INITIAL_ENTRIES];
+	// Entry flags
+	private byte[] flags = new byte[INITIAL_ENTRIES];
+	// Attribute columns, allocated on the first load
+	private int[] modes;
+	private int[] links;
+	private int[] uids;
+	private int[] gids;
+	private long[] sizes;
+	private long[] mtimes;
+	// Names of the owners and groups, by id
+	private final Map<Integer, String> userNames = new HashMap<>();
+	private final Map<Integer, String> groupNames = new HashMap<>();
+	// Ids given to names without a numeric one
+	private final Map<String, Integer> negativeIds = new HashMap<>();
+
+	//-----------------------------------------------------------------
+	// Buffer methods
+
+	/**
+	 * @return Number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every entry, keeping the storage.
+	 */
+	public void clear() {
+		size = 0;
+		namesLength = 0;
+		generation++;
+	}
+
+	/**
+	 * @return Number of times the buffer was cleared, to tell its uses apart
+	 */
+	public int generation() {
+		return generation;
+	}
+
+	/**
+	 * Adds an entry.
+	 * @param name Its name
+	 * @param type Its type, as reported by the directory
+	 * @return Its index
+	 */
+	public int add(String name, EntryType type) {
+		var bytes = name.getBytes(Libc.FILE_NAME_CHARSET);
+		return add(bytes, 0, bytes.length, type);
+	}
+
+	/**
+	 * Adds an entry.
+	 * @param name Array holding its name, in the file name charset
+	 * @param offset Start of the name
+	 * @param length Length of the name
+	 * @param type Its type, as reported by the directory
+	 * @return Its index
+	 */
+	public int add(byte[] name, int offset, int length, EntryType type) {
+		if (size == types.length) grow();
+		if (namesLength + length > names.length) {
+			names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + length));
+		}
+		System.arraycopy(name, offset, names, namesLength, length);
+		offsets[size] = namesLength;
+		namesLength += length;
+		offsets[size + 1] = namesLength;
+		types[size] = (byte) type.ordinal();
+		flags[size] = 0;
+		return size++;
+	}
+
+	// Doubles the entry columns
+	private void grow() {
+		int capacity = types.length * 2;
+		offsets = Arrays.copyOf(offsets, capacity + 1);
+		types = Arrays.copyOf(types, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		if (modes != null) {
+			modes = Arrays.copyOf(modes, capacity);
+			links = Arrays.copyOf(links, capacity);
+			uids = Arrays.copyOf(uids, capacity);
+			gids = Arrays.copyOf(gids, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			mtimes = Arrays.copyOf(mtimes, capacity);
+		}
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return Its name
+	 */
+	public String name(int index) {
+		return new String(names, offsets[index], nameLength(index), Libc.FILE_NAME_CHARSET);
+	}
+
+	/**
+	 * @param directory Directory of the entry, null if relative to the working
+	 * directory
+	 * @param index Entry index
+	 * @return Its path, built from the bytes of its name
+	 */
+	public Path path(Path directory, int index) {
+		return FileNames.resolve(directory, names, offsets[index], nameLength(index));
+	}
+
+	/**
+	 * @return The names arena; only valid until the next add
+	 */
+	public byte[] nameBytes() {
+		return names;
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return Start of its name in the arena
+	 */
+	public int nameOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return Length of its name in bytes
+	 */
+	public int nameLength(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return Its type, as reported by the directory
+	 */
+	public EntryType type(int index) {
+		return TYPES[types[index]];
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return true if its attributes were loaded
+	 */
+	public boolean isLoaded(int index) {
+		return (flags[index] & LOADED) != 0;
+	}
+
+	/**
+	 * @param index Entry index
+	 * @return true if its attributes are being read elsewhere
+	 */
+	public boolean isPending(int index) {
+		return (flags[index] & PENDING) != 0;
+	}
+
+	/**
+	 * Marks the attributes of an entry as being read elsewhere, or not any more.
+	 * @param index Entry index
+	 * @param pending Are they being read?
+	 */
+	public void setPending(int index, boolean pending) {
+		flags[index] = (byte) (pending ? flags[index] | PENDING : flags[index] & ~PENDING);
+	}
+
+	/**
+	 * Stores the attributes of an entry.
+	 * @param index Entry index
+	 * @param attributes Its attributes
+	 */
+	public void load(int index, FileAttributes attributes) {
+		if (modes == null) {
+			int capacity = types.length;
+			modes = new int[capacity];
+			links = new int[capacity];
+			uids = new int[capacity];
+			gids = new int[capacity];
+			sizes = new long[capacity];
+			mtimes = new long[capacity];
+		}
+		byte entryFlags = LOADED;
+		int mode = attributes.mode();
+		if (mode >= 0) {
+			entryFlags |= PERMISSIONS;
+		} else {
+			mode = attributes.directory() ? S_IFDIR
+				: attributes.symbolicLink() ? S_IFLNK
+				: attributes.regularFile() ? S_IFREG : 0;
+			if (attributes.permissions() != null) {
+				entryFlags |= PERMISSIONS;
+				mode |= permissionBits(attributes.permissions());
+			}
+		}
+		modes[index] = mode;
+		links[index] = (int) Math.min(attributes.links(), Integer.MAX_VALUE);
+		sizes[index] = attributes.size();
+		mtimes[index] = attributes.lastModifiedTime() == null ? 0 : attributes.lastModifiedTime().toMillis();
+		uids[index] = id(userNames, attributes.uid(), attributes.owner());
+		gids[index] = id(groupNames, attributes.gid(), attributes.group());
+		flags[index] = entryFlags;
+	}
+
+	// Mode bits of a set of permissions: OWNER_READ is 0400, OTHERS_EXECUTE 01
+	private static int permissionBits(Set<PosixFilePermission> permissions) {
+		int bits = 0;
+		for (var permission: permissions) {
+			bits |= 1 << (8 - permission.ordinal());
+		}
+		return bits;
+	}
+
+	// Registers the name of an id, making one up if there is none
+	private int id(Map<Integer, String> namesById, int id, String name) {
+		if (name == null) return NO_ID;
+		if (id < 0) {
+			id = negativeIds.computeIfAbsent(name, n -> -2 - negativeIds.size());
+		}
+		namesById.putIfAbsent(id, name);
+		return id;
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its mode: type bits, and permission bits if hasPermissions
+	 */
+	public int mode(int index) {
+		return modes[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return true if the file system reported its permissions
+	 */
+	public boolean hasPermissions(int index) {
+		return (flags[index] & PERMISSIONS) != 0;
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return true if its attributes are those of a directory
+	 */
+	public boolean isDirectory(int index) {
+		return (modes[index] & S_IFMT) == S_IFDIR;
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return true if its attributes are those of a symbolic link
+	 */
+	public boolean isSymbolicLink(int index) {
+		return (modes[index] & S_IFMT) == S_IFLNK;
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its number of hard links
+	 */
+	public int links(int index) {
+		return links[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its size in bytes
+	 */
+	public long fileSize(int index) {
+		return sizes[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its last modification time, in milliseconds since the epoch
+	 */
+	public long lastModified(int index) {
+		return mtimes[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its owner id, negative if made up or unknown
+	 */
+	public int uid(int index) {
+		return uids[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its group id, negative if made up or unknown
+	 */
+	public int gid(int index) {
+		return gids[index];
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its owner name, null if unknown
+	 */
+	public String owner(int index) {
+		return userNames.get(uids[index]);
+	}
+
+	/**
+	 * @param index Entry index, loaded
+	 * @return Its group name, null if unknown
+	 */
+	public String group(int index) {
+		return groupNames.get(gids[index]);
+	}
+
+	/**
+	 * Compares the names of two entries byte by byte, as the C locale does.
+	 * @param a An entry index
+	 * @param b Another entry index
+	 * @return Negative, zero or positive, as a Comparator
+	 */
+	public int compareNames(int a, int b) {
+		return Arrays.compareUnsigned(
+			names, offsets[a], offsets[a + 1],
+			names, offsets[b], offsets[b + 1]);
+	}
+
+	/**
+	 * @return The entry indices, in the order they were added
+	 */
+	public int[] indices() {
+		var order = new int[size];
+		for (int i = 0; i < size; i++) order[i] = i;
+		return order;
+	}
+
+	/**
+	 * Sorts the entries without moving them.  The sort is stable.
+	 * @param comparator Entry order
+	 * @return The entry indices, in order
+	 */
+	public int[] sort(IndexComparator comparator) {
+		var order = indices();
+		if (size > 1) {
+			mergeSort(order, order.clone(), 0, size, comparator);
+		}
+		return order;
+	}
+
+	// Stable merge sort of order[from, to), using work as scratch (same contents)
+	private static void mergeSort(int[] order, int[] work, int from, int to, IndexComparator comparator) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				int index = order[i];
+				int j = i - 1;
+				while (j >= from && comparator.compare(order[j], index) > 0) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = index;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		// Sort both halves into work, then merge them back into order
+		mergeSort(work, order, from, middle, comparator);
+		mergeSort(work, order, middle, to, comparator);
+		int left = from, right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < middle && comparator.compare(work[left], work[right]) <= 0)) {
+				order[i] = work[left++];
+			} else {
+				order[i] = work[right++];
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package unxutils.fs;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Type of a directory entry, as reported by the d_type field of the dirent
+ * structure.  UNKNOWN means that the file system did not report it and the
+ * entry must be stat-ed to find out.
+ */
+public enum EntryType {
+	UNKNOWN,
+	FIFO,
+	CHARACTER_DEVICE,
+	DIRECTORY,
+	BLOCK_DEVICE,
+	REGULAR,
+	SYMBOLIC_LINK,
+	SOCKET;
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// d_type values (dirent.h)
+	private static final int DT_FIFO = 1;
+	private static final int DT_CHR = 2;
+	private static final int DT_DIR = 4;
+	private static final int DT_BLK = 6;
+	private static final int DT_REG = 8;
+	private static final int DT_LNK = 10;
+	private static final int DT_SOCK = 12;
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	/**
+	 * @param dType d_type field of a dirent structure
+	 * @return Corresponding entry type
+	 */
+	public static EntryType ofDType(int dType) {
+		return switch (dType) {
+			case DT_FIFO -> FIFO;
+			case DT_CHR -> CHARACTER_DEVICE;
+			case DT_DIR -> DIRECTORY;
+			case DT_BLK -> BLOCK_DEVICE;
+			case DT_REG -> REGULAR;
+			case DT_LNK -> SYMBOLIC_LINK;
+			case DT_SOCK -> SOCKET;
+			default -> UNKNOWN;
+		};
+	}
+
+	/**
+	 * @param attrs Attributes of the entry, read without following links
+	 * @return Corresponding entry type
+	 */
+	public static EntryType of(BasicFileAttributes attrs) {
+		if (attrs.isDirectory()) return DIRECTORY;
+		if (attrs.isSymbolicLink()) return SYMBOLIC_LINK;
+		if (attrs.isRegularFile()) return REGULAR;
+		// Devices, pipes and sockets cannot be told apart with the basic view
+		return UNKNOWN;
+	}
+
+	/**
+	 * @param attributes Attributes of the entry, as read by an AttributeLoader
+	 * @return Corresponding entry type
+	 */
+	public static EntryType of(FileAttributes attributes) {
+		if (attributes.mode() >= 0) return ofDType((attributes.mode() & EntryBuffer.S_IFMT) >> 12);
+		if (attributes.directory()) return DIRECTORY;
+		if (attributes.symbolicLink()) return SYMBOLIC_LINK;
+		if (attributes.regularFile()) return REGULAR;
+		return UNKNOWN;
+	}
+}
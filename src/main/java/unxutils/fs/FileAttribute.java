@@ -0,0 +1,27 @@
+package unxutils.fs;
+
+/**
+ * Metadata of a file that a listing may need, besides its name.
+ */
+public enum FileAttribute {
+	/** Directory, link, regular file... */
+	TYPE,
+	/** rwx permission bits */
+	PERMISSIONS,
+	/** The whole mode: permission bits, and setuid, setgid and sticky */
+	MODE,
+	/** Number of hard links */
+	LINKS,
+	/** Owner name */
+	OWNER,
+	/** Group name */
+	GROUP,
+	/** Size in bytes */
+	SIZE,
+	/** Last modification time */
+	MODIFICATION_TIME,
+	/** Device and inode (file key) */
+	IDENTITY,
+	/** Device id alone, to tell file systems apart */
+	DEVICE
+}
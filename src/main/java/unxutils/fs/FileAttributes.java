@@ -0,0 +1,41 @@
+package unxutils.fs;
+
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+/**
+ * Attributes of a file, as read by an AttributeLoader.  Fields the chosen
+ * source does not provide are left null, -1 or false.
+ * @param directory Is it a directory?
+ * @param symbolicLink Is it a symbolic link?
+ * @param regularFile Is it a regular file?
+ * @param size Size in bytes
+ * @param lastModifiedTime Last modification time
+ * @param fileKey Object identifying the file (device and inode), may be null
+ * @param permissions Permissions, null if not supported
+ * @param owner Owner name, may be null
+ * @param group Group name, may be null
+ * @param mode Unix mode bits, including type and setuid/setgid/sticky, -1 if not available
+ * @param links Number of hard links, 1 if not available
+ * @param device Device id, -1 if not available
+ * @param uid Owner id, -1 if not available
+ * @param gid Group id, -1 if not available
+ */
+public record FileAttributes(
+	boolean directory,
+	boolean symbolicLink,
+	boolean regularFile,
+	long size,
+	FileTime lastModifiedTime,
+	Object fileKey,
+	Set<PosixFilePermission> permissions,
+	String owner,
+	String group,
+	int mode,
+	long links,
+	long device,
+	int uid,
+	int gid
+) {
+}
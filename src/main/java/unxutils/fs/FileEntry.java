@@ -0,0 +1,29 @@
+package unxutils.fs;
+
+import java.nio.file.Path;
+
+/**
+ * An entry of a Listing.
+ * @param path Path of the entry: the listed path resolved with the names down to it
+ * @param type Type, as its directory reports it; UNKNOWN if the file system does not tell
+ * @param depth 0 for the entries of the listed directory, 1 for those of its subdirectories...
+ * @param attributes Attributes asked for in the options of the listing, null if none were
+ */
+public record FileEntry(Path path, EntryType type, int depth, FileAttributes attributes) {
+
+	/**
+	 * @return Name of the entry
+	 */
+	public String name() {
+		var name = path.getFileName();
+		return name == null ? path.toString() : name.toString();
+	}
+
+	/**
+	 * @return Is it a directory?  After the attributes if they were read (links
+	 * followed if the listing follows them), after the type otherwise
+	 */
+	public boolean isDirectory() {
+		return attributes != null ? attributes.directory() : type == EntryType.DIRECTORY;
+	}
+}
@@ -0,0 +1,119 @@
+package unxutils.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Paths built from file names as the bytes the file system keeps.  The JDK
+ * decodes names with the file name charset, and a name that is not valid in
+ * it (bad\xff in UTF-8, or café when the locale is C) does not come back as
+ * the same bytes: resolving its decoded String names another file, or fails.
+ * Those names go through a file: URI instead, whose escaped octets the JDK
+ * keeps as bytes, so that the path names the entry read.  Valid names cost no
+ * more than before.
+ */
+public final class FileNames {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Digits of the escaped octets
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	private FileNames() {
+	}
+
+	/**
+	 * Path of an entry of a directory.
+	 * @param directory Directory, null for a path relative to the working directory
+	 * @param name Array holding the name, as the file system keeps it
+	 * @param offset Start of the name
+	 * @param length Length of the name
+	 * @return Path of the entry, naming it even if the name cannot be decoded
+	 */
+	public static Path resolve(Path directory, byte[] name, int offset, int length) {
+		boolean local = directory == null || directory.getFileSystem() == FileSystems.getDefault();
+		if (!local || survivesDecoding(name, offset, length)) {
+			var decoded = new String(name, offset, length, Libc.FILE_NAME_CHARSET);
+			return directory == null ? Path.of(decoded) : directory.resolve(decoded);
+		}
+		var raw = rawName(name, offset, length);
+		return directory == null ? raw : directory.resolve(raw);
+	}
+
+	/**
+	 * Bytes of a path, as the file system keeps them.  Paths of the default
+	 * file system whose String does not give them back are made absolute.
+	 * @param path A path
+	 * @return Its bytes
+	 */
+	public static byte[] bytes(Path path) {
+		var decoded = path.toString();
+		if (path.getFileSystem() != FileSystems.getDefault()) {
+			return decoded.getBytes(Libc.FILE_NAME_CHARSET);
+		}
+		try {
+			if (Path.of(decoded).equals(path)) return decoded.getBytes(Libc.FILE_NAME_CHARSET);
+		} catch (InvalidPathException e) {
+			// Not even encodable: see below
+		}
+		return unescape(path.toAbsolutePath().toUri().getRawPath());
+	}
+
+	/**
+	 * Bytes of the file name of a path, as the file system keeps them.
+	 * @param path A path with a file name
+	 * @return The bytes of its last element
+	 */
+	public static byte[] fileNameBytes(Path path) {
+		var ret = bytes(path.getFileName());
+		int slash = ret.length - 1;
+		while (slash >= 0 && ret[slash] != '/') slash--;
+		return slash < 0 ? ret : Arrays.copyOfRange(ret, slash + 1, ret.length);
+	}
+
+	// Do the bytes of a name come back from decoding and encoding it?  Always
+	//	for ASCII, which every file name charset keeps
+	private static boolean survivesDecoding(byte[] name, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (name[i] < 0) {
+				var decoded = new String(name, offset, length, Libc.FILE_NAME_CHARSET);
+				var encoded = decoded.getBytes(Libc.FILE_NAME_CHARSET);
+				return Arrays.equals(encoded, 0, encoded.length, name, offset, offset + length);
+			}
+		}
+		return true;
+	}
+
+	// A name as a relative path of the default file system, with its bytes
+	private static Path rawName(byte[] name, int offset, int length) {
+		var uri = new StringBuilder(8 + 3 * length).append("file:///");
+		for (int i = offset; i < offset + length; i++) {
+			uri.append('%').append(HEX[(name[i] >> 4) & 0xF]).append(HEX[name[i] & 0xF]);
+		}
+		return Path.of(URI.create(uri.toString())).getFileName();
+	}
+
+	// Bytes of the raw path of a file: URI, without a trailing slash
+	private static byte[] unescape(String rawPath) {
+		var ret = new ByteArrayOutputStream(rawPath.length());
+		int end = rawPath.length() > 1 && rawPath.endsWith("/") ? rawPath.length() - 1 : rawPath.length();
+		for (int i = 0; i < end; i++) {
+			char c = rawPath.charAt(i);
+			if (c == '%' && i + 2 < end) {
+				ret.write(Integer.parseInt(rawPath, i + 1, i + 3, 16));
+				i += 2;
+			} else {
+				ret.write(c);
+			}
+		}
+		return ret.toByteArray();
+	}
+}
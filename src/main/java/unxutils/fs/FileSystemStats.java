@@ -0,0 +1,193 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Space and inode figures of a mounted file system, as raw counts.  They are
+ * read with a single statvfs call where the C library is available, and from
+ * the JDK file store otherwise, which knows nothing of inodes.
+ * @param size Size in bytes
+ * @param free Free bytes, reserved blocks included
+ * @param available Bytes available to unprivileged users
+ * @param files Number of inodes, -1 if unknown
+ * @param filesFree Free inodes, -1 if unknown
+ * @param readOnly Is it mounted read only?
+ */
+public record FileSystemStats(long size, long free, long available, long files, long filesFree, boolean readOnly) {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// struct statvfs on LP64 Linux: unsigned longs f_bsize, f_frsize, f_blocks,
+	//	f_bfree, f_bavail, f_files, f_ffree, f_favail, f_fsid, f_flag, f_namemax,
+	//	then int __f_spare[6]
+	private static final int STATVFS_SIZE = 112;
+	private static final int F_FRSIZE = 8;
+	private static final int F_BLOCKS = 16;
+	private static final int F_BFREE = 24;
+	private static final int F_BAVAIL = 32;
+	private static final int F_FILES = 40;
+	private static final int F_FFREE = 48;
+	private static final int F_FLAG = 72;
+	// Read only mount flag
+	private static final long ST_RDONLY = 1;
+
+	/**
+	 * @return Used bytes: size minus free
+	 */
+	public long used() {
+		return size - free;
+	}
+
+	/**
+	 * @return Used inodes, -1 if unknown
+	 */
+	public long filesUsed() {
+		return files < 0 ? -1 : files - filesFree;
+	}
+
+	/**
+	 * Gets mounts ready to be read.  Without statvfs, their file stores are
+	 * resolved here in a single enumeration of the JDK file stores: resolving
+	 * them one by one reads the whole mount table again for every mount.
+	 * @param mounts Mounts of the mount table
+	 * @return The same mounts, with their file stores if they are needed
+	 */
+	public static List<MountEntry> prepare(List<MountEntry> mounts) {
+		if (Libc.isAvailable() || mounts.stream().allMatch(mount -> mount.store() != null)) return mounts;
+		// Later mounts on a mount point hide the previous ones
+		var stores = new HashMap<String, FileStore>();
+		for (var store: FileSystems.getDefault().getFileStores()) {
+			stores.put(MountTable.mountPoint(store), store);
+		}
+		var ret = new ArrayList<MountEntry>(mounts.size());
+		for (var mount: mounts) {
+			var store = mount.store() == null ? stores.get(mount.mountPoint()) : null;
+			ret.add(store == null ? mount : mount.withStore(store));
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads the figures of a mount.
+	 * @param mount A mount
+	 * @return Its figures
+	 * @throws IOException If the file system cannot be queried
+	 */
+	public static FileSystemStats read(MountEntry mount) throws IOException {
+		if (Libc.isAvailable() && mount.store() == null) {
+			try (var arena = Arena.ofConfined()) {
+				var path = path(arena, mount.mountPoint());
+				var buffer = arena.allocate(STATVFS_SIZE, 8);
+				if (Libc.statvfs(path, buffer) == 0) {
+					long blockSize = buffer.get(JAVA_LONG, F_FRSIZE);
+					return new FileSystemStats(
+						buffer.get(JAVA_LONG, F_BLOCKS) * blockSize,
+						buffer.get(JAVA_LONG, F_BFREE) * blockSize,
+						buffer.get(JAVA_LONG, F_BAVAIL) * blockSize,
+						buffer.get(JAVA_LONG, F_FILES),
+						buffer.get(JAVA_LONG, F_FFREE),
+						(buffer.get(JAVA_LONG, F_FLAG) & ST_RDONLY) != 0);
+				}
+				// Let the JDK report the error
+			}
+		}
+		var store = mount.fileStore();
+		return new FileSystemStats(store.getTotalSpace(), store.getUnallocatedSpace(), store.getUsableSpace(),
+			-1, -1, store.isReadOnly());
+	}
+
+	// NUL terminated path of a mount point for statvfs
+	private static MemorySegment path(Arena arena, String mountPoint) {
+		var name = mountPoint.getBytes(Libc.FILE_NAME_CHARSET);
+		// Zeroed, so NUL terminated
+		var ret = arena.allocate(name.length + 1, 1);
+		MemorySegment.copy(name, 0, ret, JAVA_BYTE, 0, name.length);
+		return ret;
+	}
+
+	/**
+	 * Reads the used and available space of a fixed set of mounts again and
+	 * again, for df --watch.  The paths and the statvfs buffer are allocated
+	 * once, so that a sample of a mount is a single statvfs call that
+	 * allocates nothing; without statvfs, the file stores are kept.  Not
+	 * thread safe.
+	 */
+	public static final class Sampler {
+
+		// Mounts, prepared
+		private final List<MountEntry> mounts;
+		// Their paths for statvfs, null without it
+		private final MemorySegment[] paths;
+		// Their file stores, resolved when first needed
+		private final FileStore[] stores;
+		// statvfs buffer
+		private final MemorySegment buffer;
+		// Figures of the last mount read
+		private long used;
+		private long available;
+
+		/**
+		 * Builds a sampler.
+		 * @param mounts Mounts, from prepare()
+		 */
+		public Sampler(List<MountEntry> mounts) {
+			this.mounts = List.copyOf(mounts);
+			stores = new FileStore[mounts.size()];
+			if (Libc.isAvailable()) {
+				// Released by the garbage collector along with the sampler
+				var arena = Arena.ofAuto();
+				paths = new MemorySegment[mounts.size()];
+				for (int i = 0; i < paths.length; i++) {
+					if (mounts.get(i).store() == null) paths[i] = path(arena, mounts.get(i).mountPoint());
+				}
+				buffer = arena.allocate(STATVFS_SIZE, 8);
+			} else {
+				paths = null;
+				buffer = null;
+			}
+		}
+
+		/**
+		 * Reads the figures of a mount, then told by used() and available().
+		 * @param i Index of the mount
+		 * @throws IOException If the file system cannot be queried
+		 */
+		public void read(int i) throws IOException {
+			if (paths != null && paths[i] != null && Libc.statvfs(paths[i], buffer) == 0) {
+				long blockSize = buffer.get(JAVA_LONG, F_FRSIZE);
+				used = (buffer.get(JAVA_LONG, F_BLOCKS) - buffer.get(JAVA_LONG, F_BFREE)) * blockSize;
+				available = buffer.get(JAVA_LONG, F_BAVAIL) * blockSize;
+				return;
+			}
+			// Without statvfs, or to let the JDK report the error
+			if (stores[i] == null) stores[i] = mounts.get(i).fileStore();
+			used = stores[i].getTotalSpace() - stores[i].getUnallocatedSpace();
+			available = stores[i].getUsableSpace();
+		}
+
+		/**
+		 * @return Used bytes of the last mount read: size minus free
+		 */
+		public long used() {
+			return used;
+		}
+
+		/**
+		 * @return Bytes available to unprivileged users on the last mount read
+		 */
+		public long available() {
+			return available;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package unxutils.fs;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Linux C library functions, called through the Foreign Function &amp; Memory
+ * API.  They are only bound when running on a supported Linux architecture
+ * and native access has been granted to this code
+ * (--enable-native-access=ALL-UNNAMED, which the launchers pass, or
+ * Enable-Native-Access in the manifest of the jar run with java -jar), so
+ * that the JVM never prints its restricted method warning.  Callers must check
+ * isAvailable() and fall back to the JDK otherwise.
+ */
+public final class Libc {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** open(2) flags */
+	public static final int O_RDONLY = 0;
+	public static final int O_CLOEXEC = 0x80000;
+	public static final int O_DIRECTORY;
+	/** Charset used by the JDK for file names */
+	public static final Charset FILE_NAME_CHARSET = fileNameCharset();
+
+	// ERANGE: the buffer of a getpwuid_r or getgrgid_r call is too small
+	private static final int ERANGE = 34;
+	// Room for a struct passwd or a struct group, whose names come first
+	private static final long ENTRY_SIZE = 64;
+	// First and largest buffer for the strings of a user or group entry
+	private static final long NAME_BUFFER_SIZE = 1024;
+	private static final long MAX_NAME_BUFFER_SIZE = 1 << 20;
+
+	// Where the calls that capture it leave errno
+	private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+	private static final long ERRNO = CALL_STATE.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+
+	// Bound functions, null when not available
+	private static final MethodHandle OPEN;
+	private static final MethodHandle CLOSE;
+	private static final MethodHandle GETDENTS64;
+	private static final MethodHandle STATVFS;
+	private static final MethodHandle GETPWUID_R;
+	private static final MethodHandle GETGRGID_R;
+
+	static {
+		var arch = System.getProperty("os.arch", "");
+		var linux = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux");
+		// O_DIRECTORY is architecture dependent
+		O_DIRECTORY = switch (arch) {
+			case "amd64", "x86_64" -> 0x10000;
+			case "aarch64" -> 0x4000;
+			default -> -1;
+		};
+		MethodHandle open = null;
+		MethodHandle close = null;
+		MethodHandle getdents64 = null;
+		MethodHandle statvfs = null;
+		MethodHandle getpwuidR = null;
+		MethodHandle getgrgidR = null;
+		if (linux && O_DIRECTORY > 0 && Libc.class.getModule().isNativeAccessEnabled()) {
+			try {
+				var linker = Linker.nativeLinker();
+				var lookup = linker.defaultLookup();
+				// open is variadic; no mode is passed since O_CREAT is never used
+				open = linker.downcallHandle(
+					lookup.find("open").orElseThrow(),
+					FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT),
+					Linker.Option.firstVariadicArg(2)
+				);
+				close = linker.downcallHandle(
+					lookup.find("close").orElseThrow(),
+					FunctionDescriptor.of(JAVA_INT, JAVA_INT)
+				);
+				getdents64 = linker.downcallHandle(
+					lookup.find("getdents64").orElseThrow(),
+					FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG),
+					Linker.Option.captureCallState("errno")
+				);
+				statvfs = linker.downcallHandle(
+					lookup.find("statvfs").orElseThrow(),
+					FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS)
+				);
+				// id, entry, buffer, buffer size, result
+				var lookupDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, JAVA_LONG, ADDRESS);
+				getpwuidR = linker.downcallHandle(lookup.find("getpwuid_r").orElseThrow(), lookupDescriptor);
+				getgrgidR = linker.downcallHandle(lookup.find("getgrgid_r").orElseThrow(), lookupDescriptor);
+			} catch (RuntimeException e) {
+				// Old C library or unsupported platform: use the JDK instead
+				open = close = getdents64 = statvfs = getpwuidR = getgrgidR = null;
+			}
+		}
+		OPEN = open;
+		CLOSE = close;
+		GETDENTS64 = getdents64;
+		STATVFS = statvfs;
+		GETPWUID_R = getpwuidR;
+		GETGRGID_R = getgrgidR;
+	}
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	private Libc() {
+	}
+
+	/**
+	 * @return true if the native functions can be called
+	 */
+	public static boolean isAvailable() {
+		return OPEN != null;
+	}
+
+	// The JDK decodes file names with sun.jnu.encoding
+	private static Charset fileNameCharset() {
+		try {
+			return Charset.forName(System.getProperty("sun.jnu.encoding", UTF_8.name()));
+		} catch (RuntimeException e) {
+			return UTF_8;
+		}
+	}
+
+	/**
+	 * @param path NUL terminated path
+	 * @param flags open(2) flags
+	 * @return File descriptor, or -1 on error
+	 */
+	public static int open(MemorySegment path, int flags) {
+		try {
+			return (int) OPEN.invokeExact(path, flags);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * @param fd File descriptor
+	 * @return 0, or -1 on error
+	 */
+	public static int close(int fd) {
+		try {
+			return (int) CLOSE.invokeExact(fd);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * @param path NUL terminated path
+	 * @param buffer Buffer for a struct statvfs
+	 * @return 0, or -1 on error
+	 */
+	public static int statvfs(MemorySegment path, MemorySegment buffer) {
+		try {
+			return (int) STATVFS.invokeExact(path, buffer);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * Name of a user, through the name service switch (getpwuid_r).
+	 * @param uid User id
+	 * @return Its name, null if there is no such user
+	 */
+	public static String userName(int uid) {
+		return entryName(GETPWUID_R, uid);
+	}
+
+	/**
+	 * Name of a group, through the name service switch (getgrgid_r).
+	 * @param gid Group id
+	 * @return Its name, null if there is no such group
+	 */
+	public static String groupName(int gid) {
+		return entryName(GETGRGID_R, gid);
+	}
+
+	// Name of the user or group entry of an id: the first member of both
+	//	structures points into the buffer, where it is copied from
+	private static String entryName(MethodHandle function, int id) {
+		try (var arena = Arena.ofConfined()) {
+			var entry = arena.allocate(ENTRY_SIZE, 8);
+			var result = arena.allocate(ADDRESS);
+			for (long size = NAME_BUFFER_SIZE; size <= MAX_NAME_BUFFER_SIZE; size *= 2) {
+				var buffer = arena.allocate(size, 1);
+				int error = (int) function.invokeExact(id, entry, buffer, size, result);
+				if (error == ERANGE) continue;
+				if (error != 0 || result.get(ADDRESS, 0).address() == 0) return null;
+				long start = entry.get(ADDRESS, 0).address() - buffer.address();
+				if (start < 0 || start >= size) return null;
+				long end = start;
+				while (end < size && buffer.get(JAVA_BYTE, end) != 0) end++;
+				return new String(buffer.asSlice(start, end - start).toArray(JAVA_BYTE), FILE_NAME_CHARSET);
+			}
+			return null;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * @param arena Arena of the state
+	 * @return State for the calls that capture errno
+	 */
+	public static MemorySegment allocateCallState(Arena arena) {
+		return arena.allocate(CALL_STATE);
+	}
+
+	/**
+	 * @param callState State of a call that captured errno
+	 * @return The errno it left
+	 */
+	public static int errno(MemorySegment callState) {
+		return callState.get(JAVA_INT, ERRNO);
+	}
+
+	/**
+	 * @param callState Where errno is left, from allocateCallState()
+	 * @param fd Open directory
+	 * @param buffer Buffer for linux_dirent64 records
+	 * @param count Size of the buffer
+	 * @return Bytes read, 0 at the end of the directory, -1 on error
+	 */
+	public static long getdents64(MemorySegment callState, int fd, MemorySegment buffer, long count) {
+		try {
+			return (long) GETDENTS64.invokeExact(callState, fd, buffer, count);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT_UNALIGNED;
+
+/**
+ * Linux directory reader calling getdents64 directly into a large reused
+ * buffer.  Names and d_type are decoded in place from the linux_dirent64
+ * records, so no entry is stat-ed unless the file system reports DT_UNKNOWN
+ * and the caller needs the type.  Names are only turned into strings for
+ * consumers that ask for them.
+ */
+public class LinuxDirectoryReader implements DirectoryReader {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// getdents64 buffer size
+	private static final int BUFFER_SIZE = 256 * 1024;
+	// PATH_MAX, including the terminating NUL
+	private static final int PATH_MAX = 4096;
+	// linux_dirent64 layout
+	//	u64 d_ino; s64 d_off; u16 d_reclen; u8 d_type; char d_name[]
+	private static final int D_RECLEN = 16;
+	private static final int D_TYPE = 18;
+	private static final int D_NAME = 19;
+
+	//-----------------------------------------------------------------
+	// Reader properties
+
+	// Native buffers, released by the garbage collector along with the reader
+	private final MemorySegment buffer;
+	private final MemorySegment pathBuffer;
+	// Where getdents64 leaves errno
+	private final MemorySegment callState;
+	// Current name
+	private byte[] name = new byte[256];
+	// Directories not supported natively
+	private final StreamDirectoryReader fallback = new StreamDirectoryReader();
+
+	//-----------------------------------------------------------------
+	// Reader methods
+
+	/**
+	 * @return true if this reader can be used on the current platform
+	 */
+	public static boolean isSupported() {
+		return Libc.isAvailable();
+	}
+
+	/**
+	 * Builds a reader and its buffers.
+	 */
+	public LinuxDirectoryReader() {
+		var arena = Arena.ofAuto();
+		buffer = arena.allocate(BUFFER_SIZE, 8);
+		pathBuffer = arena.allocate(PATH_MAX, 1);
+		callState = Libc.allocateCallState(arena);
+	}
+
+	@Override
+	public void read(Path directory, EntryConsumer consumer) throws IOException {
+		var fd = directory.getFileSystem() == FileSystems.getDefault() ? open(directory) : -1;
+		if (fd < 0) {
+			// Not a native path, or an error: let the JDK report it properly
+			fallback.read(directory, consumer);
+			return;
+		}
+		try {
+			long read;
+			while ((read = Libc.getdents64(callState, fd, buffer, BUFFER_SIZE)) > 0) {
+				for (long offset = 0; offset < read; ) {
+					int recordLength = Short.toUnsignedInt(buffer.get(JAVA_SHORT_UNALIGNED, offset + D_RECLEN));
+					int type = Byte.toUnsignedInt(buffer.get(JAVA_BYTE, offset + D_TYPE));
+					int length = copyName(offset + D_NAME, recordLength - D_NAME);
+					if (!isDotOrDotDot(length)) {
+						consumer.accept(name, 0, length, EntryType.ofDType(type));
+					}
+					offset += recordLength;
+				}
+			}
+			if (read < 0) {
+				throw new IOException(directory + ": could not read directory (errno " + Libc.errno(callState) + ")");
+			}
+		} finally {
+			Libc.close(fd);
+		}
+	}
+
+	// Opens a directory, -1 if it cannot be opened natively
+	private int open(Path directory) {
+		var bytes = FileNames.bytes(directory);
+		if (bytes.length >= PATH_MAX) return -1;
+		MemorySegment.copy(bytes, 0, pathBuffer, JAVA_BYTE, 0, bytes.length);
+		pathBuffer.set(JAVA_BYTE, bytes.length, (byte) 0);
+		return Libc.open(pathBuffer, Libc.O_RDONLY | Libc.O_DIRECTORY | Libc.O_CLOEXEC);
+	}
+
+	// Copies the NUL terminated name at offset into name, returning its length
+	private int copyName(long offset, int max) {
+		int length = 0;
+		while (length < max && buffer.get(JAVA_BYTE, offset + length) != 0) length++;
+		if (length > name.length) name = new byte[Math.max(length, name.length * 2)];
+		MemorySegment.copy(buffer, JAVA_BYTE, offset, name, 0, length);
+		return length;
+	}
+
+	// Is the current name "." or ".."?
+	private boolean isDotOrDotDot(int length) {
+		return (length == 1 && name[0] == '.') || (length == 2 && name[0] == '.' && name[1] == '.');
+	}
+}
@@ -0,0 +1,291 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Listings of directories as streams of FileEntry, for callers that want the
+ * entries rather than the text of ls.  Listings are lazy: a directory is read
+ * when the stream gets to it, and the attributes of an entry are read when
+ * the entry is consumed, so that a stream stopped early (findFirst, limit,
+ * takeWhile...) reads nothing more.  Subdirectories follow the entries of
+ * their parent, each one followed by its own subdirectories.  Directories are
+ * read and entered by a DirectoryWalker, a batch at a time, as ls reads them.<br>
+ * Parallel streams split the work among their threads by directories: the
+ * entries of the directory being read and the directories still to read.
+ * The order of the entries is then not kept.<br>
+ * As with Files.walk, an error reading a directory other than the listed one
+ * is thrown as an UncheckedIOException, and a closed stream stops.  Entries
+ * that are gone by the time their attributes are read are skipped.
+ */
+public final class Listing {
+
+	/**
+	 * What a listing reports.  "." and ".." are never reported.
+	 * @param all Report the names that start with a dot?
+	 * @param recursive Report the entries of the subdirectories too?
+	 * @param followLinks Read the attributes of the files links point to, and
+	 * enter the directories they point to; every directory is then entered once
+	 * @param attributes Attributes read for every entry, besides its name and type
+	 */
+	public record Options(boolean all, boolean recursive, boolean followLinks, Set<FileAttribute> attributes) {
+
+		/** The entries of a directory, by name and type, without hidden ones */
+		public static final Options DEFAULT = new Options(false, false, false, Set.of());
+
+		/**
+		 * Copies the attributes.
+		 */
+		public Options {
+			attributes = Set.copyOf(attributes);
+		}
+
+		/**
+		 * @param all Report the names that start with a dot?
+		 * @return These options, with hidden names or without
+		 */
+		public Options withAll(boolean all) {
+			return new Options(all, recursive, followLinks, attributes);
+		}
+
+		/**
+		 * @param recursive Report the entries of the subdirectories too?
+		 * @return These options, recursive or not
+		 */
+		public Options withRecursive(boolean recursive) {
+			return new Options(all, recursive, followLinks, attributes);
+		}
+
+		/**
+		 * @param followLinks Follow symbolic links?
+		 * @return These options, following links or not
+		 */
+		public Options withFollowLinks(boolean followLinks) {
+			return new Options(all, recursive, followLinks, attributes);
+		}
+
+		/**
+		 * @param attributes Attributes read for every entry
+		 * @return These options, reading those attributes
+		 */
+		public Options withAttributes(FileAttribute... attributes) {
+			return new Options(all, recursive, followLinks, Set.of(attributes));
+		}
+	}
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	private Listing() {
+	}
+
+	/**
+	 * Lists a directory, or a single file.
+	 * @param path Directory or file
+	 * @param options What to report
+	 * @return Its entries, read as they are consumed; the file itself if the
+	 * path is not a directory
+	 * @throws IOException If the path cannot be read
+	 */
+	public static Stream<FileEntry> of(Path path, Options options) throws IOException {
+		var linkOptions = options.followLinks() ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+		var attrs = Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+		var walk = new Walk(options);
+		if (!attrs.isDirectory()) {
+			return Stream.of(new FileEntry(path, EntryType.of(attrs), 0, walk.load(path)));
+		}
+		if (walk.directories != null) {
+			walk.directories.enter(DirectoryTracker.key(path, attrs.fileKey()));
+		}
+		var spliterator = new EntrySpliterator(walk);
+		spliterator.pending.add(new Directory(path, 0));
+		return StreamSupport.stream(spliterator, false).onClose(() -> walk.closed = true);
+	}
+
+	// A directory to read, and the depth of its entries
+	private record Directory(Path path, int depth) {}
+
+	// What the spliterators of a listing share
+	private static final class Walk {
+		// Options of the listing
+		private final Options options;
+		// Reads the attributes, from any thread; the basic ones alone, to tell
+		//	directories apart, if none are asked for
+		private final AttributeLoader loader;
+		// Are the attributes reported?
+		private final boolean reported;
+		// Directories entered, when following links: every one once, from any
+		//	thread, which rules out loops too; null otherwise
+		private final DirectoryTracker directories;
+		// Set when the stream is closed
+		private volatile boolean closed = false;
+
+		Walk(Options options) {
+			this.options = options;
+			loader = new AttributeLoader(AttributePlan.of(options.attributes()), options.followLinks());
+			reported = !options.attributes().isEmpty();
+			directories = options.followLinks() ? new DirectoryTracker(false, ConcurrentHashMap.newKeySet()) : null;
+		}
+
+		// Walker of a spliterator
+		DirectoryWalker walker() {
+			var filter = options.all() ? DirectoryWalker.NameFilter.ALL : (DirectoryWalker.NameFilter) Walk::isVisible;
+			return new DirectoryWalker(filter, loader, options.followLinks(), directories,
+				DirectoryWalker.Boundary.NONE, null);
+		}
+
+		// Attributes of the listed file, null if none are asked for
+		FileAttributes load(Path path) throws IOException {
+			return reported ? loader.load(path) : null;
+		}
+
+		// Does a name not start with a dot?
+		private static boolean isVisible(byte[] name, int offset, int length) {
+			return length == 0 || name[offset] != '.';
+		}
+	}
+
+	// Entries of a set of directories.  The entries of the directory being read
+	//	come first, then the pending directories, the next one last; a split
+	//	hands over half of the pending directories, or else half of the entries
+	//	left in the current one
+	private static final class EntrySpliterator implements Spliterator<FileEntry> {
+
+		//---------------------------------------------------------
+		// Spliterator properties
+
+		// Listing
+		private final Walk walk;
+		// Reads directories; walkers are not thread safe, so every spliterator has its own
+		private final DirectoryWalker walker;
+		// Directories to read, the next one last
+		private final Deque<Directory> pending = new ArrayDeque<>();
+		// Directory being read, with its entries
+		private DirectoryBatch batch;
+		private final EntryBuffer entries = new EntryBuffer();
+		// Next entry to report, and the end of those of this spliterator
+		private int next = 0;
+		private int end = 0;
+		// Subdirectories of the directory being read, entered after its entries
+		private final List<Directory> children = new ArrayList<>();
+
+		//---------------------------------------------------------
+		// Spliterator methods
+
+		EntrySpliterator(Walk walk) {
+			this.walk = walk;
+			this.walker = walk.walker();
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super FileEntry> action) {
+			try {
+				while (!walk.closed) {
+					if (next == end) {
+						if (!readNext()) return false;
+						continue;
+					}
+					int index = next++;
+					FileAttributes attributes = null;
+					try {
+						if (walk.reported) {
+							attributes = walker.load(batch, index);
+						}
+					} catch (NoSuchFileException e) {
+						// Gone since the directory was read
+						continue;
+					}
+					var path = batch.path(index);
+					if (walk.options.recursive() && isEnterable(index, attributes)) {
+						children.add(new Directory(path, batch.depth() + 1));
+					}
+					action.accept(new FileEntry(path, entries.type(index), batch.depth(), attributes));
+					return true;
+				}
+				return false;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// Reads the next pending directory, after queueing the subdirectories of
+		//	the current one; false if there are none left
+		private boolean readNext() throws IOException {
+			for (int i = children.size() - 1; i >= 0; i--) {
+				pending.addLast(children.get(i));
+			}
+			children.clear();
+			entries.clear();
+			next = end = 0;
+			var directory = pending.pollLast();
+			if (directory == null) return false;
+			batch = walker.read(directory.path(), directory.depth(), entries);
+			end = entries.size();
+			return true;
+		}
+
+		// Is an entry a directory the listing enters?  Links only when following
+		//	them, and then every directory only once
+		private boolean isEnterable(int index, FileAttributes attributes) throws IOException {
+			try {
+				return walker.enter(batch, index, attributes) == DirectoryTracker.Outcome.ENTERED;
+			} catch (NoSuchFileException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public Spliterator<FileEntry> trySplit() {
+			if (walk.closed) return null;
+			try {
+				if (next == end && pending.size() < 2 && !readNext()) return null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			var ret = new EntrySpliterator(walk);
+			if (pending.size() >= 2 || pending.size() == 1 && next < end) {
+				// The directories read last, that is, closest to the listed one
+				int count = (pending.size() + (next < end ? 1 : 0)) / 2;
+				for (int i = 0; i < count; i++) ret.pending.addLast(pending.pollFirst());
+				return ret;
+			}
+			int left = end - next;
+			if (left < 2) return null;
+			// The second half of the entries left, as a directory of its own
+			int from = next + left / 2;
+			ret.batch = new DirectoryBatch(batch.directory(), batch.depth(), ret.entries);
+			var names = entries.nameBytes();
+			for (int i = from; i < end; i++) {
+				ret.entries.add(names, entries.nameOffset(i), entries.nameLength(i), entries.type(i));
+			}
+			ret.end = ret.entries.size();
+			end = from;
+			return ret;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return NONNULL | DISTINCT;
+		}
+	}
+}
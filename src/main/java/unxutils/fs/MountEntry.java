@@ -0,0 +1,69 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One row of the mount table, as described by /proc/self/mountinfo (or by the
+ * JDK file store enumeration on systems without it).
+ * @param mountId Unique id of the mount
+ * @param parentId Id of the parent mount
+ * @param major Major device number of the mounted file system
+ * @param minor Minor device number of the mounted file system
+ * @param root Root of the mount inside the file system (not "/" for bind mounts)
+ * @param mountPoint Mount point, relative to the process root
+ * @param fsType File system type
+ * @param source Mount source, usually a device
+ * @param store Already resolved file store, if any
+ */
+public record MountEntry(
+	int mountId,
+	int parentId,
+	int major,
+	int minor,
+	String root,
+	String mountPoint,
+	String fsType,
+	String source,
+	FileStore store
+) {
+
+	/**
+	 * @return Device id of the mounted file system, encoded the same way as the
+	 * st_dev field of stat (and hence the unix:dev attribute)
+	 */
+	public long deviceId() {
+		long ma = major & 0xffffffffL;
+		long mi = minor & 0xffffffffL;
+		return ((ma & 0xfffff000L) << 32) | ((ma & 0xfffL) << 8)
+			| ((mi & 0xffffff00L) << 12) | (mi & 0xffL);
+	}
+
+	/**
+	 * @param store File store of the mount
+	 * @return The same mount, with its file store resolved
+	 */
+	public MountEntry withStore(FileStore store) {
+		return new MountEntry(mountId, parentId, major, minor, root, mountPoint, fsType, source, store);
+	}
+
+	/**
+	 * Resolves the file store of the mount.  This is the first operation that
+	 * actually touches the mounted file system; unless already resolved, it
+	 * reads the whole mount table again (see FileSystemStats.prepare()).
+	 * @return File store behind the mount point
+	 * @throws IOException If the mount point cannot be accessed
+	 */
+	public FileStore fileStore() throws IOException {
+		return store != null ? store : Files.getFileStore(Path.of(mountPoint));
+	}
+
+	/**
+	 * @return true if this mount exposes a subtree of its file system (bind mount)
+	 */
+	public boolean isBindMount() {
+		return !"/".equals(root);
+	}
+}
@@ -0,0 +1,109 @@
+package unxutils.fs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides which mount table entries are worth reporting.  It only looks at the
+ * data already present in the mount table, so that entries can be discarded
+ * before any file system is queried.
+ */
+public class MountFilter {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Pseudo file systems, with no associated storage
+	private static final Set<String> PSEUDO_TYPES = Set.of(
+		"autofs", "binfmt_misc", "bpf", "cgroup", "cgroup2", "configfs", "debugfs",
+		"devfs", "devpts", "efivarfs", "fusectl", "fuse.portal", "hugetlbfs", "ignore",
+		"kernfs", "mqueue", "nsfs", "proc", "pstore", "rpc_pipefs", "securityfs",
+		"selinuxfs", "subfs", "sysfs", "tracefs"
+	);
+	// Network file systems
+	private static final Set<String> REMOTE_TYPES = Set.of(
+		"9p", "acfs", "afs", "auristorfs", "ceph", "cifs", "coda", "fhgfs", "fuse.sshfs",
+		"glusterfs", "gpfs", "ibrix", "lustre", "ncpfs", "nfs", "nfs4", "ocfs2", "smb3",
+		"smbfs", "sshfs", "vxfs"
+	);
+
+	//-----------------------------------------------------------------
+	// Filter properties
+
+	// Show pseudo and duplicate file systems too
+	private final boolean all;
+	// Show only local file systems
+	private final boolean localOnly;
+	// Types to show (empty means every type)
+	private final Set<String> includeTypes;
+	// Types to omit
+	private final Set<String> excludeTypes;
+
+	//-----------------------------------------------------------------
+	// Filter methods
+
+	/**
+	 * Builds a mount filter.
+	 * @param all Do not omit pseudo and duplicate file systems
+	 * @param localOnly Omit network file systems
+	 * @param includeTypes Comma separated list of types to show, may be null
+	 * @param excludeTypes Comma separated list of types to omit, may be null
+	 */
+	public MountFilter(boolean all, boolean localOnly, String includeTypes, String excludeTypes) {
+		this.all = all;
+		this.localOnly = localOnly;
+		this.includeTypes = parseTypes(includeTypes);
+		this.excludeTypes = parseTypes(excludeTypes);
+	}
+
+	// Splits a comma separated list of file system types
+	private static Set<String> parseTypes(String types) {
+		if (types == null || types.isBlank()) return Collections.emptySet();
+		var ret = new HashSet<String>();
+		Arrays.stream(types.split(",")).map(String::trim).filter(s -> !s.isEmpty()).forEach(ret::add);
+		return ret;
+	}
+
+	/**
+	 * @return true if duplicate mounts of the same device must be collapsed
+	 */
+	public boolean isDeduplicating() {
+		return !all;
+	}
+
+	/**
+	 * Decides if a mount table entry must be reported.
+	 * @param fsType File system type
+	 * @param source Mount source
+	 * @return true if it passes every filter
+	 */
+	public boolean accept(String fsType, String source) {
+		if (!includeTypes.isEmpty() && !includeTypes.contains(fsType)) return false;
+		if (excludeTypes.contains(fsType)) return false;
+		if (localOnly && isRemote(fsType, source)) return false;
+		return all || !isPseudo(fsType, source);
+	}
+
+	/**
+	 * @param fsType File system type
+	 * @param source Mount source
+	 * @return true if the file system has no storage behind it
+	 */
+	public static boolean isPseudo(String fsType, String source) {
+		return PSEUDO_TYPES.contains(fsType) || "none".equals(source) && !"tmpfs".equals(fsType);
+	}
+
+	/**
+	 * @param fsType File system type
+	 * @param source Mount source
+	 * @return true if the file system is mounted over the network
+	 */
+	public static boolean isRemote(String fsType, String source) {
+		return REMOTE_TYPES.contains(fsType)
+			|| fsType.startsWith("nfs")
+			|| source.indexOf(":/") > 0
+			|| "-hosts".equals(source);
+	}
+}
@@ -0,0 +1,190 @@
+package unxutils.fs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Mount table enumeration.  On Linux the table is read from /proc/self/mountinfo
+ * in a single streaming pass, filtering and collapsing duplicates on the way,
+ * so that no file system is touched before it is known to be reported.
+ */
+public class MountTable {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	/** Mount table of the current process (Linux) */
+	public static final Path MOUNT_INFO = Path.of("/proc/self/mountinfo");
+	// Separator between the optional fields and the file system type
+	private static final String OPTIONAL_FIELDS_END = "-";
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	/**
+	 * @return true if the mount table can be read from /proc/self/mountinfo
+	 */
+	public static boolean isAvailable() {
+		return Files.isReadable(MOUNT_INFO);
+	}
+
+	/**
+	 * Reads the mount table of the current process.  Falls back to the JDK file
+	 * store enumeration when /proc/self/mountinfo is not available.
+	 * @param filter Entries to keep
+	 * @return Mount entries, in mount order
+	 * @throws IOException If the mount table cannot be read
+	 */
+	public static List<MountEntry> read(MountFilter filter) throws IOException {
+		if (!isAvailable()) return fromFileStores(filter);
+		try (var reader = Files.newBufferedReader(MOUNT_INFO, UTF_8)) {
+			return read(reader, filter);
+		}
+	}
+
+	/**
+	 * Parses a mountinfo formatted table.
+	 * @param reader Mount table contents
+	 * @param filter Entries to keep
+	 * @return Mount entries, in mount order
+	 * @throws IOException If the mount table cannot be read
+	 */
+	public static List<MountEntry> read(Reader reader, MountFilter filter) throws IOException {
+		var buffered = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+		// Later mounts on the same mount point hide the previous ones
+		var byMountPoint = new LinkedHashMap<String, MountEntry>();
+		var everything = new ArrayList<MountEntry>();
+		String line;
+		while ((line = buffered.readLine()) != null) {
+			var entry = parse(line, filter);
+			if (filter.isDeduplicating()) {
+				if (entry == null) {
+					// Still hides whatever was mounted before on its mount point
+					var mountPoint = overMountedPoint(line);
+					if (mountPoint != null) byMountPoint.remove(mountPoint);
+				} else {
+					byMountPoint.remove(entry.mountPoint());
+					byMountPoint.put(entry.mountPoint(), entry);
+				}
+			} else if (entry != null) {
+				everything.add(entry);
+			}
+		}
+		return filter.isDeduplicating() ? deduplicate(byMountPoint.values()) : everything;
+	}
+
+	// Keeps a single entry for every device, preferring the whole file system over
+	//	bind mounts of its subtrees and then the shortest mount point
+	private static List<MountEntry> deduplicate(Iterable<MountEntry> entries) {
+		var byDevice = new LinkedHashMap<Long, MountEntry>();
+		for (var entry: entries) {
+			var previous = byDevice.get(entry.deviceId());
+			if (previous == null || isPreferred(entry, previous)) {
+				byDevice.put(entry.deviceId(), entry);
+			}
+		}
+		return new ArrayList<>(byDevice.values());
+	}
+
+	// Is candidate a better representative of its device than current?
+	private static boolean isPreferred(MountEntry candidate, MountEntry current) {
+		if (candidate.isBindMount() != current.isBindMount()) return !candidate.isBindMount();
+		return candidate.mountPoint().length() < current.mountPoint().length();
+	}
+
+	// Parses a mountinfo line, returning null if the filter rejects it
+	//	36 35 98:0 /mnt1 /mnt2 rw,noatime master:1 - ext3 /dev/root rw,errors=continue
+	//	(1)(2)(3)   (4)   (5)      (6)      (7)   (8) (9)   (10)         (11)
+	private static MountEntry parse(String line, MountFilter filter) {
+		var fields = line.split(" ");
+		var separator = separatorIndex(fields);
+		if (separator < 0 || separator + 2 >= fields.length) return null;
+		var fsType = unescape(fields[separator + 1]);
+		var source = unescape(fields[separator + 2]);
+		if (!filter.accept(fsType, source)) return null;
+		var device = fields[2];
+		var colon = device.indexOf(':');
+		return new MountEntry(
+			Integer.parseInt(fields[0]),
+			Integer.parseInt(fields[1]),
+			Integer.parseInt(device, 0, colon, 10),
+			Integer.parseInt(device, colon + 1, device.length(), 10),
+			unescape(fields[3]),
+			unescape(fields[4]),
+			fsType,
+			source,
+			null
+		);
+	}
+
+	// Mount point of an unparsed mountinfo line
+	private static String overMountedPoint(String line) {
+		var fields = line.split(" ", 6);
+		return fields.length > 4 ? unescape(fields[4]) : null;
+	}
+
+	// Position of the "-" field closing the optional fields
+	private static int separatorIndex(String[] fields) {
+		for (int i = 6; i < fields.length; i++) {
+			if (OPTIONAL_FIELDS_END.equals(fields[i])) return i;
+		}
+		return -1;
+	}
+
+	// Decodes the octal escapes (\040 for space, etc.) used by the kernel
+	private static String unescape(String field) {
+		if (field.indexOf('\\') < 0) return field;
+		var sb = new StringBuilder(field.length());
+		for (int i = 0; i < field.length(); i++) {
+			var c = field.charAt(i);
+			if (c == '\\' && isOctal(field, i + 1)) {
+				sb.append((char) Integer.parseInt(field, i + 1, i + 4, 8));
+				i += 3;
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	// Are there three octal digits at index?
+	private static boolean isOctal(String s, int index) {
+		for (int i = index; i < index + 3; i++) {
+			if (i >= s.length() || s.charAt(i) < '0' || s.charAt(i) > '7') return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the mount table from the JDK file store enumeration, for systems
+	 * without /proc/self/mountinfo.  Duplicates cannot be detected here.
+	 * @param filter Entries to keep
+	 * @return Mount entries
+	 */
+	public static List<MountEntry> fromFileStores(MountFilter filter) {
+		var ret = new ArrayList<MountEntry>();
+		for (var store: FileSystems.getDefault().getFileStores()) {
+			if (!filter.accept(store.type(), store.name())) continue;
+			ret.add(new MountEntry(0, 0, 0, 0, "/", mountPoint(store), store.type(), store.name(), store));
+		}
+		return ret;
+	}
+
+	// Mount point of a JDK file store, which only tells it in its description:
+	//	"/home (/dev/sda2)"
+	static String mountPoint(FileStore store) {
+		var description = store.toString();
+		var parenthesis = description.lastIndexOf(" (");
+		return parenthesis > 0 ? description.substring(0, parenthesis) : description;
+	}
+}
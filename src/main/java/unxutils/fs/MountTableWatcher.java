@@ -0,0 +1,88 @@
+package unxutils.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Cheap detection of mount table changes.  The kernel regenerates
+ * /proc/self/mountinfo on every read and reports neither a size nor a
+ * meaningful modification time for it, so the raw contents are read into a
+ * reused buffer and compared with the previous snapshot.  No parsing and, once
+ * the buffers have grown to the size of the table, no allocation.
+ */
+public class MountTableWatcher implements Closeable {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Initial snapshot size
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+
+	//-----------------------------------------------------------------
+	// Watcher properties
+
+	// Open mount table
+	private final FileChannel channel;
+	// Last snapshot
+	private ByteBuffer previous = ByteBuffer.allocate(INITIAL_CAPACITY);
+	// Snapshot being taken
+	private ByteBuffer current = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	//-----------------------------------------------------------------
+	// Watcher methods
+
+	/**
+	 * Opens the mount table and takes the first snapshot.
+	 * @param mountInfo Mount table, usually MountTable.MOUNT_INFO
+	 * @throws IOException If the mount table cannot be read
+	 */
+	public MountTableWatcher(Path mountInfo) throws IOException {
+		channel = FileChannel.open(mountInfo, READ);
+		snapshot();
+		swap();
+	}
+
+	/**
+	 * Takes a new snapshot of the mount table.
+	 * @return true if it differs from the previous one
+	 * @throws IOException If the mount table cannot be read
+	 */
+	public boolean changed() throws IOException {
+		snapshot();
+		var ret = !current.equals(previous);
+		swap();
+		return ret;
+	}
+
+	// Reads the whole table into current, growing it if needed
+	private void snapshot() throws IOException {
+		current.clear();
+		channel.position(0);
+		while (channel.read(current) >= 0) {
+			if (!current.hasRemaining()) {
+				var bigger = ByteBuffer.allocate(current.capacity() * 2);
+				current.flip();
+				bigger.put(current);
+				current = bigger;
+			}
+		}
+		current.flip();
+	}
+
+	// The snapshot just taken becomes the reference
+	private void swap() {
+		var tmp = previous;
+		previous = current;
+		current = tmp;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
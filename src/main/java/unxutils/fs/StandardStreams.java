@@ -0,0 +1,164 @@
+package unxutils.fs;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channels over the standard streams of a command.  The file descriptors of
+ * the process are used directly, so that the kernel copies files to standard
+ * output (sendfile) and reads standard input into direct buffers, only when
+ * the streams given are those the launcher captured when the process started:
+ * then nothing redirected them.  Any other stream (tests, programs running
+ * the commands, streams replaced with System.setOut) is served by an adapter
+ * over the stream itself.<br>
+ * Unlike Channels.newChannel, the adapters do not close their stream when the
+ * thread is interrupted, so that a command stopped that way (tail -f) leaves
+ * the streams of its caller usable.  The launcher never interrupts the command
+ * thread, and the process ends when the command does.
+ */
+public final class StandardStreams {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Largest transfer through an adapter, as Channels.newChannel
+	private static final int TRANSFER_SIZE = 8192;
+
+	//-----------------------------------------------------------------
+	// Class properties
+
+	// Standard streams of the process, as the launcher found them; null if
+	//	not captured
+	private static volatile InputStream processIn;
+	private static volatile PrintStream processOut;
+
+	//-----------------------------------------------------------------
+	// Class methods
+
+	private StandardStreams() {}
+
+	/**
+	 * Captures the standard streams of the process, before anybody replaces
+	 * them.  Only the launcher calls it, first thing.
+	 */
+	public static void capture() {
+		processIn = System.in;
+		processOut = System.out;
+	}
+
+	/**
+	 * A channel over an input stream, never closed by the caller: standard
+	 * input outlives the command.
+	 * @param in Input stream, usually System.in
+	 * @return Its channel
+	 */
+	public static ReadableByteChannel input(InputStream in) {
+		if (in == processIn && System.in == processIn) {
+			return new FileInputStream(FileDescriptor.in).getChannel();
+		}
+		return new InputChannel(in);
+	}
+
+	/**
+	 * A channel over an output stream, never closed by the caller.  Writes
+	 * fail with an IOException once the stream reports an error.
+	 * @param out Output stream, usually System.out; what was printed to it
+	 * before goes first
+	 * @return Its channel
+	 */
+	public static WritableByteChannel output(PrintStream out) {
+		out.flush();
+		if (out == processOut && System.out == processOut) {
+			return new FileOutputStream(FileDescriptor.out).getChannel();
+		}
+		return new OutputChannel(out);
+	}
+
+	// Reads an input stream; closing it leaves the stream open
+	private static final class InputChannel implements ReadableByteChannel {
+
+		private final InputStream in;
+		private byte[] transfer;
+		private boolean open = true;
+
+		InputChannel(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!open) throw new ClosedChannelException();
+			int length = Math.min(dst.remaining(), TRANSFER_SIZE);
+			if (length == 0) return 0;
+			if (dst.hasArray()) {
+				int count = in.read(dst.array(), dst.arrayOffset() + dst.position(), length);
+				if (count > 0) dst.position(dst.position() + count);
+				return count;
+			}
+			if (transfer == null) transfer = new byte[TRANSFER_SIZE];
+			int count = in.read(transfer, 0, length);
+			if (count > 0) dst.put(transfer, 0, count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
+	// Writes into a print stream; closing it leaves the stream open
+	private static final class OutputChannel implements WritableByteChannel {
+
+		private final PrintStream out;
+		private byte[] transfer;
+		private boolean open = true;
+
+		OutputChannel(PrintStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			if (!open) throw new ClosedChannelException();
+			int length = src.remaining();
+			if (src.hasArray()) {
+				out.write(src.array(), src.arrayOffset() + src.position(), length);
+				src.position(src.limit());
+			} else {
+				if (transfer == null) transfer = new byte[TRANSFER_SIZE];
+				while (src.hasRemaining()) {
+					int count = Math.min(src.remaining(), TRANSFER_SIZE);
+					src.get(transfer, 0, count);
+					out.write(transfer, 0, count);
+				}
+			}
+			// Print streams keep their errors: flushed to see them
+			if (out.checkError()) throw new IOException("Input/output error");
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
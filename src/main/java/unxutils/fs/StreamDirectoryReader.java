@@ -0,0 +1,23 @@
+package unxutils.fs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Portable directory reader on top of DirectoryStream.  Entry types are not
+ * available through it, so every entry is reported as UNKNOWN.  Names are
+ * reported by the bytes the paths of the stream keep.
+ */
+public class StreamDirectoryReader implements DirectoryReader {
+
+	@Override
+	public void read(Path directory, EntryConsumer consumer) throws IOException {
+		try (var stream = Files.newDirectoryStream(directory)) {
+			for (var entry: stream) {
+				var name = FileNames.fileNameBytes(entry);
+				consumer.accept(name, 0, name.length, EntryType.UNKNOWN);
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static test.Sandbox.sandbox;
+
+/**
+ * Runs a command of the coreutils tests in a sandbox: writes its input files
+ * (f0, f1...) first, gives it a standard input of its own, and captures both
+ * its output and its error output, so that the tests assert on both and do
+ * not depend on the order they run in.
+ */
+public final class CommandFixture {
+
+	/**
+	 * A command run against the fixture.
+	 */
+	@FunctionalInterface
+	public interface Execution {
+		/**
+		 * @param cwd Sandbox directory, with the files written
+		 * @param out Output
+		 * @param err Error output
+		 * @return Exit status
+		 * @throws Exception If the command fails
+		 */
+		int execute(Path cwd, PrintStream out, PrintStream err) throws Exception;
+	}
+
+	/**
+	 * What a command printed, and its exit status.
+	 * @param status Exit status
+	 * @param out Output
+	 * @param err Error output
+	 */
+	public record Result(int status, String out, String err) {
+
+		/**
+		 * @return The exit status, the output after a colon and the error
+		 * output, if any, after a !
+		 */
+		@Override
+		public String toString() {
+			return status + ":" + out + (err.isEmpty() ? "" : "!" + err);
+		}
+	}
+
+	private CommandFixture() {}
+
+	/**
+	 * Runs a command with an empty standard input.
+	 * @param charset Encoding of the files, the input and the outputs
+	 * @param contents Contents of the files f0, f1...
+	 * @param execution Command
+	 * @return What it printed
+	 */
+	public static Result run(Charset charset, String[] contents, Execution execution) {
+		return run(charset, contents, new ByteArrayInputStream(new byte[0]), execution);
+	}
+
+	/**
+	 * Runs a command.
+	 * @param charset Encoding of the files, the input and the outputs
+	 * @param contents Contents of the files f0, f1...
+	 * @param input Standard input while it runs; System.in is restored after
+	 * @param execution Command
+	 * @return What it printed
+	 */
+	public static Result run(Charset charset, String[] contents, InputStream input, Execution execution) {
+		var out = new ByteArrayOutputStream();
+		var err = new ByteArrayOutputStream();
+		var status = new int[1];
+		sandbox().runTest(
+			(File directory) -> {
+				var cwd = directory.toPath();
+				for (int i = 0; i < contents.length; i++) {
+					Files.write(cwd.resolve("f" + i), contents[i].getBytes(charset));
+				}
+				var in = System.in;
+				try {
+					System.setIn(input);
+					status[0] = execution.execute(cwd, new PrintStream(out, true, charset),
+						new PrintStream(err, true, charset));
+				} finally {
+					System.setIn(in);
+				}
+				return 0;
+			},
+			true
+		);
+		return new Result(status[0], out.toString(charset), err.toString(charset));
+	}
+
+	/**
+	 * Runs a command over the given text as standard input.
+	 * @param charset Encoding of the files, the input and the outputs
+	 * @param contents Contents of the files f0, f1...
+	 * @param input Standard input while it runs
+	 * @param execution Command
+	 * @return What it printed
+	 */
+	public static Result run(Charset charset, String[] contents, String input, Execution execution) {
+		return run(charset, contents, new ByteArrayInputStream(input.getBytes(charset)), execution);
+	}
+}
@@ -0,0 +1,77 @@
+package unxutils.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the option parser and the generated command table
+ */
+public class TestOptionParser {
+
+	private static final OptionParser.Spec SPEC = new OptionParser.Spec("cmd", "", "FILE",
+		new OptionParser.Option("a", "all", false, ""),
+		new OptionParser.Option("l", "", false, ""),
+		new OptionParser.Option("I", "ignore", true, ""),
+		new OptionParser.Option("", "ignore-backups", false, ""));
+
+	// Options as index=value, then the operands
+	private static List<String> parse(String... args) throws OptionParser.UsageException {
+		var ret = new ArrayList<String>();
+		var parser = new OptionParser(SPEC, args);
+		for (int option = parser.next(); option != OptionParser.END; option = parser.next()) {
+			ret.add(option + "=" + parser.value());
+		}
+		ret.addAll(parser.operands());
+		return ret;
+	}
+
+	@Test
+	public void testShortOptions() throws Exception {
+		assertEquals(List.of("0=null", "1=null", "x"), parse("-al", "x"));
+		assertEquals(List.of("1=null", "2=*.c", "0=null"), parse("-lI*.c", "-a"));
+		assertEquals(List.of("2=*.c", "-"), parse("-I", "*.c", "-"));
+	}
+
+	@Test
+	public void testLongOptions() throws Exception {
+		assertEquals(List.of("2=*.c", "2=*.h"), parse("--ignore=*.c", "--ignore", "*.h"));
+		// Exact names win over longer ones, unambiguous prefixes are accepted
+		assertEquals(List.of("2=x", "3=null", "0=null"), parse("--ignore=x", "--ignore-b", "--al"));
+		assertEquals(List.of("x", "-a", "--all"), parse("x", "--", "-a", "--all"));
+	}
+
+	@Test
+	public void testErrors() {
+		assertThrows(OptionParser.UsageException.class, () -> parse("-z"));
+		assertThrows(OptionParser.UsageException.class, () -> parse("--none"));
+		assertThrows(OptionParser.UsageException.class, () -> parse("--ign"));
+		assertThrows(OptionParser.UsageException.class, () -> parse("--ignore"));
+		assertThrows(OptionParser.UsageException.class, () -> parse("--all=yes"));
+		assertThrows(OptionParser.UsageException.class, () -> parse("-I"));
+		var parser = new OptionParser(new OptionParser.Spec("cmd", "", null), new String[] {"x"});
+		assertThrows(OptionParser.UsageException.class, parser::next);
+	}
+
+	@Test
+	public void testCommandTable() {
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				Files.createFile(directory.toPath().resolve(".hidden"));
+				Files.createFile(directory.toPath().resolve("shown"));
+				return CommandTable.run("ls", new String[] {"-a", "--ignore", "sh*"}, directory.toPath());
+			}, false);
+		assertTrue(ctx.out().contains(".hidden"));
+		assertTrue(!ctx.out().contains("shown"));
+		assertTrue(CommandTable.COMMANDS.containsAll(List.of("df", "ls")));
+		assertThrows(IllegalArgumentException.class, () -> CommandTable.run("none", new String[0], null));
+	}
+}
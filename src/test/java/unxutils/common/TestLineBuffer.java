@@ -0,0 +1,75 @@
+package unxutils.common;
+
+import org.junit.jupiter.api.Test;
+import unxutils.format.HumanReadableFormat;
+import unxutils.format.LineBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static unxutils.format.Format.format;
+
+/**
+ * Line buffer rendering test
+ */
+public class TestLineBuffer {
+
+	// Contents of the buffer as a string
+	private static String contents(LineBuffer buffer) {
+		return new String(buffer.array(), 0, buffer.length(), UTF_8);
+	}
+
+	@Test
+	public void testLongs() {
+		var buffer = new LineBuffer(4);
+		assertEquals("    0", contents(buffer.appendLong(0, 5)));
+		assertEquals("  -42", contents(buffer.clear().appendLong(-42, 5)));
+		assertEquals("9223372036854775807", contents(buffer.clear().appendLong(Long.MAX_VALUE, 5)));
+		assertEquals("-9223372036854775808", contents(buffer.clear().appendLong(Long.MIN_VALUE, 0)));
+		assertEquals("  100 10 7 05", contents(buffer.clear().appendLong(100, 5).appendLong(10, 3)
+			.appendLong(7, 2).appendAscii(" ").appendTwoDigits(5)));
+		for (long n: new long[] {0, 9, 10, -10, 99, 100, Long.MAX_VALUE, Long.MIN_VALUE}) {
+			assertEquals(Long.toString(n).length(), LineBuffer.decimalLength(n));
+		}
+	}
+
+	@Test
+	public void testHumanReadableMatchesFormat() {
+		var buffer = new LineBuffer(16);
+		for (long n: new long[] {0, 1, 1023, 1024, 1207, 1230333, 1024L*1024*1024, 28991029248L}) {
+			assertEquals(format(HumanReadableFormat.format(n), 10), contents(buffer.clear().appendHuman(n, 10)));
+		}
+		assertEquals("-1,0K", contents(buffer.clear().appendHuman(-1024, 0)));
+	}
+
+	@Test
+	public void testPadding() {
+		var buffer = new LineBuffer(16);
+		assertEquals("   abc", contents(buffer.appendPadded("abc".getBytes(UTF_8), 6)));
+		assertEquals("ab", contents(buffer.clear().appendPadded("abc".getBytes(UTF_8), 2)));
+	}
+
+	@Test
+	public void testDuration() {
+		var buffer = new LineBuffer(16);
+		assertEquals("  0:00:59", contents(buffer.appendDuration(59, 9)));
+		assertEquals("100:01:01", contents(buffer.clear().appendDuration(360061, 9)));
+	}
+
+	@Test
+	public void testPrintable() {
+		var buffer = new LineBuffer(4);
+		var name = "ca\u00f1\u00f3n \u6587\ud83d\ude00".getBytes(UTF_8);
+		assertEquals("ca\u00f1\u00f3n \u6587\ud83d\ude00", contents(buffer.appendPrintable(name, 0, name.length, true)));
+		// Control characters, C1 ones included
+		name = "a\tb\nc\u007fd\u0085e".getBytes(UTF_8);
+		assertEquals("a?b?c?d?e", contents(buffer.clear().appendPrintable(name, 0, name.length, true)));
+		// Invalid sequences: a stray continuation byte, a truncated character,
+		//	an overlong slash, a surrogate, and a Latin-1 name
+		name = new byte[] {'x', (byte) 0x80, 'y', (byte) 0xe6, (byte) 0x96, 'z', (byte) 0xc0, (byte) 0xaf,
+			(byte) 0xed, (byte) 0xa0, (byte) 0x80, 'n', (byte) 0xf1, 'o'};
+		assertEquals("x?y??z?????n?o", contents(buffer.clear().appendPrintable(name, 0, name.length, true)));
+		// Without UTF-8, only ASCII is kept
+		name = "\u00f1u".getBytes(UTF_8);
+		assertEquals("??u", contents(buffer.clear().appendPrintable(name, 0, name.length, false)));
+	}
+}
@@ -0,0 +1,127 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import unxutils.fs.AttributeLoader;
+import unxutils.fs.LinuxDirectoryReader;
+import unxutils.perf.TreeFixture;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Performance regression suite of ls, over the generated trees of TreeFixture.
+ * Every listing is run twice, and the second run is measured: bytes allocated
+ * by the listing thread and attribute reads, both per listed entry.  Only run
+ * with the perf profile (mvn -Pperf test); tree sizes can be changed with the
+ * perf.* properties.
+ */
+public class PerfListDirectoryCommand {
+
+	//-----------------------------------------------------------------
+	// Budgets, per listed entry
+
+	// ls: names only, copied as bytes from the directory to the output,
+	//	measured at about 60 bytes
+	private static final long PLAIN_BYTES = 128;
+	// ls -l: one stat with its attribute map, and owner and group lookups; rows
+	//	are rendered without allocating.  Measured at about 3.7 KiB
+	private static final long LONG_BYTES = 5120;
+	// ls -R: names, plus the directories
+	private static final long RECURSIVE_BYTES = 256;
+
+	// Tree sizes
+	private static final int FLAT_FILES = Integer.getInteger("perf.flat.files", 1_000_000);
+	private static final int DEEP_LEVELS = Integer.getInteger("perf.deep.levels", 200);
+	private static final int WIDE_DIRECTORIES = Integer.getInteger("perf.wide.directories", 2_000);
+	private static final int LINKED_FILES = Integer.getInteger("perf.linked.files", 20_000);
+
+	// What a listing cost
+	private record Cost(long entries, double bytes, double reads) {}
+
+	private final TreeFixture fixture = TreeFixture.fromProperties();
+
+	// Runs ls on a directory, discarding the output, and measures the second run
+	private static Cost measure(TreeFixture.Tree tree, boolean recursive, Consumer<ListDirectoryCommand> options)
+		throws Exception {
+		var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		var stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			long bytes = 0;
+			long reads = 0;
+			for (int run = 0; run < 2; run++) {
+				var command = new ListDirectoryCommand();
+				command.setRecursive(recursive);
+				options.accept(command);
+				var loader = new AtomicReference<AttributeLoader>();
+				long before = bean.getCurrentThreadAllocatedBytes();
+				command.execute(tree.path(), System.out, System.err, loader::set);
+				bytes = bean.getCurrentThreadAllocatedBytes() - before;
+				reads = loader.get().getReads();
+			}
+			long entries = recursive ? tree.total() : tree.entries();
+			return new Cost(entries, (double) bytes / entries, (double) reads / entries);
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	// Checks the three listings of a tree against their budgets
+	private void check(String name, TreeFixture.Tree tree) throws Exception {
+		// Without d_type every entry has to be stat-ed to find directories
+		double unknownTypes = LinuxDirectoryReader.isSupported() ? 0 : 1;
+		var plain = measure(tree, false, command -> {});
+		report(name, "ls", plain);
+		assertTrue(plain.bytes() <= PLAIN_BYTES, name + ": ls allocated " + plain.bytes() + " bytes per entry");
+		assertTrue(plain.reads() == 0, name + ": ls read attributes");
+
+		var longFormat = measure(tree, false, command -> command.setLongOutputFormat(true));
+		report(name, "ls -l", longFormat);
+		assertTrue(longFormat.bytes() <= LONG_BYTES, name + ": ls -l allocated " + longFormat.bytes() + " bytes per entry");
+		assertTrue(longFormat.reads() <= 1, name + ": ls -l read " + longFormat.reads() + " attributes per entry");
+
+		var recursive = measure(tree, true, command -> {});
+		report(name, "ls -R", recursive);
+		assertTrue(recursive.bytes() <= RECURSIVE_BYTES, name + ": ls -R allocated " + recursive.bytes() + " bytes per entry");
+		// One read per directory, for its identity
+		double directories = (double) tree.directories() / tree.total();
+		assertTrue(recursive.reads() <= directories + unknownTypes,
+			name + ": ls -R read " + recursive.reads() + " attributes per entry");
+	}
+
+	// Prints a measure, to follow the trend
+	private static void report(String name, String listing, Cost cost) {
+		System.out.printf("%-10s %-6s %9d entries %8.1f bytes/entry %6.3f reads/entry%n",
+			name, listing, cost.entries(), cost.bytes(), cost.reads());
+	}
+
+	@Test
+	public void testFlat() throws Exception {
+		check("flat", fixture.flat(FLAT_FILES));
+	}
+
+	@Test
+	public void testDeep() throws Exception {
+		check("deep", fixture.deep(DEEP_LEVELS, 50));
+	}
+
+	@Test
+	public void testWide() throws Exception {
+		check("wide", fixture.wide(WIDE_DIRECTORIES, 20));
+	}
+
+	@Test
+	public void testHardLinks() throws Exception {
+		check("hardlinks", fixture.hardLinks(LINKED_FILES, 4));
+	}
+
+	@Test
+	public void testSymbolicLinks() throws Exception {
+		check("symlinks", fixture.symbolicLinks(LINKED_FILES, 4));
+	}
+}
@@ -0,0 +1,99 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of the counting of wc: the counter reading eight bytes at a time,
+ * against the same counts a byte at a time, over a mapped file of generated
+ * text.  Every count is repeated until the JIT is done with it, and the best
+ * of the measured runs is kept.  Only run with the perf profile (mvn -Pperf
+ * test); the size of the file can be changed with perf.wc.megabytes.
+ */
+public class PerfWordCountCommand {
+
+	//-----------------------------------------------------------------
+	// Budgets: how many times faster than a byte at a time
+
+	// wc -l: a newline mask per eight bytes, measured at about 25 times
+	private static final double LINES_SPEEDUP = 3;
+	// wc: newlines, whitespace and word starts, measured at about 4.5 times
+	private static final double WORDS_SPEEDUP = 2;
+
+	// Size of the counted file
+	private static final int MEGABYTES = Integer.getInteger("perf.wc.megabytes", 256);
+	// Runs before measuring, and measured runs
+	private static final int WARMUP_RUNS = 5;
+	private static final int MEASURED_RUNS = 5;
+
+	// Log-like lines of words and numbers, with some UTF-8
+	private static Path generate() throws IOException {
+		var ret = Path.of(System.getProperty("java.io.tmpdir"), "perf-wc-" + MEGABYTES + ".txt");
+		if (Files.exists(ret) && Files.size(ret) == MEGABYTES * 1024L * 1024) return ret;
+		var words = new String[] {"GET", "/index.html", "200", "user=josé", "took", "12ms", "\t", "—", "INFO", "ok"};
+		var random = new Random(42);
+		var data = new byte[MEGABYTES * 1024 * 1024];
+		int i = 0;
+		while (i < data.length) {
+			var word = (random.nextInt(12) == 0 ? "\n" : words[random.nextInt(words.length)] + " ").getBytes();
+			int count = Math.min(word.length, data.length - i);
+			System.arraycopy(word, 0, data, i, count);
+			i += count;
+		}
+		Files.write(ret, data);
+		return ret;
+	}
+
+	// Best throughput of a count over the file, in MB/s
+	private static double measure(MemorySegment data, boolean words, BiConsumer<WordCounter, MemorySegment> count) {
+		long best = Long.MAX_VALUE;
+		WordCounter.Counts counts = null;
+		for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+			var counter = new WordCounter(words, words, false);
+			long start = System.nanoTime();
+			count.accept(counter, data);
+			long elapsed = System.nanoTime() - start;
+			if (counts != null) assertEquals(counts, counter.counts());
+			counts = counter.counts();
+			if (run >= WARMUP_RUNS) best = Math.min(best, elapsed);
+		}
+		return data.byteSize() / 1e6 / (best / 1e9);
+	}
+
+	// Measures both counts, and checks the speedup against its budget
+	private static void check(String name, MemorySegment data, boolean words, double speedup) {
+		double scalar = measure(data, words, WordCounter::countScalar);
+		double swar = measure(data, words, WordCounter::count);
+		System.out.printf("%-6s %10.0f MB/s a byte at a time %10.0f MB/s eight at a time %6.1fx%n",
+			name, scalar, swar, swar / scalar);
+		assertTrue(swar >= scalar * speedup, name + ": only " + swar / scalar + " times faster");
+	}
+
+	@Test
+	public void testThroughput() throws Exception {
+		var file = generate();
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ); var arena = Arena.ofConfined()) {
+			var data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+			// Both counts of the same bytes agree
+			var swar = new WordCounter(true, true, false);
+			var scalar = new WordCounter(true, true, false);
+			swar.count(data);
+			scalar.countScalar(data);
+			assertEquals(scalar.counts(), swar.counts());
+			check("wc -l", data, false, LINES_SPEEDUP);
+			check("wc -w", data, true, WORDS_SPEEDUP);
+		}
+	}
+}
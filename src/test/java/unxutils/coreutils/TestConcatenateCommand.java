@@ -0,0 +1,97 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the cat command
+ */
+public class TestConcatenateCommand {
+
+	// What cat printed over some files, written first, and its exit status
+	private static String cat(Consumer<ConcatenateCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(ISO_8859_1, contents, (cwd, out, err) -> {
+			var command = new ConcatenateCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	@Test
+	public void testPlain() {
+		assertEquals("0:one\ntwo\nthree", cat(command -> {}, List.of("f0", "f1"), "one\ntwo\n", "three"));
+		// Missing files are reported, and the others still copied
+		assertEquals("1:one\n!cat: none: No such file or directory\n",
+			cat(command -> {}, List.of("f0", "none"), "one\n"));
+	}
+
+	@Test
+	public void testNumbers() {
+		var text = "a\n\n\n\nb\n";
+		assertEquals("0:     1\ta\n     2\t\n     3\t\n     4\t\n     5\tb\n",
+			cat(command -> command.setNumber(true), List.of("f0"), text));
+		assertEquals("0:     1\ta\n\n\n\n     2\tb\n", cat(command -> command.setNumberNonblank(true), List.of("f0"), text));
+		assertEquals("0:a\n\nb\n", cat(command -> command.setSqueezeBlank(true), List.of("f0"), text));
+		// Numbers go on across files, also for lines split between them
+		assertEquals("0:     1\tab\n     2\tc\n",
+			cat(command -> command.setNumber(true), List.of("f0", "f1"), "a", "b\nc\n"));
+	}
+
+	@Test
+	public void testShowAll() {
+		assertEquals("0:a^Ib^M$\nM-^@M-a^?$\n",
+			cat(command -> command.setShowAll(true), List.of("f0"), "a\tb\r\n\u0080á\u007f\n"));
+		assertEquals("0:a^Ib\n", cat(command -> command.setShowTabsNonprinting(true), List.of("f0"), "a\tb\n"));
+		assertEquals("0:a\tb$\n", cat(command -> command.setShowEnds(true), List.of("f0"), "a\tb\n"));
+	}
+
+	@Test
+	public void testLargeFile() {
+		// Larger than the buffers, so lines span several reads
+		var text = new StringBuilder();
+		for (int i = 0; i < 50_000; i++) text.append("line ").append(i).append('\n');
+		var plain = cat(command -> {}, List.of("f0"), text.toString());
+		assertEquals("0:" + text, plain);
+		var numbered = cat(command -> command.setNumber(true), List.of("f0"), text.toString());
+		var lines = numbered.substring(2).lines().toList();
+		assertEquals(50_000, lines.size());
+		assertEquals(" 50000\tline 49999", lines.getLast());
+		assertTrue(lines.get(12345).endsWith("\tline 12345"));
+	}
+
+	@Test
+	public void testStandardOutput() {
+		// The process output, when it is the one of the test
+		var out = new ByteArrayOutputStream();
+		sandbox().runTest(
+			(File directory) -> {
+				Files.write(directory.toPath().resolve("f"), new byte[] {1, 2, 3});
+				var previous = System.out;
+				System.setOut(new PrintStream(out, true));
+				try {
+					var command = new ConcatenateCommand();
+					command.setFiles(List.of("f"));
+					return command.execute(directory.toPath());
+				} finally {
+					System.setOut(previous);
+				}
+			},
+			true
+		);
+		assertArrayEquals(new byte[] {1, 2, 3}, out.toByteArray());
+	}
+}
@@ -1,4 +1,139 @@
 package unxutils.coreutils;
 
+import org.junit.jupiter.api.Test;
+import unxutils.fs.FileSystemStats;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the machine readable output of df
+ */
 public class TestDiskFreeCommand {
+
+	// A disk with inodes and a file system queried without statvfs
+	private static final List<DiskSpaceReport.Row> ROWS = List.of(
+		new DiskSpaceReport.Row("/dev/sda1", "ext4", "/", new FileSystemStats(1000, 400, 300, 50, 20, false)),
+		new DiskSpaceReport.Row("share \"a\"", "nfs", "/mnt/a,b", new FileSystemStats(2000, 2000, 2000, -1, -1, true)));
+
+	// Report of the rows
+	private static String report(DiskSpaceReport.Format format, List<DiskSpaceReport.Row> rows) throws IOException {
+		var out = new ByteArrayOutputStream();
+		new DiskSpaceReport(format).write(rows, out);
+		return out.toString(UTF_8);
+	}
+
+	@Test
+	public void testJson() throws IOException {
+		var expected = "{\"filesystem\":\"/dev/sda1\",\"type\":\"ext4\",\"size\":1000,\"used\":600,\"available\":300,"
+			+ "\"free\":400,\"inodes\":50,\"inodes_used\":30,\"inodes_free\":20,\"readonly\":false,\"mounted_on\":\"/\"}";
+		var unknown = "{\"filesystem\":\"share \\\"a\\\"\",\"type\":\"nfs\",\"size\":2000,\"used\":0,\"available\":2000,"
+			+ "\"free\":2000,\"inodes\":null,\"inodes_used\":null,\"inodes_free\":null,\"readonly\":true,"
+			+ "\"mounted_on\":\"/mnt/a,b\"}";
+		assertEquals("[" + expected + "," + unknown + "]\n", report(DiskSpaceReport.Format.JSON, ROWS));
+		assertEquals(expected + "\n" + unknown + "\n", report(DiskSpaceReport.Format.NDJSON, ROWS));
+		assertEquals("[]\n", report(DiskSpaceReport.Format.JSON, List.of()));
+	}
+
+	@Test
+	public void testCsv() throws IOException {
+		assertEquals("""
+			filesystem,type,size,used,available,free,inodes,inodes_used,inodes_free,readonly,mounted_on
+			"/dev/sda1","ext4",1000,600,300,400,50,30,20,false,"/"
+			"share ""a""\","nfs",2000,0,2000,2000,,,,true,"/mnt/a,b"
+			""", report(DiskSpaceReport.Format.CSV, ROWS));
+	}
+
+	@Test
+	public void testTotal() {
+		var total = DiskSpaceReport.total(ROWS, "total", "-").stats();
+		assertEquals(3000, total.size());
+		assertEquals(2300, total.available());
+		assertEquals(-1, total.files());
+		total = DiskSpaceReport.total(ROWS.subList(0, 1), "total", "-").stats();
+		assertEquals(50, total.files());
+	}
+
+	@Test
+	public void testPrometheus() throws IOException {
+		var text = report(DiskSpaceReport.Format.PROMETHEUS, ROWS);
+		assertTrue(text.startsWith("# HELP node_filesystem_size_bytes Filesystem size in bytes.\n"
+			+ "# TYPE node_filesystem_size_bytes gauge\n"
+			+ "node_filesystem_size_bytes{device=\"/dev/sda1\",fstype=\"ext4\",mountpoint=\"/\"} 1000\n"
+			+ "node_filesystem_size_bytes{device=\"share \\\"a\\\"\",fstype=\"nfs\",mountpoint=\"/mnt/a,b\"} 2000\n"));
+		assertTrue(text.contains("node_filesystem_files{device=\"/dev/sda1\",fstype=\"ext4\",mountpoint=\"/\"} 50\n"));
+		assertTrue(text.contains("node_filesystem_readonly{device=\"share \\\"a\\\"\",fstype=\"nfs\",mountpoint=\"/mnt/a,b\"} 1\n"));
+		// Unknown inode counts are left out
+		assertFalse(text.contains("node_filesystem_files{device=\"share"));
+	}
+
+	@Test
+	public void testPrometheusTextfile() throws Exception {
+		var directory = Files.createTempDirectory("df");
+		try {
+			var command = new FreeDiskSpaceCommand();
+			command.setPrometheusTextfile("filesystem.prom");
+			assertEquals(0, command.execute(directory));
+			var text = Files.readString(directory.resolve("filesystem.prom"));
+			assertTrue(text.startsWith("# HELP node_filesystem_size_bytes"));
+			assertTrue(text.contains("# TYPE node_filesystem_readonly gauge\n"));
+			// Nothing is left behind
+			try (var files = Files.list(directory)) {
+				assertEquals(1, files.count());
+			}
+		} finally {
+			try (var files = Files.list(directory)) {
+				for (var file: files.toList()) Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testInvalidFormat() throws Exception {
+		var command = new FreeDiskSpaceCommand();
+		command.setOutputFormat("xml");
+		assertEquals(1, command.execute(Path.of(System.getProperty("java.io.tmpdir"))));
+	}
+
+	@Test
+	public void testConcurrentExecutions() throws Exception {
+		var command = new FreeDiskSpaceCommand();
+		command.setTotal(true);
+		var cwd = Path.of(System.getProperty("java.io.tmpdir"));
+		try (var executor = Executors.newFixedThreadPool(8)) {
+			var results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 64; i++) {
+				results.add(executor.submit(() -> {
+					var out = new ByteArrayOutputStream();
+					assertEquals(0, command.execute(cwd, new PrintStream(out, true), System.err));
+					return out.toString();
+				}));
+			}
+			// Figures may change from one call to the next, but the total is
+			//	always the one of its own call
+			for (var result: results) {
+				var lines = result.get().lines().toList();
+				assertTrue(lines.getFirst().trim().startsWith("File system"), lines.toString());
+				assertTrue(lines.getLast().trim().startsWith("total"), lines.toString());
+				long size = 0;
+				for (var line: lines.subList(1, lines.size() - 1)) {
+					size += Long.parseLong(line.trim().split("\\s+")[1]);
+				}
+				assertEquals(size, Long.parseLong(lines.getLast().trim().split("\\s+")[1]));
+			}
+		}
+	}
 }
@@ -0,0 +1,102 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the head command
+ */
+public class TestHeadCommand {
+
+	// What head printed over some files, written first, and its exit status
+	private static String head(Consumer<HeadCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(ISO_8859_1, contents, (cwd, out, err) -> {
+			var command = new HeadCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	// What head printed over standard input, and its exit status
+	private static String headInput(Consumer<HeadCommand> options, InputStream input) {
+		return CommandFixture.run(ISO_8859_1, new String[0], input, (cwd, out, err) -> {
+			var command = new HeadCommand();
+			options.accept(command);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	// Lines from one to the given number
+	private static String numbers(int count) {
+		var ret = new StringBuilder();
+		for (int i = 1; i <= count; i++) ret.append(i).append('\n');
+		return ret.toString();
+	}
+
+	@Test
+	public void testLines() {
+		var text = numbers(20);
+		assertEquals("0:" + numbers(10), head(command -> {}, List.of("f0"), text));
+		assertEquals("0:1\n2\n", head(command -> command.setLines("2"), List.of("f0"), text));
+		assertEquals("0:a\nb", head(command -> command.setLines("5"), List.of("f0"), "a\nb"));
+		assertEquals("0:", head(command -> command.setLines("0"), List.of("f0"), text));
+		// All but the last lines
+		assertEquals("0:" + numbers(17), head(command -> command.setLines("-3"), List.of("f0"), text));
+		assertEquals("0:a\n", head(command -> command.setLines("-1"), List.of("f0"), "a\nb"));
+		assertEquals("0:", head(command -> command.setLines("-30"), List.of("f0"), text));
+	}
+
+	@Test
+	public void testBytes() {
+		assertEquals("0:1\n2", head(command -> command.setBytes("3"), List.of("f0"), numbers(20)));
+		assertEquals("0:abc", head(command -> command.setBytes("-3"), List.of("f0"), "abcdef"));
+		assertEquals("0:abc", head(command -> command.setBytes("1K"), List.of("f0"), "abc"));
+	}
+
+	@Test
+	public void testStandardInput() {
+		var text = numbers(100_000);
+		assertEquals("0:1\n2\n", headInput(command -> command.setLines("2"),
+			new ByteArrayInputStream(text.getBytes(ISO_8859_1))));
+		assertEquals("0:" + numbers(50_000), headInput(command -> command.setLines("-50000"),
+			new ByteArrayInputStream(text.getBytes(ISO_8859_1))));
+		assertEquals("0:" + text.substring(0, text.length() - 7), headInput(command -> command.setBytes("-7"),
+			new ByteArrayInputStream(text.getBytes(ISO_8859_1))));
+	}
+
+	@Test
+	public void testStopsEarly() {
+		// An endless input: head returns once it has its lines
+		var read = new long[1];
+		var endless = new InputStream() {
+			@Override
+			public int read() {
+				read[0]++;
+				return read[0] % 2 == 0 ? '\n' : 'y';
+			}
+		};
+		assertEquals("0:y\ny\ny\n", headInput(command -> command.setLines("3"), endless));
+		assertTrue(read[0] <= TailScanner.BLOCK_SIZE, read[0] + " bytes read");
+	}
+
+	@Test
+	public void testHeadersAndErrors() {
+		assertEquals("0:==> f0 <==\na\n\n==> f1 <==\nc\n",
+			head(command -> command.setLines("1"), List.of("f0", "f1"), "a\nb\n", "c\nd\n"));
+		// Headers only for the files opened
+		assertEquals("1:==> f0 <==\na\n!head: cannot open 'none' for reading: No such file or directory\n",
+			head(command -> command.setLines("1"), List.of("f0", "none"), "a\nb\n"));
+		assertEquals("1:!head: invalid number of lines: '-x'\n",
+			head(command -> command.setLines("-x"), List.of("f0"), "a\n"));
+	}
+}
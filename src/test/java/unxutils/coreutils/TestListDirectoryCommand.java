@@ -2,12 +2,28 @@ package unxutils.coreutils;
 
 import lombok.Getter;
 import org.junit.jupiter.api.Test;
+import unxutils.fs.AttributeLoader;
+import unxutils.fs.AttributeSource;
+import unxutils.fs.FileNames;
+import unxutils.fs.LinuxDirectoryReader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -146,4 +162,525 @@ public class TestListDirectoryCommand {
 		dirCtx.getBackupFiles().forEach(file -> assertTrue(lines.contains(file.getName())));
 		dirCtx.getAbcFiles().forEach(file -> assertFalse(lines.contains(file.getName())));
 	}
+
+	// Lists a populated directory, returning {listed entries, attribute reads}
+	private long[] countReads(Consumer<ListDirectoryCommand> options) {
+		var command = new ListDirectoryCommand();
+		options.accept(command);
+		var dirCtx = new DirectoryContext();
+		var loader = new AtomicReference<AttributeLoader>();
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				dirCtx.populateDirectory(directory);
+				return command.execute(directory.toPath(), System.out, System.err, loader::set);
+			},
+			true
+		);
+		return new long[] { ctx.out().lines().count(), loader.get().getReads() };
+	}
+
+	@Test
+	public void testAttributeReads() {
+		// Plain ls: names only
+		var plain = countReads(command -> {});
+		assertEquals(BACKUP_FILES + ABC_FILES, plain[0]);
+		assertEquals(0, plain[1]);
+		// Filters only look at names
+		var filtered = countReads(command -> {
+			command.setAll(true);
+			command.setIgnoreBackups(true);
+		});
+		assertEquals(0, filtered[1]);
+		// Recursion: d_type tells regular files apart, unless it is not available
+		var recursive = countReads(command -> command.setRecursive(true));
+		assertEquals(LinuxDirectoryReader.isSupported() ? 0 : recursive[0], recursive[1]);
+		// One file system: the device is only read for directories
+		var oneFileSystem = countReads(command -> {
+			command.setRecursive(true);
+			command.setOneFileSystem(true);
+		});
+		assertEquals(recursive[1], oneFileSystem[1]);
+		// Colors: one read per entry for the executable bits
+		var color = countReads(command -> command.setColor(true));
+		assertEquals(color[0], color[1]);
+		// Long format: still one read per entry
+		var longFormat = countReads(command -> command.setLongOutputFormat(true));
+		assertEquals(longFormat[0], longFormat[1]);
+		var longColor = countReads(command -> {
+			command.setLongOutputFormat(true);
+			command.setColor(true);
+		});
+		assertEquals(longColor[0], longColor[1]);
+	}
+
+	@Test
+	public void testAttributePlans() {
+		var command = new ListDirectoryCommand();
+		assertEquals(AttributeSource.NAME, command.planAttributes().source());
+		command.setRecursive(true);
+		assertEquals(AttributeSource.DIRENT, command.planAttributes().source());
+		command.setOneFileSystem(true);
+		assertEquals(AttributeSource.UNIX, command.planAttributes().source());
+		command.setOneFileSystem(false);
+		command.setColor(true);
+		// The special bits are only in the whole mode
+		assertEquals(AttributeSource.UNIX, command.planAttributes().source());
+		command.setLongOutputFormat(true);
+		assertEquals(AttributeSource.UNIX, command.planAttributes().source());
+	}
+
+	// Sets the mode of a file, special bits included, which the JDK cannot
+	private static void chmod(String mode, Path path) throws IOException, InterruptedException {
+		assertEquals(0, new ProcessBuilder("chmod", mode, path.toString()).start().waitFor());
+	}
+
+	@Test
+	public void testColorSpecialBits() {
+		// Without -l too
+		var command = new ListDirectoryCommand();
+		command.setColor(true);
+		command.setColorScheme(LsColors.parse("tw=30;42:st=37;44:su=37;41"));
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				chmod("1777", Files.createDirectory(root.resolve("shared")));
+				chmod("1755", Files.createDirectory(root.resolve("sticky")));
+				chmod("4755", Files.createFile(root.resolve("setuid")));
+				return command.execute(root);
+			},
+			true
+		);
+		assertTrue(ctx.out().contains("\u001b[30;42mshared\u001b[0m"), ctx.out());
+		assertTrue(ctx.out().contains("\u001b[37;44msticky\u001b[0m"), ctx.out());
+		assertTrue(ctx.out().contains("\u001b[37;41msetuid\u001b[0m"), ctx.out());
+	}
+
+	// Lists bad\xff, dir\xfe holding inner, and sub, whose names the file name
+	//	charset may not decode; returns the exit status, the output and the errors
+	private String listUndecodable(Consumer<ListDirectoryCommand> options) {
+		var command = new ListDirectoryCommand();
+		options.accept(command);
+		var status = new int[1];
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				Files.createFile(FileNames.resolve(root, new byte[] {'b', 'a', 'd', (byte) 0xff}, 0, 4));
+				var dir = Files.createDirectory(FileNames.resolve(root, new byte[] {'d', 'i', 'r', (byte) 0xfe}, 0, 4));
+				Files.createFile(dir.resolve("inner"));
+				Files.createDirectory(root.resolve("sub"));
+				status[0] = command.execute(root);
+				return status[0];
+			},
+			true
+		);
+		return status[0] + ":" + ctx.out() + "!" + ctx.err();
+	}
+
+	@Test
+	public void testUndecodableNames() {
+		// Stat-ed, entered and colored by the bytes of their names
+		var longFormat = listUndecodable(command -> command.setLongOutputFormat(true));
+		assertTrue(longFormat.startsWith("0:") && longFormat.endsWith("!"), longFormat);
+		assertTrue(longFormat.lines().filter(line -> line.matches(".* (bad|dir|sub).*")).count() == 3, longFormat);
+		var recursive = listUndecodable(command -> command.setRecursive(true));
+		assertTrue(recursive.startsWith("0:") && recursive.endsWith("!"), recursive);
+		assertTrue(recursive.contains("\ninner\n") && recursive.contains("bad"), recursive);
+		var color = listUndecodable(command -> command.setColor(true));
+		assertTrue(color.startsWith("0:") && color.endsWith("!"), color);
+		assertTrue(color.contains("bad") && color.contains("dir") && color.contains("sub"), color);
+	}
+
+	// Lists a tree with a symbolic link loop, returning the exit status
+	private int listLoop(ListDirectoryCommand command, StringBuilder err) {
+		var status = new int[1];
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				var sub = Files.createDirectory(directory.toPath().resolve("sub"));
+				Files.createFile(sub.resolve("file"));
+				Files.createSymbolicLink(sub.resolve("loop"), directory.toPath());
+				status[0] = command.execute(directory.toPath());
+				return status[0];
+			},
+			true
+		);
+		err.append(ctx.err());
+		return status[0];
+	}
+
+	@Test
+	public void testPhysicalRecursionIgnoresLinks() {
+		var command = new ListDirectoryCommand();
+		command.setRecursive(true);
+		var err = new StringBuilder();
+		assertEquals(0, listLoop(command, err));
+		assertEquals("", err.toString());
+	}
+
+	@Test
+	public void testLogicalRecursionDetectsLoops() {
+		var command = new ListDirectoryCommand();
+		command.setRecursive(true);
+		command.setDereference(true);
+		var err = new StringBuilder();
+		assertEquals(2, listLoop(command, err));
+		assertTrue(err.toString().contains("not listing already-listed directory"));
+	}
+
+	// Lists a tree with a link to a directory in another file system (/dev/shm),
+	//	following it; null if there is no such file system here
+	private String listAcrossFileSystems(Consumer<ListDirectoryCommand> options) throws IOException {
+		var shm = Path.of("/dev/shm");
+		if (!Files.isDirectory(shm) || !Files.isWritable(shm)) return null;
+		var other = Files.createTempDirectory(shm, "ls");
+		try {
+			Files.createFile(other.resolve("remote"));
+			var ctx = sandbox().runTest(
+				(File directory) -> {
+					if (Files.getAttribute(directory.toPath(), "unix:dev").equals(Files.getAttribute(other, "unix:dev"))) {
+						return 0;
+					}
+					var sub = Files.createDirectory(directory.toPath().resolve("sub"));
+					Files.createFile(sub.resolve("local"));
+					Files.createSymbolicLink(directory.toPath().resolve("mount"), other);
+					var command = new ListDirectoryCommand();
+					command.setRecursive(true);
+					command.setDereference(true);
+					options.accept(command);
+					return command.execute(directory.toPath());
+				},
+				false
+			);
+			return ctx.out().isEmpty() ? null : ctx.out();
+		} finally {
+			Files.deleteIfExists(other.resolve("remote"));
+			Files.delete(other);
+		}
+	}
+
+	@Test
+	public void testOneFileSystem() throws IOException {
+		var crossing = listAcrossFileSystems(command -> {});
+		if (crossing == null) return;
+		assertTrue(crossing.contains("local"));
+		assertTrue(crossing.contains("remote"));
+		var oneFileSystem = listAcrossFileSystems(command -> command.setOneFileSystem(true));
+		assertTrue(oneFileSystem.contains("local"));
+		assertFalse(oneFileSystem.contains("remote"));
+		// The mount point is listed, as a file
+		assertTrue(oneFileSystem.contains("mount"));
+		var type = Files.getFileStore(Path.of("/dev/shm")).type();
+		var excluded = listAcrossFileSystems(command -> command.setExcludeFsType("nfs," + type));
+		assertTrue(excluded.contains("local"));
+		assertFalse(excluded.contains("remote"));
+		var other = listAcrossFileSystems(command -> command.setExcludeFsType("nfs"));
+		assertTrue(other.contains("remote"));
+	}
+
+	@Test
+	public void testManyFilesInArgumentOrder() {
+		var command = new ListDirectoryCommand();
+		var arguments = new LinkedList<String>();
+		var status = new int[1];
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				for (int i = 0; i < 20; i++) {
+					var sub = Files.createDirectory(directory.toPath().resolve("dir" + i));
+					Files.createFile(sub.resolve("file" + i));
+					arguments.add(sub.toString());
+				}
+				// An argument that cannot be read does not stop the others
+				var loop = directory.toPath().resolve("loop");
+				Files.createSymbolicLink(loop, loop);
+				arguments.add(10, loop.toString());
+				command.setFiles(arguments);
+				status[0] = command.execute(directory.toPath());
+				return status[0];
+			},
+			true
+		);
+		// A header and the entry of every directory, in argument order
+		var lines = ctx.out().lines().toList();
+		assertEquals(40, lines.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("dir" + i + ":", lines.get(2 * i));
+			assertEquals("file" + i, lines.get(2 * i + 1));
+		}
+		assertTrue(ctx.err().contains("loop"));
+		assertEquals(2, status[0]);
+	}
+
+	@Test
+	public void testPrefetchKeepsOutput() {
+		var outputs = new LinkedList<List<String>>();
+		for (var prefetch: new String[] {null, "8"}) {
+			var command = new ListDirectoryCommand();
+			command.setLongOutputFormat(true);
+			command.setPrefetch(prefetch);
+			var loader = new AtomicReference<AttributeLoader>();
+			var ctx = sandbox().runTest(
+				(File directory) -> {
+					for (int i = 0; i < 500; i++) {
+						Files.write(directory.toPath().resolve("file" + i), new byte[i]);
+					}
+					return command.execute(directory.toPath(), System.out, System.err, loader::set);
+				},
+				true
+			);
+			outputs.add(ctx.out().lines().map(line -> line.replaceAll(" +", " ")).toList());
+			// Still one read per entry
+			assertEquals(500, loader.get().getReads());
+		}
+		assertEquals(outputs.getFirst(), outputs.getLast());
+	}
+
+	@Test
+	public void testMaxEntries() {
+		var command = new ListDirectoryCommand();
+		command.setMaxEntries("5");
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				for (int i = 0; i < 100; i++) {
+					Files.createFile(directory.toPath().resolve("file" + i));
+				}
+				assertEquals(0, command.execute(directory.toPath()));
+				return 0;
+			},
+			true
+		);
+		assertEquals(5, ctx.out().lines().count());
+	}
+
+	@Test
+	public void testInvalidMaxEntries() {
+		var command = new ListDirectoryCommand();
+		command.setMaxEntries("0");
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				assertEquals(2, command.execute(directory.toPath()));
+				return 0;
+			},
+			true
+		);
+		assertTrue(ctx.err().contains("invalid maximum number of entries"));
+	}
+
+	@Test
+	public void testClosedOutput() {
+		var writes = new AtomicInteger();
+		for (var prefetch: new String[] {null, "4"}) {
+			writes.set(0);
+			var command = new ListDirectoryCommand();
+			command.setRecursive(true);
+			command.setLongOutputFormat(prefetch != null);
+			command.setPrefetch(prefetch);
+			sandbox().runTest(
+				(File directory) -> {
+					for (int i = 0; i < 20; i++) {
+						var sub = Files.createDirectory(directory.toPath().resolve("dir" + i));
+						for (int j = 0; j < 100; j++) {
+							Files.createFile(sub.resolve("file" + j));
+						}
+					}
+					// Like a pipe whose reader is gone (ls -R | head -1)
+					System.setOut(new PrintStream(new OutputStream() {
+						@Override
+						public void write(int b) throws IOException {
+							write(new byte[] {(byte) b}, 0, 1);
+						}
+
+						@Override
+						public void write(byte[] b, int off, int len) throws IOException {
+							if (writes.incrementAndGet() > 1) throw new IOException("Broken pipe");
+						}
+					}));
+					assertEquals(2, command.execute(directory.toPath()));
+					return 0;
+				},
+				true
+			);
+			// Stopped long before the 2000 files
+			assertTrue(writes.get() < 200, writes.get() + " writes");
+		}
+	}
+
+	@Test
+	public void testArchive() {
+		var command = new ListDirectoryCommand();
+		command.setRecursive(true);
+		command.setLongOutputFormat(true);
+		command.setFiles(List.of("app.jar!/BOOT-INF"));
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				try (var zip = new ZipOutputStream(Files.newOutputStream(directory.toPath().resolve("app.jar")))) {
+					for (var name: new String[] {"META-INF/MANIFEST.MF", "BOOT-INF/classes/App.class", "BOOT-INF/lib/dep.jar"}) {
+						zip.putNextEntry(new ZipEntry(name));
+						zip.write(new byte[name.length()]);
+						zip.closeEntry();
+					}
+				}
+				assertEquals(0, command.execute(directory.toPath()));
+				return 0;
+			},
+			true
+		);
+		// Sizes of the entries, not of their compressed data
+		var lines = ctx.out().lines().map(line -> line.replaceAll(" +", " ")).toList();
+		assertTrue(lines.stream().anyMatch(line -> line.startsWith("-") && line.endsWith(" App.class")
+			&& line.contains(" 26 ")), lines.toString());
+		assertTrue(lines.stream().anyMatch(line -> line.endsWith(" dep.jar") && line.contains(" 20 ")), lines.toString());
+		assertFalse(lines.stream().anyMatch(line -> line.contains("MANIFEST")), lines.toString());
+	}
+
+	@Test
+	public void testArchiveRoot() {
+		var command = new ListDirectoryCommand();
+		command.setFiles(List.of("app.jar!", "app.jar!/META-INF"));
+		var ctx = sandbox().runTest(
+			(File directory) -> {
+				try (var zip = new ZipOutputStream(Files.newOutputStream(directory.toPath().resolve("app.jar")))) {
+					zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+					zip.closeEntry();
+					zip.putNextEntry(new ZipEntry("BOOT-INF/"));
+					zip.closeEntry();
+				}
+				assertEquals(0, command.execute(directory.toPath()));
+				return 0;
+			},
+			true
+		);
+		var lines = ctx.out().lines().toList();
+		assertTrue(lines.contains("BOOT-INF"), lines.toString());
+		assertTrue(lines.contains("META-INF"), lines.toString());
+		assertTrue(lines.contains("MANIFEST.MF"), lines.toString());
+	}
+
+	@Test
+	public void testWatch() {
+		var command = new ListDirectoryCommand();
+		command.setLongOutputFormat(true);
+		command.setRecursive(true);
+		command.setWatch(true);
+		var loader = new AtomicReference<AttributeLoader>();
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				var sub = Files.createDirectory(root.resolve("sub"));
+				for (int i = 0; i < 200; i++) {
+					Files.createFile(sub.resolve("file" + i));
+				}
+				var output = new ByteArrayOutputStream();
+				System.setOut(new PrintStream(output, true));
+				var watcher = Thread.ofVirtual().start(() -> {
+					try {
+						command.execute(root, System.out, System.err, loader::set);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				});
+				// The whole listing first
+				awaitOutput(output, text -> text.lines().filter(line -> line.contains(" file")).count() == 200);
+				long reads = loader.get().getReads();
+				Files.createFile(sub.resolve("new"));
+				Files.write(sub.resolve("file0"), new byte[10]);
+				Files.delete(sub.resolve("file1"));
+				Files.createFile(root.resolve(".hidden"));
+				var created = Files.createDirectory(root.resolve("created"));
+				awaitChange(output, "+ ", " sub/new");
+				awaitChange(output, "~ ", " sub/file0");
+				awaitChange(output, "- ", "sub/file1");
+				// Entries of new directories are watched too
+				awaitChange(output, "+ ", " created");
+				Files.createFile(created.resolve("inner"));
+				awaitChange(output, "+ ", " created/inner");
+				watcher.interrupt();
+				watcher.join();
+				assertFalse(output.toString().contains("hidden"), output.toString());
+				// Only the changed entries are read again
+				assertTrue(loader.get().getReads() - reads < 20, (loader.get().getReads() - reads) + " reads");
+				return 0;
+			},
+			true
+		);
+	}
+
+	// Waits until a change is printed, for a few seconds at most
+	private static void awaitChange(ByteArrayOutputStream output, String mark, String name)
+			throws InterruptedException {
+		awaitOutput(output, text -> text.lines().anyMatch(line -> line.startsWith(mark) && line.endsWith(name)));
+	}
+
+	// Waits until the output is as expected, for a few seconds at most
+	private static void awaitOutput(ByteArrayOutputStream output, Predicate<String> expected)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!expected.test(output.toString())) {
+			assertTrue(System.currentTimeMillis() < deadline, "unexpected output:\n" + output);
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	public void testControlCharacters() {
+		for (var hide: new boolean[] {false, true}) {
+			var command = new ListDirectoryCommand();
+			command.setHideControlChars(hide);
+			var ctx = sandbox().runTest(
+				(File directory) -> {
+					Files.createFile(directory.toPath().resolve("tab\there"));
+					Files.createFile(directory.toPath().resolve("plain"));
+					return command.execute(directory.toPath());
+				},
+				true
+			);
+			var lines = ctx.out().lines().toList();
+			assertTrue(lines.contains(hide ? "tab?here" : "tab\there"), lines.toString());
+			assertTrue(lines.contains("plain"), lines.toString());
+		}
+	}
+
+	@Test
+	public void testConcurrentExecutions() {
+		// A single command, configured once and shared by every thread
+		var command = new ListDirectoryCommand();
+		command.setLongOutputFormat(true);
+		command.setRecursive(true);
+		command.setAll(true);
+		command.setIgnoreBackups(true);
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				for (var name: List.of("one", "two")) {
+					var sub = Files.createDirectories(root.resolve(name).resolve("nested"));
+					for (int i = 0; i < 50; i++) {
+						Files.createFile(sub.resolve("file" + i));
+						Files.createFile(sub.getParent().resolve("entry" + i + (i % 5 == 0 ? "~" : "")));
+					}
+				}
+				command.setFiles(List.of("one", "two"));
+				var expected = new ByteArrayOutputStream();
+				assertEquals(0, command.execute(root, new PrintStream(expected, true), System.err));
+				assertTrue(expected.toString().lines().count() > 150, expected.toString());
+				var failures = new AtomicInteger();
+				try (var executor = Executors.newFixedThreadPool(16)) {
+					for (int i = 0; i < 200; i++) {
+						executor.submit(() -> {
+							var out = new ByteArrayOutputStream();
+							var err = new ByteArrayOutputStream();
+							try {
+								int status = command.execute(root, new PrintStream(out, true), new PrintStream(err, true));
+								if (status != 0 || !expected.toString().equals(out.toString()) || err.size() > 0) {
+									failures.incrementAndGet();
+								}
+							} catch (Exception e) {
+								failures.incrementAndGet();
+							}
+						});
+					}
+				}
+				assertEquals(0, failures.get());
+				return 0;
+			},
+			true
+		);
+	}
 }
@@ -0,0 +1,100 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import unxutils.format.LineBuffer;
+import unxutils.fs.EntryBuffer;
+import unxutils.fs.EntryType;
+import unxutils.fs.FileAttributes;
+
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the rows of ls -l
+ */
+public class TestLongFormat {
+
+	// Entry with a mode, links, owner, group and size
+	private static int add(EntryBuffer entries, String name, int mode, long links, String owner, String group,
+			long size, long millis) {
+		int index = entries.add(name, EntryType.REGULAR);
+		entries.load(index, new FileAttributes(false, false, true, size, FileTime.fromMillis(millis), null,
+			null, owner, group, mode, links, 1, owner.length(), group.length()));
+		return index;
+	}
+
+	// Row of an entry, without its name
+	private static String row(LongFormat format, EntryBuffer entries, int index, int[] widths) {
+		var line = new LineBuffer(64);
+		format.append(line, entries, index, entries.mode(index), widths);
+		return new String(Arrays.copyOf(line.array(), line.length()), UTF_8);
+	}
+
+	@Test
+	public void testPermissions() {
+		var format = new LongFormat(false, UTF_8);
+		var entries = new EntryBuffer();
+		var widths = new int[LongFormat.COLUMNS];
+		int[] modes = {0100644, 0104755, 0104644, 0102750, 0041777, 0041776, 0120777, 0010600};
+		String[] expected = {"-rw-r--r--", "-rwsr-xr-x", "-rwSr--r--", "-rwxr-s---", "drwxrwxrwt", "drwxrwxrwT",
+			"lrwxrwxrwx", "prw-------"};
+		for (int i = 0; i < modes.length; i++) {
+			int index = add(entries, "f" + i, modes[i], 1, "u", "g", 0, 0);
+			format.measure(entries, index, widths);
+			assertEquals(expected[i], row(format, entries, index, widths).substring(0, 10));
+		}
+	}
+
+	@Test
+	public void testColumns() {
+		var format = new LongFormat(false, UTF_8);
+		var entries = new EntryBuffer();
+		long millis = ZonedDateTime.of(2001, 2, 3, 4, 5, 0, 0, ZoneId.systemDefault()).toInstant().toEpochMilli();
+		int small = add(entries, "small", 0100644, 1, "root", "wheel", 7, millis);
+		int large = add(entries, "large", 0100644, 1234, "nobody", "g", 123456, millis);
+		var widths = new int[LongFormat.COLUMNS];
+		format.measure(entries, small, widths);
+		format.measure(entries, large, widths);
+		// Numbers to the right, names to the left
+		assertEquals("-rw-r--r--    1 root   wheel      7 Feb  3  2001 ", row(format, entries, small, widths));
+		assertEquals("-rw-r--r-- 1234 nobody g     123456 Feb  3  2001 ", row(format, entries, large, widths));
+		var human = new LongFormat(true, UTF_8);
+		LongFormat.reset(widths);
+		human.measure(entries, small, widths);
+		human.measure(entries, large, widths);
+		assertEquals("-rw-r--r-- 1234 nobody g     120,6K Feb  3  2001 ", row(human, entries, large, widths));
+	}
+
+	@Test
+	public void testDates() {
+		var format = new LongFormat(false, UTF_8);
+		var zone = ZoneId.systemDefault();
+		var thisYear = DateTimeFormatter.ofPattern("MMM ppd HH:mm", ENGLISH);
+		var otherYear = DateTimeFormatter.ofPattern("MMM ppd  yyyy", ENGLISH);
+		var now = ZonedDateTime.now(zone);
+		long[] times = {
+			0,
+			-86_400_000L * 365 + 1,
+			ZonedDateTime.of(2000, 2, 29, 23, 59, 0, 0, zone).toInstant().toEpochMilli(),
+			ZonedDateTime.of(1969, 12, 31, 12, 0, 0, 0, zone).toInstant().toEpochMilli(),
+			now.withMonth(1).withDayOfMonth(1).withHour(0).withMinute(0).toInstant().toEpochMilli(),
+			now.withMonth(7).withDayOfMonth(15).withHour(13).withMinute(7).toInstant().toEpochMilli(),
+			now.withMonth(12).withDayOfMonth(31).withHour(23).withMinute(59).toInstant().toEpochMilli()
+		};
+		for (long millis: times) {
+			var date = ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+			var expected = (date.getYear() == now.getYear() ? thisYear : otherYear).format(date);
+			var line = new LineBuffer(16);
+			format.appendDate(line, millis);
+			assertEquals(expected, new String(Arrays.copyOf(line.array(), line.length()), UTF_8));
+		}
+	}
+}
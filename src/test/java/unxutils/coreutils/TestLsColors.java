@@ -0,0 +1,70 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import unxutils.format.LineBuffer;
+import unxutils.fs.EntryType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * This class tests the LS_COLORS parsing and lookups
+ */
+public class TestLsColors {
+
+	private static final String SPEC =
+		"di=01;34:ln=01;36:ex=01;32:tw=30;42:*.tar=01;31:*.gz=01;33:*.tar.gz=01;35:*README=04";
+
+	// Name painted with the style the scheme picks
+	private static String paint(LsColors colors, EntryType type, int mode, String name) {
+		var bytes = name.getBytes(StandardCharsets.UTF_8);
+		var line = new LineBuffer(64);
+		colors.append(line, colors.styleOf(type, mode, bytes, 0, bytes.length), bytes, 0, bytes.length);
+		return new String(Arrays.copyOf(line.array(), line.length()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testTypes() {
+		var colors = LsColors.parse(SPEC);
+		assertEquals("\u001b[01;34mdir\u001b[0m", paint(colors, EntryType.DIRECTORY, 0755, "dir"));
+		assertEquals("\u001b[30;42mtmp\u001b[0m", paint(colors, EntryType.DIRECTORY, 01777, "tmp"));
+		assertEquals("\u001b[01;36mlink\u001b[0m", paint(colors, EntryType.SYMBOLIC_LINK, 0, "link"));
+		assertEquals("\u001b[01;32mrun.tar\u001b[0m", paint(colors, EntryType.REGULAR, 0755, "run.tar"));
+		// Not in the scheme
+		assertEquals("plain", paint(colors, EntryType.REGULAR, 0644, "plain"));
+		assertEquals("fifo", paint(colors, EntryType.FIFO, 0644, "fifo"));
+	}
+
+	@Test
+	public void testSuffixes() {
+		var colors = LsColors.parse(SPEC);
+		assertEquals("\u001b[01;31ma.tar\u001b[0m", paint(colors, EntryType.REGULAR, 0644, "a.tar"));
+		assertEquals("\u001b[01;33ma.gz\u001b[0m", paint(colors, EntryType.REGULAR, 0644, "a.gz"));
+		// The longest suffix wins
+		assertEquals("\u001b[01;35ma.tar.gz\u001b[0m", paint(colors, EntryType.REGULAR, 0644, "a.tar.gz"));
+		assertEquals("\u001b[04mREADME\u001b[0m", paint(colors, EntryType.REGULAR, 0644, "README"));
+		assertEquals("a.targz", paint(colors, EntryType.REGULAR, 0644, "a.targz"));
+		// Suffixes are for files only
+		assertEquals("\u001b[01;34mx.tar\u001b[0m", paint(colors, EntryType.DIRECTORY, 0755, "x.tar"));
+	}
+
+	@Test
+	public void testEscapes() {
+		var colors = LsColors.parse("lc=\\e[:rc=m:ec=^[[m:di=1");
+		assertEquals("\u001b[1md\u001b[m", paint(colors, EntryType.DIRECTORY, 0, "d"));
+		colors = LsColors.parse("lc=\\033[:di=1:garbage:xx=5:*.c=");
+		assertEquals("\u001b[1md\u001b[0m", paint(colors, EntryType.DIRECTORY, 0, "d"));
+		assertEquals("a.c", paint(colors, EntryType.REGULAR, 0, "a.c"));
+	}
+
+	@Test
+	public void testDefaults() {
+		var colors = LsColors.defaults();
+		assertEquals("file", paint(colors, EntryType.REGULAR, 0644, "file"));
+		assertNotEquals("dir", paint(colors, EntryType.DIRECTORY, 0755, "dir"));
+		assertNotEquals("run", paint(colors, EntryType.REGULAR, 0755, "run"));
+	}
+}
@@ -0,0 +1,45 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the md5sum command
+ */
+public class TestMd5SumCommand {
+
+	// Checksum of "abc"
+	private static final String ABC = "900150983cd24fb0d6963f7d28e17f72";
+
+	// What md5sum printed over some files, written first, and its exit status
+	private static String md5sum(Consumer<Md5SumCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(UTF_8, contents, (cwd, out, err) -> {
+			var command = new Md5SumCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	@Test
+	public void testHash() {
+		assertEquals("0:" + ABC + "  f0\n", md5sum(command -> {}, List.of("f0"), "abc"));
+		assertEquals("0:MD5 (f0) = " + ABC + "\n", md5sum(command -> command.setTag(true), List.of("f0"), "abc"));
+	}
+
+	@Test
+	public void testCheck() {
+		assertEquals("0:f0: OK\nf0: OK\n", md5sum(command -> command.setCheck(true), List.of("f1"), "abc",
+			ABC + "  f0\nMD5 (f0) = " + ABC + "\n"));
+		// SHA256 lines are not MD5 lines
+		assertEquals("1:!md5sum: f1: no properly formatted checksum lines found\n",
+			md5sum(command -> command.setCheck(true), List.of("f1"), "abc",
+				"ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  f0\n"));
+	}
+}
@@ -0,0 +1,167 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the sha256sum command
+ */
+public class TestSha256SumCommand {
+
+	// Checksums of some strings
+	private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+	private static final String EMPTY = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+	// What sha256sum printed over some files, written first, and its exit status
+	private static String sha256sum(Consumer<Sha256SumCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(UTF_8, contents, (cwd, out, err) -> {
+			var command = new Sha256SumCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	@Test
+	public void testHash() {
+		assertEquals("0:" + ABC + "  f0\n" + EMPTY + "  f1\n",
+			sha256sum(command -> {}, List.of("f0", "f1"), "abc", ""));
+		assertEquals("0:" + ABC + " *f0\n", sha256sum(command -> command.setBinary(true), List.of("f0"), "abc"));
+		assertEquals("0:SHA256 (f0) = " + ABC + "\n", sha256sum(command -> command.setTag(true), List.of("f0"), "abc"));
+		assertEquals("1:" + ABC + "  f0\n!sha256sum: none: No such file or directory\n",
+			sha256sum(command -> {}, List.of("f0", "none"), "abc"));
+		// Standard input
+		assertEquals("0:" + ABC + "  -\n",
+			CommandFixture.run(UTF_8, new String[0], "abc", new Sha256SumCommand()::execute).toString());
+	}
+
+	@Test
+	public void testManyFiles() throws Exception {
+		// More files than pending at a time, some of them mapped, printed in order
+		var random = new Random(7);
+		var contents = new String[200];
+		var expected = new StringBuilder("0:");
+		var names = new ArrayList<String>();
+		for (int i = 0; i < contents.length; i++) {
+			var bytes = new byte[i % 50 == 0 ? 3 * 1024 * 1024 + i : random.nextInt(1000)];
+			for (int j = 0; j < bytes.length; j++) bytes[j] = (byte) ('a' + random.nextInt(26));
+			contents[i] = new String(bytes, UTF_8);
+			var digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			expected.append(HexFormat.of().formatHex(digest)).append("  f").append(i).append('\n');
+			names.add("f" + i);
+		}
+		assertEquals(expected.toString(), sha256sum(command -> command.setParallel("3"), names, contents));
+	}
+
+	@Test
+	public void testCheck() {
+		var list = ABC + "  f0\n"
+			+ "# comment\n"
+			+ "garbage\n"
+			+ ABC.toUpperCase() + " *f1\n"
+			+ "SHA256 (f2) = " + EMPTY + "\n"
+			+ ABC + "  none\n";
+		assertEquals("1:f0: OK\nf1: FAILED\nf2: OK\nnone: FAILED open or read\n"
+				+ "!sha256sum: none: No such file or directory\n"
+				+ "sha256sum: WARNING: 1 line is improperly formatted\n"
+				+ "sha256sum: WARNING: 1 listed file could not be read\n"
+				+ "sha256sum: WARNING: 1 computed checksum did NOT match\n",
+			sha256sum(command -> command.setCheck(true), List.of("f3"), "abc", "abd", "", list));
+		assertEquals("1:f1: FAILED\n!sha256sum: WARNING: 1 line is improperly formatted\n"
+				+ "sha256sum: WARNING: 1 computed checksum did NOT match\n",
+			sha256sum(command -> {
+				command.setCheck(true);
+				command.setQuiet(true);
+				command.setIgnoreMissing(true);
+			}, List.of("f3"), "abc", "abd", "", list));
+		assertEquals("1:!sha256sum: none: No such file or directory\n",
+			sha256sum(command -> { command.setCheck(true); command.setStatus(true); },
+				List.of("f3"), "abc", "abd", "", list));
+		// Warnings come in order, with the line number
+		assertEquals("1:f0: OK\n!sha256sum: f1: 2: improperly formatted SHA256 checksum line\n"
+				+ "sha256sum: WARNING: 1 line is improperly formatted\n",
+			sha256sum(command -> { command.setCheck(true); command.setWarn(true); command.setStrict(true); },
+				List.of("f1"), "abc", ABC + "  f0\nbad\n"));
+		assertEquals("1:!sha256sum: f0: no properly formatted checksum lines found\n",
+			sha256sum(command -> command.setCheck(true), List.of("f0"), "abc"));
+		// A list on standard input leaves it open
+		var closed = new boolean[1];
+		var input = new ByteArrayInputStream((ABC + "  f0\n").getBytes(UTF_8)) {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		assertEquals("0:f0: OK\n", CommandFixture.run(UTF_8, new String[] {"abc"}, input, (cwd, out, err) -> {
+			var command = new Sha256SumCommand();
+			command.setCheck(true);
+			command.setFiles(List.of("-"));
+			return command.execute(cwd, out, err);
+		}).toString());
+		assertFalse(closed[0]);
+	}
+
+	@Test
+	public void testEscapes() {
+		var checksums = new Checksums("sha256sum", "SHA-256", "SHA256");
+		assertEquals(new Checksums.Entry(ABC, "a\\b\nc"), checksums.parse("\\" + ABC + "  a\\\\b\\nc"));
+		assertEquals(new Checksums.Entry(ABC, "a b"), checksums.parse("\\SHA256 (a b) = " + ABC));
+		assertEquals(new Checksums.Entry(ABC, " x"), checksums.parse(ABC + "   x"));
+		assertNull(checksums.parse("\\" + ABC + "  a\\qb"));
+		assertNull(checksums.parse(ABC + " x"));
+		assertNull(checksums.parse(ABC.substring(1) + "  x"));
+		assertNull(checksums.parse(ABC + "  "));
+		// Printed escaped, and read back
+		sandbox().runTest(
+			(File directory) -> {
+				Files.writeString(directory.toPath().resolve("a\\b"), "abc");
+				var out = new ByteArrayOutputStream();
+				var err = new ByteArrayOutputStream();
+				var command = new Sha256SumCommand();
+				command.setFiles(List.of("a\\b"));
+				assertEquals(0, command.execute(directory.toPath(), new PrintStream(out, true, UTF_8),
+					new PrintStream(err, true, UTF_8)));
+				assertEquals("\\" + ABC + "  a\\\\b\n", out.toString(UTF_8));
+				Files.write(directory.toPath().resolve("list"), out.toByteArray());
+				out.reset();
+				command = new Sha256SumCommand();
+				command.setCheck(true);
+				command.setFiles(List.of("list"));
+				assertEquals(0, command.execute(directory.toPath(), new PrintStream(out, true, UTF_8),
+					new PrintStream(err, true, UTF_8)));
+				assertEquals("a\\b: OK\n", out.toString(UTF_8));
+				assertEquals("", err.toString(UTF_8));
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testOptionErrors() {
+		assertEquals("1:!sha256sum: the --quiet option is meaningful only when verifying checksums\n",
+			sha256sum(command -> command.setQuiet(true), List.of("f0"), "abc"));
+		assertEquals("1:!sha256sum: the --tag option is meaningless when verifying checksums\n",
+			sha256sum(command -> { command.setTag(true); command.setCheck(true); }, List.of("f0"), "abc"));
+		assertEquals("1:!sha256sum: invalid number of parallel threads '0'\n",
+			sha256sum(command -> command.setParallel("0"), List.of("f0"), "abc"));
+	}
+}
@@ -0,0 +1,146 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the sort command
+ */
+public class TestSortCommand {
+
+	// What sort printed over a file, written first, and its exit status
+	private static String sort(Consumer<SortCommand> options, String content) {
+		return CommandFixture.run(UTF_8, new String[0], (cwd, out, err) -> {
+			Files.writeString(cwd.resolve("input"), content);
+			var command = new SortCommand();
+			command.setTemporaryDirectory(cwd.toString());
+			command.setFiles(List.of("input"));
+			options.accept(command);
+			int status = command.execute(cwd, out, err);
+			// Runs are removed
+			try (var files = Files.list(cwd)) {
+				assertEquals(1, files.count());
+			}
+			return status;
+		}).toString();
+	}
+
+	// Lines of random fields, some of them numbers
+	private static String randomLines(int count, long seed) {
+		var random = new Random(seed);
+		var words = new String[] {"alpha", "Beta", " gamma", "-3", "10", "2.50", "-0", "", "007", ".5", "x y"};
+		var ret = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			ret.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append('\t')
+				.append(words[random.nextInt(words.length)]).append('\n');
+		}
+		return ret.toString();
+	}
+
+	@Test
+	public void testOrderings() {
+		var text = "b 10\na 9\nB 2\n\na -1.5\n";
+		assertEquals("0:\nB 2\na -1.5\na 9\nb 10\n", sort(command -> {}, text));
+		assertEquals("0:b 10\na 9\na -1.5\nB 2\n\n", sort(command -> command.setReverse(true), text));
+		// Lines without a number are zero; equal numbers by the whole line
+		assertEquals("0:a -1.5\n\nB 2\na 9\nb 10\n", sort(command -> { command.setNumericSort(true);
+			command.setKey("2"); }, text));
+		assertEquals("0:10\n9\n2\n0.5\n-0.5\n-2\n-10\n",
+			sort(command -> { command.setNumericSort(true); command.setReverse(true); },
+				"-2\n0.5\n10\n-10\n9\n2\n-0.5\n"));
+		// The last line needs no newline
+		assertEquals("0:a\nb\n", sort(command -> {}, "b\na"));
+	}
+
+	@Test
+	public void testKeys() {
+		var text = "x:3:b\ny:1:c\nz:2:a\nw:1:a\n";
+		assertEquals("0:w:1:a\ny:1:c\nz:2:a\nx:3:b\n", sort(command -> { command.setFieldSeparator(":");
+			command.setKey("2,2"); }, text));
+		assertEquals("0:w:1:a\nz:2:a\nx:3:b\ny:1:c\n", sort(command -> { command.setFieldSeparator(":");
+			command.setKey("3"); }, text));
+		// Orderings of a key replace the global ones, not the last resort
+		assertEquals("0:x:3:b\nz:2:a\nw:1:a\ny:1:c\n", sort(command -> { command.setFieldSeparator(":");
+			command.setKey("2,2nr"); }, text));
+		// Characters, counted from the blanks before the field without -b
+		assertEquals("0:a  zb\nb xa\n", sort(command -> command.setKey("2.2"), "b xa\na  zb\n"));
+		assertEquals("0:b xa\na  zb\n", sort(command -> command.setKey("2.2b"), "b xa\na  zb\n"));
+		// Every key, in order, then the whole line; -u compares them all
+		assertEquals("0:c 1\na 2\nb 2\n", sort(command -> { command.setKey("2,2"); command.setKey("1,1"); },
+			"b 2\na 2\nc 1\n"));
+		assertEquals("0:c 1\nb 2\na 2\n", sort(command -> { command.setKey("2,2"); command.setKey("1,1r"); },
+			"b 2\na 2\nc 1\n"));
+		assertEquals("0:a 2\nb 2\n", sort(command -> { command.setKey("2,2"); command.setKey("1,1");
+			command.setUnique(true); }, "b 2\na 2\nb 2\n"));
+	}
+
+	@Test
+	public void testUnique() {
+		assertEquals("0:a 1\nb 1\n", sort(command -> command.setUnique(true), "b 1\na 1\nb 1\na 1\n"));
+		// The first line of each key, in input order
+		assertEquals("0:-0 one\n2 two\n", sort(command -> { command.setUnique(true); command.setNumericSort(true); },
+			"-0 one\n2 two\n0 zero\n2.0 again\n"));
+	}
+
+	@Test
+	public void testRuns() {
+		// More runs than are merged at once, with -u among them
+		var text = randomLines(200_000, 1);
+		var whole = sort(command -> {}, text);
+		assertEquals(whole, sort(command -> command.setBufferSize("128K"), text));
+		for (var key: List.of("2", "1n", "1,1nr")) {
+			var expected = sort(command -> { command.setKey(key); command.setUnique(true);
+				command.setFieldSeparator("\t"); }, text);
+			assertEquals(expected, sort(command -> { command.setKey(key); command.setUnique(true);
+				command.setFieldSeparator("\t"); command.setBufferSize("200K"); }, text));
+			// Whatever the threads
+			assertEquals(expected, sort(command -> { command.setKey(key); command.setUnique(true);
+				command.setFieldSeparator("\t"); command.setParallel("1"); }, text));
+		}
+		assertEquals(200_000, whole.lines().count());
+	}
+
+	@Test
+	public void testPrefixes() {
+		// Prefixes never contradict the comparison of the keys
+		var random = new Random(7);
+		var samples = new String[2000];
+		for (int i = 0; i < samples.length; i++) {
+			var number = new StringBuilder(random.nextBoolean() ? "-" : "");
+			for (int d = random.nextInt(12); d > 0; d--) number.append(random.nextInt(3) == 0 ? '0' : (char) ('0' + random.nextInt(10)));
+			if (random.nextBoolean()) number.append('.');
+			for (int d = random.nextInt(6); d > 0; d--) number.append(random.nextInt(3) == 0 ? '0' : (char) ('0' + random.nextInt(10)));
+			samples[i] = number.toString();
+		}
+		for (var numeric: new boolean[] {false, true}) {
+			var key = SortKey.of(null, SortKey.BLANK_SEPARATOR, numeric, false, false, true);
+			for (int i = 1; i < samples.length; i++) {
+				var a = samples[i - 1].getBytes(UTF_8);
+				var b = samples[i].getBytes(UTF_8);
+				int keys = Integer.signum(key.compareKeys(a, 0, a.length, b, 0, b.length));
+				int prefixes = Integer.signum(Long.compareUnsigned(key.prefix(a, 0, a.length), key.prefix(b, 0, b.length)));
+				assertTrue(prefixes == 0 || prefixes == keys, samples[i - 1] + " " + samples[i]);
+				if (keys == 0) assertEquals(0, prefixes);
+			}
+		}
+	}
+
+	@Test
+	public void testErrors() {
+		assertEquals("2:!sort: field number is zero: invalid field specification '0'\n",
+			sort(command -> command.setKey("0"), ""));
+		assertEquals("2:!sort: invalid -S argument '12Q'\n", sort(command -> command.setBufferSize("12Q"), ""));
+		assertEquals("2:!sort: multi-character tab 'ab'\n", sort(command -> command.setFieldSeparator("ab"), ""));
+		assertEquals("2:!sort: cannot read: none: No such file or directory\n",
+			sort(command -> command.setFiles(List.of("input", "none")), "a\n"));
+	}
+}
@@ -0,0 +1,186 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the tail command
+ */
+public class TestTailCommand {
+
+	// What tail printed over some files, written first, and its exit status
+	private static String tail(Consumer<TailCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(ISO_8859_1, contents, (cwd, out, err) -> {
+			var command = new TailCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	// What tail printed over standard input, and its exit status
+	private static String tailInput(Consumer<TailCommand> options, String input) {
+		return CommandFixture.run(ISO_8859_1, new String[0], input, (cwd, out, err) -> {
+			var command = new TailCommand();
+			options.accept(command);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	// Lines from one to the given number
+	private static String numbers(int count) {
+		var ret = new StringBuilder();
+		for (int i = 1; i <= count; i++) ret.append(i).append('\n');
+		return ret.toString();
+	}
+
+	@Test
+	public void testLines() {
+		var text = numbers(20);
+		assertEquals("0:" + text.substring(text.indexOf("11\n")), tail(command -> {}, List.of("f0"), text));
+		assertEquals("0:19\n20\n", tail(command -> command.setLines("2"), List.of("f0"), text));
+		assertEquals("0:b\nc", tail(command -> command.setLines("2"), List.of("f0"), "a\nb\nc"));
+		assertEquals("0:", tail(command -> command.setLines("0"), List.of("f0"), text));
+		assertEquals("0:a\n", tail(command -> command.setLines("5"), List.of("f0"), "a\n"));
+		// From a line on
+		assertEquals("0:19\n20\n", tail(command -> command.setLines("+19"), List.of("f0"), text));
+		assertEquals("0:" + text, tail(command -> command.setLines("+0"), List.of("f0"), text));
+		assertEquals("0:", tail(command -> command.setLines("+30"), List.of("f0"), text));
+	}
+
+	@Test
+	public void testBytes() {
+		assertEquals("0:20\n", tail(command -> command.setBytes("3"), List.of("f0"), numbers(20)));
+		assertEquals("0:def", tail(command -> command.setBytes("+4"), List.of("f0"), "abcdef"));
+		assertEquals("0:abc", tail(command -> command.setBytes("1K"), List.of("f0"), "abc"));
+	}
+
+	@Test
+	public void testLargeFile() {
+		// Many blocks: the last lines are found from the end
+		var text = numbers(200_000);
+		assertEquals("0:199999\n200000\n", tail(command -> command.setLines("2"), List.of("f0"), text));
+		var last = tail(command -> command.setLines("50000"), List.of("f0"), text);
+		assertEquals("0:" + text.substring(text.indexOf("\n150001\n") + 1), last);
+		assertEquals("0:200000\n", tail(command -> command.setLines("+200000"), List.of("f0"), text));
+	}
+
+	@Test
+	public void testStandardInput() {
+		var text = numbers(100_000);
+		assertEquals("0:99999\n100000\n", tailInput(command -> command.setLines("2"), text));
+		assertEquals("0:" + text.substring(text.indexOf("\n50001\n") + 1),
+			tailInput(command -> command.setLines("50000"), text));
+		assertEquals("0:0000\n", tailInput(command -> command.setBytes("5"), text));
+		assertEquals("0:100000\n", tailInput(command -> command.setLines("+100000"), text));
+		assertEquals("0:b", tailInput(command -> command.setLines("1"), "a\nb"));
+	}
+
+	@Test
+	public void testHeaders() {
+		assertEquals("0:==> f0 <==\nb\n\n==> f1 <==\nd\n",
+			tail(command -> command.setLines("1"), List.of("f0", "f1"), "a\nb\n", "c\nd\n"));
+		assertEquals("0:b\nd\n",
+			tail(command -> { command.setLines("1"); command.setQuiet(true); }, List.of("f0", "f1"), "a\nb\n", "c\nd\n"));
+		assertEquals("0:==> f0 <==\nb\n",
+			tail(command -> { command.setLines("1"); command.setVerbose(true); }, List.of("f0"), "a\nb\n"));
+	}
+
+	@Test
+	public void testErrors() {
+		assertEquals("1:!tail: cannot open 'none' for reading: No such file or directory\n",
+			tail(command -> {}, List.of("none")));
+		assertEquals("1:!tail: invalid number of lines: 'x'\n",
+			tail(command -> command.setLines("x"), List.of("f0"), "a\n"));
+		assertEquals("1:!tail: invalid number of lines: '1Q'\n",
+			tail(command -> command.setLines("1Q"), List.of("f0"), "a\n"));
+		assertEquals(512, TailScanner.parseCount("1b"));
+		assertEquals(2000, TailScanner.parseCount("2kB"));
+		assertEquals(3L << 20, TailScanner.parseCount("3M"));
+		assertEquals(Long.MAX_VALUE, TailScanner.parseCount("99999999999999999999"));
+		assertThrows(NumberFormatException.class, () -> TailScanner.parseCount("1KiB"));
+	}
+
+	@Test
+	public void testFollow() {
+		for (var byName: new boolean[] {false, true}) {
+			sandbox().runTest(
+				(File directory) -> {
+					var root = directory.toPath();
+					var log = root.resolve("log");
+					Files.writeString(log, "one\n");
+					var output = new ByteArrayOutputStream();
+					var errors = new ByteArrayOutputStream();
+					var command = new TailCommand();
+					command.setFollow(!byName);
+					command.setFollowName(byName);
+					command.setSleepInterval("0.1");
+					command.setFiles(List.of("log"));
+					// Stopping tail must leave its output open
+					var closed = new boolean[1];
+					var out = new PrintStream(output, true) {
+						@Override
+						public void close() {
+							closed[0] = true;
+							super.close();
+						}
+					};
+					var status = new int[] {-1};
+					var follower = Thread.ofVirtual().start(() -> {
+						try {
+							status[0] = command.execute(root, out, new PrintStream(errors, true));
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					});
+					awaitOutput(output, text -> text.equals("one\n"));
+					Files.writeString(log, "two\n", StandardOpenOption.APPEND);
+					awaitOutput(output, text -> text.equals("one\ntwo\n"));
+					// Truncated: copied again from the start
+					Files.writeString(log, "x\n");
+					awaitOutput(output, text -> text.equals("one\ntwo\nx\n"));
+					assertTrue(errors.toString().contains("log: file truncated"), errors.toString());
+					// Rotated: -f goes on with the old file, -F with the new one
+					var rotated = root.resolve("log.1");
+					Files.move(log, rotated, StandardCopyOption.ATOMIC_MOVE);
+					Files.writeString(log, "new\n");
+					Files.writeString(rotated, "old\n", StandardOpenOption.APPEND);
+					awaitOutput(output, text -> text.endsWith(byName ? "new\n" : "old\n"));
+					follower.interrupt();
+					follower.join();
+					assertEquals(0, status[0]);
+					assertFalse(closed[0]);
+					return 0;
+				},
+				true
+			);
+		}
+	}
+
+	// Waits until the output is as expected, for a few seconds at most
+	private static void awaitOutput(ByteArrayOutputStream output, Predicate<String> expected)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!expected.test(output.toString(ISO_8859_1))) {
+			assertTrue(System.currentTimeMillis() < deadline, "unexpected output:\n" + output);
+			Thread.sleep(20);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package unxutils.coreutils;
+
+import org.junit.jupiter.api.Test;
+import test.CommandFixture;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the wc command
+ */
+public class TestWordCountCommand {
+
+	// What wc printed over some files, written first, and its exit status
+	private static String wc(Consumer<WordCountCommand> options, List<String> files, String... contents) {
+		return CommandFixture.run(UTF_8, contents, (cwd, out, err) -> {
+			Files.createDirectory(cwd.resolve("dir"));
+			var command = new WordCountCommand();
+			options.accept(command);
+			command.setFiles(files);
+			return command.execute(cwd, out, err);
+		}).toString();
+	}
+
+	// Counts of some bytes, fed to a counter in pieces of the given size
+	private static WordCounter.Counts count(byte[] data, int piece, boolean scalar, boolean lineLength) {
+		var counter = new WordCounter(true, true, lineLength);
+		var segment = MemorySegment.ofArray(data);
+		for (int i = 0; i < data.length; i += piece) {
+			var slice = segment.asSlice(i, Math.min(piece, data.length - i));
+			if (scalar) counter.countScalar(slice);
+			else counter.count(slice);
+		}
+		return counter.counts();
+	}
+
+	@Test
+	public void testCounts() {
+		var text = "one two\tthree\n  four\n\nfive";
+		assertEquals("0: 3  5 26 f0\n", wc(command -> {}, List.of("f0"), text));
+		assertEquals("0:3 f0\n", wc(command -> command.setLines(true), List.of("f0"), text));
+		assertEquals("0:5 f0\n", wc(command -> command.setWords(true), List.of("f0"), text));
+		assertEquals("0:26 f0\n", wc(command -> command.setBytes(true), List.of("f0"), text));
+		// Characters, as UTF-8
+		assertEquals("0:4 7 f0\n", wc(command -> { command.setChars(true); command.setBytes(true); },
+			List.of("f0"), "añ€\n"));
+		// The longest line, with tabs to the next multiple of 8
+		assertEquals("0:13 f0\n", wc(command -> command.setMaxLineLength(true), List.of("f0"), "ab\tcdefg\nxy\n"));
+	}
+
+	@Test
+	public void testManyFiles() {
+		// Columns as wide as the total size, and a total line
+		assertEquals("0: 1  2 10 f0\n 3  2  5 f1\n 4  4 15 total\n",
+			wc(command -> {}, List.of("f0", "f1"), "one, two.\n", "a\n\nb\n"));
+		// Errors go on with the other files; directories are counted as empty
+		assertEquals("1:      1       2      10 f0\n      0       0       0 dir\n      1       2      10 total\n"
+				+ "!wc: none: No such file or directory\nwc: dir: Is a directory\n",
+			wc(command -> {}, List.of("f0", "none", "dir"), "one, two.\n"));
+	}
+
+	@Test
+	public void testStandardInput() {
+		// Read by the first '-', in order with the files: the second finds it empty
+		var command = new WordCountCommand();
+		command.setFiles(List.of("-", "f0", "-"));
+		assertEquals("0:      1       2       8 -\n      1       1       4 f0\n      0       0       0 -\n"
+				+ "      2       3      12 total\n",
+			CommandFixture.run(UTF_8, new String[] {"abc\n"}, "one two\n", command::execute).toString());
+	}
+
+	@Test
+	public void testSegments() {
+		// Every alignment and split of words, lines and characters among segments
+		var random = new Random(42);
+		var alphabet = "ab \t\n\r\u000b\u000cé€".getBytes(UTF_8);
+		for (int round = 0; round < 200; round++) {
+			var data = new byte[random.nextInt(300)];
+			for (int i = 0; i < data.length; i++) data[i] = alphabet[random.nextInt(alphabet.length)];
+			var expected = count(data, Integer.MAX_VALUE, true, false);
+			for (int piece: new int[] {1, 3, 8, 13, 64, Integer.MAX_VALUE}) {
+				assertEquals(expected, count(data, piece, false, false));
+				assertEquals(expected.maxLineLength(), 0);
+			}
+			// -L is counted the same in any pieces
+			var lengths = count(data, Integer.MAX_VALUE, false, true);
+			assertEquals(lengths, count(data, 7, false, true));
+		}
+		// Every byte value, as whitespace or not
+		for (int b = 0; b < 256; b++) {
+			var data = new byte[] {'x', (byte) b, 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+			assertEquals(count(data, 9, true, false), count(data, 9, false, false));
+		}
+	}
+}
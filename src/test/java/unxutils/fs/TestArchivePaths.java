@@ -0,0 +1,96 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the resolution of paths inside archives
+ */
+public class TestArchivePaths {
+
+	// Writes an archive with some entries, each holding its own name
+	private static void zip(Path archive, String... names) throws IOException {
+		try (var zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+			for (var name: names) {
+				zip.putNextEntry(new ZipEntry(name));
+				zip.write(name.getBytes());
+				zip.closeEntry();
+			}
+		}
+	}
+
+	@Test
+	public void testArchive() {
+		sandbox().runTest(
+			(File directory) -> {
+				var cwd = directory.toPath();
+				zip(cwd.resolve("app.jar"), "BOOT-INF/classes/App.class");
+				try (var archives = new ArchivePaths()) {
+					var path = archives.resolve(cwd, "app.jar!/BOOT-INF/classes");
+					assertNotEquals(FileSystems.getDefault(), path.getFileSystem());
+					assertEquals("/BOOT-INF/classes", path.toString());
+					assertTrue(Files.isDirectory(path));
+					assertEquals(26, Files.size(path.resolve("App.class")));
+					// Opened once
+					assertSame(path.getFileSystem(), archives.resolve(cwd, cwd + "/app.jar!").getFileSystem());
+				}
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testNestedArchive() {
+		sandbox().runTest(
+			(File directory) -> {
+				var cwd = directory.toPath();
+				zip(cwd.resolve("lib.jar"), "META-INF/MANIFEST.MF");
+				try (var zip = new ZipOutputStream(Files.newOutputStream(cwd.resolve("app.jar")))) {
+					zip.putNextEntry(new ZipEntry("lib/lib.jar"));
+					zip.write(Files.readAllBytes(cwd.resolve("lib.jar")));
+					zip.closeEntry();
+				}
+				try (var archives = new ArchivePaths()) {
+					var path = archives.resolve(cwd, "app.jar!/lib/lib.jar!/META-INF/MANIFEST.MF");
+					assertEquals("META-INF/MANIFEST.MF", Files.readString(path));
+				}
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testNotAnArchive() {
+		sandbox().runTest(
+			(File directory) -> {
+				var cwd = directory.toPath();
+				// A directory whose name ends with the mark
+				Files.createDirectories(cwd.resolve("dir!/sub"));
+				Files.writeString(cwd.resolve("text!"), "not a zip");
+				try (var archives = new ArchivePaths()) {
+					assertEquals(cwd.resolve("dir!/sub"), archives.resolve(cwd, "dir!/sub"));
+					assertEquals(cwd.resolve("missing.jar!/x"), archives.resolve(cwd, "missing.jar!/x"));
+					assertThrows(IOException.class, () -> archives.resolve(cwd, "text!!"));
+				}
+				return 0;
+			},
+			true
+		);
+	}
+}
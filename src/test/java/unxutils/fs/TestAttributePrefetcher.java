@@ -0,0 +1,130 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the attribute prefetcher over a slow file system
+ */
+public class TestAttributePrefetcher {
+
+	// Latency of every attribute read
+	private static final long LATENCY_MILLIS = 5;
+	// Entries in the directory
+	private static final int ENTRIES = 200;
+
+	// Loader of a file system where every read waits for a server
+	private static class SlowLoader extends AttributeLoader {
+		SlowLoader() {
+			super(AttributePlan.of(EnumSet.of(FileAttribute.SIZE)), false);
+		}
+
+		@Override
+		public FileAttributes load(Path path) throws IOException {
+			try {
+				Thread.sleep(LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			return super.load(path);
+		}
+	}
+
+	// Lists the directory with some concurrency, consuming the entries last to
+	//	first; returns the elapsed milliseconds
+	private static long list(Path directory, int concurrency) throws IOException {
+		var entries = new EntryBuffer();
+		long start = System.nanoTime();
+		try (var prefetcher = new AttributePrefetcher(new SlowLoader(), concurrency)) {
+			for (int i = 0; i < ENTRIES; i++) {
+				int index = entries.add("file" + i, EntryType.REGULAR);
+				prefetcher.prefetch(entries, index, directory.resolve("file" + i));
+			}
+			for (int i = ENTRIES - 1; i >= 0; i--) {
+				prefetcher.await(entries, i);
+				assertTrue(entries.isLoaded(i));
+				assertEquals(i, entries.fileSize(i));
+			}
+		}
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	@Test
+	public void testSpeedUp() {
+		var elapsed = new long[4];
+		sandbox().runTest(
+			(File directory) -> {
+				for (int i = 0; i < ENTRIES; i++) {
+					Files.write(directory.toPath().resolve("file" + i), new byte[i]);
+				}
+				for (int k = 0; k < elapsed.length; k++) {
+					elapsed[k] = list(directory.toPath(), 1 << k);
+				}
+				return 0;
+			},
+			true
+		);
+		// Close to linear: at least half the ideal speed-up, up to the cap
+		for (int k = 1; k < elapsed.length; k++) {
+			assertTrue(elapsed[0] >= elapsed[k] * (1 << k) / 2,
+				"concurrency " + (1 << k) + ": " + elapsed[k] + " ms, against " + elapsed[0] + " ms");
+		}
+	}
+
+	@Test
+	public void testUnreadableEntries() {
+		sandbox().runTest(
+			(File directory) -> {
+				var entries = new EntryBuffer();
+				try (var prefetcher = new AttributePrefetcher(new SlowLoader(), 4)) {
+					int index = entries.add("missing", EntryType.REGULAR);
+					prefetcher.prefetch(entries, index, directory.toPath().resolve("missing"));
+					prefetcher.await(entries, index);
+					// Left for the owner to read again
+					assertFalse(entries.isPending(index));
+					assertFalse(entries.isLoaded(index));
+				}
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testReusedBuffer() {
+		sandbox().runTest(
+			(File directory) -> {
+				Files.write(directory.toPath().resolve("small"), new byte[1]);
+				Files.write(directory.toPath().resolve("large"), new byte[100]);
+				var entries = new EntryBuffer();
+				try (var prefetcher = new AttributePrefetcher(new SlowLoader(), 2)) {
+					prefetcher.prefetch(entries, entries.add("large", EntryType.REGULAR),
+						directory.toPath().resolve("large"));
+					// Reused before the read is done: the late result is dropped
+					entries.clear();
+					int index = entries.add("small", EntryType.REGULAR);
+					prefetcher.prefetch(entries, index, directory.toPath().resolve("small"));
+					prefetcher.await(entries, index);
+					// Queuing more drains the late result, which must not land on the new entry
+					Thread.sleep(4 * LATENCY_MILLIS);
+					prefetcher.prefetch(entries, entries.add("small", EntryType.REGULAR),
+						directory.toPath().resolve("small"));
+					assertEquals(1, entries.fileSize(index));
+				}
+				return 0;
+			},
+			true
+		);
+	}
+}
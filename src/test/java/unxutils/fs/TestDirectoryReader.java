@@ -0,0 +1,49 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the directory readers
+ */
+public class TestDirectoryReader {
+
+	// Entries of a directory, by name
+	private static Map<String, EntryType> read(DirectoryReader reader, File directory) throws Exception {
+		var ret = new TreeMap<String, EntryType>();
+		reader.read(directory.toPath(), ret::put);
+		return ret;
+	}
+
+	@Test
+	public void testSameEntries() {
+		var stream = new TreeMap<String, EntryType>();
+		var best = new TreeMap<String, EntryType>();
+		sandbox().runTest(
+			(File directory) -> {
+				for (int i = 0; i < 100; i++) {
+					Files.createFile(directory.toPath().resolve("file" + i));
+				}
+				Files.createDirectory(directory.toPath().resolve("dir"));
+				Files.createSymbolicLink(directory.toPath().resolve("link"), directory.toPath().resolve("dir"));
+				stream.putAll(read(new StreamDirectoryReader(), directory));
+				best.putAll(read(DirectoryReader.create(), directory));
+				return 0;
+			},
+			true
+		);
+		assertEquals(102, stream.size());
+		assertEquals(stream.keySet(), best.keySet());
+		if (LinuxDirectoryReader.isSupported()) {
+			assertEquals(EntryType.DIRECTORY, best.get("dir"));
+			assertEquals(EntryType.SYMBOLIC_LINK, best.get("link"));
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the columnar entry buffer
+ */
+public class TestEntryBuffer {
+
+	@Test
+	public void testNamesSurviveGrowth() {
+		var entries = new EntryBuffer();
+		// Names are kept as raw bytes, valid characters or not
+		byte[] raw = {'r', 'a', 'w', (byte) 0xff, (byte) 0xc3};
+		for (int i = 0; i < 1000; i++) {
+			if (i % 100 == 0) entries.add(raw, 0, raw.length, EntryType.REGULAR);
+			else entries.add("entry-" + i, i % 2 == 0 ? EntryType.REGULAR : EntryType.DIRECTORY);
+		}
+		assertEquals(1000, entries.size());
+		assertEquals("entry-1", entries.name(1));
+		assertEquals("entry-999", entries.name(999));
+		for (int i = 0; i < 1000; i += 100) {
+			assertArrayEquals(raw, Arrays.copyOfRange(entries.nameBytes(), entries.nameOffset(i),
+				entries.nameOffset(i) + entries.nameLength(i)));
+		}
+		assertEquals(EntryType.DIRECTORY, entries.type(999));
+		assertFalse(entries.isLoaded(999));
+		entries.clear();
+		assertEquals(0, entries.size());
+		entries.add("again", EntryType.UNKNOWN);
+		assertEquals("again", entries.name(0));
+	}
+
+	@Test
+	public void testStableSort() {
+		var entries = new EntryBuffer();
+		String[] names = {"d", "b", "a", "c", "b"};
+		for (var name: names) entries.add(name, EntryType.REGULAR);
+		assertArrayEquals(new int[] {2, 1, 4, 3, 0}, entries.sort(entries::compareNames));
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4}, entries.indices());
+		// Larger than the insertion sort threshold
+		var many = new EntryBuffer();
+		for (int i = 0; i < 100; i++) many.add(Integer.toString(i % 10), EntryType.REGULAR);
+		var order = many.sort(many::compareNames);
+		for (int k = 1; k < order.length; k++) {
+			int c = many.compareNames(order[k - 1], order[k]);
+			assertTrue(c < 0 || (c == 0 && order[k - 1] < order[k]));
+		}
+	}
+
+	@Test
+	public void testAttributes() {
+		var entries = new EntryBuffer();
+		entries.add("unix", EntryType.REGULAR);
+		entries.add("posix", EntryType.DIRECTORY);
+		entries.add("basic", EntryType.REGULAR);
+		entries.load(0, new FileAttributes(false, false, true, 42, FileTime.fromMillis(1000), null,
+			null, "root", "wheel", 0100755, 3, 1, 0, 10));
+		entries.load(1, new FileAttributes(true, false, false, 4096, FileTime.fromMillis(2000), null,
+			PosixFilePermissions.fromString("rwxr-x---"), "alice", "staff", -1, 1, -1, -1, -1));
+		entries.load(2, new FileAttributes(false, false, true, 7, FileTime.fromMillis(3000), null,
+			null, "alice", "alice", -1, 1, -1, -1, -1));
+		assertEquals(0755, entries.mode(0) & 0777);
+		assertEquals(3, entries.links(0));
+		assertEquals(42, entries.fileSize(0));
+		assertEquals(1000, entries.lastModified(0));
+		assertEquals("root", entries.owner(0));
+		assertEquals("wheel", entries.group(0));
+		assertTrue(entries.isDirectory(1));
+		assertEquals(0750, entries.mode(1) & 0777);
+		assertEquals("alice", entries.owner(1));
+		assertFalse(entries.hasPermissions(2));
+		// Same made up id for the same name
+		assertEquals(entries.uid(1), entries.uid(2));
+		assertTrue(entries.uid(1) < EntryBuffer.NO_ID);
+	}
+}
@@ -0,0 +1,178 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.Sandbox.sandbox;
+
+/**
+ * This class tests the listing streams
+ */
+public class TestListing {
+
+	// Names of the entries of a listing, relative to its root
+	private static Set<String> names(Path root, Listing.Options options, boolean parallel) throws Exception {
+		try (var entries = Listing.of(root, options)) {
+			var stream = parallel ? entries.parallel() : entries;
+			return stream.map(entry -> root.relativize(entry.path()).toString())
+				.collect(Collectors.toCollection(TreeSet::new));
+		}
+	}
+
+	// A tree of directories of files, with a hidden file in each
+	private static void populate(Path root, int directories, int files) throws Exception {
+		for (int d = 0; d < directories; d++) {
+			var directory = Files.createDirectories(root.resolve("d" + d).resolve("nested"));
+			for (int f = 0; f < files; f++) {
+				Files.createFile(directory.resolve("f" + f));
+				Files.createFile(directory.getParent().resolve("g" + f));
+			}
+			Files.createFile(directory.resolve(".hidden"));
+		}
+	}
+
+	@Test
+	public void testEntries() {
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				populate(root, 2, 2);
+				Files.createFile(root.resolve(".hidden"));
+				assertEquals(Set.of("d0", "d1"), names(root, Listing.Options.DEFAULT, false));
+				assertEquals(Set.of(".hidden", "d0", "d1"), names(root, Listing.Options.DEFAULT.withAll(true), false));
+				var recursive = names(root, Listing.Options.DEFAULT.withRecursive(true), false);
+				assertEquals(2 + 2 * (3 + 2), recursive.size());
+				assertTrue(recursive.contains("d1/nested/f1"), recursive.toString());
+				// Typed fields
+				try (var entries = Listing.of(root, Listing.Options.DEFAULT.withRecursive(true)
+						.withAttributes(FileAttribute.SIZE, FileAttribute.TYPE))) {
+					var file = entries.filter(entry -> entry.name().equals("f0")).findFirst().orElseThrow();
+					assertEquals(2, file.depth());
+					assertEquals(0, file.attributes().size());
+					assertFalse(file.isDirectory());
+				}
+				// A single file
+				try (var entries = Listing.of(root.resolve(".hidden"), Listing.Options.DEFAULT)) {
+					var file = entries.toList();
+					assertEquals(1, file.size());
+					assertEquals(".hidden", file.getFirst().name());
+					assertNull(file.getFirst().attributes());
+				}
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testLazy() {
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				populate(root, 3, 2);
+				try (var entries = Listing.of(root, Listing.Options.DEFAULT.withRecursive(true))) {
+					// Nothing is read before the stream gets to it
+					Files.createFile(root.resolve("later"));
+					var iterator = entries.iterator();
+					var first = new TreeSet<String>();
+					for (int i = 0; i < 4; i++) first.add(iterator.next().name());
+					assertEquals(Set.of("d0", "d1", "d2", "later"), first);
+					// Subdirectories not reached yet are read when they are
+					Files.delete(root.resolve("d2/nested/f0"));
+					var rest = new TreeSet<String>();
+					iterator.forEachRemaining(entry -> rest.add(root.relativize(entry.path()).toString()));
+					assertFalse(rest.contains("d2/nested/f0"), rest.toString());
+					assertTrue(rest.contains("d2/nested/f1"), rest.toString());
+				}
+				// Closed streams stop
+				var entries = Listing.of(root, Listing.Options.DEFAULT.withRecursive(true));
+				var iterator = entries.iterator();
+				iterator.next();
+				entries.close();
+				assertFalse(iterator.hasNext());
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testParallel() {
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				populate(root, 20, 30);
+				for (var options: List.of(Listing.Options.DEFAULT.withRecursive(true),
+						Listing.Options.DEFAULT.withRecursive(true).withAll(true).withAttributes(FileAttribute.SIZE))) {
+					var sequential = names(root, options, false);
+					assertEquals(sequential, names(root, options, true));
+					try (var entries = Listing.of(root, options)) {
+						assertEquals(sequential.size(), entries.parallel().count());
+					}
+				}
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testLinkLoops() {
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				var sub = Files.createDirectory(root.resolve("sub"));
+				Files.createFile(sub.resolve("file"));
+				Files.createSymbolicLink(sub.resolve("up"), root);
+				Files.createSymbolicLink(root.resolve("again"), sub);
+				// Links are not entered
+				assertEquals(Set.of("again", "sub", "sub/file", "sub/up"),
+					names(root, Listing.Options.DEFAULT.withRecursive(true), false));
+				// Followed, every directory is entered once
+				var followed = names(root, Listing.Options.DEFAULT.withRecursive(true).withFollowLinks(true), false);
+				assertEquals(4, followed.size());
+				assertTrue(followed.contains("sub/file") || followed.contains("again/file"), followed.toString());
+				return 0;
+			},
+			true
+		);
+	}
+
+	@Test
+	public void testUndecodableNames() {
+		sandbox().runTest(
+			(File directory) -> {
+				var root = directory.toPath();
+				Files.createFile(FileNames.resolve(root, new byte[] {'b', 'a', 'd', (byte) 0xff}, 0, 4));
+				var dir = Files.createDirectory(FileNames.resolve(root, new byte[] {'d', 'i', 'r', (byte) 0xfe}, 0, 4));
+				Files.createFile(dir.resolve("inner"));
+				Files.createDirectory(root.resolve("sub"));
+				// Every entry, entered and stat-ed by the bytes of its name
+				for (var options: List.of(Listing.Options.DEFAULT.withRecursive(true),
+						Listing.Options.DEFAULT.withRecursive(true).withAttributes(FileAttribute.SIZE))) {
+					try (var entries = Listing.of(root, options)) {
+						var paths = entries.map(FileEntry::path).toList();
+						assertTrue(paths.size() == 4, paths.toString());
+						assertTrue(paths.stream().allMatch(path -> Files.exists(path, LinkOption.NOFOLLOW_LINKS)),
+							paths.toString());
+						assertTrue(paths.stream().anyMatch(path -> path.endsWith("inner")), paths.toString());
+					}
+				}
+				return 0;
+			},
+			true
+		);
+	}
+}
@@ -0,0 +1,88 @@
+package unxutils.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the mountinfo parsing and filtering
+ */
+public class TestMountTable {
+
+	private static final String MOUNT_INFO = String.join("\n",
+		"22 1 8:1 / / rw,relatime shared:1 - ext4 /dev/sda1 rw",
+		"23 22 0:21 / /proc rw,nosuid shared:5 - proc proc rw",
+		"24 22 0:22 / /sys rw,nosuid shared:6 - sysfs sysfs rw",
+		"25 22 0:23 / /run rw,nosuid shared:7 - tmpfs tmpfs rw,size=1024k",
+		"26 22 8:1 /srv/data /data rw,relatime shared:1 - ext4 /dev/sda1 rw",
+		"27 22 8:17 / /home rw,relatime shared:8 - xfs /dev/sdb1 rw",
+		"28 22 0:45 / /mnt/nfs rw,relatime shared:9 - nfs4 server:/export rw",
+		"29 22 8:33 / /media/my\\040disk rw,relatime - vfat /dev/sdc1 rw",
+		"30 27 0:24 / /home rw,relatime - tmpfs tmpfs rw"
+	);
+
+	// Mount points of the entries that pass the filter
+	private static List<String> mountPoints(MountFilter filter) throws IOException {
+		return MountTable.read(new StringReader(MOUNT_INFO), filter).stream()
+			.map(MountEntry::mountPoint)
+			.toList();
+	}
+
+	@Test
+	public void testDefaultFilter() throws IOException {
+		// No pseudo file systems, no bind mounts, /home over-mounted by tmpfs
+		assertEquals(
+			List.of("/", "/run", "/mnt/nfs", "/media/my disk", "/home"),
+			mountPoints(new MountFilter(false, false, null, null))
+		);
+	}
+
+	@Test
+	public void testAll() throws IOException {
+		assertEquals(9, mountPoints(new MountFilter(true, false, null, null)).size());
+	}
+
+	@Test
+	public void testLocal() throws IOException {
+		assertEquals(
+			List.of("/", "/run", "/media/my disk", "/home"),
+			mountPoints(new MountFilter(false, true, null, null))
+		);
+	}
+
+	@Test
+	public void testTypes() throws IOException {
+		// /home is over-mounted by a file system of another type
+		assertEquals(List.of("/"), mountPoints(new MountFilter(false, false, "ext4,xfs", null)));
+		assertEquals(
+			List.of("/", "/media/my disk"),
+			mountPoints(new MountFilter(false, false, null, "tmpfs,nfs4"))
+		);
+	}
+
+	@Test
+	public void testDeviceId() throws IOException {
+		var entries = MountTable.read(new StringReader(MOUNT_INFO), new MountFilter(false, false, "ext4", null));
+		// makedev(8, 1)
+		assertEquals(0x801L, entries.getFirst().deviceId());
+	}
+
+	@Test
+	public void testFileStoreMountPoints() throws IOException {
+		// Mount points of the JDK file stores, by which df resolves them at once
+		var root = Files.getFileStore(Path.of("/"));
+		assertEquals("/", MountTable.mountPoint(root));
+		var mountPoints = new HashSet<String>();
+		for (var store: FileSystems.getDefault().getFileStores()) mountPoints.add(MountTable.mountPoint(store));
+		assertTrue(mountPoints.contains("/"), mountPoints.toString());
+	}
+}
@@ -0,0 +1,204 @@
+package unxutils.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic trees for the performance suite.  Names and sizes
+ * come from a seeded random generator, so the same parameters always build
+ * the same tree.  Trees are kept under a root directory (perf.fixtures, by
+ * default in the temporary directory) and reused by later runs: a tree is
+ * complete once its marker file exists.
+ */
+public final class TreeFixture {
+
+	//-----------------------------------------------------------------
+	// Class constants
+
+	// Marks a complete tree; hidden, so that ls without -a does not list it
+	private static final String MARKER = ".complete";
+	// Characters of the generated names; no dots, so that none is hidden
+	private static final String NAME_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789_-";
+
+	/**
+	 * A generated tree.
+	 * @param path Its root
+	 * @param entries Entries in the root directory
+	 * @param total Entries in the whole tree, directories included
+	 * @param directories Directories in the whole tree, the root excluded
+	 */
+	public record Tree(Path path, long entries, long total, long directories) {}
+
+	//-----------------------------------------------------------------
+	// Fixture properties
+
+	// Where the trees are kept
+	private final Path root;
+	// Seed of every tree
+	private final long seed;
+
+	//-----------------------------------------------------------------
+	// Fixture methods
+
+	/**
+	 * Builds a fixture.
+	 * @param root Where the trees are kept
+	 * @param seed Seed of the names and sizes
+	 */
+	public TreeFixture(Path root, long seed) {
+		this.root = root;
+		this.seed = seed;
+	}
+
+	/**
+	 * @return The fixture configured by the perf.fixtures and perf.seed properties
+	 */
+	public static TreeFixture fromProperties() {
+		var root = System.getProperty("perf.fixtures",
+			Path.of(System.getProperty("java.io.tmpdir"), "unxutils-perf").toString());
+		return new TreeFixture(Path.of(root), Long.getLong("perf.seed", 42));
+	}
+
+	/**
+	 * A single directory with many files.
+	 * @param files Number of files
+	 * @return The tree
+	 */
+	public Tree flat(int files) throws IOException {
+		var path = root.resolve("flat-" + files + "-" + seed);
+		if (!isComplete(path)) {
+			var random = new Random(seed);
+			Files.createDirectories(path);
+			createFiles(path, files, random);
+			complete(path);
+		}
+		return new Tree(path, files, files, 0);
+	}
+
+	/**
+	 * A chain of nested directories, with some files at every level.
+	 * @param depth Number of nested directories
+	 * @param files Files per level
+	 * @return The tree
+	 */
+	public Tree deep(int depth, int files) throws IOException {
+		var path = root.resolve("deep-" + depth + "x" + files + "-" + seed);
+		if (!isComplete(path)) {
+			var random = new Random(seed);
+			var level = path;
+			for (int i = 0; i <= depth; i++) {
+				Files.createDirectories(level);
+				createFiles(level, files, random);
+				level = level.resolve("d" + i);
+			}
+			complete(path);
+		}
+		return new Tree(path, files + 1, (long) (depth + 1) * files + depth, depth);
+	}
+
+	/**
+	 * A directory with many subdirectories, each with some files.
+	 * @param directories Number of subdirectories
+	 * @param files Files per subdirectory
+	 * @return The tree
+	 */
+	public Tree wide(int directories, int files) throws IOException {
+		var path = root.resolve("wide-" + directories + "x" + files + "-" + seed);
+		if (!isComplete(path)) {
+			var random = new Random(seed);
+			for (int i = 0; i < directories; i++) {
+				var directory = Files.createDirectories(path.resolve("dir" + i));
+				createFiles(directory, files, random);
+			}
+			complete(path);
+		}
+		return new Tree(path, directories, (long) directories * (files + 1), directories);
+	}
+
+	/**
+	 * A directory where every file has several names.
+	 * @param files Number of distinct files
+	 * @param links Extra names per file
+	 * @return The tree
+	 */
+	public Tree hardLinks(int files, int links) throws IOException {
+		var path = root.resolve("hardlinks-" + files + "x" + links + "-" + seed);
+		if (!isComplete(path)) {
+			var random = new Random(seed);
+			Files.createDirectories(path);
+			for (int i = 0; i < files; i++) {
+				var file = Files.write(path.resolve("file" + i), new byte[random.nextInt(64)]);
+				for (int j = 0; j < links; j++) {
+					Files.createLink(path.resolve("file" + i + "-link" + j), file);
+				}
+			}
+			complete(path);
+		}
+		long entries = (long) files * (links + 1);
+		return new Tree(path, entries, entries, 0);
+	}
+
+	/**
+	 * A directory of files and symbolic links to them, some of them dangling,
+	 * and a subdirectory they can loop through.
+	 * @param files Number of files
+	 * @param links Symbolic links per file
+	 * @return The tree
+	 */
+	public Tree symbolicLinks(int files, int links) throws IOException {
+		var path = root.resolve("symlinks-" + files + "x" + links + "-" + seed);
+		if (!isComplete(path)) {
+			var random = new Random(seed);
+			var sub = Files.createDirectories(path.resolve("sub"));
+			Files.createSymbolicLink(sub.resolve("loop"), path);
+			for (int i = 0; i < files; i++) {
+				var file = Files.write(path.resolve("file" + i), new byte[random.nextInt(64)]);
+				for (int j = 0; j < links; j++) {
+					// One in ten points nowhere
+					var target = random.nextInt(10) == 0 ? path.resolve("missing" + i) : file;
+					Files.createSymbolicLink(path.resolve("file" + i + "-symlink" + j), target);
+				}
+			}
+			complete(path);
+		}
+		long entries = (long) files * (links + 1) + 1;
+		return new Tree(path, entries, entries + 1, 1);
+	}
+
+	// Creates files with random names and sizes
+	private static void createFiles(Path directory, int files, Random random) throws IOException {
+		var name = new StringBuilder();
+		for (int i = 0; i < files; i++) {
+			name.setLength(0);
+			// Random part, then a counter to keep them unique
+			int length = 4 + random.nextInt(20);
+			for (int j = 0; j < length; j++) {
+				name.append(NAME_CHARACTERS.charAt(random.nextInt(NAME_CHARACTERS.length())));
+			}
+			name.append('-').append(i);
+			Files.write(directory.resolve(name.toString()), new byte[random.nextInt(64)]);
+		}
+	}
+
+	// Is the tree already there?  Leftovers of an interrupted build are removed
+	private static boolean isComplete(Path tree) throws IOException {
+		if (Files.exists(tree.resolve(MARKER))) return true;
+		if (Files.exists(tree, LinkOption.NOFOLLOW_LINKS)) {
+			try (var paths = Files.walk(tree)) {
+				for (var path: paths.sorted(Comparator.reverseOrder()).toList()) {
+					Files.delete(path);
+				}
+			}
+		}
+		return false;
+	}
+
+	// Marks a tree as complete
+	private static void complete(Path tree) throws IOException {
+		Files.createFile(tree.resolve(MARKER));
+	}
+}